@@ -0,0 +1,164 @@
+package com.cybergame.app;
+
+import com.cybergame.model.entity.Account;
+import com.cybergame.util.Money;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Kiểm tra + đo số dư CAS của Account
+ * 1. Stress: nhiều thread cùng trừ / cộng 1 account → không âm, không mất cập nhật
+ * 2. Tranh chấp: 1..64 thread trên 1 account, so với kiểu synchronized check-then-act
+ *
+ * Chạy trực tiếp bằng main, không cần DB.
+ */
+public class AccountBalanceBenchmark {
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+    private static final long RUN_MILLIS = 500;
+
+    public static void main(String[] args) throws Exception {
+        stressOverdraw(64);
+        stressMixed(64);
+
+        // warm-up JIT
+        measure(8, false);
+        measure(8, true);
+
+        System.out.println("threads | CAS (Mops/s) | synchronized (Mops/s)");
+        for (int n : THREADS) {
+            double cas = measure(n, false);
+            double sync = measure(n, true);
+            System.out.printf("%7d | %12.2f | %21.2f%n", n, cas, sync);
+        }
+    }
+
+    /* ================= STRESS ================= */
+
+    // số dư chỉ đủ cho 1 phần số lệnh trừ → tổng đã trừ phải đúng bằng số dư ban đầu
+    private static void stressOverdraw(int threads) throws Exception {
+        Account acc = newAccount();
+        long initial = Money.of(10_000);
+        long unit = Money.of(1);
+        acc.credit(initial);
+
+        AtomicLong debited = new AtomicLong();
+        runThreads(threads, () -> {
+            for (int i = 0; i < 1_000; i++) {
+                if (acc.tryDebit(unit)) debited.addAndGet(unit);
+            }
+        });
+
+        check(acc.getBalance() == 0, "số dư phải về 0, còn " + acc.getBalance());
+        check(debited.get() == initial, "đã trừ " + debited.get() + " != " + initial);
+        System.out.println("stress overdraw OK: " + threads + " thread, trừ đúng " + Money.format(initial));
+    }
+
+    // trừ / cộng ngẫu nhiên → số dư cuối = ban đầu + cộng - trừ
+    private static void stressMixed(int threads) throws Exception {
+        Account acc = newAccount();
+        long initial = Money.of(1_000);
+        acc.credit(initial);
+
+        AtomicLong credited = new AtomicLong();
+        AtomicLong debited = new AtomicLong();
+        AtomicLong negatives = new AtomicLong();
+
+        runThreads(threads, () -> {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            for (int i = 0; i < 20_000; i++) {
+                long amount = Money.of(1 + rnd.nextInt(50));
+                if (rnd.nextBoolean()) {
+                    acc.credit(amount);
+                    credited.addAndGet(amount);
+                } else if (acc.tryDebit(amount)) {
+                    debited.addAndGet(amount);
+                }
+                if (acc.getBalance() < 0) negatives.incrementAndGet();
+            }
+        });
+
+        long expected = initial + credited.get() - debited.get();
+        check(negatives.get() == 0, "số dư bị âm " + negatives.get() + " lần");
+        check(acc.getBalance() == expected, "số dư " + acc.getBalance() + " != " + expected);
+        System.out.println("stress mixed OK: " + threads + " thread, số dư cuối " + Money.format(expected));
+    }
+
+    /* ================= TRANH CHẤP ================= */
+
+    private static double measure(int threads, boolean legacy) throws Exception {
+        Account acc = newAccount();
+        LegacyBalance old = new LegacyBalance();
+        acc.credit(Money.of(1_000_000));
+        old.topUp(Money.of(1_000_000));
+
+        long unit = Money.of(1);
+        AtomicLong ops = new AtomicLong();
+        long deadline = System.nanoTime() + RUN_MILLIS * 1_000_000;
+
+        runThreads(threads, () -> {
+            long local = 0;
+            while (System.nanoTime() < deadline) {
+                // 1 cặp trừ + hoàn → số dư không cạn
+                if (legacy) {
+                    if (old.canPay(unit)) old.deduct(unit);
+                    old.topUp(unit);
+                } else {
+                    acc.tryDebit(unit);
+                    acc.credit(unit);
+                }
+                local += 2;
+            }
+            ops.addAndGet(local);
+        });
+
+        return ops.get() / (RUN_MILLIS * 1_000.0);
+    }
+
+    /* ================= HELPER ================= */
+
+    private static void runThreads(int n, Runnable body) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] ts = new Thread[n];
+        for (int i = 0; i < n; i++) {
+            ts[i] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                body.run();
+            });
+            ts[i].start();
+        }
+        start.countDown();
+        for (Thread t : ts) t.join();
+    }
+
+    private static Account newAccount() {
+        return new Account(1, "bench", "123", "Bench", "0900", false);
+    }
+
+    private static void check(boolean ok, String message) {
+        if (!ok) throw new IllegalStateException(message);
+    }
+
+    // ===== Account trước đây: synchronized + canPay / deduct tách rời =====
+    private static final class LegacyBalance {
+        private long balance;
+
+        synchronized boolean canPay(long amount) {
+            return balance >= amount;
+        }
+
+        synchronized void deduct(long amount) {
+            if (balance >= amount) balance -= amount;
+        }
+
+        synchronized void topUp(long amount) {
+            balance += amount;
+        }
+    }
+}
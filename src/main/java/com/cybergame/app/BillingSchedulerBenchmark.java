@@ -0,0 +1,96 @@
+package com.cybergame.app;
+
+import com.cybergame.controller.TimingWheel;
+import com.cybergame.model.entity.Account;
+import com.cybergame.model.entity.Computer;
+import com.cybergame.model.entity.Session;
+import com.cybergame.util.Money;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * So sánh CPU / 1 giây mô phỏng:
+ * - Vòng lặp cũ: mỗi giây copy + trừ tiền TẤT CẢ session
+ * - Timing wheel: chỉ đánh thức session đến mốc chốt tiền
+ *
+ * Chạy trực tiếp bằng main, không cần DB.
+ */
+public class BillingSchedulerBenchmark {
+
+    private static final int SIMULATED_SECONDS = 3600;
+    private static final long BILLING_INTERVAL_SECONDS = 60;
+
+    public static void main(String[] args) {
+        int[] sizes = {100, 1_000, 10_000};
+
+        // warm-up JIT
+        runFullScan(1_000, 600);
+        runTimingWheel(1_000, 600);
+
+        System.out.println("sessions | full-scan (µs CPU/s) | timing-wheel (µs CPU/s)");
+        for (int n : sizes) {
+            double scan = runFullScan(n, SIMULATED_SECONDS);
+            double wheel = runTimingWheel(n, SIMULATED_SECONDS);
+            System.out.printf("%8d | %20.2f | %23.2f%n", n, scan, wheel);
+        }
+    }
+
+    private static List<Session> createSessions(int n) {
+        List<Session> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Account acc = new Account(i, "user" + i, "123", "User " + i, "0900", i % 10 == 0);
+            acc.credit(Money.of(1_000_000));
+            Computer pc = new Computer(i, "PC-" + i, Money.of(10_000));
+            list.add(new Session(i, acc, pc));
+        }
+        return list;
+    }
+
+    private static long timeCost(Session s, long seconds) {
+        return Money.timeCost(s.getComputer().getPricePerHour(), seconds,
+                s.getAccount().getTimeDiscountBps());
+    }
+
+    // ===== VÒNG LẶP CŨ (SessionManager.tickUpdate trước đây) =====
+    private static double runFullScan(int n, int seconds) {
+        List<Session> sessions = createSessions(n);
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        long start = bean.getCurrentThreadCpuTime();
+        for (int t = 0; t < seconds; t++) {
+            for (Session s : new ArrayList<>(sessions)) {
+                long cost = timeCost(s, 1);
+                s.getAccount().tryDebit(cost);
+            }
+        }
+        long cpu = bean.getCurrentThreadCpuTime() - start;
+        return cpu / 1_000.0 / seconds;
+    }
+
+    // ===== TIMING WHEEL =====
+    private static double runTimingWheel(int n, int seconds) {
+        List<Session> sessions = createSessions(n);
+        TimingWheel<Session> wheel = new TimingWheel<>();
+        long interval = BILLING_INTERVAL_SECONDS;
+
+        // trải đều mốc chốt tiền như khi khách đăng nhập lệch giờ nhau
+        for (int i = 0; i < sessions.size(); i++) {
+            wheel.schedule(sessions.get(i), 1 + i % interval);
+        }
+
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        long start = bean.getCurrentThreadCpuTime();
+        for (int t = 0; t < seconds; t++) {
+            for (Session s : wheel.advance()) {
+                long cost = timeCost(s, interval);
+                s.getAccount().tryDebit(cost);
+                wheel.schedule(s, interval);
+            }
+        }
+        long cpu = bean.getCurrentThreadCpuTime() - start;
+        return cpu / 1_000.0 / seconds;
+    }
+}
@@ -0,0 +1,213 @@
+package com.cybergame.app;
+
+import com.cybergame.controller.IdAllocator;
+import com.cybergame.controller.Inventory;
+import com.cybergame.controller.OrderController;
+import com.cybergame.controller.OrderQueue;
+import com.cybergame.controller.OrderWriter;
+import com.cybergame.model.entity.Account;
+import com.cybergame.model.entity.Cart;
+import com.cybergame.model.entity.Computer;
+import com.cybergame.model.entity.OrderItem;
+import com.cybergame.model.entity.OrderRecord;
+import com.cybergame.model.entity.ServiceItem;
+import com.cybergame.model.entity.Session;
+import com.cybergame.model.enums.PaymentSource;
+import com.cybergame.model.enums.ServiceCategory;
+import com.cybergame.repository.AccountRepository;
+import com.cybergame.repository.OrderRepository;
+import com.cybergame.repository.ServiceItemRepository;
+import com.cybergame.repository.journal.BillingJournal;
+import com.cybergame.util.Money;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Đặt giỏ 4 món trả bằng tài khoản:
+ * - cách cũ: gọi addOrder 4 lần (4 lần trừ tiền + chờ journal + lưu account)
+ * - checkout: 1 lần trừ tổng, 1 lần chờ journal, 1 lần lưu account
+ * Đo số order / giây với 1..16 khách đặt cùng lúc (mỗi khách 1 account, 1 session).
+ *
+ * Chạy trực tiếp bằng main, không cần DB: journal ghi file tạm thật (group commit như app),
+ * lưu account giả lập 1 round-trip MySQL (-Dbench.dbLatencyMicros, mặc định 500).
+ */
+public class CartCheckoutBenchmark {
+
+    private static final int[] THREADS = {1, 4, 16};
+    private static final long RUN_MILLIS = 1_000;
+    private static final long DB_LATENCY_NANOS =
+            TimeUnit.MICROSECONDS.toNanos(Long.getLong("bench.dbLatencyMicros", 500));
+
+    private static final ServiceItem[] MENU = {
+            new ServiceItem(1, "Mì xào", Money.of(25_000), ServiceCategory.FOOD),
+            new ServiceItem(2, "Sting", Money.of(12_000), ServiceCategory.DRINK),
+            new ServiceItem(3, "Snack", Money.of(8_000), ServiceCategory.SNACK),
+            new ServiceItem(4, "Cà phê", Money.of(15_000), ServiceCategory.DRINK)
+    };
+
+    private static volatile long sink;
+
+    public static void main(String[] args) throws Exception {
+        // id order cấp trong bộ nhớ
+        AtomicLong ids = new AtomicLong(1);
+        IdAllocator.setSharedRepository((name, size) -> ids.getAndAdd(size));
+
+        Path file = Files.createTempFile("cart-bench", ".journal");
+        BillingJournal journal = BillingJournal.open(file);
+        OrderWriter writer = new OrderWriter(new NoopOrderRepository());
+        Inventory inventory = new Inventory(new NoopServiceItemRepository());
+        OrderController orders = new OrderController(new SlowAccountRepository(), journal,
+                new OrderQueue(), writer, inventory);
+
+        try {
+            checkAtomic(orders);
+
+            // warm-up JIT
+            measure(orders, 4, false, 300);
+            measure(orders, 4, true, 300);
+
+            System.out.println("threads | addOrder x4 (order/s) | checkout (order/s) | x");
+            for (int n : THREADS) {
+                double single = measure(orders, n, false, RUN_MILLIS);
+                double cart = measure(orders, n, true, RUN_MILLIS);
+                System.out.printf("%7d | %21.0f | %18.0f | %.1f%n", n, single, cart, cart / single);
+            }
+            System.out.println("(sink " + sink + ")");
+        } finally {
+            writer.shutdown();
+            inventory.shutdown();
+            journal.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /* ================= ĐÚNG / SAI ================= */
+
+    // giỏ có món khoá / không đủ tiền → không order nào, số dư giữ nguyên
+    private static void checkAtomic(OrderController orders) {
+        Session s = newSession(0);
+        Account acc = s.getAccount();
+        Cart cart = fullCart();
+        long total = 0;
+        for (Cart.Line l : cart.getLines()) {
+            total += Money.times(l.getService().getUnitPrice(), l.getQuantity());
+        }
+
+        acc.credit(total - 1);
+        check(orders.checkout(s, cart, PaymentSource.ACCOUNT).isEmpty(), "thiếu tiền vẫn đặt được");
+        check(acc.getBalance() == total - 1, "thiếu tiền mà số dư bị trừ");
+
+        acc.credit(1);
+        ServiceItem locked = new ServiceItem(99, "Hết hàng", Money.of(1_000), ServiceCategory.SNACK);
+        locked.lock();
+        Cart withLocked = fullCart().add(locked, 1);
+        check(orders.checkout(s, withLocked, PaymentSource.ACCOUNT).isEmpty(), "món khoá vẫn đặt được");
+        check(acc.getBalance() == total, "món khoá mà số dư bị trừ");
+        check(s.getOrderItems().isEmpty(), "giỏ lỗi nhưng vẫn tạo order");
+
+        List<OrderItem> items = orders.checkout(s, cart, PaymentSource.ACCOUNT);
+        long cost = 0;
+        for (OrderItem item : items) cost += item.getCost();
+        check(items.size() == MENU.length, "thiếu order: " + items.size());
+        check(cost == total && acc.getBalance() == 0, "tổng order " + cost + " != đã trừ " + total);
+        System.out.println("checkout nguyên tử OK: " + items.size() + " order, trừ " + Money.format(total));
+    }
+
+    /* ================= ĐO ================= */
+
+    private static double measure(OrderController orders, int threads, boolean cart, long millis)
+            throws Exception {
+        AtomicLong placed = new AtomicLong();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] ts = new Thread[threads];
+
+        for (int t = 0; t < threads; t++) {
+            Session s = newSession(t + 1);
+            s.getAccount().credit(Money.of(1_000_000_000L));
+            ts[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                Cart c = fullCart();
+                long local = 0;
+                while (System.nanoTime() < deadline) {
+                    if (cart) {
+                        local += orders.checkout(s, c, PaymentSource.ACCOUNT).size();
+                    } else {
+                        for (ServiceItem service : MENU) {
+                            if (orders.addOrder(s, service, 1, PaymentSource.ACCOUNT) != null) local++;
+                        }
+                    }
+                    s.getOrderItems().clear();
+                }
+                placed.addAndGet(local);
+            });
+            ts[t].start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread t : ts) t.join();
+        long elapsed = System.nanoTime() - begin;
+
+        sink += placed.get();
+        return placed.get() * 1e9 / elapsed;
+    }
+
+    /* ================= HELPER ================= */
+
+    private static Cart fullCart() {
+        Cart cart = new Cart();
+        for (ServiceItem service : MENU) cart.add(service, 1);
+        return cart;
+    }
+
+    private static Session newSession(int id) {
+        Account acc = new Account(id + 1, "bench" + id, "123", "Bench", "0900", false);
+        return new Session(id + 1, acc, new Computer(id + 1, "PC" + id, Money.of(10_000)));
+    }
+
+    private static void check(boolean ok, String message) {
+        if (!ok) throw new IllegalStateException(message);
+    }
+
+    // ===== lưu account: chỉ giả lập độ trễ 1 lệnh UPDATE =====
+    private static final class SlowAccountRepository implements AccountRepository {
+        @Override public void save(Account acc) { LockSupport.parkNanos(DB_LATENCY_NANOS); }
+        @Override public void saveAll(Collection<Account> accounts) { LockSupport.parkNanos(DB_LATENCY_NANOS); }
+        @Override public void delete(Account acc) { }
+        @Override public Account findByUsername(String username) { return null; }
+        @Override public Account findById(int id) { return null; }
+        @Override public List<Account> findAll() { return List.of(); }
+        @Override public void updateBalances(Collection<Account> accounts) { }
+    }
+
+    private static final class NoopOrderRepository implements OrderRepository {
+        @Override public void saveAll(Collection<OrderRecord> orders) { }
+        @Override public void closeSessions(Collection<Integer> sessionIds) { }
+        @Override public List<OrderRecord> findOpen() { return List.of(); }
+    }
+
+    // menu không theo dõi tồn kho
+    private static final class NoopServiceItemRepository implements ServiceItemRepository {
+        @Override public void save(ServiceItem s) { }
+        @Override public void delete(ServiceItem s) { }
+        @Override public List<ServiceItem> findAll() { return List.of(); }
+        @Override public Map<Integer, Long> findStock() { return Map.of(); }
+        @Override public void updateStock(Map<Integer, Long> stock) { }
+        @Override public void updateLocked(int serviceId, boolean locked, boolean autoLocked) { }
+        @Override public Set<Integer> findAutoLocked() { return Set.of(); }
+    }
+}
@@ -0,0 +1,295 @@
+package com.cybergame.app;
+
+import com.cybergame.repository.sql.ConnectionPool;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Kiểm tra ConnectionPool với driver giả (Proxy), không cần MySQL
+ * 1. Mượn / trả: tái dùng kết nối, transaction dở bị rollback khi trả
+ * 2. Hết kết nối → chờ waitTimeout rồi báo lỗi
+ * 3. Kết nối chết (isValid = false) bị bỏ khi mượn lại
+ * 4. Kết nối rảnh quá idleTimeout bị đóng bớt
+ * 5. Mượn quá leakThreshold → đếm rò rỉ
+ * 6. Cache PreparedStatement theo câu SQL: trả cache thì đóng ResultSet, đặt lại cài đặt
+ *
+ * Chạy trực tiếp bằng main.
+ */
+public class ConnectionPoolCheck {
+
+    public static void main(String[] args) throws Exception {
+        checkBorrowRelease();
+        checkTimeout();
+        checkValidation();
+        checkIdleEviction();
+        checkLeak();
+        checkStatementCache();
+        System.out.println("connection pool OK");
+    }
+
+    /* ================= MƯỢN / TRẢ ================= */
+
+    private static void checkBorrowRelease() throws Exception {
+        FakeDriver driver = new FakeDriver();
+        ConnectionPool pool = new ConnectionPool(driver, 2, 100, 60_000, 0);
+        try {
+            Connection c = pool.borrow();
+            c.setAutoCommit(false);
+            c.close();
+            c.close();                                   // trả 2 lần không sao
+            check(driver.rollbacks.get() == 1, "trả kết nối đang transaction phải rollback");
+            check(c.isClosed(), "handle đã trả phải báo closed");
+
+            Connection again = pool.borrow();
+            check(driver.created.get() == 1, "phải dùng lại kết nối cũ, tạo " + driver.created.get());
+            check(again.getAutoCommit(), "kết nối trả về pool phải bật lại autoCommit");
+            again.close();
+
+            try {
+                c.createStatement();
+                throw new IllegalStateException("handle cũ vẫn dùng được sau khi trả");
+            } catch (SQLException expected) {
+                // đúng: handle đã trả bị chặn
+            }
+            System.out.println("borrow/release OK: " + pool.getStats());
+        } finally {
+            pool.close();
+        }
+    }
+
+    private static void checkTimeout() throws Exception {
+        FakeDriver driver = new FakeDriver();
+        ConnectionPool pool = new ConnectionPool(driver, 1, 50, 60_000, 0);
+        try {
+            Connection held = pool.borrow();
+            try {
+                pool.borrow().close();
+                throw new IllegalStateException("pool 1 kết nối mà mượn được 2");
+            } catch (SQLException expected) {
+                check(pool.getStats().getTimeouts() == 1, "phải đếm 1 lần hết kết nối");
+            }
+            held.close();
+            pool.borrow().close();                       // trả rồi thì mượn lại được
+            System.out.println("timeout OK");
+        } finally {
+            pool.close();
+        }
+    }
+
+    /* ================= KIỂM TRA / DỌN ================= */
+
+    private static void checkValidation() throws Exception {
+        FakeDriver driver = new FakeDriver();
+        ConnectionPool pool = new ConnectionPool(driver, 2, 100, 60_000, 0);
+        try {
+            pool.borrow().close();
+            driver.killAll();
+            Thread.sleep(600);                           // quá khoảng bỏ qua isValid
+
+            pool.borrow().close();
+            check(pool.getStats().getValidationFailures() == 1, "kết nối chết phải bị loại");
+            check(driver.created.get() == 2, "phải mở kết nối mới thay kết nối chết");
+            System.out.println("validation OK");
+        } finally {
+            pool.close();
+        }
+    }
+
+    private static void checkIdleEviction() throws Exception {
+        FakeDriver driver = new FakeDriver();
+        ConnectionPool pool = new ConnectionPool(driver, 3, 100, 200, 0);
+        try {
+            Connection a = pool.borrow();
+            Connection b = pool.borrow();
+            a.close();
+            b.close();
+            waitFor(() -> pool.getStats().getIdle() == 0, "kết nối rảnh lâu phải bị đóng");
+            check(driver.closedCount() == 2, "phải đóng 2 kết nối thật, đóng " + driver.closedCount());
+            System.out.println("idle eviction OK: " + pool.getStats());
+        } finally {
+            pool.close();
+        }
+    }
+
+    private static void checkLeak() throws Exception {
+        FakeDriver driver = new FakeDriver();
+        ConnectionPool pool = new ConnectionPool(driver, 2, 100, 60_000, 200);
+        try {
+            Connection leaked = pool.borrow();
+            waitFor(() -> pool.getStats().getLeaks() == 1, "mượn quá lâu phải bị báo rò rỉ");
+            Thread.sleep(1_200);                         // 1 kết nối chỉ báo 1 lần
+            check(pool.getStats().getLeaks() == 1, "báo rò rỉ lặp lại " + pool.getStats().getLeaks());
+            leaked.close();
+            System.out.println("leak OK");
+        } finally {
+            pool.close();
+        }
+    }
+
+    /* ================= STATEMENT CACHE ================= */
+
+    private static void checkStatementCache() throws Exception {
+        FakeDriver driver = new FakeDriver();
+        ConnectionPool pool = new ConnectionPool(driver, 1, 100, 60_000, 0, 2);
+        try {
+            for (int i = 0; i < 3; i++) {
+                try (Connection c = pool.borrow();
+                     PreparedStatement ps = c.prepareStatement("SELECT 1")) {
+                    ps.setInt(1, i);
+                }
+            }
+            check(driver.prepared.get() == 1, "câu SQL lặp lại phải lấy từ cache");
+
+            try (Connection c = pool.borrow()) {
+                for (String sql : List.of("SELECT 2", "SELECT 3", "SELECT 4")) {
+                    c.prepareStatement(sql).close();
+                }
+            }
+            ConnectionPool.PoolStats stats = pool.getStats();
+            check(stats.getStatementHits() == 2, "hit " + stats.getStatementHits());
+            check(driver.closedStatements.get() >= 2, "cache 2 câu phải đóng bớt câu cũ");
+
+            // ResultSet không đóng tay + đổi fetchSize → đóng statement phải dọn cả hai
+            ResultSet rs;
+            try (Connection c = pool.borrow()) {
+                PreparedStatement ps = c.prepareStatement("SELECT 4");
+                ps.setFetchSize(500);
+                rs = ps.executeQuery();
+                ps.close();
+                check(rs.isClosed(), "đóng statement trong cache phải đóng ResultSet");
+
+                PreparedStatement again = c.prepareStatement("SELECT 4");
+                check(again.getFetchSize() == 0, "fetchSize lọt sang lần mượn sau: " + again.getFetchSize());
+                again.close();
+            }
+            stats = pool.getStats();
+            System.out.println("statement cache OK: " + stats);
+        } finally {
+            pool.close();
+        }
+    }
+
+    /* ================= HELPER ================= */
+
+    private static void waitFor(BooleanSupplier cond, String message) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!cond.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) throw new IllegalStateException(message);
+            Thread.sleep(20);
+        }
+    }
+
+    private static void check(boolean ok, String message) {
+        if (!ok) throw new IllegalStateException(message);
+    }
+
+    // ===== driver giả: Connection / PreparedStatement bằng Proxy =====
+    private static final class FakeDriver implements ConnectionPool.ConnectionFactory {
+        final AtomicInteger created = new AtomicInteger();
+        final AtomicInteger rollbacks = new AtomicInteger();
+        final AtomicInteger prepared = new AtomicInteger();
+        final AtomicInteger closedStatements = new AtomicInteger();
+        private final List<FakeConnection> connections = new ArrayList<>();
+
+        @Override
+        public synchronized Connection create() {
+            created.incrementAndGet();
+            FakeConnection fc = new FakeConnection();
+            connections.add(fc);
+            return fc.proxy();
+        }
+
+        synchronized void killAll() {
+            connections.forEach(fc -> fc.valid = false);
+        }
+
+        synchronized int closedCount() {
+            int n = 0;
+            for (FakeConnection fc : connections) if (fc.closed) n++;
+            return n;
+        }
+
+        private final class FakeConnection {
+            volatile boolean valid = true;
+            volatile boolean closed;
+            boolean autoCommit = true;
+
+            Connection proxy() {
+                return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                        new Class<?>[]{Connection.class}, (p, m, a) -> switch (m.getName()) {
+                            case "isValid" -> valid && !closed;
+                            case "isClosed" -> closed;
+                            case "close" -> {
+                                closed = true;
+                                yield null;
+                            }
+                            case "getAutoCommit" -> autoCommit;
+                            case "setAutoCommit" -> {
+                                autoCommit = (Boolean) a[0];
+                                yield null;
+                            }
+                            case "rollback" -> {
+                                rollbacks.incrementAndGet();
+                                yield null;
+                            }
+                            case "prepareStatement" -> {
+                                prepared.incrementAndGet();
+                                yield statement();
+                            }
+                            case "hashCode" -> System.identityHashCode(p);
+                            case "equals" -> p == a[0];
+                            case "toString" -> "FakeConnection";
+                            default -> null;
+                        });
+            }
+
+            PreparedStatement statement() {
+                int[] fetchSize = {0};
+                return (PreparedStatement) Proxy.newProxyInstance(
+                        PreparedStatement.class.getClassLoader(),
+                        new Class<?>[]{PreparedStatement.class}, (p, m, a) -> switch (m.getName()) {
+                            case "close" -> {
+                                closedStatements.incrementAndGet();
+                                yield null;
+                            }
+                            case "isClosed", "isPoolable" -> false;
+                            case "executeQuery" -> resultSet();
+                            case "getFetchSize" -> fetchSize[0];
+                            case "setFetchSize" -> {
+                                fetchSize[0] = (Integer) a[0];
+                                yield null;
+                            }
+                            case "getFetchDirection", "getMaxRows", "getMaxFieldSize",
+                                 "getQueryTimeout" -> 0;
+                            case "hashCode" -> System.identityHashCode(p);
+                            case "equals" -> p == a[0];
+                            default -> null;
+                        });
+            }
+
+            ResultSet resultSet() {
+                boolean[] closed = {false};
+                return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                        new Class<?>[]{ResultSet.class}, (p, m, a) -> switch (m.getName()) {
+                            case "close" -> {
+                                closed[0] = true;
+                                yield null;
+                            }
+                            case "isClosed" -> closed[0];
+                            case "next" -> false;
+                            case "hashCode" -> System.identityHashCode(p);
+                            case "equals" -> p == a[0];
+                            default -> null;
+                        });
+            }
+        }
+    }
+}
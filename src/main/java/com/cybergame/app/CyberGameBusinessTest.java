@@ -7,6 +7,7 @@ import com.cybergame.model.enums.PaymentSource;
 import com.cybergame.model.enums.ServiceCategory;
 import com.cybergame.repository.*;
 import com.cybergame.repository.sql.*;
+import com.cybergame.util.Money;
 
 import java.util.List;
 
@@ -65,24 +66,24 @@ public class CyberGameBusinessTest {
 
         // 10 máy
         for (int i = 1; i <= 10; i++) {
-            computerController.createComputer("PC-" + i, 10000);
+            computerController.createComputer("PC-" + i, Money.of(10_000));
         }
 
         // 5 dịch vụ + CATEGORY
         ServiceItem coca = serviceController.createService(
-                "Coca", 15000, ServiceCategory.DRINK
+                "Coca", Money.of(15000), ServiceCategory.DRINK
         );
         ServiceItem cafe = serviceController.createService(
-                "Cafe", 30000, ServiceCategory.DRINK
+                "Cafe", Money.of(30000), ServiceCategory.DRINK
         );
         ServiceItem mi = serviceController.createService(
-                "Mi ly", 25000, ServiceCategory.FOOD
+                "Mi ly", Money.of(25000), ServiceCategory.FOOD
         );
         ServiceItem snack = serviceController.createService(
-                "Snack", 20000, ServiceCategory.SNACK
+                "Snack", Money.of(20000), ServiceCategory.SNACK
         );
         ServiceItem banh = serviceController.createService(
-                "Banh ngot", 18000, ServiceCategory.SNACK
+                "Banh ngot", Money.of(18000), ServiceCategory.SNACK
         );
 
         // ==================================================
@@ -119,10 +120,10 @@ public class CyberGameBusinessTest {
 
         // nạp tiền ban đầu
         topUp(context, accountRepo, topUpController,
-                "user1", 1, "Employee 1", 200_000, "Nap dau");
+                "user1", 1, "Employee 1", Money.of(200_000), "Nap dau");
 
         topUp(context, accountRepo, topUpController,
-                "user2", 2, "Employee 2", 150_000, "Nap dau");
+                "user2", 2, "Employee 2", Money.of(150_000), "Nap dau");
 
         // ==================================================
         System.out.println("\n===== 4. CHƠI GAME + ORDER + NẠP TIỀN GIỮA GIỜ =====");
@@ -136,7 +137,7 @@ public class CyberGameBusinessTest {
 
         // nạp tiền giữa giờ (đang online → dùng context)
         topUp(context, accountRepo, topUpController,
-                "user1", 3, "Employee 3", 100_000, "Nap giua gio");
+                "user1", 3, "Employee 3", Money.of(100_000), "Nap giua gio");
 
         Thread.sleep(2000);
 
@@ -157,13 +158,13 @@ public class CyberGameBusinessTest {
             System.out.println(" User: " + inv.getAccountName());
             System.out.println(" PC: " + inv.getComputerName());
 
-            System.out.println(" Time amount: " + inv.getTimeAmount());
+            System.out.println(" Time amount: " + Money.format(inv.getTimeAmount()));
 
-            System.out.println(" Service (ACCOUNT): " + inv.getServiceAccountAmount());
-            System.out.println(" Service (CASH): " + inv.getServiceCashAmount());
-            System.out.println(" Service (TOTAL): " + inv.getServiceAmount());
+            System.out.println(" Service (ACCOUNT): " + Money.format(inv.getServiceAccountAmount()));
+            System.out.println(" Service (CASH): " + Money.format(inv.getServiceCashAmount()));
+            System.out.println(" Service (TOTAL): " + Money.format(inv.getServiceAmount()));
 
-            System.out.println(" TOTAL: " + inv.getTotalAmount());
+            System.out.println(" TOTAL: " + Money.format(inv.getTotalAmount()));
             System.out.println("----------------------------------");
         }
 
@@ -197,7 +198,7 @@ public class CyberGameBusinessTest {
                               String username,
                               int empId,
                               String empName,
-                              double amount,
+                              long amount,
                               String note) {
 
         Account acc = context.get(username);
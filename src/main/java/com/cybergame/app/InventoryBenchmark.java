@@ -0,0 +1,283 @@
+package com.cybergame.app;
+
+import com.cybergame.controller.IdAllocator;
+import com.cybergame.controller.Inventory;
+import com.cybergame.controller.ServiceItemController;
+import com.cybergame.model.entity.ServiceItem;
+import com.cybergame.model.enums.ServiceCategory;
+import com.cybergame.repository.ServiceItemRepository;
+import com.cybergame.util.Money;
+import com.cybergame.util.StripedStock;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Kiểm tra + đo tồn kho món
+ * 1. Stress: nhiều thread cùng giữ chỗ 1 món → bán đúng bằng tồn kho, không âm, không bán lố
+ * 2. Inventory: chạm ngưỡng tự khoá, huỷ order / nhập hàng mở lại, ghi DB theo batch,
+ *    nhân viên đổi ngưỡng / nhập hàng, nạp lại thì khoá món đã dưới ngưỡng
+ *    (món nhân viên khoá tay không bị nhập hàng mở ra)
+ * 3. Tranh chấp: 1..64 thread giữ chỗ + trả lại, StripedStock so với 1 AtomicLong CAS
+ *
+ * Chạy trực tiếp bằng main, không cần DB.
+ */
+public class InventoryBenchmark {
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+    private static final long RUN_MILLIS = 500;
+    // stress cố định 16 stripe → luôn chạy cả nhánh gom từ ô khác (kể cả máy ít core)
+    private static final int STRESS_STRIPES = 16;
+
+    public static void main(String[] args) throws Exception {
+        stressSellOut(64);
+        stressMixed(64);
+        checkInventory();
+
+        // warm-up JIT
+        measure(8, false);
+        measure(8, true);
+
+        System.out.println("threads | striped (Mops/s) | 1 AtomicLong (Mops/s)");
+        for (int n : THREADS) {
+            double striped = measure(n, false);
+            double single = measure(n, true);
+            System.out.printf("%7d | %16.2f | %21.2f%n", n, striped, single);
+        }
+    }
+
+    /* ================= STRESS ================= */
+
+    // giữ chỗ tới khi hết hàng → tổng đã bán phải đúng bằng tồn kho ban đầu
+    private static void stressSellOut(int threads) throws Exception {
+        long initial = 100_000;
+        StripedStock stock = new StripedStock(initial, STRESS_STRIPES);
+        AtomicLong sold = new AtomicLong();
+
+        runThreads(threads, () -> {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            int misses = 0;
+            while (misses < 100) {
+                int qty = 1 + rnd.nextInt(3);
+                if (stock.tryReserve(qty)) sold.addAndGet(qty);
+                else misses++;
+            }
+        });
+
+        // còn lại < 3 đơn vị thì lệnh 1 đơn vị vẫn phải lấy được
+        while (stock.tryReserve(1)) sold.incrementAndGet();
+
+        check(stock.available() == 0, "còn " + stock.available() + " sau khi bán hết");
+        check(sold.get() == initial, "đã bán " + sold.get() + " != " + initial);
+        System.out.println("stress sell-out OK: " + threads + " thread, " + stock.getStripes()
+                + " stripe, bán đúng " + initial);
+    }
+
+    // giữ chỗ / trả lại ngẫu nhiên → tồn kho cuối = ban đầu - giữ + trả
+    private static void stressMixed(int threads) throws Exception {
+        long initial = 500;
+        StripedStock stock = new StripedStock(initial, STRESS_STRIPES);
+        AtomicLong reserved = new AtomicLong();
+        AtomicLong released = new AtomicLong();
+        AtomicLong negatives = new AtomicLong();
+
+        runThreads(threads, () -> {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            long held = 0;
+            for (int i = 0; i < 20_000; i++) {
+                int qty = 1 + rnd.nextInt(5);
+                if (held >= qty && rnd.nextBoolean()) {
+                    stock.release(qty);
+                    held -= qty;
+                    released.addAndGet(qty);
+                } else if (stock.tryReserve(qty)) {
+                    held += qty;
+                    reserved.addAndGet(qty);
+                }
+                if (stock.available() < 0) negatives.incrementAndGet();
+            }
+        });
+
+        long expected = initial - reserved.get() + released.get();
+        check(negatives.get() == 0, "tồn kho bị âm " + negatives.get() + " lần");
+        check(stock.available() == expected, "tồn kho " + stock.available() + " != " + expected);
+        System.out.println("stress mixed OK: " + threads + " thread, tồn kho cuối " + expected);
+    }
+
+    /* ================= INVENTORY ================= */
+
+    private static void checkInventory() {
+        MemoryServiceItemRepository repo = new MemoryServiceItemRepository();
+        AtomicLong ids = new AtomicLong(1);
+        ServiceItemController ctrl = new ServiceItemController(repo,
+                new IdAllocator((name, size) -> ids.getAndAdd(size), IdAllocator.SERVICES, 50));
+        Inventory inventory = new Inventory(repo, 3_600);
+
+        ServiceItem snack = ctrl.createService("Snack", Money.of(8_000), ServiceCategory.SNACK);
+        ServiceItem water = ctrl.createService("Nước suối", Money.of(5_000), ServiceCategory.DRINK);
+        snack.setLowStockThreshold(2);
+        inventory.setStock(snack, 5);
+
+        long saves = repo.saves.get();
+        check(inventory.reserve(water, 100), "món không theo dõi phải đặt được");
+        check(inventory.reserve(snack, 3), "còn 5 phải giữ được 3");
+        check(!inventory.reserve(snack, 3), "còn 2 mà giữ được 3");
+        // khoá chỉ ghi cột locked / auto_locked, không lưu đè cả món
+        waitFor(() -> Boolean.TRUE.equals(repo.saved.get(snack.getServiceId())),
+                "chạm ngưỡng 2 phải tự khoá");
+        check(snack.isLocked(), "món chưa bị khoá");
+        check(repo.autoLocked.contains(snack.getServiceId()), "phải đánh dấu auto_locked");
+        check(repo.saves.get() == saves, "tự khoá không được lưu đè cả món");
+
+        inventory.release(snack, 3);                 // huỷ order
+        waitFor(() -> Boolean.FALSE.equals(repo.saved.get(snack.getServiceId())),
+                "trả hàng vượt ngưỡng phải mở khoá");
+        check(inventory.getAvailable(snack) == 5, "huỷ order phải trả lại hàng");
+
+        inventory.flush();
+        check(repo.stock.equals(Map.of(snack.getServiceId(), 5L)), "ghi DB sai: " + repo.stock);
+        check(repo.batches.get() == 1, "phải ghi 1 batch, ghi " + repo.batches.get());
+
+        // nhân viên: nâng ngưỡng qua tồn kho hiện tại → khoá, nhập thêm → mở
+        ServiceItemController staff = new ServiceItemController(repo,
+                new IdAllocator((name, size) -> ids.getAndAdd(size), IdAllocator.SERVICES, 50), inventory);
+        staff.setLowStockThreshold(snack, 6);
+        waitFor(snack::isLocked, "nâng ngưỡng trên tồn kho phải khoá");
+        staff.restock(snack, 5);
+        waitFor(() -> !snack.isLocked(), "nhập hàng vượt ngưỡng phải mở khoá");
+        check(staff.getStock(snack) == 10, "nhập 5 phải còn 10, còn " + staff.getStock(snack));
+        inventory.flush();
+        inventory.shutdown();
+
+        // nạp lại: món đã dưới ngưỡng trong DB → khoá ngay lúc load
+        repo.stock.put(snack.getServiceId(), 3L);
+        ServiceItem stored = new ServiceItem(snack.getServiceId(), "Snack", Money.of(8_000), ServiceCategory.SNACK);
+        stored.setLowStockThreshold(6);
+        repo.items.put(stored.getServiceId(), stored);
+        // món nhân viên khoá tay, cũng dưới ngưỡng
+        ServiceItem manual = new ServiceItem(9_999, "Bò húc", Money.of(15_000), ServiceCategory.DRINK);
+        manual.setLowStockThreshold(6);
+        manual.lock();
+        repo.items.put(manual.getServiceId(), manual);
+        repo.stock.put(manual.getServiceId(), 1L);
+
+        Inventory reloaded = new Inventory(repo, 3_600);
+        reloaded.load();
+        waitFor(stored::isLocked, "nạp tồn kho dưới ngưỡng phải khoá");
+        reloaded.restock(manual, 20);
+        reloaded.restock(stored, 20);
+        waitFor(() -> !stored.isLocked(), "món tự khoá phải mở khi nhập hàng");
+        check(manual.isLocked(), "món khoá tay bị nhập hàng mở ra");
+        reloaded.shutdown();
+        System.out.println("inventory OK: tự khoá / mở khoá, ghi " + repo.batches.get() + " batch");
+    }
+
+    /* ================= TRANH CHẤP ================= */
+
+    private static double measure(int threads, boolean single) throws Exception {
+        StripedStock striped = new StripedStock(1_000_000);
+        AtomicLong plain = new AtomicLong(1_000_000);
+        AtomicLong ops = new AtomicLong();
+        long deadline = System.nanoTime() + RUN_MILLIS * 1_000_000;
+
+        runThreads(threads, () -> {
+            long local = 0;
+            while (System.nanoTime() < deadline) {
+                // 1 cặp giữ chỗ + trả lại → tồn kho không cạn
+                if (single) {
+                    if (casReserve(plain, 1)) plain.addAndGet(1);
+                } else {
+                    if (striped.tryReserve(1)) striped.release(1);
+                }
+                local += 2;
+            }
+            ops.addAndGet(local);
+        });
+
+        return ops.get() / (RUN_MILLIS * 1_000.0);
+    }
+
+    private static boolean casReserve(AtomicLong stock, long qty) {
+        while (true) {
+            long v = stock.get();
+            if (v < qty) return false;
+            if (stock.compareAndSet(v, v - qty)) return true;
+        }
+    }
+
+    /* ================= HELPER ================= */
+
+    private static void runThreads(int n, Runnable body) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] ts = new Thread[n];
+        for (int i = 0; i < n; i++) {
+            ts[i] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                body.run();
+            });
+            ts[i].start();
+        }
+        start.countDown();
+        for (Thread t : ts) t.join();
+    }
+
+    // khoá / mở khoá chạy ở thread nền của Inventory
+    private static void waitFor(BooleanSupplier cond, String message) {
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (!cond.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) throw new IllegalStateException(message);
+            Thread.onSpinWait();
+        }
+    }
+
+    private static void check(boolean ok, String message) {
+        if (!ok) throw new IllegalStateException(message);
+    }
+
+    // ===== bảng services trong bộ nhớ =====
+    private static final class MemoryServiceItemRepository implements ServiceItemRepository {
+        final Map<Integer, Boolean> saved = new ConcurrentHashMap<>();   // id → locked lúc lưu
+        final Map<Integer, ServiceItem> items = new ConcurrentHashMap<>();
+        final Map<Integer, Long> stock = new ConcurrentHashMap<>();
+        final Set<Integer> autoLocked = ConcurrentHashMap.newKeySet();
+        final AtomicLong batches = new AtomicLong();
+        final AtomicLong saves = new AtomicLong();
+
+        @Override
+        public void save(ServiceItem s) {
+            saves.incrementAndGet();
+            saved.put(s.getServiceId(), s.isLocked());
+        }
+
+        @Override
+        public void updateLocked(int serviceId, boolean locked, boolean auto) {
+            saved.put(serviceId, locked);
+            if (auto) autoLocked.add(serviceId);
+            else autoLocked.remove(serviceId);
+        }
+
+        @Override public Set<Integer> findAutoLocked() { return Set.copyOf(autoLocked); }
+        @Override public void delete(ServiceItem s) { saved.remove(s.getServiceId()); }
+        @Override public List<ServiceItem> findAll() { return List.copyOf(items.values()); }
+        @Override public Map<Integer, Long> findStock() { return Map.copyOf(stock); }
+
+        @Override
+        public void updateStock(Map<Integer, Long> batch) {
+            batches.incrementAndGet();
+            batch.forEach((id, v) -> {
+                if (v == null) stock.remove(id);
+                else stock.put(id, v);
+            });
+        }
+    }
+}
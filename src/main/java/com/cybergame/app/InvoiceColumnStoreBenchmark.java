@@ -0,0 +1,168 @@
+package com.cybergame.app;
+
+import com.cybergame.model.entity.Invoice;
+import com.cybergame.model.report.GroupTotal;
+import com.cybergame.repository.column.InvoiceColumnStore;
+import com.cybergame.repository.column.InvoiceColumnStore.Dimension;
+import com.cybergame.repository.column.InvoiceColumnStore.Metric;
+import com.cybergame.util.Money;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Báo cáo trên 1 năm hoá đơn (1M và 10M hoá đơn, 5.000 tài khoản, 200 máy):
+ * - tổng doanh thu 1 tháng
+ * - GROUP BY máy trong 3 tháng
+ * - top 10 tài khoản trong 6 tháng
+ * So sánh quét List<Invoice> (cách cũ) với InvoiceColumnStore.
+ *
+ * Chạy trực tiếp bằng main, không cần DB. 10M hoá đơn cần khoảng -Xmx2g;
+ * List<Invoice> chỉ dựng ở mức 1M (10M object không vừa heap).
+ * Tham số: số hoá đơn, vd: InvoiceColumnStoreBenchmark 1000000 10000000
+ */
+public class InvoiceColumnStoreBenchmark {
+
+    private static final int ACCOUNTS = 5_000;
+    private static final int COMPUTERS = 200;
+    private static final int LIST_LIMIT = 1_000_000;
+    private static final int RUNS = 20;
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    public static void main(String[] args) {
+        int[] sizes = {1_000_000, 10_000_000};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) sizes[i] = Integer.parseInt(args[i]);
+        }
+
+        for (int n : sizes) {
+            run(n);
+        }
+    }
+
+    private static void run(int n) {
+        System.out.println("===== " + n + " hoá đơn =====");
+
+        InvoiceColumnStore store = new InvoiceColumnStore(n);
+        List<Invoice> list = (n <= LIST_LIMIT) ? new ArrayList<>(n) : null;
+
+        long begin = System.nanoTime();
+        Random rnd = new Random(42);
+        long step = 365L * 24 * 3600 * 1_000 / n;   // rải đều 1 năm
+        for (int i = 0; i < n; i++) {
+            Invoice inv = newInvoice(i + 1, START.plusNanos(i * step * 1_000_000), rnd);
+            store.append(inv);
+            if (list != null) list.add(inv);
+        }
+        System.out.printf("nạp            : %8d ms%n", (System.nanoTime() - begin) / 1_000_000);
+
+        LocalDateTime m1From = START.plusMonths(5), m1To = START.plusMonths(6);
+        LocalDateTime m3From = START.plusMonths(3), m3To = START.plusMonths(6);
+        LocalDateTime m6From = START.plusMonths(6), m6To = START.plusMonths(12);
+
+        // kiểm tra 2 cách ra cùng kết quả
+        if (list != null) {
+            long expected = listSum(list, m1From, m1To);
+            long actual = store.sum(m1From, m1To).getTotalAmount();
+            if (expected != actual) {
+                throw new IllegalStateException("Sai tổng: " + expected + " != " + actual);
+            }
+            String top1 = listTopAccounts(list, m6From, m6To, 10).get(0).getKey();
+            String top2 = store.topN(Dimension.ACCOUNT, Metric.TOTAL, m6From, m6To, 10)
+                    .get(0).getKey();
+            if (!top1.equals(top2)) {
+                throw new IllegalStateException("Sai top: " + top1 + " != " + top2);
+            }
+        }
+
+        if (list != null) {
+            report("List  sum 1 tháng     ", () -> listSum(list, m1From, m1To));
+            report("List  group máy 3 th. ", () -> listByComputer(list, m3From, m3To).size());
+            report("List  top10 TK 6 th.  ", () -> listTopAccounts(list, m6From, m6To, 10).size());
+        }
+        report("Cột   sum 1 tháng     ", () -> store.sum(m1From, m1To).getTotalAmount());
+        report("Cột   group máy 3 th. ", () ->
+                store.groupBy(Dimension.COMPUTER, Metric.TOTAL, m3From, m3To).size());
+        report("Cột   top10 TK 6 th.  ", () ->
+                store.topN(Dimension.ACCOUNT, Metric.TOTAL, m6From, m6To, 10).size());
+        System.out.println();
+    }
+
+    private interface Query {
+        long run();
+    }
+
+    private static void report(String name, Query q) {
+        long sink = 0;
+        for (int i = 0; i < 3; i++) sink += q.run();   // warm-up JIT
+
+        long best = Long.MAX_VALUE;
+        long sum = 0;
+        for (int i = 0; i < RUNS; i++) {
+            long begin = System.nanoTime();
+            sink += q.run();
+            long nanos = System.nanoTime() - begin;
+            best = Math.min(best, nanos);
+            sum += nanos;
+        }
+
+        if (sink == 42) System.out.println(); // chặn JIT bỏ vòng lặp
+        System.out.printf("%s: %9.3f ms (min %9.3f ms)%n",
+                name, sum / (double) RUNS / 1e6, best / 1e6);
+    }
+
+    private static Invoice newInvoice(int id, LocalDateTime at, Random rnd) {
+        int account = rnd.nextInt(ACCOUNTS);
+        long time = Money.of(5_000 + rnd.nextInt(50_000));
+        long cash = rnd.nextInt(4) == 0 ? Money.of(10_000 + rnd.nextInt(30_000)) : 0;
+        long acc = rnd.nextInt(3) == 0 ? Money.of(10_000 + rnd.nextInt(30_000)) : 0;
+        return new Invoice(id, account, "user" + account, "PC-" + rnd.nextInt(COMPUTERS), at,
+                time, cash + acc, acc, cash, time + cash + acc);
+    }
+
+    // ===== ReportController trước đây: duyệt List<Invoice>, lọc theo ngày rồi cộng =====
+
+    private static long listSum(List<Invoice> list, LocalDateTime from, LocalDateTime to) {
+        long total = 0;
+        for (Invoice inv : list) {
+            if (!inv.getCreatedAt().isBefore(from) && inv.getCreatedAt().isBefore(to)) {
+                total += inv.getTotalAmount();
+            }
+        }
+        return total;
+    }
+
+    private static Map<String, Long> listByComputer(List<Invoice> list,
+                                                    LocalDateTime from, LocalDateTime to) {
+        Map<String, Long> map = new HashMap<>();
+        for (Invoice inv : list) {
+            if (!inv.getCreatedAt().isBefore(from) && inv.getCreatedAt().isBefore(to)) {
+                map.merge(inv.getComputerName(), inv.getTotalAmount(), Long::sum);
+            }
+        }
+        return map;
+    }
+
+    private static List<GroupTotal> listTopAccounts(List<Invoice> list,
+                                                    LocalDateTime from, LocalDateTime to, int n) {
+        Map<String, long[]> map = new HashMap<>();
+        for (Invoice inv : list) {
+            if (!inv.getCreatedAt().isBefore(from) && inv.getCreatedAt().isBefore(to)) {
+                long[] acc = map.computeIfAbsent(inv.getAccountName(), k -> new long[2]);
+                acc[0]++;
+                acc[1] += inv.getTotalAmount();
+            }
+        }
+        List<GroupTotal> all = new ArrayList<>();
+        map.forEach((k, v) -> all.add(new GroupTotal(k, v[0], v[1])));
+        all.sort(Comparator.comparingLong(GroupTotal::getAmount).reversed());
+        return all.subList(0, Math.min(n, all.size()));
+    }
+}
@@ -0,0 +1,102 @@
+package com.cybergame.app;
+
+import com.cybergame.model.entity.OrderItem;
+import com.cybergame.model.entity.ServiceItem;
+import com.cybergame.model.enums.OrderStatus;
+import com.cybergame.model.enums.PaymentSource;
+import com.cybergame.model.enums.ServiceCategory;
+import com.cybergame.util.Money;
+import com.cybergame.util.OrderItemCodec;
+import com.cybergame.util.SerializationUtil;
+
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * So sánh snapshot order_items của 1 hoá đơn:
+ * - SerializationUtil: Java ObjectOutputStream + Base64 (TEXT)
+ * - OrderItemCodec: nhị phân varint + từ điển món (BLOB)
+ * Đo kích thước và số lần encode / decode mỗi giây.
+ *
+ * Chạy trực tiếp bằng main, không cần DB.
+ */
+public class OrderItemCodecBenchmark {
+
+    private static final long RUN_MILLIS = 1_000;
+
+    public static void main(String[] args) {
+        int[] lineCounts = {1, 5, 20};
+
+        System.out.println("lines | java bytes | codec bytes | java enc/s | codec enc/s"
+                + " | java dec/s | codec dec/s");
+        for (int lines : lineCounts) {
+            List<OrderItem> items = createItems(lines);
+
+            String text = SerializationUtil.serialize(new ArrayList<>(items));
+            byte[] bin = OrderItemCodec.encode(items);
+            check(OrderItemCodec.decode(bin), items);
+
+            // warm-up JIT
+            measure(() -> SerializationUtil.serialize(new ArrayList<>(items)), 300);
+            measure(() -> OrderItemCodec.encode(items), 300);
+            measure(() -> SerializationUtil.deserialize(text), 300);
+            measure(() -> OrderItemCodec.decode(bin), 300);
+
+            double javaEnc = measure(() -> SerializationUtil.serialize(new ArrayList<>(items)), RUN_MILLIS);
+            double codecEnc = measure(() -> OrderItemCodec.encode(items), RUN_MILLIS);
+            double javaDec = measure(() -> SerializationUtil.deserialize(text), RUN_MILLIS);
+            double codecDec = measure(() -> OrderItemCodec.decode(bin), RUN_MILLIS);
+
+            System.out.printf("%5d | %10d | %11d | %10.0f | %11.0f | %10.0f | %11.0f%n",
+                    lines, text.length(), bin.length, javaEnc, codecEnc, javaDec, codecDec);
+        }
+    }
+
+    private static List<OrderItem> createItems(int lines) {
+        ServiceItem[] menu = {
+                new ServiceItem(1, "Mì xào bò", Money.of(35_000), ServiceCategory.FOOD),
+                new ServiceItem(2, "Sting dâu", Money.of(15_000), ServiceCategory.DRINK),
+                new ServiceItem(3, "Snack khoai tây", Money.of(12_000), ServiceCategory.SNACK)
+        };
+
+        List<OrderItem> items = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            OrderItem item = new OrderItem(10_000 + i, menu[i % menu.length], 1 + i % 3,
+                    i % 2 == 0 ? PaymentSource.ACCOUNT : PaymentSource.CASH);
+            item.setStatus(OrderStatus.COMPLETED);
+            items.add(item);
+        }
+        return items;
+    }
+
+    private static double measure(Runnable op, long millis) {
+        long ops = 0;
+        long begin = System.nanoTime();
+        long end = begin + millis * 1_000_000;
+        long now;
+        do {
+            for (int i = 0; i < 64; i++) op.run();
+            ops += 64;
+            now = System.nanoTime();
+        } while (now < end);
+        return ops * 1e9 / (now - begin);
+    }
+
+    private static void check(List<OrderItem> decoded, List<OrderItem> original) {
+        for (int i = 0; i < original.size(); i++) {
+            OrderItem a = original.get(i);
+            OrderItem b = decoded.get(i);
+            if (a.getOrderItemId() != b.getOrderItemId()
+                    || a.getQuantity() != b.getQuantity()
+                    || a.getCost() != b.getCost()
+                    || a.getStatus() != b.getStatus()
+                    || a.getPaymentSource() != b.getPaymentSource()
+                    || !a.getOrderedAt().truncatedTo(ChronoUnit.MILLIS).equals(b.getOrderedAt())
+                    || !a.getServiceItem().getName().equals(b.getServiceItem().getName())
+                    || a.getServiceItem().getCategory() != b.getServiceItem().getCategory()) {
+                throw new IllegalStateException("Decode sai ở dòng " + i);
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.cybergame.app;
+
+import com.cybergame.controller.RevenueRollup;
+import com.cybergame.repository.sql.DBConnection;
+import com.cybergame.repository.sql.DBInit;
+
+import java.time.LocalDate;
+
+/**
+ * Tính lại bảng doanh thu gộp (revenue_hourly / revenue_daily) từ dữ liệu gốc
+ * Dùng khi backfill / sau khi sửa tay dữ liệu hoá đơn, lịch sử nạp.
+ *
+ * Chạy:  RevenueRollupRebuild                      → toàn bộ lịch sử
+ *        RevenueRollupRebuild 2024-01-01 2024-01-31 → chỉ các ngày trong khoảng
+ */
+public class RevenueRollupRebuild {
+
+    public static void main(String[] args) {
+        LocalDate from = (args.length > 0) ? LocalDate.parse(args[0]) : null;
+        LocalDate to = (args.length > 1) ? LocalDate.parse(args[1]) : from;
+
+        DBInit.init();
+
+        long begin = System.nanoTime();
+        RevenueRollup.getDefault().rebuild(from, to);
+        long millis = (System.nanoTime() - begin) / 1_000_000;
+
+        System.out.println("Rebuild rollup "
+                + (from == null ? "toàn bộ" : from + " → " + to)
+                + " xong trong " + millis + " ms");
+
+        DBConnection.getPool().close();
+    }
+}
@@ -0,0 +1,137 @@
+package com.cybergame.app;
+
+import com.cybergame.model.entity.Account;
+import com.cybergame.model.entity.Computer;
+import com.cybergame.model.entity.Session;
+import com.cybergame.repository.SessionRepository;
+import com.cybergame.repository.sql.SessionRepositorySQL;
+import com.cybergame.util.Money;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * Churn 10k session: mỗi vòng = 1 logout + 1 login + tra cứu theo máy / account
+ * + 1 lần duyệt toàn bộ (giống getPendingOrders), mỗi 100 vòng.
+ * - ArrayList cũ: delete O(n), tra cứu O(n), duyệt = copy cả danh sách
+ * - Registry mới: 3 chỉ mục ConcurrentHashMap, duyệt không copy
+ *
+ * Chạy trực tiếp bằng main, không cần DB.
+ */
+public class SessionRegistryBenchmark {
+
+    private static final int SESSIONS = 10_000;
+    private static final int OPERATIONS = 200_000;
+    private static final int SCAN_EVERY = 100;
+
+    public static void main(String[] args) {
+        // warm-up JIT
+        run(new LegacyList(), 20_000);
+        run(new SessionRepositorySQL(), 20_000);
+
+        double legacy = run(new LegacyList(), OPERATIONS);
+        double registry = run(new SessionRepositorySQL(), OPERATIONS);
+
+        System.out.println("sessions=" + SESSIONS + " ops=" + OPERATIONS);
+        System.out.printf("ArrayList cũ   : %10.2f ns/op%n", legacy);
+        System.out.printf("Registry mới   : %10.2f ns/op%n", registry);
+    }
+
+    private static double run(SessionRepository repo, int operations) {
+        Random rnd = new Random(42);
+        Session[] slots = new Session[SESSIONS];
+        int nextId = 0;
+
+        for (int i = 0; i < SESSIONS; i++) {
+            slots[i] = newSession(nextId++, i);
+            repo.save(slots[i]);
+        }
+
+        long sink = 0;
+        long begin = System.nanoTime();
+        for (int op = 0; op < operations; op++) {
+            int slot = rnd.nextInt(SESSIONS);
+
+            // logout + login lại đúng máy đó
+            repo.delete(slots[slot]);
+            slots[slot] = newSession(nextId++, slot);
+            repo.save(slots[slot]);
+
+            Session byPc = repo.findByComputerId(rnd.nextInt(SESSIONS));
+            Session byAcc = repo.findByAccountId(rnd.nextInt(SESSIONS));
+            if (byPc != null) sink += byPc.getSessionId();
+            if (byAcc != null) sink += byAcc.getSessionId();
+
+            if (op % SCAN_EVERY == 0) {
+                long[] count = new long[1];
+                repo.forEachRunning(s -> count[0]++);
+                sink += count[0];
+            }
+        }
+        long nanos = System.nanoTime() - begin;
+
+        if (sink == 42) System.out.println(); // chặn JIT bỏ vòng lặp
+        return (double) nanos / operations;
+    }
+
+    private static Session newSession(int id, int slot) {
+        Account acc = new Account(slot, "user" + slot, "123", "User " + slot, "0900", false);
+        Computer pc = new Computer(slot, "PC-" + slot, Money.of(10_000));
+        return new Session(id, acc, pc);
+    }
+
+    // ===== SessionRepositorySQL trước đây (ArrayList + synchronized) =====
+    private static final class LegacyList implements SessionRepository {
+
+        private final List<Session> sessions = new ArrayList<>();
+
+        public synchronized void save(Session s) {
+            sessions.add(s);
+        }
+
+        public synchronized boolean saveIfAbsent(Session s) {
+            if (findByAccountId(s.getAccount().getUserId()) != null) return false;
+            if (findByComputerId(s.getComputer().getComputerId()) != null) return false;
+            return sessions.add(s);
+        }
+
+        public synchronized void delete(Session s) {
+            sessions.remove(s);
+        }
+
+        public synchronized List<Session> findRunningSessions() {
+            return new ArrayList<>(sessions);
+        }
+
+        public Session findById(int sessionId) {
+            for (Session s : findRunningSessions()) {
+                if (s.getSessionId() == sessionId) return s;
+            }
+            return null;
+        }
+
+        public Session findByAccountId(int accountId) {
+            for (Session s : findRunningSessions()) {
+                if (s.getAccount().getUserId() == accountId) return s;
+            }
+            return null;
+        }
+
+        public Session findByComputerId(int computerId) {
+            for (Session s : findRunningSessions()) {
+                if (s.getComputer().getComputerId() == computerId) return s;
+            }
+            return null;
+        }
+
+        public void forEachRunning(Consumer<Session> action) {
+            findRunningSessions().forEach(action);
+        }
+
+        public int countRunning() {
+            return findRunningSessions().size();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.cybergame.context;
 
+import com.cybergame.controller.BalanceCheckpointer;
 import com.cybergame.model.entity.Account;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -28,12 +29,21 @@ public class AccountContext {
     // Key: Username, Value: Object Account (đang giữ tiền thực tế)
     private final ConcurrentHashMap<String, Account> onlineAccounts = new ConcurrentHashMap<>();
 
+    // write-behind số dư xuống DB (SessionManager gắn vào khi khởi tạo)
+    private volatile BalanceCheckpointer checkpointer;
+
+    public void setCheckpointer(BalanceCheckpointer checkpointer) {
+        this.checkpointer = checkpointer;
+    }
+
     /**
      * Đưa một Account vào danh sách Online (khi Login thành công)
      */
     public void put(Account account) {
         if (account != null) {
             onlineAccounts.put(account.getUsername(), account);
+            BalanceCheckpointer cp = checkpointer;
+            if (cp != null) cp.track(account);
         }
     }
 
@@ -50,7 +60,12 @@ public class AccountContext {
      */
     public void remove(String username) {
         if (username != null) {
-            onlineAccounts.remove(username);
+            Account removed = onlineAccounts.remove(username);
+            BalanceCheckpointer cp = checkpointer;
+            if (removed != null && cp != null) {
+                cp.untrack(removed);
+                cp.markDirty(removed); // ghi nốt số dư cuối
+            }
         }
     }
 
@@ -61,6 +76,27 @@ public class AccountContext {
         return onlineAccounts;
     }
     
+    /**
+     * Báo số dư của user online vừa đổi → được ghi ở lần checkpoint kế tiếp
+     */
+    public void markDirty(String username) {
+        Account acc = get(username);
+        BalanceCheckpointer cp = checkpointer;
+        if (acc != null && cp != null) {
+            cp.markDirty(acc);
+        }
+    }
+
+    /**
+     * Báo số dư của account vừa đổi (kể cả khi không online)
+     */
+    public void markDirty(Account acc) {
+        BalanceCheckpointer cp = checkpointer;
+        if (acc != null && cp != null) {
+            cp.markDirty(acc);
+        }
+    }
+
     /**
      * Kiểm tra xem user có đang online không
      */
@@ -0,0 +1,91 @@
+package com.cybergame.context;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Đường tắt app duy nhất (Singleton)
+ * - Các thành phần ghi nền tự đăng ký bước dừng của mình kèm phase
+ * - 1 shutdown hook của JVM chạy mọi bước theo phase tăng dần: dừng tính tiền → ghi nốt
+ *   hoá đơn → orders / tồn kho → checkpoint số dư → đóng journal
+ * - 1 bước lỗi chỉ được log, các bước sau vẫn chạy
+ * - Gọi run() trực tiếp (vd: Application.stop) hay để hook tự chạy đều chỉ chạy 1 lần
+ */
+public final class AppShutdown {
+
+    // ===== THỨ TỰ DỪNG =====
+    public static final int STOP_BILLING = 0;   // không tick / logout thêm
+    public static final int PERSIST = 10;       // hoá đơn đang chờ ghi
+    public static final int WRITERS = 20;       // bảng orders, tồn kho
+    public static final int CHECKPOINT = 30;    // số dư + checkpoint journal
+    public static final int JOURNAL = 40;       // đóng journal sau cùng
+
+    private static final AppShutdown INSTANCE = new AppShutdown();
+
+    private static final class Step {
+        final int phase;
+        final int order;
+        final String name;
+        final Runnable action;
+
+        Step(int phase, int order, String name, Runnable action) {
+            this.phase = phase;
+            this.order = order;
+            this.name = name;
+            this.action = action;
+        }
+    }
+
+    private final List<Step> steps = new ArrayList<>();
+    private final AtomicBoolean ran = new AtomicBoolean();
+    private boolean hooked;
+
+    private AppShutdown() {
+    }
+
+    public static AppShutdown getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Đăng ký 1 bước dừng; cùng phase thì chạy theo thứ tự đăng ký
+     */
+    public synchronized void register(int phase, String name, Runnable action) {
+        steps.add(new Step(phase, steps.size(), name, action));
+        if (hooked) return;
+        try {
+            Runtime.getRuntime().addShutdownHook(new Thread(this::run, "app-shutdown"));
+            hooked = true;
+        } catch (IllegalStateException e) {
+            // JVM đang tắt: hook đang chạy (nếu có) không thấy bước này
+            System.err.println("[SHUTDOWN] Đăng ký " + name + " khi JVM đang tắt");
+        }
+    }
+
+    /**
+     * Chạy mọi bước dừng (1 lần duy nhất)
+     */
+    public void run() {
+        if (!ran.compareAndSet(false, true)) return;
+
+        List<Step> list;
+        synchronized (this) {
+            list = new ArrayList<>(steps);
+        }
+        list.sort(Comparator.<Step>comparingInt(s -> s.phase).thenComparingInt(s -> s.order));
+
+        for (Step s : list) {
+            try {
+                s.action.run();
+            } catch (RuntimeException e) {
+                System.err.println("[SHUTDOWN] " + s.name + " lỗi: " + e);
+            }
+        }
+    }
+
+    public boolean isShuttingDown() {
+        return ran.get();
+    }
+}
@@ -2,21 +2,26 @@ package com.cybergame.controller;
 
 import com.cybergame.model.entity.Account;
 import com.cybergame.repository.AccountRepository;
+import com.cybergame.repository.journal.BillingJournal;
 
 public class AccountController {
 
     private final AccountRepository repo;
-    private int nextId;
+    private final IdAllocator ids;
+    private final BillingJournal journal;
 
     public AccountController(AccountRepository repo) {
-        this.repo = repo;
+        this(repo, IdAllocator.shared(IdAllocator.ACCOUNTS));
+    }
 
-        // ✅ KHỞI TẠO nextId = maxId + 1
-        this.nextId = repo.findAll()
-                .stream()
-                .mapToInt(Account::getUserId)
-                .max()
-                .orElse(0) + 1;
+    public AccountController(AccountRepository repo, IdAllocator ids) {
+        this(repo, ids, BillingJournal.getDefault());
+    }
+
+    public AccountController(AccountRepository repo, IdAllocator ids, BillingJournal journal) {
+        this.repo = repo;
+        this.ids = ids;
+        this.journal = journal;
     }
 
     public Account createAccount(String username,
@@ -26,15 +31,20 @@ public class AccountController {
                                  boolean vip) {
 
         Account acc = new Account(
-                nextId++, username, password, displayName,phone, vip
+                ids.nextId(), username, password, displayName,phone, vip
         );
         repo.save(acc);
         return acc;
     }
 
 
-    public void topUp(Account acc, double amount) {
-        acc.topUp(amount);
+    // ghi journal (đã xuống đĩa) trước khi lưu DB, giống trừ tiền order
+    public void topUp(Account acc, long amount) {
+        long[] seq = new long[1];
+        acc.credit(amount, base ->
+                seq[0] = journal.appendAsync(System.currentTimeMillis(), BillingJournal.TOP_UP,
+                        acc.getUserId(), 0, 0, amount, base, 0, 0));
+        journal.awaitDurable(seq[0]);
         repo.save(acc);
     }
 
@@ -0,0 +1,246 @@
+package com.cybergame.controller;
+
+import com.cybergame.model.entity.Account;
+import com.cybergame.repository.AccountRepository;
+import com.cybergame.repository.journal.BillingJournal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Ghi số dư xuống DB theo kiểu write-behind
+ * - Gom các account bị đổi số dư (dirty), mỗi account chỉ ghi 1 lần / lần flush
+ * - Flush = 1 JDBC batch, chạy mỗi N giây hoặc khi đủ N thay đổi
+ * - Account đang chơi (tiền giờ trừ dồn) được checkpoint ở MỌI lần flush
+ *
+ * Đảm bảo: số dư trong DB không cũ hơn flushInterval (+ thời gian 1 lần flush).
+ * Có journal: flush xong ghi CHECKPOINT → lần khởi động sau chỉ replay phần đuôi.
+ */
+public class BalanceCheckpointer {
+
+    public static final long DEFAULT_FLUSH_INTERVAL_SECONDS =
+            Long.getLong("cybergame.checkpoint.intervalSeconds", 10);
+    public static final int DEFAULT_MAX_PENDING =
+            Integer.getInteger("cybergame.checkpoint.maxPending", 200);
+
+    private final AccountRepository accountRepo;
+    private final long flushIntervalMillis;
+    private final int maxPending;
+
+    // key = account id → tự gộp nhiều thay đổi của cùng 1 account
+    private final Map<Integer, Account> dirty = new ConcurrentHashMap<>();
+    private final Map<Integer, Account> tracked = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService executor =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "balance-checkpoint");
+                t.setDaemon(true);
+                return t;
+            });
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final AtomicBoolean checkpointRequested = new AtomicBoolean();
+
+    private volatile BillingJournal journal;
+    private volatile Supplier<List<BillingJournal.OpenSession>> openSessions = List::of;
+
+    // ===== METRICS =====
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong flushedRows = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private final AtomicLong lastFlushSize = new AtomicLong();
+    private final AtomicLong lastFlushMicros = new AtomicLong();
+    private final AtomicLong maxFlushMicros = new AtomicLong();
+    private final AtomicLong lastFlushAtMillis = new AtomicLong(System.currentTimeMillis());
+
+    public BalanceCheckpointer(AccountRepository accountRepo) {
+        this(accountRepo, DEFAULT_FLUSH_INTERVAL_SECONDS, DEFAULT_MAX_PENDING);
+    }
+
+    public BalanceCheckpointer(AccountRepository accountRepo,
+                               long flushIntervalSeconds,
+                               int maxPending) {
+        if (flushIntervalSeconds <= 0 || maxPending <= 0) {
+            throw new IllegalArgumentException("Cấu hình checkpoint không hợp lệ");
+        }
+        this.accountRepo = accountRepo;
+        this.flushIntervalMillis = TimeUnit.SECONDS.toMillis(flushIntervalSeconds);
+        this.maxPending = maxPending;
+
+        executor.scheduleWithFixedDelay(this::flushQuietly,
+                flushIntervalSeconds, flushIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /* ================= GHI NHẬN ================= */
+
+    /**
+     * Đánh dấu số dư account đã đổi (nạp tiền, order, refund...)
+     */
+    public void markDirty(Account acc) {
+        if (acc == null) return;
+        dirty.put(acc.getUserId(), acc);
+
+        // đủ N thay đổi → flush sớm, không chờ hết chu kỳ
+        if (dirty.size() >= maxPending && flushRequested.compareAndSet(false, true)) {
+            executor.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * Account đang chơi: số dư giảm liên tục nên luôn được checkpoint
+     */
+    public void track(Account acc) {
+        if (acc != null) tracked.put(acc.getUserId(), acc);
+    }
+
+    public void untrack(Account acc) {
+        if (acc != null) tracked.remove(acc.getUserId(), acc);
+    }
+
+    /**
+     * Gắn journal: mỗi lần flush thành công sẽ ghi checkpoint kèm các session đang mở
+     */
+    public void setJournal(BillingJournal journal,
+                           Supplier<List<BillingJournal.OpenSession>> openSessions) {
+        this.journal = journal;
+        this.openSessions = (openSessions != null) ? openSessions : List::of;
+        if (journal != null) journal.setCheckpointRequester(this::requestCheckpoint);
+    }
+
+    /**
+     * Journal sắp đầy: flush + ghi checkpoint sớm (chạy ở thread nền, kể cả khi không có gì dirty)
+     */
+    public void requestCheckpoint() {
+        checkpointRequested.set(true);
+        if (flushRequested.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                // đã dừng: shutdown() tự flush lần cuối
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    /* ================= FLUSH ================= */
+
+    /**
+     * Ghi toàn bộ thay đổi đang chờ trong 1 batch
+     */
+    public synchronized void flush() {
+        flushRequested.set(false);
+
+        // chốt seq TRƯỚC khi lấy dirty: record <= upToSeq đã markDirty trước khi ghi journal
+        BillingJournal j = journal;
+        long upToSeq = (j != null) ? j.getWrittenSeq() : 0;
+
+        Map<Integer, Account> batch = new HashMap<>(tracked);
+        for (Integer id : new ArrayList<>(dirty.keySet())) {
+            Account acc = dirty.remove(id);
+            if (acc != null) batch.put(id, acc);
+        }
+        boolean forceCheckpoint = checkpointRequested.getAndSet(false);
+        if (batch.isEmpty()) {
+            lastFlushAtMillis.set(System.currentTimeMillis());
+            // không còn gì chờ ghi → mọi record <= upToSeq đã vào DB
+            if (j != null && forceCheckpoint) j.checkpoint(upToSeq, openSessions);
+            return;
+        }
+
+        List<Account> accounts = new ArrayList<>(batch.values());
+        long begin = System.nanoTime();
+        try {
+            accountRepo.updateBalances(accounts);
+        } catch (RuntimeException e) {
+            // trả lại hàng chờ, không đè lên thay đổi mới hơn
+            for (Account acc : accounts) {
+                dirty.putIfAbsent(acc.getUserId(), acc);
+            }
+            if (forceCheckpoint) checkpointRequested.set(true);
+            failedFlushes.incrementAndGet();
+            throw e;
+        }
+
+        if (j != null) {
+            j.checkpoint(upToSeq, openSessions);
+        }
+
+        long micros = (System.nanoTime() - begin) / 1_000;
+        flushCount.incrementAndGet();
+        flushedRows.addAndGet(accounts.size());
+        lastFlushSize.set(accounts.size());
+        lastFlushMicros.set(micros);
+        maxFlushMicros.accumulateAndGet(micros, Math::max);
+        lastFlushAtMillis.set(System.currentTimeMillis());
+    }
+
+    /**
+     * Flush lần cuối rồi dừng thread (gọi khi tắt app)
+     */
+    public void shutdown() {
+        executor.shutdown();
+        flush();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            System.err.println("[CHECKPOINT] Không ghi được số dư: " + e.getMessage());
+        }
+    }
+
+    /* ================= METRICS ================= */
+
+    public long getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    public int getPendingCount() {
+        return dirty.size();
+    }
+
+    public int getTrackedCount() {
+        return tracked.size();
+    }
+
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    public long getFlushedRows() {
+        return flushedRows.get();
+    }
+
+    public long getFailedFlushes() {
+        return failedFlushes.get();
+    }
+
+    public long getLastFlushSize() {
+        return lastFlushSize.get();
+    }
+
+    public long getLastFlushMicros() {
+        return lastFlushMicros.get();
+    }
+
+    public long getMaxFlushMicros() {
+        return maxFlushMicros.get();
+    }
+
+    /**
+     * Độ cũ hiện tại của dữ liệu trong DB (ms kể từ lần flush thành công gần nhất)
+     */
+    public long getCurrentStalenessMillis() {
+        return System.currentTimeMillis() - lastFlushAtMillis.get();
+    }
+}
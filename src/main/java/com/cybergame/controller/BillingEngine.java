@@ -0,0 +1,194 @@
+package com.cybergame.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Bộ tính tiền chia shard
+ * - Mỗi shard = 1 thread riêng + 1 TimingWheel riêng (run queue riêng)
+ * - Session được chia theo computerId → 1 máy luôn nằm trên cùng 1 shard
+ * - 1 shard chậm không làm trễ các shard khác
+ */
+public class BillingEngine<T> {
+
+    private final Shard<T>[] shards;
+
+    @SuppressWarnings("unchecked")
+    public BillingEngine(int shardCount, Consumer<T> handler) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Số shard phải > 0");
+        }
+
+        this.shards = (Shard<T>[]) new Shard<?>[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard<>(i, handler);
+        }
+    }
+
+    /**
+     * Hẹn giờ payload trên shard của key (computerId) sau delaySeconds giây
+     */
+    public TimingWheel.Timeout<T> schedule(int key, T payload, long delaySeconds) {
+        return shardOf(key).wheel.schedule(payload, delaySeconds);
+    }
+
+    public boolean cancel(int key, TimingWheel.Timeout<T> timeout) {
+        return shardOf(key).wheel.cancel(timeout);
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Số liệu độ trễ của từng shard (để hiển thị / log)
+     */
+    public List<ShardStats> getShardStats() {
+        List<ShardStats> list = new ArrayList<>(shards.length);
+        for (Shard<T> s : shards) {
+            list.add(s.snapshot());
+        }
+        return list;
+    }
+
+    public void shutdown() {
+        for (Shard<T> s : shards) {
+            s.executor.shutdownNow();
+        }
+    }
+
+    private Shard<T> shardOf(int key) {
+        return shards[Math.floorMod(key, shards.length)];
+    }
+
+    /* ================= SHARD ================= */
+
+    private static final class Shard<T> {
+
+        private final int index;
+        private final Consumer<T> handler;
+        private final TimingWheel<T> wheel = new TimingWheel<>();
+        private final ScheduledExecutorService executor;
+
+        private final long startNanos;
+        private long tickCount;   // chỉ thread của shard ghi
+
+        // ===== METRICS =====
+        private final AtomicLong ticks = new AtomicLong();
+        private final AtomicLong events = new AtomicLong();
+        private final AtomicLong lastLagMicros = new AtomicLong();
+        private final AtomicLong maxLagMicros = new AtomicLong();
+        private final AtomicLong lastTickMicros = new AtomicLong();
+
+        Shard(int index, Consumer<T> handler) {
+            this.index = index;
+            this.handler = handler;
+            this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "billing-shard-" + index);
+                t.setDaemon(true);
+                return t;
+            });
+            this.startNanos = System.nanoTime();
+            executor.scheduleAtFixedRate(this::tick, 1, 1, TimeUnit.SECONDS);
+        }
+
+        private void tick() {
+            long begin = System.nanoTime();
+            tickCount++;
+
+            // trễ so với lịch lý tưởng (startNanos + n giây)
+            long lagMicros = Math.max(0,
+                    (begin - startNanos - TimeUnit.SECONDS.toNanos(tickCount)) / 1_000);
+            lastLagMicros.set(lagMicros);
+            maxLagMicros.accumulateAndGet(lagMicros, Math::max);
+
+            List<T> due = wheel.advance();
+            for (T payload : due) {
+                try {
+                    handler.accept(payload);
+                } catch (RuntimeException e) {
+                    // 1 session lỗi không được làm dừng tick của cả shard
+                    System.err.println("[BILLING] Shard " + index + " xử lý " + payload
+                            + " lỗi: " + e);
+                }
+            }
+
+            ticks.incrementAndGet();
+            events.addAndGet(due.size());
+            lastTickMicros.set((System.nanoTime() - begin) / 1_000);
+        }
+
+        ShardStats snapshot() {
+            return new ShardStats(index, wheel.size(), ticks.get(), events.get(),
+                    lastLagMicros.get(), maxLagMicros.get(), lastTickMicros.get());
+        }
+    }
+
+    /**
+     * Ảnh chụp số liệu của 1 shard
+     */
+    public static final class ShardStats {
+        private final int shard;
+        private final int pendingTimers;
+        private final long ticks;
+        private final long events;
+        private final long lastLagMicros;
+        private final long maxLagMicros;
+        private final long lastTickMicros;
+
+        ShardStats(int shard, int pendingTimers, long ticks, long events,
+                   long lastLagMicros, long maxLagMicros, long lastTickMicros) {
+            this.shard = shard;
+            this.pendingTimers = pendingTimers;
+            this.ticks = ticks;
+            this.events = events;
+            this.lastLagMicros = lastLagMicros;
+            this.maxLagMicros = maxLagMicros;
+            this.lastTickMicros = lastTickMicros;
+        }
+
+        public int getShard() {
+            return shard;
+        }
+
+        public int getPendingTimers() {
+            return pendingTimers;
+        }
+
+        public long getTicks() {
+            return ticks;
+        }
+
+        public long getEvents() {
+            return events;
+        }
+
+        public long getLastLagMicros() {
+            return lastLagMicros;
+        }
+
+        public long getMaxLagMicros() {
+            return maxLagMicros;
+        }
+
+        public long getLastTickMicros() {
+            return lastTickMicros;
+        }
+
+        @Override
+        public String toString() {
+            return "shard#" + shard
+                    + " pending=" + pendingTimers
+                    + " ticks=" + ticks
+                    + " events=" + events
+                    + " lag=" + lastLagMicros + "µs"
+                    + " maxLag=" + maxLagMicros + "µs"
+                    + " tick=" + lastTickMicros + "µs";
+        }
+    }
+}
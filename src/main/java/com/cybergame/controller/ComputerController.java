@@ -1,33 +1,42 @@
 package com.cybergame.controller;
 
+import com.cybergame.event.LiveEvent;
+import com.cybergame.event.LiveEventBus;
 import com.cybergame.model.entity.Computer;
 import com.cybergame.repository.ComputerRepository;
 
 public class ComputerController {
 
     private final ComputerRepository repo;
-    private int nextId;
+    private final IdAllocator ids;
 
     public ComputerController(ComputerRepository repo) {
-        this.repo = repo;
+        this(repo, IdAllocator.shared(IdAllocator.COMPUTERS));
+    }
 
-        // ✅ KHỞI TẠO nextId = maxId + 1
-        this.nextId = repo.findAll()
-                .stream()
-                .mapToInt(Computer::getComputerId)
-                .max()
-                .orElse(0) + 1;
+    public ComputerController(ComputerRepository repo, IdAllocator ids) {
+        this.repo = repo;
+        this.ids = ids;
     }
 
-    public Computer createComputer(String name, double pricePerHour) {
+    public Computer createComputer(String name, long pricePerHour) {
 
         Computer c = new Computer(
-                nextId++, name, pricePerHour
+                ids.nextId(), name, pricePerHour
         );
         repo.save(c);
         return c;
     }
 
+    /**
+     * Lưu máy đã sửa (tên / giá / trạng thái) và báo qua LiveEventBus
+     * → các màn hình đang mở cập nhật như khi SessionManager đổi trạng thái máy
+     */
+    public void update(Computer c) {
+        repo.save(c);
+        LiveEventBus.getDefault().publish(LiveEvent.machineStatusChanged(c));
+    }
+
     public void delete(Computer c) {
         repo.delete(c);
     }
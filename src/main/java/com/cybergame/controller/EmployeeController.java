@@ -6,15 +6,15 @@ import com.cybergame.repository.EmployeeRepository;
 public class EmployeeController {
 
     private final EmployeeRepository repo;
-    private int nextId;
+    private final IdAllocator ids;
 
     public EmployeeController(EmployeeRepository repo) {
+        this(repo, IdAllocator.shared(IdAllocator.EMPLOYEES));
+    }
+
+    public EmployeeController(EmployeeRepository repo, IdAllocator ids) {
         this.repo = repo;
-        this.nextId = repo.findAll()
-                .stream()
-                .mapToInt(Employee::getUserId)
-                .max()
-                .orElse(0) + 1;
+        this.ids = ids;
     }
 
     public Employee createEmployee(String username,
@@ -23,7 +23,7 @@ public class EmployeeController {
                                    String phone) {
 
         Employee e = new Employee(
-                nextId++, username, password, displayName, phone
+                ids.nextId(), username, password, displayName, phone
         );
         repo.save(e);
         return e;
@@ -0,0 +1,114 @@
+package com.cybergame.controller;
+
+import com.cybergame.repository.SequenceRepository;
+import com.cybergame.repository.sql.SequenceRepositorySQL;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cấp id theo block (hi/lo)
+ * - Mỗi lần hết block mới ghi DB (id_sequences) để lấy block kế tiếp
+ * - Trong 1 block: getAndIncrement, không lock
+ * - Khởi động O(1): không cần findAll() để tìm max id
+ * Id bị bỏ trống khi tắt app giữa block là bình thường.
+ */
+public class IdAllocator {
+
+    public static final int DEFAULT_BLOCK_SIZE =
+            Integer.getInteger("cybergame.idBlockSize", 50);
+
+    // ===== TÊN SEQUENCE =====
+    public static final String ACCOUNTS = "accounts";
+    public static final String EMPLOYEES = "employees";
+    public static final String COMPUTERS = "computers";
+    public static final String SERVICES = "services";
+    public static final String INVOICES = "invoices";
+    public static final String SESSIONS = "sessions";
+    public static final String ORDERS = "orders";
+
+    private static final Map<String, IdAllocator> SHARED = new ConcurrentHashMap<>();
+    private static volatile SequenceRepository sharedRepo;
+
+    private final SequenceRepository repo;
+    private final String name;
+    private final int blockSize;
+
+    private volatile Block block = new Block(0, 0);
+    private final AtomicLong leasedBlocks = new AtomicLong();
+
+    /**
+     * Allocator dùng chung cả app cho 1 sequence
+     */
+    public static IdAllocator shared(String name) {
+        return SHARED.computeIfAbsent(name,
+                n -> new IdAllocator(sharedRepository(), n, DEFAULT_BLOCK_SIZE));
+    }
+
+    /**
+     * Đổi nguồn sequence (phải gọi trước lần shared() đầu tiên)
+     */
+    public static void setSharedRepository(SequenceRepository repo) {
+        sharedRepo = repo;
+    }
+
+    private static SequenceRepository sharedRepository() {
+        SequenceRepository r = sharedRepo;
+        if (r == null) {
+            synchronized (IdAllocator.class) {
+                if (sharedRepo == null) sharedRepo = new SequenceRepositorySQL();
+                r = sharedRepo;
+            }
+        }
+        return r;
+    }
+
+    public IdAllocator(SequenceRepository repo, String name, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size phải > 0");
+        }
+        this.repo = repo;
+        this.name = name;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Id kế tiếp, an toàn đa luồng
+     */
+    public int nextId() {
+        while (true) {
+            Block b = block;
+            long id = b.next.getAndIncrement();
+            if (id < b.end) return Math.toIntExact(id);
+            refill(b);
+        }
+    }
+
+    // chỉ 1 thread đi lấy block mới, các thread khác chờ rồi dùng luôn block đó
+    private synchronized void refill(Block exhausted) {
+        if (block != exhausted) return;
+
+        long start = repo.reserveBlock(name, blockSize);
+        block = new Block(start, start + blockSize);
+        leasedBlocks.incrementAndGet();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getLeasedBlocks() {
+        return leasedBlocks.get();
+    }
+
+    private static final class Block {
+        final AtomicLong next;
+        final long end;
+
+        Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.cybergame.controller;
+
+import com.cybergame.context.AppShutdown;
+import com.cybergame.model.entity.ServiceItem;
+import com.cybergame.repository.ServiceItemRepository;
+import com.cybergame.repository.sql.ServiceItemRepositorySQL;
+import com.cybergame.util.StripedStock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tồn kho món (đồ ăn / nước / snack) theo service id
+ * - Mỗi món có theo dõi giữ 1 StripedStock: đặt món = giữ chỗ, huỷ order = trả lại
+ * - Món không theo dõi (stock NULL trong DB) → luôn đặt được như trước
+ * - Ghi DB kiểu write-behind: gom món đổi tồn kho, mỗi N giây 1 batch (services.stock)
+ * - Tồn kho <= lowStockThreshold của món → tự khoá; nhập thêm hàng vượt ngưỡng thì mở lại
+ *   (chỉ món do Inventory tự khoá, đánh dấu services.auto_locked → giữ qua lần khởi động sau).
+ *   Khoá / mở quyết định trên thread "inventory" (đọc lại tồn kho lúc chạy) → không đảo thứ tự;
+ *   chỉ ghi cột locked / auto_locked, không ghi đè tên / giá / ngưỡng từ bản ServiceItem cũ.
+ * - Nhân viên nhập hàng / đổi ngưỡng qua ServiceItemController (restock, setLowStockThreshold)
+ *
+ * App dừng đột ngột: tồn kho trong DB có thể cũ tối đa 1 chu kỳ flush → nên kiểm kho lại.
+ */
+public class Inventory {
+
+    public static final long DEFAULT_FLUSH_INTERVAL_SECONDS =
+            Long.getLong("cybergame.inventory.flushSeconds", 5);
+
+    // món không theo dõi tồn kho
+    public static final long UNTRACKED = -1;
+
+    private static volatile Inventory defaultInventory;
+
+    private final ServiceItemRepository repo;
+
+    private final Map<Integer, StripedStock> stocks = new ConcurrentHashMap<>();
+    private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> autoLocked = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> queued = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledExecutorService executor =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "inventory");
+                t.setDaemon(true);
+                return t;
+            });
+
+    // ===== METRICS =====
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong flushedRows = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+
+    public Inventory(ServiceItemRepository repo) {
+        this(repo, DEFAULT_FLUSH_INTERVAL_SECONDS);
+    }
+
+    public Inventory(ServiceItemRepository repo, long flushIntervalSeconds) {
+        if (flushIntervalSeconds <= 0) {
+            throw new IllegalArgumentException("Chu kỳ ghi tồn kho phải > 0");
+        }
+        this.repo = repo;
+
+        executor.scheduleWithFixedDelay(this::flushQuietly,
+                flushIntervalSeconds, flushIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Tồn kho dùng chung cả app (nạp từ bảng services ở lần gọi đầu)
+     */
+    public static Inventory getDefault() {
+        Inventory inv = defaultInventory;
+        if (inv == null) {
+            synchronized (Inventory.class) {
+                if (defaultInventory == null) {
+                    Inventory created = new Inventory(new ServiceItemRepositorySQL());
+                    try {
+                        created.load();
+                    } catch (RuntimeException e) {
+                        // không có tồn kho → không được bán như món không giới hạn
+                        created.executor.shutdownNow();
+                        throw new IllegalStateException("Không nạp được tồn kho", e);
+                    }
+                    defaultInventory = created;
+                    AppShutdown.getInstance().register(AppShutdown.WRITERS,
+                            "inventory", created::shutdown);
+                }
+                inv = defaultInventory;
+            }
+        }
+        return inv;
+    }
+
+    /**
+     * Nạp tồn kho đã lưu (món chưa có trong bộ nhớ), khoá món đã chạm ngưỡng
+     */
+    public void load() {
+        for (Map.Entry<Integer, Long> e : repo.findStock().entrySet()) {
+            stocks.putIfAbsent(e.getKey(), new StripedStock(Math.max(0, e.getValue())));
+        }
+        // chỉ nhận lại khoá do Inventory tự đặt; món nhân viên khoá tay giữ nguyên
+        Set<Integer> persisted = repo.findAutoLocked();
+        for (ServiceItem item : repo.findAll()) {
+            StripedStock stock = stocks.get(item.getServiceId());
+            if (stock == null) continue;
+            if (item.isLocked() && persisted.contains(item.getServiceId())) {
+                autoLocked.add(item.getServiceId());
+            }
+            check(item, stock);
+        }
+    }
+
+    /* ================= ĐẶT / HUỶ ================= */
+
+    /**
+     * Giữ chỗ quantity đơn vị cho 1 order; false = không đủ hàng (không lấy gì)
+     */
+    public boolean reserve(ServiceItem item, int quantity) {
+        StripedStock stock = stocks.get(item.getServiceId());
+        if (stock == null) return true;
+
+        if (!stock.tryReserve(quantity)) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        dirty.add(item.getServiceId());
+        check(item, stock);
+        return true;
+    }
+
+    /**
+     * Trả lại hàng đã giữ (huỷ order / đặt không thành)
+     */
+    public void release(ServiceItem item, int quantity) {
+        StripedStock stock = stocks.get(item.getServiceId());
+        if (stock == null) return;
+
+        stock.release(quantity);
+        dirty.add(item.getServiceId());
+        check(item, stock);
+    }
+
+    /* ================= NHẬP / KIỂM KHO ================= */
+
+    /**
+     * Bắt đầu theo dõi / kiểm kho: đặt tồn kho của món về quantity
+     */
+    public void setStock(ServiceItem item, long quantity) {
+        StripedStock stock = stocks.computeIfAbsent(item.getServiceId(),
+                id -> new StripedStock(0));
+        stock.set(quantity);
+        dirty.add(item.getServiceId());
+        check(item, stock);
+    }
+
+    /**
+     * Nhập thêm hàng (món đang theo dõi)
+     */
+    public void restock(ServiceItem item, long quantity) {
+        StripedStock stock = stocks.get(item.getServiceId());
+        if (stock == null) {
+            throw new IllegalStateException("Món chưa theo dõi tồn kho: " + item.getName());
+        }
+        stock.release(quantity);
+        dirty.add(item.getServiceId());
+        check(item, stock);
+    }
+
+    /**
+     * Ngưỡng của món vừa đổi → khoá / mở lại theo ngưỡng mới
+     */
+    public void recheck(ServiceItem item) {
+        StripedStock stock = stocks.get(item.getServiceId());
+        if (stock != null) check(item, stock);
+    }
+
+    /**
+     * Ngừng theo dõi → món đặt không giới hạn
+     */
+    public void untrack(ServiceItem item) {
+        if (stocks.remove(item.getServiceId()) != null) {
+            dirty.add(item.getServiceId());
+        }
+        autoLocked.remove(item.getServiceId());
+    }
+
+    /**
+     * Tồn kho hiện tại, UNTRACKED nếu món không theo dõi
+     */
+    public long getAvailable(ServiceItem item) {
+        StripedStock stock = stocks.get(item.getServiceId());
+        return (stock != null) ? stock.available() : UNTRACKED;
+    }
+
+    /* ================= NGƯỠNG ================= */
+
+    // người đặt chỉ xem nhanh có cần đổi không; quyết định khoá / mở ở thread nền
+    // (khoá / mở ghi DB, không làm chậm người đặt)
+    private void check(ServiceItem item, StripedStock stock) {
+        int id = item.getServiceId();
+        boolean low = stock.available() <= item.getLowStockThreshold();
+        boolean change = low ? !item.isLocked() && !autoLocked.contains(id) : autoLocked.contains(id);
+        if (change && queued.add(id)) {
+            executor.execute(() -> reconcile(item));
+        }
+    }
+
+    // chỉ chạy trên thread "inventory" → khoá / mở của 1 món luôn theo đúng thứ tự
+    private void reconcile(ServiceItem item) {
+        int id = item.getServiceId();
+        queued.remove(id);      // đổi tồn kho sau lúc này → lên lịch lần nữa
+        StripedStock stock = stocks.get(id);
+        if (stock == null) return;
+
+        if (stock.available() <= item.getLowStockThreshold()) {
+            if (!item.isLocked() && autoLocked.add(id)) setLocked(item, true);
+        } else if (autoLocked.remove(id)) {
+            setLocked(item, false);
+        }
+    }
+
+    private void setLocked(ServiceItem item, boolean locked) {
+        if (locked) item.lock();
+        else item.unlock();
+        try {
+            repo.updateLocked(item.getServiceId(), locked, locked);
+        } catch (RuntimeException e) {
+            System.err.println("[INVENTORY] Không ghi được trạng thái khoá món #"
+                    + item.getServiceId() + ": " + e.getMessage());
+        }
+    }
+
+    /* ================= FLUSH ================= */
+
+    /**
+     * Ghi tồn kho các món đã đổi trong 1 batch
+     */
+    public synchronized void flush() {
+        Map<Integer, Long> batch = new HashMap<>();
+        for (Integer id : new ArrayList<>(dirty)) {
+            dirty.remove(id);
+            StripedStock stock = stocks.get(id);
+            batch.put(id, (stock != null) ? stock.available() : null);
+        }
+        if (batch.isEmpty()) return;
+
+        try {
+            repo.updateStock(batch);
+        } catch (RuntimeException e) {
+            // giữ lại để lần sau ghi (đọc lại giá trị mới nhất lúc đó)
+            dirty.addAll(batch.keySet());
+            failedFlushes.incrementAndGet();
+            throw e;
+        }
+        flushCount.incrementAndGet();
+        flushedRows.addAndGet(batch.size());
+    }
+
+    /**
+     * Flush lần cuối rồi dừng thread (gọi khi tắt app)
+     */
+    public void shutdown() {
+        executor.shutdown();
+        flush();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            System.err.println("[INVENTORY] Ghi tồn kho lỗi, thử lại chu kỳ sau: " + e.getMessage());
+        }
+    }
+
+    /* ================= METRICS ================= */
+
+    public int getTrackedCount() {
+        return stocks.size();
+    }
+
+    public int getPendingCount() {
+        return dirty.size();
+    }
+
+    public List<Integer> getAutoLockedIds() {
+        return new ArrayList<>(autoLocked);
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    public long getFlushedRows() {
+        return flushedRows.get();
+    }
+
+    public long getFailedFlushes() {
+        return failedFlushes.get();
+    }
+}
@@ -1,18 +1,72 @@
 package com.cybergame.controller;
 
+import com.cybergame.context.AccountContext;
+import com.cybergame.event.LiveEvent;
+import com.cybergame.event.LiveEventBus;
 import com.cybergame.model.entity.*;
 import com.cybergame.model.enums.OrderStatus;
 import com.cybergame.model.enums.PaymentSource;
 import com.cybergame.repository.AccountRepository;
+import com.cybergame.repository.journal.BillingJournal;
+import com.cybergame.util.Money;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
 
 
 public class OrderController {
 
-    private int nextOrderId = 1;
+    private final IdAllocator orderIds = IdAllocator.shared(IdAllocator.ORDERS);
     private final AccountRepository accountRepo;
+    private final BillingJournal journal;
+    private final OrderQueue orderQueue;
+    private final OrderWriter orderWriter;
+    private final Inventory inventory;
+    private final LiveEventBus events = LiveEventBus.getDefault();
 
     public OrderController(AccountRepository accountRepo) {
+        this(accountRepo, BillingJournal.getDefault());
+    }
+
+    public OrderController(AccountRepository accountRepo, BillingJournal journal) {
+        this(accountRepo, journal, OrderQueue.getDefault());
+    }
+
+    public OrderController(AccountRepository accountRepo, BillingJournal journal,
+                           OrderQueue orderQueue) {
+        this(accountRepo, journal, orderQueue, OrderWriter.getDefault());
+    }
+
+    public OrderController(AccountRepository accountRepo, BillingJournal journal,
+                           OrderQueue orderQueue, OrderWriter orderWriter) {
+        this(accountRepo, journal, orderQueue, orderWriter, Inventory.getDefault());
+    }
+
+    public OrderController(AccountRepository accountRepo, BillingJournal journal,
+                           OrderQueue orderQueue, OrderWriter orderWriter,
+                           Inventory inventory) {
         this.accountRepo = accountRepo;
+        this.journal = journal;
+        this.orderQueue = orderQueue;
+        this.orderWriter = orderWriter;
+        this.inventory = inventory;
+    }
+
+    // ghi journal trong lock của account, seq trả về qua seqOut
+    private LongConsumer journaled(byte type, Session session, long amount, long[] seqOut) {
+        return journaled(type, session.getAccount(), session.getComputer().getComputerId(),
+                session.getSessionId(), amount, seqOut);
+    }
+
+    private LongConsumer journaled(byte type, Account acc, int computerId, int sessionId,
+                                   long amount, long[] seqOut) {
+        return base -> {
+            AccountContext.getInstance().markDirty(acc);
+            seqOut[0] = journal.appendAsync(System.currentTimeMillis(), type,
+                    acc.getUserId(), computerId, sessionId, amount, base, 0, 0);
+        };
     }
 
 public OrderItem addOrder(Session session,
@@ -22,59 +76,251 @@ public OrderItem addOrder(Session session,
     if (service.isLocked()) {
     return null;
 }
+    // số lượng <= 0 → giá âm: trừ tiền thành cộng tiền, giữ hàng thành trả hàng
+    if (quantity <= 0) {
+        return null;
+    }
+    long orderCost;
+    try {
+        orderCost = Money.times(service.getUnitPrice(), quantity);
+    } catch (ArithmeticException e) {
+        return null;
+    }
 
-
-    double orderCost = service.getUnitPrice() * quantity;
+    // giữ hàng trước, đặt không thành thì trả lại
+    if (!inventory.reserve(service, quantity)) {
+        return null;
+    }
 
 if (source == PaymentSource.ACCOUNT) {
 
     Account acc = session.getAccount();
 
-    if (!acc.canPay(orderCost)) {
+    // kiểm tra + trừ tiền bằng 1 lần CAS, ghi journal trước khi trả về
+    long[] seq = new long[1];
+    if (!acc.tryDebit(orderCost,
+            journaled(BillingJournal.ORDER_CHARGE, session, orderCost, seq))) {
+        inventory.release(service, quantity);
         return null;
     }
-
-    acc.deduct(orderCost);
+    journal.awaitDurable(seq[0]);
 
     // ✅ LƯU NGAY SAU KHI TRỪ
-    accountRepo.save(acc);
+    try {
+        accountRepo.save(acc);
+    } catch (RuntimeException e) {
+        rollbackDebit(session, orderCost, e);
+        inventory.release(service, quantity);
+        return null;
+    }
+    events.publish(LiveEvent.balanceChanged(acc));
 }
 
 
     OrderItem item = new OrderItem(
-            nextOrderId++, service, quantity, source
+            orderIds.nextId(), service, quantity, source
     );
     session.addOrderItem(item);
+    // ghi bảng orders ở thread nền (group commit), không chờ
+    orderWriter.recordPlaced(session, item);
+    orderQueue.add(session, item);
+    events.publish(LiveEvent.orderPlaced(session, item));
     return item;
     }
+    /**
+     * Đặt cả giỏ món 1 lần: hoặc tạo đủ mọi order, hoặc không tạo order nào
+     * - Kiểm tra hết các dòng (món bị khoá, giỏ rỗng, tồn kho) trước khi đụng tới tiền
+     * - Trả bằng tài khoản: trừ tổng tiền bằng 1 lần CAS, 1 record journal, 1 lần lưu account
+     * - Giá chốt 1 lần cho cả giỏ → tổng đã trừ luôn bằng tổng getCost() của các order
+     *
+     * @return các order vừa tạo theo thứ tự trong giỏ; danh sách rỗng nếu không đặt được
+     */
+    public List<OrderItem> checkout(Session session, Cart cart, PaymentSource source) {
+        List<Cart.Line> lines = cart.getLines();
+        if (lines.isEmpty()) return List.of();
+
+        long[] unitPrices = new long[lines.size()];
+        long total = 0;
+        try {
+            for (int i = 0; i < lines.size(); i++) {
+                Cart.Line line = lines.get(i);
+                if (line.getService().isLocked()) return List.of();
+                unitPrices[i] = line.getService().getUnitPrice();
+                total = Math.addExact(total, Money.times(unitPrices[i], line.getQuantity()));
+            }
+        } catch (ArithmeticException e) {
+            // tổng tiền tràn long → giỏ không hợp lệ
+            return List.of();
+        }
+
+        // giữ hàng cả giỏ: thiếu 1 món → trả lại các món đã giữ
+        for (int i = 0; i < lines.size(); i++) {
+            if (!inventory.reserve(lines.get(i).getService(), lines.get(i).getQuantity())) {
+                releaseAll(lines, i);
+                return List.of();
+            }
+        }
+
+        if (source == PaymentSource.ACCOUNT) {
+            Account acc = session.getAccount();
+
+            long[] seq = new long[1];
+            if (!acc.tryDebit(total,
+                    journaled(BillingJournal.ORDER_CHARGE, session, total, seq))) {
+                releaseAll(lines, lines.size());
+                return List.of();
+            }
+            journal.awaitDurable(seq[0]);
+
+            try {
+                accountRepo.save(acc);
+            } catch (RuntimeException e) {
+                rollbackDebit(session, total, e);
+                releaseAll(lines, lines.size());
+                return List.of();
+            }
+            events.publish(LiveEvent.balanceChanged(acc));
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<OrderItem> items = new ArrayList<>(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            Cart.Line line = lines.get(i);
+            items.add(new OrderItem(orderIds.nextId(), line.getService(), line.getQuantity(),
+                    unitPrices[i], source, OrderStatus.PENDING, now));
+        }
+
+        for (OrderItem item : items) {
+            session.addOrderItem(item);
+            // cả giỏ vào cùng 1 lô group commit của bảng orders
+            orderWriter.recordPlaced(session, item);
+            orderQueue.add(session, item);
+            events.publish(LiveEvent.orderPlaced(session, item));
+        }
+        return items;
+    }
+
+    // lưu account lỗi sau khi đã trừ → hoàn lại đúng số đã trừ (journal ghi ORDER_REFUND)
+    private void rollbackDebit(Session session, long amount, RuntimeException cause) {
+        Account acc = session.getAccount();
+        long[] seq = new long[1];
+        acc.credit(amount, journaled(BillingJournal.ORDER_REFUND, session, amount, seq));
+        journal.awaitDurable(seq[0]);
+        System.err.println("[ORDERS] Lưu tài khoản " + acc.getUsername()
+                + " lỗi, hoàn lại " + Money.format(amount) + ": " + cause.getMessage());
+    }
+
+    private void releaseAll(List<Cart.Line> lines, int count) {
+        for (int i = 0; i < count; i++) {
+            inventory.release(lines.get(i).getService(), lines.get(i).getQuantity());
+        }
+    }
+
 public void cancelOrder(OrderItem item, Session session) {
 
-    // chỉ huỷ khi còn pending
-    if (item.getStatus() != OrderStatus.PENDING) {
+    // chỉ huỷ khi còn pending; đổi trạng thái trước → 2 lần huỷ cùng lúc chỉ 1 lần hoàn tiền / trả hàng
+    if (!item.compareAndSetStatus(OrderStatus.PENDING, OrderStatus.CANCELLED)) {
         return;
     }
+    if (!cancel(item, session)) {
+        item.compareAndSetStatus(OrderStatus.CANCELLED, OrderStatus.PENDING);
+    }
+}
 
-    // chỉ refund nếu trả bằng account
-    if (item.getPaymentSource() == PaymentSource.ACCOUNT) {
+    /**
+     * Chốt 1 order khôi phục của lần chạy trước (session không còn)
+     * - delivered = true → đã giao: COMPLETED
+     * - delivered = false → chưa giao: hoàn tiền (nếu trả bằng tài khoản), trả hàng, CANCELLED
+     * Order cuối của session được chốt → session đó được đánh dấu đóng trong bảng orders.
+     *
+     * @return false nếu không phải order khôi phục còn mở / không hoàn được tiền
+     */
+    public boolean settleRecoveredOrder(OrderItem item, boolean delivered) {
+        OrderRecord r = orderWriter.findOpen(item.getOrderItemId());
+        if (r == null || !orderWriter.isRecovered(r)) return false;
 
-        double refundAmount = item.getCost();
+        if (delivered) return completeOrder(item);
 
-        Account acc = session.getAccount();
-        acc.topUp(refundAmount);
+        OrderStatus from = item.getStatus();
+        if (isFinal(from) || !item.compareAndSetStatus(from, OrderStatus.CANCELLED)) return false;
+        if (!cancel(item, null)) {
+            item.compareAndSetStatus(OrderStatus.CANCELLED, from);
+            return false;
+        }
+        return true;
+    }
 
-        // lưu lại số dư sau khi refund
-        accountRepo.save(acc);
+    // order đã được đổi sang CANCELLED (người gọi thắng CAS): hoàn tiền, trả hàng, ghi nhận
+    // session == null → order khôi phục: account / máy / session lấy từ bảng orders
+    private boolean cancel(OrderItem item, Session session) {
+        // chỉ refund nếu trả bằng account
+        if (item.getPaymentSource() == PaymentSource.ACCOUNT) {
+            long refundAmount = item.getCost();
+            long[] seq = new long[1];
+            Account acc;
+
+            if (session != null) {
+                acc = session.getAccount();
+                acc.credit(refundAmount,
+                        journaled(BillingJournal.ORDER_REFUND, session, refundAmount, seq));
+            } else {
+                OrderRecord r = orderWriter.findOpen(item.getOrderItemId());
+                acc = (r != null) ? findAccount(r.getAccountId()) : null;
+                if (acc == null) {
+                    System.err.println("[ORDERS] Không rõ tài khoản của order #"
+                            + item.getOrderItemId() + ", không huỷ được");
+                    return false;
+                }
+                acc.credit(refundAmount, journaled(BillingJournal.ORDER_REFUND, acc,
+                        r.getComputerId(), r.getSessionId(), refundAmount, seq));
+            }
+            journal.awaitDurable(seq[0]);
+
+            // lưu lại số dư sau khi refund
+            accountRepo.save(acc);
+            events.publish(LiveEvent.balanceChanged(acc));
+        }
+
+        inventory.release(item.getServiceItem(), item.getQuantity());
+        orderWriter.recordStatus(item);
+        orderQueue.remove(item);
+        return true;
     }
 
-    item.setStatus(OrderStatus.CANCELLED);
-}
+    // account đang online → dùng đúng instance trong AccountContext (số dư đang chạy)
+    private Account findAccount(int accountId) {
+        Account stored = accountRepo.findById(accountId);
+        if (stored == null) return null;
+        Account live = AccountContext.getInstance().get(stored.getUsername());
+        return (live != null) ? live : stored;
+    }
+
+    /**
+     * PENDING → CONFIRMED; false nếu order đã được xác nhận / huỷ / xong trước đó
+     */
+    public boolean confirmOrder(OrderItem item) {
+        if (!item.compareAndSetStatus(OrderStatus.PENDING, OrderStatus.CONFIRMED)) return false;
+        orderWriter.recordStatus(item);
+        orderQueue.remove(item);
+        return true;
+    }
 
-    public void confirmOrder(OrderItem item) {
-        item.setStatus(OrderStatus.CONFIRMED);
+    /**
+     * PENDING / CONFIRMED → COMPLETED; order đã huỷ không bị đè
+     */
+    public boolean completeOrder(OrderItem item) {
+        while (true) {
+            OrderStatus from = item.getStatus();
+            if (isFinal(from)) return false;
+            if (item.compareAndSetStatus(from, OrderStatus.COMPLETED)) break;
+        }
+        orderWriter.recordStatus(item);
+        orderQueue.remove(item);
+        return true;
     }
 
-    public void completeOrder(OrderItem item) {
-        item.setStatus(OrderStatus.COMPLETED);
+    private static boolean isFinal(OrderStatus status) {
+        return status == OrderStatus.COMPLETED || status == OrderStatus.CANCELLED;
     }
 
 }
@@ -0,0 +1,328 @@
+package com.cybergame.controller;
+
+import com.cybergame.model.entity.OrderItem;
+import com.cybergame.model.entity.Session;
+import com.cybergame.model.enums.OrderStatus;
+import com.cybergame.model.enums.ServiceCategory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Hàng đợi order đang chờ (PENDING) cho nhân viên
+ * - Thứ tự: ưu tiên theo loại dịch vụ (nếu cấu hình), cùng mức thì ai đặt trước làm trước
+ * - Chỉ mục theo orderItemId → xác nhận / huỷ / xong gỡ ra O(log n), không quét session
+ * - Nhân viên: take() / poll() chờ tới khi có order, hoặc awaitChange() / listener để cập nhật màn hình
+ *
+ * OrderController giữ hàng đợi luôn khớp với trạng thái order.
+ */
+public class OrderQueue {
+
+    /**
+     * Thứ tự ưu tiên: -Dcybergame.orders.priority=DRINK,SNACK (liệt kê trước làm trước,
+     * loại không liệt kê xếp sau cùng). Không cấu hình → FIFO thuần.
+     */
+    public static final String PRIORITY_PROPERTY = "cybergame.orders.priority";
+
+    private static volatile OrderQueue defaultQueue;
+
+    /**
+     * 1 order đang chờ + session đặt nó (nhân viên cần biết máy nào; null với order khôi phục)
+     */
+    public static final class Entry {
+        private final OrderItem item;
+        private final Session session;
+        private final int rank;
+        private final long seq;
+
+        Entry(OrderItem item, Session session, int rank, long seq) {
+            this.item = item;
+            this.session = session;
+            this.rank = rank;
+            this.seq = seq;
+        }
+
+        public OrderItem getItem() {
+            return item;
+        }
+
+        public Session getSession() {
+            return session;
+        }
+    }
+
+    private static final Comparator<Entry> ORDER =
+            Comparator.<Entry>comparingInt(e -> e.rank).thenComparingLong(e -> e.seq);
+
+    private final Map<ServiceCategory, Integer> ranks;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    private final TreeSet<Entry> queue = new TreeSet<>(ORDER);
+    private final Map<Integer, Entry> byId = new HashMap<>();
+    private long seq;
+    private long version;
+
+    private final List<Consumer<OrderItem>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * FIFO thuần
+     */
+    public OrderQueue() {
+        this(List.of());
+    }
+
+    /**
+     * @param priority các loại dịch vụ được làm trước, theo thứ tự
+     */
+    public OrderQueue(List<ServiceCategory> priority) {
+        this.ranks = new EnumMap<>(ServiceCategory.class);
+        for (ServiceCategory c : priority) ranks.putIfAbsent(c, ranks.size());
+        int rest = ranks.size();
+        for (ServiceCategory c : ServiceCategory.values()) ranks.putIfAbsent(c, rest);
+    }
+
+    /**
+     * Hàng đợi dùng chung cả app (SessionManager, OrderController, màn hình nhân viên)
+     */
+    public static OrderQueue getDefault() {
+        OrderQueue q = defaultQueue;
+        if (q == null) {
+            synchronized (OrderQueue.class) {
+                if (defaultQueue == null) {
+                    defaultQueue = new OrderQueue(priorityFromProperty());
+                }
+                q = defaultQueue;
+            }
+        }
+        return q;
+    }
+
+    private static List<ServiceCategory> priorityFromProperty() {
+        String value = System.getProperty(PRIORITY_PROPERTY, "");
+        List<ServiceCategory> list = new ArrayList<>();
+        for (String s : value.split(",")) {
+            if (s.isBlank()) continue;
+            try {
+                list.add(ServiceCategory.valueOf(s.trim().toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                System.err.println("[ORDER-QUEUE] Bỏ qua loại dịch vụ không hợp lệ: " + s);
+            }
+        }
+        return list;
+    }
+
+    /* ================= GHI ================= */
+
+    /**
+     * Thêm order vừa đặt (chỉ nhận PENDING, đã có thì bỏ qua)
+     */
+    public void add(Session session, OrderItem item) {
+        if (item.getStatus() != OrderStatus.PENDING) return;
+
+        lock.lock();
+        try {
+            if (byId.containsKey(item.getOrderItemId())) return;
+
+            Entry e = new Entry(item, session, rank(item), seq++);
+            queue.add(e);
+            byId.put(item.getOrderItemId(), e);
+            signalChange();
+        } finally {
+            lock.unlock();
+        }
+        notifyListeners(item);
+    }
+
+    /**
+     * Gỡ order khỏi hàng đợi (đã xác nhận / xong / huỷ)
+     */
+    public boolean remove(OrderItem item) {
+        lock.lock();
+        try {
+            if (!unlink(item.getOrderItemId())) return false;
+            signalChange();
+        } finally {
+            lock.unlock();
+        }
+        notifyListeners(item);
+        return true;
+    }
+
+    /**
+     * Gỡ nhiều order 1 lần (vd: session kết thúc)
+     */
+    public void removeAll(Collection<OrderItem> items) {
+        List<OrderItem> removed = new ArrayList<>();
+        lock.lock();
+        try {
+            for (OrderItem item : items) {
+                if (unlink(item.getOrderItemId())) removed.add(item);
+            }
+            if (!removed.isEmpty()) signalChange();
+        } finally {
+            lock.unlock();
+        }
+        for (OrderItem item : removed) notifyListeners(item);
+    }
+
+    private boolean unlink(int orderItemId) {
+        Entry e = byId.remove(orderItemId);
+        if (e == null) return false;
+        queue.remove(e);
+        return true;
+    }
+
+    // gọi trong lock
+    private void signalChange() {
+        version++;
+        changed.signalAll();
+    }
+
+    /* ================= ĐỌC / CHỜ ================= */
+
+    /**
+     * Các order đang chờ theo thứ tự phục vụ
+     */
+    public List<OrderItem> snapshot() {
+        lock.lock();
+        try {
+            List<OrderItem> list = new ArrayList<>(queue.size());
+            for (Entry e : queue) list.add(e.item);
+            return list;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<Entry> entries() {
+        lock.lock();
+        try {
+            return new ArrayList<>(queue);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Nhận order kế tiếp (gỡ khỏi hàng đợi), chờ tới khi có.
+     * Order vẫn PENDING → người nhận gọi OrderController.confirmOrder / cancelOrder.
+     */
+    public Entry take() throws InterruptedException {
+        Entry e;
+        lock.lockInterruptibly();
+        try {
+            while (queue.isEmpty()) changed.await();
+            e = pollFirst();
+        } finally {
+            lock.unlock();
+        }
+        notifyListeners(e.item);
+        return e;
+    }
+
+    /**
+     * Như take() nhưng chờ tối đa timeout, hết giờ trả null
+     */
+    public Entry poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        Entry e;
+        lock.lockInterruptibly();
+        try {
+            while (queue.isEmpty()) {
+                if (nanos <= 0) return null;
+                nanos = changed.awaitNanos(nanos);
+            }
+            e = pollFirst();
+        } finally {
+            lock.unlock();
+        }
+        notifyListeners(e.item);
+        return e;
+    }
+
+    private Entry pollFirst() {
+        Entry e = queue.pollFirst();
+        byId.remove(e.item.getOrderItemId());
+        signalChange();
+        return e;
+    }
+
+    /**
+     * Số phiên bản: tăng mỗi lần hàng đợi đổi (dùng với awaitChange)
+     */
+    public long getVersion() {
+        lock.lock();
+        try {
+            return version;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Chờ tới khi hàng đợi khác phiên bản đã thấy; trả về phiên bản mới
+     * (hết giờ thì trả lại seenVersion)
+     */
+    public long awaitChange(long seenVersion, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (version == seenVersion && nanos > 0) {
+                nanos = changed.awaitNanos(nanos);
+            }
+            return version;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* ================= LISTENER ================= */
+
+    /**
+     * Gọi sau mỗi lần thêm / gỡ order (ngoài lock, trên thread gây thay đổi → phải nhanh)
+     */
+    public void addListener(Consumer<OrderItem> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<OrderItem> listener) {
+        listeners.remove(listener);
+    }
+
+    private void notifyListeners(OrderItem item) {
+        for (Consumer<OrderItem> l : listeners) {
+            try {
+                l.accept(item);
+            } catch (RuntimeException e) {
+                System.err.println("[ORDER-QUEUE] Listener lỗi: " + e.getMessage());
+            }
+        }
+    }
+
+    private int rank(OrderItem item) {
+        ServiceCategory c = item.getServiceItem().getCategory();
+        return (c != null) ? ranks.get(c) : ranks.size();
+    }
+}
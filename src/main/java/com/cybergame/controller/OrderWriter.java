@@ -0,0 +1,350 @@
+package com.cybergame.controller;
+
+import com.cybergame.context.AppShutdown;
+import com.cybergame.model.entity.OrderItem;
+import com.cybergame.model.entity.OrderRecord;
+import com.cybergame.model.entity.Session;
+import com.cybergame.model.enums.OrderStatus;
+import com.cybergame.repository.OrderRepository;
+import com.cybergame.repository.sql.OrderRepositorySQL;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ghi order xuống bảng orders ngay khi đặt / đổi trạng thái, không chặn người đặt
+ * - Người gọi chỉ chụp order vào hàng chờ (vài µs), thread "order-writer" ghi theo lô
+ * - Group commit: có order đầu tiên thì chờ thêm groupCommitMillis để gom, rồi 1 transaction
+ * - Cùng 1 order đổi nhiều lần trong 1 lô → chỉ ghi trạng thái cuối
+ * - Ghi lỗi → giữ lại hàng chờ, thử lại (thay đổi mới hơn không bị bản cũ đè)
+ *
+ * Tiền của order trả bằng tài khoản đã nằm trong BillingJournal trước khi addOrder trả về;
+ * bảng orders giữ chính order đó (món, số lượng, trạng thái) để khôi phục khi khởi động.
+ */
+public class OrderWriter {
+
+    public static final long DEFAULT_GROUP_COMMIT_MILLIS =
+            Long.getLong("cybergame.orders.groupCommitMillis", 5);
+
+    private static final int MAX_BATCH = 500;
+    private static final long RETRY_MILLIS = 1_000;
+
+    private static volatile OrderWriter defaultWriter;
+
+    private final OrderRepository repo;
+    private final long groupCommitMillis;
+
+    private final Object lock = new Object();
+    // order id → bản chụp mới nhất chưa ghi (giữ thứ tự đến)
+    private Map<Integer, OrderRecord> pending = new LinkedHashMap<>();
+    private List<Integer> pendingCloses = new ArrayList<>();
+    private long writtenSeq;            // seq cuối đã vào hàng chờ
+    private volatile long durableSeq;   // seq cuối đã commit xuống DB
+
+    // order còn mở → biết session / account / máy khi chỉ đổi trạng thái
+    private final Map<Integer, OrderRecord> open = new ConcurrentHashMap<>();
+    // session của lần chạy trước còn order mở → đóng khi order cuối xong / huỷ
+    private final Set<Integer> recoveredSessions = ConcurrentHashMap.newKeySet();
+
+    private final Thread writer;
+    private volatile boolean closed;
+
+    // ===== METRICS =====
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong writtenRows = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final AtomicLong lastBatchMicros = new AtomicLong();
+    private final AtomicLong maxBatchSize = new AtomicLong();
+
+    public OrderWriter(OrderRepository repo) {
+        this(repo, DEFAULT_GROUP_COMMIT_MILLIS);
+    }
+
+    public OrderWriter(OrderRepository repo, long groupCommitMillis) {
+        if (groupCommitMillis < 0) {
+            throw new IllegalArgumentException("groupCommitMillis phải >= 0");
+        }
+        this.repo = repo;
+        this.groupCommitMillis = groupCommitMillis;
+
+        this.writer = new Thread(this::run, "order-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Writer dùng chung cả app (bảng orders)
+     */
+    public static OrderWriter getDefault() {
+        OrderWriter w = defaultWriter;
+        if (w == null) {
+            synchronized (OrderWriter.class) {
+                if (defaultWriter == null) {
+                    defaultWriter = new OrderWriter(new OrderRepositorySQL());
+                    // thread ghi là daemon → tắt app phải ghi nốt cửa sổ group commit cuối
+                    AppShutdown.getInstance().register(AppShutdown.WRITERS,
+                            "order-writer", defaultWriter::shutdown);
+                }
+                w = defaultWriter;
+            }
+        }
+        return w;
+    }
+
+    /* ================= GHI NHẬN ================= */
+
+    /**
+     * Order vừa đặt
+     */
+    public long recordPlaced(Session session, OrderItem item) {
+        OrderRecord r = OrderRecord.snapshot(session, item);
+        open.put(item.getOrderItemId(), r);
+        return enqueue(r);
+    }
+
+    /**
+     * Order đổi trạng thái (xác nhận / xong / huỷ). Order không rõ session thì bỏ qua.
+     */
+    public long recordStatus(OrderItem item) {
+        OrderRecord known = open.get(item.getOrderItemId());
+        if (known == null) return durableSeq;
+
+        OrderItem o = known.getItem();
+        OrderRecord r = new OrderRecord(known.getSessionId(), known.getAccountId(),
+                known.getComputerId(), new OrderItem(o.getOrderItemId(), o.getServiceItem(),
+                o.getQuantity(), o.getUnitPriceAtOrder(), o.getPaymentSource(),
+                item.getStatus(), o.getOrderedAt()));
+
+        if (!isFinal(item.getStatus())) {
+            open.put(item.getOrderItemId(), r);
+            return enqueue(r);
+        }
+        open.remove(item.getOrderItemId());
+        long seq = enqueue(r);
+        return closeIfSettled(known.getSessionId(), seq);
+    }
+
+    // session khôi phục không còn order mở → đánh dấu đóng (sau trạng thái cuối, cùng / sau lô đó)
+    private long closeIfSettled(int sessionId, long seq) {
+        if (!recoveredSessions.contains(sessionId)) return seq;
+        for (OrderRecord r : open.values()) {
+            if (r.getSessionId() == sessionId) return seq;
+        }
+        if (!recoveredSessions.remove(sessionId)) return seq;   // thread khác đã đóng
+        synchronized (lock) {
+            pendingCloses.add(sessionId);
+            return signal();
+        }
+    }
+
+    /**
+     * Session kết thúc bình thường: order của nó đã vào hoá đơn, không khôi phục nữa
+     */
+    public long recordSessionClosed(Session session) {
+        for (OrderItem item : session.getOrderItems()) {
+            open.remove(item.getOrderItemId());
+        }
+        synchronized (lock) {
+            pendingCloses.add(session.getSessionId());
+            return signal();
+        }
+    }
+
+    private long enqueue(OrderRecord r) {
+        synchronized (lock) {
+            pending.put(r.getItem().getOrderItemId(), r);
+            return signal();
+        }
+    }
+
+    // gọi trong lock
+    private long signal() {
+        writtenSeq++;
+        lock.notifyAll();
+        return writtenSeq;
+    }
+
+    private static boolean isFinal(OrderStatus status) {
+        return status == OrderStatus.COMPLETED || status == OrderStatus.CANCELLED;
+    }
+
+    /* ================= KHÔI PHỤC ================= */
+
+    /**
+     * Order PENDING / CONFIRMED của session chưa đóng (app dừng đột ngột).
+     * Các order này được nhận lại → đổi trạng thái sau đó vẫn ghi được.
+     */
+    public List<OrderRecord> recover() {
+        List<OrderRecord> list = repo.findOpen();
+        for (OrderRecord r : list) {
+            open.putIfAbsent(r.getItem().getOrderItemId(), r);
+            recoveredSessions.add(r.getSessionId());
+        }
+        return list;
+    }
+
+    /**
+     * Order còn mở (chưa xong / huỷ), null nếu không biết
+     */
+    public OrderRecord findOpen(int orderItemId) {
+        return open.get(orderItemId);
+    }
+
+    /**
+     * Order thuộc session của lần chạy trước (nhận lại qua recover)
+     */
+    public boolean isRecovered(OrderRecord r) {
+        return recoveredSessions.contains(r.getSessionId());
+    }
+
+    /* ================= CHỜ / DỪNG ================= */
+
+    /**
+     * Chờ tới khi mọi thay đổi có seq <= seq đã commit (tối đa timeout)
+     */
+    public boolean awaitDurable(long seq, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (lock) {
+            while (durableSeq < seq) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0) return false;
+                TimeUnit.NANOSECONDS.timedWait(lock, left);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Ghi nốt hàng chờ rồi dừng thread (gọi khi tắt app)
+     */
+    public void shutdown() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /* ================= THREAD GHI ================= */
+
+    private void run() {
+        while (true) {
+            Map<Integer, OrderRecord> batch;
+            List<Integer> closes;
+            long upToSeq;
+
+            synchronized (lock) {
+                try {
+                    while (isEmpty() && !closed) lock.wait();
+                    if (isEmpty()) return;   // closed và đã ghi hết
+
+                    // gom thêm trong cửa sổ group commit (trừ khi đã đủ lô / đang dừng)
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(groupCommitMillis);
+                    long left;
+                    while (!closed && pending.size() < MAX_BATCH
+                            && (left = deadline - System.nanoTime()) > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(lock, left);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                batch = pending;
+                closes = pendingCloses;
+                upToSeq = writtenSeq;
+                pending = new LinkedHashMap<>();
+                pendingCloses = new ArrayList<>();
+            }
+
+            if (write(batch, closes)) {
+                synchronized (lock) {
+                    durableSeq = upToSeq;
+                    lock.notifyAll();
+                }
+            } else {
+                requeue(batch, closes);
+                if (closed) return;
+                sleepQuietly(RETRY_MILLIS);
+            }
+        }
+    }
+
+    private boolean isEmpty() {
+        return pending.isEmpty() && pendingCloses.isEmpty();
+    }
+
+    private boolean write(Map<Integer, OrderRecord> batch, List<Integer> closes) {
+        long begin = System.nanoTime();
+        try {
+            repo.saveAll(batch.values());
+            repo.closeSessions(closes);
+        } catch (RuntimeException e) {
+            failedBatches.incrementAndGet();
+            System.err.println("[ORDER-WRITER] Ghi " + batch.size() + " order lỗi, thử lại: "
+                    + e.getMessage());
+            return false;
+        }
+
+        batchCount.incrementAndGet();
+        writtenRows.addAndGet(batch.size());
+        lastBatchMicros.set((System.nanoTime() - begin) / 1_000);
+        maxBatchSize.accumulateAndGet(batch.size(), Math::max);
+        return true;
+    }
+
+    // trả lại hàng chờ, không đè lên bản chụp mới hơn
+    private void requeue(Map<Integer, OrderRecord> batch, List<Integer> closes) {
+        synchronized (lock) {
+            Map<Integer, OrderRecord> merged = new LinkedHashMap<>(batch);
+            merged.putAll(pending);
+            pending = merged;
+            pendingCloses.addAll(0, closes);
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /* ================= METRICS ================= */
+
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    public long getWrittenRows() {
+        return writtenRows.get();
+    }
+
+    public long getFailedBatches() {
+        return failedBatches.get();
+    }
+
+    public long getLastBatchMicros() {
+        return lastBatchMicros.get();
+    }
+
+    public long getMaxBatchSize() {
+        return maxBatchSize.get();
+    }
+}
@@ -1,36 +1,108 @@
 package com.cybergame.controller;
 
+import com.cybergame.event.LiveEvent;
+import com.cybergame.event.LiveEventBus;
 import com.cybergame.model.entity.Invoice;
 import com.cybergame.model.entity.OrderItem;
+import com.cybergame.model.enums.PaymentSource;
+import com.cybergame.model.report.GroupTotal;
+import com.cybergame.model.report.RevenueSummary;
+import com.cybergame.model.report.RollupRow;
+import com.cybergame.model.report.ServiceSales;
 import com.cybergame.repository.InvoiceRepository;
+import com.cybergame.repository.column.InvoiceColumnStore;
 
-import java.util.ArrayList;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 public class ReportController {
 
     private final InvoiceRepository repo;
+    private final RevenueRollup revenueRollup;
+    private final InvoiceColumnStore invoiceStore;
 
     public ReportController(InvoiceRepository repo) {
+        this(repo, RevenueRollup.getDefault(), InvoiceColumnStore.getDefault());
+    }
+
+    public ReportController(InvoiceRepository repo, RevenueRollup revenueRollup,
+                            InvoiceColumnStore invoiceStore) {
         this.repo = repo;
+        this.revenueRollup = revenueRollup;
+        this.invoiceStore = invoiceStore;
     }
 
     public List<Invoice> getAllInvoices() {
         return repo.findAll();
     }
+
+    public List<Invoice> getInvoices(LocalDate from, LocalDate to) {
+        return repo.findBetween(startOf(from), endOf(to));
+    }
     
     public void deleteInvoice(Invoice invoice) {
-        repo.delete(invoice);
+        repo.delete(invoice);   // trừ doanh thu gộp cùng transaction
+        invoiceStore.remove(invoice.getInvoiceId());
+        LiveEventBus.getDefault().publish(LiveEvent.revenueChanged(invoice));
     }
     public List<OrderItem> getOrderHistoryTable() {
+        return repo.findItems(null, null, 0);
+    }
+
+    /* ================= THỐNG KÊ ================= */
+    // khoảng ngày [from, to] tính cả ngày to; null = không giới hạn
 
-    List<OrderItem> result = new ArrayList<>();
+    // đọc từ bảng gộp theo ngày (vài trăm dòng) thay vì SUM trên dữ liệu gốc
+    public RollupRow getRollupSummary(LocalDate from, LocalDate to) {
+        return revenueRollup.summarize(from, to);
+    }
+
+    // quét kho cột trong RAM (nạp từ DB ở lần gọi đầu)
+    public RevenueSummary getRevenueSummary(LocalDate from, LocalDate to) {
+        return store().sum(startOf(from), endOf(to));
+    }
+
+    public List<GroupTotal> getRevenueByComputer(LocalDate from, LocalDate to) {
+        return store().groupBy(InvoiceColumnStore.Dimension.COMPUTER,
+                InvoiceColumnStore.Metric.TOTAL, startOf(from), endOf(to));
+    }
+
+    public List<GroupTotal> getTopAccounts(LocalDate from, LocalDate to, int limit) {
+        return store().topN(InvoiceColumnStore.Dimension.ACCOUNT,
+                InvoiceColumnStore.Metric.TOTAL, startOf(from), endOf(to), limit);
+    }
 
-    for (Invoice inv : repo.findAll()) {
-        if (inv.getOrderItems() != null) {
-            result.addAll(inv.getOrderItems());
-        }
+    public List<GroupTotal> getTopComputers(LocalDate from, LocalDate to, int limit) {
+        return store().topN(InvoiceColumnStore.Dimension.COMPUTER,
+                InvoiceColumnStore.Metric.TIME, startOf(from), endOf(to), limit);
     }
-    return result;
+
+    // SUM / GROUP BY trên invoice_items ở DB
+
+    public Map<PaymentSource, Long> getServiceRevenueBySource(LocalDate from, LocalDate to) {
+        return repo.sumServiceByPaymentSource(startOf(from), endOf(to));
+    }
+
+    public List<ServiceSales> getTopServices(LocalDate from, LocalDate to, int limit) {
+        return repo.findTopServices(startOf(from), endOf(to), limit);
+    }
+
+    public List<OrderItem> getOrderHistory(LocalDate from, LocalDate to, int limit) {
+        return repo.findItems(startOf(from), endOf(to), limit);
+    }
+
+    private InvoiceColumnStore store() {
+        invoiceStore.ensureLoaded(repo);
+        return invoiceStore;
+    }
+
+    private static LocalDateTime startOf(LocalDate date) {
+        return (date != null) ? date.atStartOfDay() : null;
+    }
+
+    private static LocalDateTime endOf(LocalDate date) {
+        return (date != null) ? date.plusDays(1).atStartOfDay() : null;
     }
 }
@@ -0,0 +1,282 @@
+package com.cybergame.controller;
+
+import com.cybergame.context.AppShutdown;
+import com.cybergame.event.LiveEvent;
+import com.cybergame.event.LiveEventBus;
+import com.cybergame.model.entity.Invoice;
+import com.cybergame.model.entity.OrderItem;
+import com.cybergame.model.entity.TopUpHistory;
+import com.cybergame.model.enums.PaymentSource;
+import com.cybergame.model.report.GroupTotal;
+import com.cybergame.model.report.ReportResult;
+import com.cybergame.model.report.RevenueSummary;
+import com.cybergame.model.report.RollupRow;
+import com.cybergame.model.report.ServiceSales;
+import com.cybergame.repository.InvoiceRepository;
+import com.cybergame.repository.TopUpHistoryRepository;
+import com.cybergame.repository.sql.InvoiceRepositorySQL;
+import com.cybergame.repository.sql.TopUpHistoryRepositorySQL;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bộ tính báo cáo doanh thu chạy song song (fork/join)
+ * - Hoá đơn: đọc từ kho cột trong RAM (InvoiceColumnStore, nạp từ DB 1 lần) qua ReportController
+ * - Tiền nạp: đọc từ bảng gộp theo ngày (RevenueRollup), không quét topup_history
+ * - Chuỗi theo ngày: chia khoảng ngày thành các đoạn, mỗi đoạn cộng từ kho cột vào 1 Partial
+ *   riêng (không chia sẻ, không lock), rồi gộp theo cây
+ * - Theo dịch vụ: SUM / GROUP BY trên invoice_items ở DB
+ * - Dòng mới nhất cho bảng: truy vấn riêng ORDER BY created_at DESC LIMIT (không quét cả khoảng)
+ *
+ * Không đoạn nào đọc lại blob hoá đơn từ DB.
+ */
+public class ReportEngine {
+
+    public static final int DEFAULT_PARALLELISM = Integer.getInteger("cybergame.report.parallelism",
+            Runtime.getRuntime().availableProcessors());
+
+    // số dòng mới nhất giữ lại cho mỗi bảng
+    public static final int DEFAULT_RECENT_ROWS = 2_000;
+
+    // số khách chi nhiều nhất hiện trên báo cáo
+    public static final int TOP_ACCOUNTS = 5;
+
+    private static volatile ReportEngine defaultEngine;
+
+    private final ReportController reports;
+    private final RevenueRollup revenueRollup;
+    private final InvoiceRepository invoiceRepo;        // ngày đầu tiên + dòng mới nhất
+    private final TopUpHistoryRepository topUpRepo;     // như trên
+    private final ForkJoinPool pool;
+    private final int parallelism;
+    private final int recentRows;
+
+    // tăng mỗi lần có REVENUE_CHANGED → màn hình so với phiên bản đã nạp để biết có cần chạy lại
+    private final AtomicLong dataVersion = new AtomicLong();
+
+    public ReportEngine(InvoiceRepository invoiceRepo, TopUpHistoryRepository topUpRepo) {
+        this(new ReportController(invoiceRepo), RevenueRollup.getDefault(),
+                invoiceRepo, topUpRepo, DEFAULT_PARALLELISM, DEFAULT_RECENT_ROWS);
+    }
+
+    public ReportEngine(ReportController reports, RevenueRollup revenueRollup,
+                        InvoiceRepository invoiceRepo, TopUpHistoryRepository topUpRepo,
+                        int parallelism, int recentRows) {
+        if (parallelism <= 0 || recentRows < 0) {
+            throw new IllegalArgumentException("Cấu hình báo cáo không hợp lệ");
+        }
+        this.reports = reports;
+        this.revenueRollup = revenueRollup;
+        this.invoiceRepo = invoiceRepo;
+        this.topUpRepo = topUpRepo;
+        this.parallelism = parallelism;
+        this.recentRows = recentRows;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Bộ báo cáo dùng chung cả app (1 fork/join pool, dừng khi tắt app)
+     */
+    public static ReportEngine getDefault() {
+        ReportEngine e = defaultEngine;
+        if (e == null) {
+            synchronized (ReportEngine.class) {
+                if (defaultEngine == null) {
+                    ReportEngine created = new ReportEngine(new InvoiceRepositorySQL(),
+                            new TopUpHistoryRepositorySQL());
+                    defaultEngine = created;
+                    LiveEventBus.getDefault().subscribe(created::onEvent);
+                    AppShutdown.getInstance().register(AppShutdown.STOP_BILLING,
+                            "report-engine", created::shutdown);
+                }
+                e = defaultEngine;
+            }
+        }
+        return e;
+    }
+
+    /**
+     * Báo cáo các ngày trong [from, to] (tính cả ngày to).
+     * from = null → từ bản ghi sớm nhất; to = null → tới hôm nay.
+     */
+    public ReportResult run(LocalDate from, LocalDate to) {
+        long begin = System.nanoTime();
+
+        LocalDate last = (to != null) ? to : LocalDate.now();
+        LocalDate first = (from != null) ? from : firstDay(last);
+
+        // tổng hoá đơn: kho cột (lần đầu nạp từ DB); tổng nạp: bảng gộp
+        RevenueSummary summary = reports.getRevenueSummary(first, last);
+        RollupRow rollup = reports.getRollupSummary(first, last);
+        if (rollup.getTxCount() != summary.getInvoiceCount()) {
+            System.err.println("[REPORT] Rollup lệch kho hoá đơn (" + rollup.getTxCount()
+                    + " / " + summary.getInvoiceCount() + " hoá đơn), cần rebuild");
+        }
+
+        // tiền nạp theo ngày: dòng PAYMENT / CASH (hoá đơn góp txCount = 0)
+        Map<LocalDate, long[]> topUps = new HashMap<>();
+        long topUpCount = 0;
+        for (RollupRow r : revenueRollup.getDaily(first, last, RollupRow.PAYMENT)) {
+            if (!PaymentSource.CASH.name().equals(r.getKey())) continue;
+            topUps.put(r.getBucket().toLocalDate(), new long[]{r.getTopUpAmount(), r.getTxCount()});
+            topUpCount += r.getTxCount();
+        }
+
+        Partial p = first.isAfter(last)
+                ? new Partial()
+                : pool.invoke(new Slice(first, ChronoUnit.DAYS.between(first, last) + 1,
+                        leafDays(first, last), topUps));
+
+        List<ServiceSales> services = reports.getTopServices(first, last, Integer.MAX_VALUE);
+        List<GroupTotal> topAccounts = reports.getTopAccounts(first, last, TOP_ACCOUNTS);
+
+        // lấy dư 1 dòng → biết bảng có bị cắt bớt không
+        LocalDateTime start = first.atStartOfDay();
+        LocalDateTime end = last.plusDays(1).atStartOfDay();
+        Recent<Invoice> recentInvoices = recent(invoiceRepo.findRecent(start, end, limit()));
+        Recent<TopUpHistory> recentTopUps = recent(topUpRepo.findRecent(start, end, limit()));
+        Recent<OrderItem> recentItems = recent(recentRows == 0
+                ? List.of() : reports.getOrderHistory(first, last, limit()));
+
+        return new ReportResult(first, last, summary, rollup.getTopUpAmount(), topUpCount,
+                p.daily(), services, topAccounts,
+                recentInvoices.rows, recentTopUps.rows, recentItems.rows,
+                recentInvoices.truncated, recentTopUps.truncated, recentItems.truncated,
+                (System.nanoTime() - begin) / 1_000_000);
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Phiên bản dữ liệu doanh thu: đọc trước run(), sau này khác đi = báo cáo đã cũ
+     */
+    public long getDataVersion() {
+        return dataVersion.get();
+    }
+
+    // gọi trên thread của người publish → chỉ tăng bộ đếm
+    private void onEvent(LiveEvent e) {
+        if (e.getType() == LiveEvent.Type.REVENUE_CHANGED) dataVersion.incrementAndGet();
+    }
+
+    // khoảng không giới hạn đầu → lấy ngày của bản ghi sớm nhất
+    private LocalDate firstDay(LocalDate fallback) {
+        LocalDate first = fallback;
+        LocalDateTime t = invoiceRepo.findFirstCreatedAt();
+        if (t != null && t.toLocalDate().isBefore(first)) first = t.toLocalDate();
+        t = topUpRepo.findFirstCreatedAt();
+        if (t != null && t.toLocalDate().isBefore(first)) first = t.toLocalDate();
+        return first;
+    }
+
+    private int limit() {
+        return (recentRows == 0) ? 0 : recentRows + 1;
+    }
+
+    private <T> Recent<T> recent(List<T> rows) {
+        return (rows.size() > recentRows)
+                ? new Recent<>(rows.subList(0, recentRows), true)
+                : new Recent<>(rows, false);
+    }
+
+    // dòng mới nhất (mới nhất trước) + có bị cắt bớt không
+    private static final class Recent<T> {
+        final List<T> rows;
+        final boolean truncated;
+
+        Recent(List<T> rows, boolean truncated) {
+            this.rows = rows;
+            this.truncated = truncated;
+        }
+    }
+
+    // ~4 đoạn / thread để chia tải đều khi có ngày đông, ngày vắng
+    private long leafDays(LocalDate first, LocalDate last) {
+        long days = ChronoUnit.DAYS.between(first, last) + 1;
+        return Math.max(1, days / (parallelism * 4L));
+    }
+
+    /* ================= FORK / JOIN ================= */
+
+    // chỉ chạy trong ForkJoinPool của engine, không bao giờ serialize
+    @SuppressWarnings("serial")
+    private final class Slice extends RecursiveTask<Partial> {
+        private final LocalDate first;
+        private final long days;
+        private final long leafDays;
+        private final Map<LocalDate, long[]> topUps;    // chỉ đọc
+
+        Slice(LocalDate first, long days, long leafDays, Map<LocalDate, long[]> topUps) {
+            this.first = first;
+            this.days = days;
+            this.leafDays = leafDays;
+            this.topUps = topUps;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (days <= leafDays) {
+                return scan();
+            }
+
+            long half = days / 2;
+            Slice left = new Slice(first, half, leafDays, topUps);
+            Slice right = new Slice(first.plusDays(half), days - half, leafDays, topUps);
+            left.fork();
+            Partial r = right.compute();
+            return left.join().merge(r);
+        }
+
+        // mỗi ngày: 2 lần tìm nhị phân + quét liên tục trên kho cột (read lock dùng chung)
+        private Partial scan() {
+            Partial p = new Partial();
+            for (long i = 0; i < days; i++) {
+                LocalDate date = first.plusDays(i);
+                RevenueSummary s = reports.getRevenueSummary(date, date);
+                long[] t = topUps.get(date);
+                if (s.getInvoiceCount() == 0 && t == null) continue;
+
+                p.days.put(date, new long[]{s.getTimeAmount(), s.getServiceCashAmount(),
+                        s.getServiceAccountAmount(), (t != null) ? t[0] : 0, s.getInvoiceCount()});
+            }
+            return p;
+        }
+    }
+
+    /* ================= CỘNG DỒN ================= */
+
+    /**
+     * Kết quả cộng dồn của 1 đoạn (chỉ 1 thread ghi)
+     */
+    private static final class Partial {
+        // ngày → [time, cash, account, topUp, invoices]
+        final TreeMap<LocalDate, long[]> days = new TreeMap<>();
+
+        /**
+         * Gộp 2 đoạn (các đoạn không trùng ngày → gộp ngày chỉ là putAll)
+         */
+        Partial merge(Partial o) {
+            days.putAll(o.days);
+            return this;
+        }
+
+        List<RollupRow> daily() {
+            List<RollupRow> list = new ArrayList<>(days.size());
+            days.forEach((date, d) -> list.add(new RollupRow(date.atStartOfDay(),
+                    RollupRow.DAY, "", d[0], d[1], d[2], d[3], 0, d[4])));
+            return list;
+        }
+    }
+}
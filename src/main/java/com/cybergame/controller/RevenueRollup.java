@@ -0,0 +1,97 @@
+package com.cybergame.controller;
+
+import com.cybergame.model.report.RollupRow;
+import com.cybergame.repository.RevenueRollupRepository;
+import com.cybergame.repository.sql.RevenueRollupRepositorySQL;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Doanh thu gộp sẵn theo giờ / ngày
+ * - Ghi: repository hoá đơn / lịch sử nạp cộng dồn vài dòng ngay trong transaction ghi / xoá
+ *   (không quét lại dữ liệu gốc, lỗi thì cả 2 cùng rollback → không lệch)
+ * - Đọc: báo cáo theo khoảng ngày chỉ đọc vài trăm dòng đã gộp
+ * - Lệch (sửa tay DB, backfill...) → rebuild() tính lại từ dữ liệu gốc
+ */
+public class RevenueRollup {
+
+    private static volatile RevenueRollup defaultRollup;
+
+    private final RevenueRollupRepository repo;
+
+    public RevenueRollup(RevenueRollupRepository repo) {
+        this.repo = repo;
+    }
+
+    /**
+     * Rollup dùng chung cả app (bảng revenue_hourly / revenue_daily)
+     */
+    public static RevenueRollup getDefault() {
+        RevenueRollup r = defaultRollup;
+        if (r == null) {
+            synchronized (RevenueRollup.class) {
+                if (defaultRollup == null) {
+                    defaultRollup = new RevenueRollup(new RevenueRollupRepositorySQL());
+                }
+                r = defaultRollup;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Đổi rollup dùng chung (phải gọi trước khi tạo controller)
+     */
+    public static void setDefault(RevenueRollup rollup) {
+        defaultRollup = rollup;
+    }
+
+    /* ================= REBUILD ================= */
+
+    /**
+     * Tính lại các ngày trong [from, to] từ invoices / invoice_items / topup_history
+     * (null = toàn bộ lịch sử). Hoá đơn / lần nạp ghi cùng lúc chờ rebuild xong (khoá ở DB).
+     */
+    public void rebuild(LocalDate from, LocalDate to) {
+        repo.rebuild(from, to);
+    }
+
+    public void rebuildAll() {
+        repo.rebuild(null, null);
+    }
+
+    /* ================= ĐỌC ================= */
+
+    /**
+     * Tổng doanh thu các ngày trong [from, to] (null = không giới hạn)
+     * - tiền máy / dịch vụ: cộng các dòng COMPUTER
+     * - tiền nạp: cộng các dòng PAYMENT
+     */
+    public RollupRow summarize(LocalDate from, LocalDate to) {
+        long time = 0, cash = 0, account = 0, topUp = 0, invoices = 0;
+
+        for (RollupRow r : repo.findDaily(from, to, null)) {
+            if (RollupRow.COMPUTER.equals(r.getDimension())) {
+                time += r.getTimeAmount();
+                cash += r.getServiceCash();
+                account += r.getServiceAccount();
+                invoices += r.getTxCount();
+            } else if (RollupRow.PAYMENT.equals(r.getDimension())) {
+                topUp += r.getTopUpAmount();
+            }
+        }
+
+        LocalDateTime bucket = (from != null) ? from.atStartOfDay() : null;
+        return new RollupRow(bucket, "ALL", "", time, cash, account, topUp, 0, invoices);
+    }
+
+    public List<RollupRow> getDaily(LocalDate from, LocalDate to, String dimension) {
+        return repo.findDaily(from, to, dimension);
+    }
+
+    public List<RollupRow> getHourly(LocalDateTime from, LocalDateTime to, String dimension) {
+        return repo.findHourly(from, to, dimension);
+    }
+}
@@ -7,23 +7,30 @@ import com.cybergame.repository.ServiceItemRepository;
 public class ServiceItemController {
 
     private final ServiceItemRepository repo;
-    private int nextId;
+    private final IdAllocator ids;
+    // null → Inventory.getDefault() lúc dùng (Inventory mặc định tự tạo ServiceItemController)
+    private final Inventory inventory;
 
     public ServiceItemController(ServiceItemRepository repo) {
+        this(repo, IdAllocator.shared(IdAllocator.SERVICES));
+    }
+
+    public ServiceItemController(ServiceItemRepository repo, IdAllocator ids) {
+        this(repo, ids, null);
+    }
+
+    public ServiceItemController(ServiceItemRepository repo, IdAllocator ids, Inventory inventory) {
         this.repo = repo;
-        this.nextId = repo.findAll()
-                .stream()
-                .mapToInt(ServiceItem::getServiceId)
-                .max()
-                .orElse(0) + 1;
+        this.ids = ids;
+        this.inventory = inventory;
     }
 
     public ServiceItem createService(String name,
-                                 double price,
+                                 long price,
                                  ServiceCategory category) {
 
     ServiceItem s = new ServiceItem(
-            nextId++, name, price, category
+            ids.nextId(), name, price, category
     );
     repo.save(s);
     return s;
@@ -42,4 +49,45 @@ public class ServiceItemController {
         repo.save(s);
     }
 
+    /* ================= TỒN KHO ================= */
+
+    /**
+     * Nhập thêm hàng; món chưa theo dõi thì bắt đầu theo dõi với đúng số vừa nhập
+     */
+    public void restock(ServiceItem s, long quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Số lượng nhập phải > 0");
+        }
+        Inventory inv = inventory();
+        if (inv.getAvailable(s) == Inventory.UNTRACKED) inv.setStock(s, quantity);
+        else inv.restock(s, quantity);
+    }
+
+    /**
+     * Kiểm kho: đặt tồn kho về đúng số đếm được
+     */
+    public void setStock(ServiceItem s, long quantity) {
+        inventory().setStock(s, quantity);
+    }
+
+    public long getStock(ServiceItem s) {
+        return inventory().getAvailable(s);
+    }
+
+    /**
+     * Đổi ngưỡng tự khoá rồi khoá / mở lại theo tồn kho hiện tại
+     */
+    public void setLowStockThreshold(ServiceItem s, int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Ngưỡng tồn kho phải >= 0");
+        }
+        s.setLowStockThreshold(threshold);
+        repo.save(s);
+        inventory().recheck(s);
+    }
+
+    private Inventory inventory() {
+        return (inventory != null) ? inventory : Inventory.getDefault();
+    }
+
 }
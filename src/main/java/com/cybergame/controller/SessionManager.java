@@ -1,11 +1,24 @@
 package com.cybergame.controller;
+import com.cybergame.context.AccountContext;
+import com.cybergame.context.AppShutdown;
+import com.cybergame.event.LiveEvent;
+import com.cybergame.event.LiveEventBus;
 import com.cybergame.model.entity.*;
 import com.cybergame.model.enums.*;
 import com.cybergame.repository.*;
+import com.cybergame.repository.column.InvoiceColumnStore;
+import com.cybergame.repository.journal.BillingJournal;
+import com.cybergame.util.Money;
 
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.*;
+import java.util.function.Consumer;
 
 public class SessionManager {
 
@@ -13,62 +26,301 @@ public class SessionManager {
     private final InvoiceRepository invoiceRepo;
     private final AccountRepository accountRepo;
 
-    private final ScheduledExecutorService scheduler =
-            Executors.newSingleThreadScheduledExecutor();
+    // số shard mặc định: -Dcybergame.billingShards=N, không có thì min(4, số core)
+    public static final int DEFAULT_BILLING_SHARDS = Integer.getInteger(
+            "cybergame.billingShards",
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())));
 
-    private int nextSessionId = 1;
-    private int nextInvoiceId;
+    // cảnh báo khi còn <= X giây chơi
+    public static final long LOW_BALANCE_WARNING_SECONDS = 5 * 60;
+
+    // 1 tick = 1 giây, chỉ đánh thức session ở mốc cảnh báo / hết tiền dự đoán
+    // mỗi shard có wheel + thread riêng, chia theo computerId
+    private final BillingEngine<BillingState> billingEngine;
+    private final Map<Integer, BillingState> billingStates = new ConcurrentHashMap<>();
+
+    // checkpoint số dư định kỳ → crash không mất hàng giờ tiền giờ
+    private final BalanceCheckpointer balanceCheckpointer;
+
+    // mọi thay đổi tiền ghi vào journal trước → crash giữa 2 checkpoint vẫn dựng lại được
+    private final BillingJournal journal;
+    private final List<BillingJournal.OpenSession> recoveredSessions = new ArrayList<>();
+
+    // ghi hoá đơn: số lần thử, thời gian chờ ghi nốt khi tắt app
+    public static final int PERSIST_ATTEMPTS = Integer.getInteger("cybergame.persist.attempts", 5);
+    public static final long PERSIST_DRAIN_SECONDS = Long.getLong("cybergame.persist.drainSeconds", 30);
+
+    // ghi DB (JDBC) chạy ở thread riêng → không bao giờ chặn tick tính tiền
+    // thread KHÔNG daemon, chỉ sống khi còn việc: đóng app bình thường vẫn ghi nốt hàng chờ
+    private final ThreadPoolExecutor persistExecutor = newPersistExecutor();
+
+    // hoá đơn thử hết số lần vẫn lỗi → giữ lại, không bỏ (retryFailedInvoices)
+    private final Queue<PendingInvoice> failedInvoices = new ConcurrentLinkedQueue<>();
+
+    private Consumer<Session> lowBalanceListener = s -> { };
+
+    // id cấp theo block từ bảng id_sequences → không cần quét invoices lúc khởi động
+    private final IdAllocator sessionIds = IdAllocator.shared(IdAllocator.SESSIONS);
+    private final IdAllocator invoiceIds = IdAllocator.shared(IdAllocator.INVOICES);
+
+    // kho hoá đơn dạng cột cho báo cáo (chỉ nhận thêm khi đã nạp)
+    private final InvoiceColumnStore invoiceStore = InvoiceColumnStore.getDefault();
+
+    // sự kiện cho màn hình quản lý (session, số dư, trạng thái máy)
+    private final LiveEventBus events = LiveEventBus.getDefault();
+
+    // order đang chờ (OrderController cập nhật) → nhân viên không phải quét mọi session
+    private final OrderQueue orderQueue = OrderQueue.getDefault();
+
+    // bảng orders: ghi nền theo lô; khởi động thì nhận lại order đang xử lý dở
+    private final OrderWriter orderWriter = OrderWriter.getDefault();
+    private final List<OrderRecord> recoveredOrders = new ArrayList<>();
 
     public SessionManager(SessionRepository sessionRepo,
                       InvoiceRepository invoiceRepo,
                       AccountRepository accountRepo) {
+        this(sessionRepo, invoiceRepo, accountRepo, DEFAULT_BILLING_SHARDS);
+    }
+
+    public SessionManager(SessionRepository sessionRepo,
+                      InvoiceRepository invoiceRepo,
+                      AccountRepository accountRepo,
+                      int billingShards) {
+        this(sessionRepo, invoiceRepo, accountRepo, billingShards, BillingJournal.getDefault());
+    }
+
+    public SessionManager(SessionRepository sessionRepo,
+                      InvoiceRepository invoiceRepo,
+                      AccountRepository accountRepo,
+                      int billingShards,
+                      BillingJournal journal) {
         this.sessionRepo = sessionRepo;
         this.invoiceRepo = invoiceRepo;
         this.accountRepo = accountRepo;
 
-        this.nextInvoiceId = invoiceRepo.findAll()
-                .stream()
-                .mapToInt(Invoice::getInvoiceId)
-                .max()
-                .orElse(0) + 1;
-                
-        startTimer();
+        this.billingEngine = new BillingEngine<>(billingShards, this::onBillingEvent);
+
+        this.journal = journal;
+        recoverFromJournal();
+        recoverOrders();
+        seedOrderQueue();
+
+        this.balanceCheckpointer = new BalanceCheckpointer(accountRepo);
+        balanceCheckpointer.setJournal(journal, this::snapshotOpenSessions);
+        AccountContext.getInstance().setCheckpointer(balanceCheckpointer);
+
+        AppShutdown shutdown = AppShutdown.getInstance();
+        shutdown.register(AppShutdown.STOP_BILLING, "billing-engine", billingEngine::shutdown);
+        shutdown.register(AppShutdown.PERSIST, "billing-persist", this::drainPersist);
+        shutdown.register(AppShutdown.CHECKPOINT, "balance-checkpoint", balanceCheckpointer::shutdown);
+    }
+
+    private static ThreadPoolExecutor newPersistExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1,
+                5, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                r -> new Thread(r, "billing-persist"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Hoá đơn chờ ghi + session đã đóng của nó (account để lưu số dư cuối)
+     */
+    private static final class PendingInvoice {
+        final Session session;
+        final Invoice invoice;
+
+        PendingInvoice(Session session, Invoice invoice) {
+            this.session = session;
+            this.invoice = invoice;
+        }
+    }
+
+    /**
+     * Trạng thái hẹn giờ của 1 session trong bánh xe thời gian
+     */
+    private static final class BillingState {
+        final Session session;
+        boolean warned;
+        TimingWheel.Timeout<BillingState> timeout;
+
+        BillingState(Session session) {
+            this.session = session;
+        }
+    }
+
+    // order PENDING / CONFIRMED của session chưa đóng (app dừng đột ngột)
+    // PENDING → vào lại hàng đợi nhân viên; CONFIRMED → getRecoveredOrders() rồi
+    // OrderController.settleRecoveredOrder (giao xong / hoàn tiền)
+    private void recoverOrders() {
+        try {
+            recoveredOrders.addAll(orderWriter.recover());
+        } catch (RuntimeException e) {
+            System.err.println("[ORDERS] Không đọc được order đang xử lý: " + e.getMessage());
+            return;
+        }
+        for (OrderRecord r : recoveredOrders) {
+            orderQueue.add(null, r.getItem());
+        }
+        if (!recoveredOrders.isEmpty()) {
+            System.err.println("[ORDERS] Khôi phục " + recoveredOrders.size() + " order đang xử lý");
+        }
+    }
+
+    /**
+     * Order chưa chốt của lần chạy trước (session không còn, giữ máy / account qua OrderRecord)
+     */
+    public List<OrderRecord> getRecoveredOrders() {
+        List<OrderRecord> list = new ArrayList<>();
+        for (OrderRecord r : recoveredOrders) {
+            OrderStatus status = r.getItem().getStatus();
+            if (status != OrderStatus.COMPLETED && status != OrderStatus.CANCELLED) list.add(r);
+        }
+        return list;
+    }
+
+    // session còn chạy lúc khởi động có thể đã có order chờ → đưa vào hàng đợi 1 lần
+    private void seedOrderQueue() {
+        sessionRepo.forEachRunning(s -> {
+            for (OrderItem item : s.getOrderItems()) {
+                orderQueue.add(s, item);
+            }
+        });
+    }
+
+    public void setLowBalanceListener(Consumer<Session> listener) {
+        this.lowBalanceListener = (listener != null) ? listener : s -> { };
+    }
+
+
+    public BalanceCheckpointer getBalanceCheckpointer() {
+        return balanceCheckpointer;
     }
 
+    /**
+     * Độ trễ tick của từng shard tính tiền
+     */
+    public List<BillingEngine.ShardStats> getBillingShardStats() {
+        return billingEngine.getShardStats();
+    }
+
+
+    /**
+     * Session còn chạy lúc app dừng (lần khởi động này), đã chốt tiền giờ tới lúc dừng
+     */
+    public List<BillingJournal.OpenSession> getRecoveredSessions() {
+        return recoveredSessions;
+    }
+
+    /* ================= JOURNAL ================= */
+
+    /**
+     * Replay phần journal sau checkpoint cuối:
+     * - số dư gốc cuối cùng của từng account
+     * - session còn mở → chốt tiền giờ tới record cuối cùng (≈ lúc app dừng)
+     * Ghi kết quả xuống DB rồi checkpoint → lần sau không replay lại.
+     */
+    private void recoverFromJournal() {
+        BillingJournal.Recovery r = journal.recover();
+        if (r.getReplayedCount() == 0) return;
+
+        Map<Integer, Long> balances = new HashMap<>(r.getBalances());
+        long stoppedAt = r.getLastTimeMillis();
+
+        for (BillingJournal.OpenSession os : r.getOpenSessions()) {
+            long base = balances.getOrDefault(os.accountId, os.balance);
+            long seconds = Math.max(0, (stoppedAt - os.startMillis) / 1000);
+            long cost = Money.timeCost(os.pricePerHour, seconds, os.rateBps);
+            balances.put(os.accountId, Math.max(Money.ZERO, base - cost));
+            recoveredSessions.add(os);
+        }
+
+        List<Account> restored = new ArrayList<>();
+        for (Account acc : accountRepo.findAll()) {
+            Long balance = balances.get(acc.getUserId());
+            if (balance != null) {
+                acc.restoreBalance(balance);
+                restored.add(acc);
+            }
+        }
+        accountRepo.updateBalances(restored);
+
+        journal.checkpoint(journal.getWrittenSeq(), List::of);
+    }
+
+    // gọi trong lock của journal lúc ghi checkpoint → không được lấy lock của account
+    private List<BillingJournal.OpenSession> snapshotOpenSessions() {
+        List<BillingJournal.OpenSession> list = new ArrayList<>(billingStates.size());
+        for (BillingState state : billingStates.values()) {
+            Session s = state.session;
+            list.add(new BillingJournal.OpenSession(
+                    s.getSessionId(),
+                    s.getAccount().getUserId(),
+                    s.getComputer().getComputerId(),
+                    toMillis(s.getStartTime()),
+                    s.getAccount().getBaseBalance(),
+                    s.getPricePerHourAtStart(),
+                    s.getTimeDiscountBps()));
+        }
+        return list;
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
 
     /* ================= TIMER ================= */
 
-    private void startTimer() {
-        scheduler.scheduleAtFixedRate(
-                this::tickUpdate,
-                1, 1, TimeUnit.SECONDS
-        );
+    private int shardKey(BillingState state) {
+        return state.session.getComputer().getComputerId();
     }
-    private void chargeTimeCostPerSecond(Session session) {
 
-    Account acc = session.getAccount();
-    Computer pc = session.getComputer();
+    /**
+     * Dự đoán lại sự kiện kế tiếp: mốc cảnh báo hoặc lúc hết tiền.
+     * Gọi khi mở máy và mỗi lần số dư đổi (nạp tiền / order / huỷ order).
+     */
+    private void reschedule(BillingState state) {
+        synchronized (state) {
+            billingEngine.cancel(shardKey(state), state.timeout);
+            state.timeout = null;
+
+            if (state.session.getStatus() == SessionStatus.CLOSED) return;
+
+            long secondsLeft = state.session.getAccount().secondsUntilEmpty();
+            if (secondsLeft == Long.MAX_VALUE) return; // máy miễn phí
+
+            if (state.warned && secondsLeft > LOW_BALANCE_WARNING_SECONDS) {
+                state.warned = false; // đã nạp thêm → cảnh báo lại được
+            }
 
-    // tiền / giờ → tiền / giây
-    double costPerSecond =
-            pc.getPricePerHour() / 3600.0
-            * acc.getTimeDiscountRate();
+            // hết tiền → tick kế tiếp sẽ bị logout
+            long delay = Math.max(1, secondsLeft);
+            if (!state.warned && secondsLeft > LOW_BALANCE_WARNING_SECONDS) {
+                delay = secondsLeft - LOW_BALANCE_WARNING_SECONDS;
+            }
 
-    // nếu không đủ tiền → logout
-    if (!acc.canPay(costPerSecond)) {
-        forceLogout(session);
-        return;
+            state.timeout = billingEngine.schedule(shardKey(state), state, delay);
+        }
     }
 
-    // ✅ TRỪ TIỀN NGAY MỖI GIÂY
-    acc.deduct(costPerSecond);
-}
+    private void onBillingEvent(BillingState state) {
+        Session session = state.session;
+        if (session.getStatus() == SessionStatus.CLOSED) return;
 
+        long secondsLeft = session.getAccount().secondsUntilEmpty();
 
-    private void tickUpdate() {
-        for (Session s : sessionRepo.findRunningSessions()) {
-            chargeTimeCostPerSecond(s);
+        // không đủ tiền cho 1 giây kế tiếp → logout
+        if (secondsLeft <= 0) {
+            forceLogout(session);
+            return;
         }
+
+        if (!state.warned && secondsLeft <= LOW_BALANCE_WARNING_SECONDS) {
+            state.warned = true;
+            lowBalanceListener.accept(session);
+        }
+
+        reschedule(state);
     }
 
     /* ================= SESSION ================= */
@@ -77,36 +329,184 @@ public class SessionManager {
         if (acc.isLocked()) return null;
         if (comp.getStatus() != ComputerStatus.AVAILABLE) return null;
 
-        Session session = new Session(nextSessionId++, acc, comp);
+        // 1 account chỉ chơi 1 máy (tiền giờ tính dồn theo account), 1 máy chỉ 1 session
+        // kiểm tra nhanh, không cấp id vô ích; chốt thật ở saveIfAbsent
+        if (sessionRepo.findByAccountId(acc.getUserId()) != null) return null;
+        if (sessionRepo.findByComputerId(comp.getComputerId()) != null) return null;
+
+        Session session = new Session(sessionIds.nextId(), acc, comp);
+        if (!sessionRepo.saveIfAbsent(session)) return null;
         comp.markInUse();
-        sessionRepo.save(session);
+
+        // không trừ tiền từng giây: số dư = số dư lúc mở máy - rate * thời gian
+        BillingState state = new BillingState(session);
+        billingStates.put(session.getSessionId(), state);
+
+        long seq;
+        synchronized (acc) {
+            acc.startAccrual(session.getPricePerHourAtStart(),
+                    session.getTimeDiscountBps(), session.getStartTime());
+            seq = journal.appendAsync(toMillis(session.getStartTime()), BillingJournal.SESSION_START,
+                    acc.getUserId(), comp.getComputerId(), session.getSessionId(),
+                    0, acc.getBaseBalance(),
+                    session.getPricePerHourAtStart(), session.getTimeDiscountBps());
+        }
+        journal.awaitDurable(seq);
+
+        acc.setBalanceListener(a -> {
+            balanceCheckpointer.markDirty(a);
+            reschedule(state);
+            events.publish(LiveEvent.balanceChanged(a));
+        });
+        balanceCheckpointer.track(acc);
+        reschedule(state);
+
+        events.publish(LiveEvent.machineStatusChanged(comp));
+        events.publish(LiveEvent.sessionStarted(session));
         return session;
     }
 
 public void endSession(Session session) {
 
-    // 🔐 CHỐT NGAY – thread khác vào sẽ bị chặn
-    if (session.getStatus() == SessionStatus.CLOSED) return;
+    // 🔐 CHỐT NGAY – thread khác vào sẽ bị chặn (UI logout + shard forceLogout)
+    synchronized (session) {
+        if (session.getStatus() == SessionStatus.CLOSED) return;
 
-    session.end(); // ⚠️ ĐẶT CLOSED NGAY LẬP TỨC
+        session.end(); // ⚠️ ĐẶT CLOSED NGAY LẬP TỨC
+    }
 
     // ===== TỪ ĐÂY CHỈ 1 THREAD ĐƯỢC CHẠY =====
 
     sessionRepo.delete(session);
 
+    BillingState state = billingStates.remove(session.getSessionId());
+    if (state != null) {
+        synchronized (state) {
+            billingEngine.cancel(shardKey(state), state.timeout);
+        }
+    }
+
+    // chốt tiền giờ đúng tới lúc end → khớp với invoice.timeAmount
+    // không chờ force(): nếu crash làm mất record này thì các record sau cũng mất,
+    // replay sẽ chốt tiền giờ tới record cuối cùng (≈ lúc end)
     Account acc = session.getAccount();
-    accountRepo.save(acc); // ✅ ghi DB 1 lần duy nhất
+    synchronized (acc) {
+        acc.stopAccrual(session.getEndTime());
+        journal.appendAsync(toMillis(session.getEndTime()), BillingJournal.SESSION_END,
+                acc.getUserId(), session.getComputer().getComputerId(), session.getSessionId(),
+                session.calcTimeCost(), acc.getBaseBalance(), 0, 0);
+    }
+    acc.setBalanceListener(null);
+    // markDirty TRƯỚC untrack: flush chốt seq (đã gồm SESSION_END) rồi mới chụp tracked / dirty
+    // → account luôn nằm ở 1 trong 2, checkpoint không vượt qua số dư chưa ghi
+    balanceCheckpointer.markDirty(acc);
+    balanceCheckpointer.untrack(acc);
 
     session.getComputer().markAvailable();
+    events.publish(LiveEvent.machineStatusChanged(session.getComputer()));
+    events.publish(LiveEvent.sessionEnded(session));
+
+    // order chưa ai nhận của máy vừa đóng không còn ai để giao
+    orderQueue.removeAll(session.getOrderItems());
 
-    Invoice invoice = new Invoice(nextInvoiceId++, session);
-    invoiceRepo.save(invoice); // ✅ ghi DB 1 lần duy nhất
+    // snapshot hoá đơn ngay, còn ghi DB thì đẩy sang thread persist
+    Invoice invoice = new Invoice(invoiceIds.nextId(), session);
+
+    PendingInvoice pending = new PendingInvoice(session, invoice);
+    persistExecutor.execute(() -> persistInvoice(pending));
 }
 
+    /* ================= GHI HOÁ ĐƠN ================= */
+
+    // thread persist: lỗi thì thử lại (chờ 1s, 2s, 4s...), hết lượt thì giữ lại chứ không bỏ
+    private void persistInvoice(PendingInvoice pending) {
+        Invoice invoice = pending.invoice;
+        Account acc = pending.session.getAccount();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                accountRepo.save(acc); // ✅ ghi DB 1 lần duy nhất
+                invoiceRepo.save(invoice); // ✅ hoá đơn + doanh thu gộp: 1 transaction
+                break;
+            } catch (RuntimeException e) {
+                if (attempt >= PERSIST_ATTEMPTS || !sleepBeforeRetry(attempt)) {
+                    failedInvoices.add(pending);
+                    System.err.println("[INVOICE] Không lưu được hoá đơn #" + invoice.getInvoiceId()
+                            + " sau " + attempt + " lần, giữ lại chờ ghi lại: " + e.getMessage());
+                    return;
+                }
+                System.err.println("[INVOICE] Lưu hoá đơn #" + invoice.getInvoiceId()
+                        + " lỗi (lần " + attempt + "), thử lại: " + e.getMessage());
+            }
+        }
+        // order đã vào hoá đơn trong DB → mới thôi khôi phục chúng
+        orderWriter.recordSessionClosed(pending.session);
+        invoiceStore.append(invoice);
+        events.publish(LiveEvent.revenueChanged(invoice));
+    }
+
+    private static boolean sleepBeforeRetry(int attempt) {
+        try {
+            Thread.sleep(1_000L << Math.min(attempt - 1, 3));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Hoá đơn đã thử hết số lần mà chưa vào DB (hiển thị / ghi lại bằng tay)
+     */
+    public List<Invoice> getFailedInvoices() {
+        List<Invoice> list = new ArrayList<>();
+        for (PendingInvoice p : failedInvoices) list.add(p.invoice);
+        return list;
+    }
+
+    /**
+     * Đưa các hoá đơn lỗi vào hàng chờ ghi lại (vd: sau khi DB hoạt động trở lại)
+     */
+    public int retryFailedInvoices() {
+        int n = 0;
+        PendingInvoice p;
+        while ((p = failedInvoices.poll()) != null) {
+            PendingInvoice next = p;
+            persistExecutor.execute(() -> persistInvoice(next));
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Hoá đơn còn chờ ghi (đang trong hàng chờ / đang ghi)
+     */
+    public int getPendingInvoiceCount() {
+        return persistExecutor.getQueue().size() + persistExecutor.getActiveCount();
+    }
+
+    // tắt app: ghi nốt hàng chờ (tối đa PERSIST_DRAIN_SECONDS), còn sót thì báo rõ từng hoá đơn
+    private void drainPersist() {
+        persistExecutor.shutdown();
+        try {
+            if (!persistExecutor.awaitTermination(PERSIST_DRAIN_SECONDS, TimeUnit.SECONDS)) {
+                System.err.println("[INVOICE] Hết " + PERSIST_DRAIN_SECONDS + "s mà còn "
+                        + getPendingInvoiceCount() + " hoá đơn chưa ghi");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (PendingInvoice p : failedInvoices) {
+            Invoice i = p.invoice;
+            System.err.println("[INVOICE] CHƯA LƯU hoá đơn #" + i.getInvoiceId()
+                    + " account " + i.getAccountName() + " máy " + i.getComputerName()
+                    + " tổng " + Money.format(i.getTotalAmount()));
+        }
+    }
+
 
     private void checkBalanceAndForceLogout(Session session) {
         Account acc = session.getAccount();
-        double need = session.calcTotalFromAccount();
+        long need = session.calcTotalFromAccount();
 
         if (!acc.canPay(need)) {
             forceLogout(session);
@@ -116,18 +516,15 @@ public void endSession(Session session) {
     public void forceLogout(Session session) {
         endSession(session);
     }
+    /**
+     * Order đang chờ theo thứ tự phục vụ (đọc từ OrderQueue, không quét session)
+     */
     public List<OrderItem> getPendingOrders() {
-
-    List<OrderItem> result = new ArrayList<>();
-
-    for (Session s : sessionRepo.findRunningSessions()) {
-        for (OrderItem item : s.getOrderItems()) {
-            if (item.getStatus() == OrderStatus.PENDING) {
-                result.add(item);
-            }
-        }
+        return orderQueue.snapshot();
     }
-    return result;
+
+    public OrderQueue getOrderQueue() {
+        return orderQueue;
     }
 
 }
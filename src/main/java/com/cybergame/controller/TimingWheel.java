@@ -0,0 +1,181 @@
+package com.cybergame.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bánh xe thời gian phân cấp (Hierarchical Timing Wheel)
+ * - 4 tầng, mỗi tầng 64 ô → chứa được hẹn giờ tới 64^4 tick
+ * - Đặt / huỷ hẹn giờ O(1), mỗi tick chỉ xử lý các ô đến hạn
+ * - Không thread-safe tự thân: mọi hàm public đều synchronized
+ */
+public class TimingWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELAY = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    /**
+     * Một hẹn giờ nằm trong bánh xe (node của danh sách liên kết đôi)
+     */
+    public static final class Timeout<T> {
+        private final T payload;
+        private final long deadline;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+        private Timeout<T>[] bucketOwner;
+        private int bucketIndex = -1;
+
+        private Timeout(T payload, long deadline) {
+            this.payload = payload;
+            this.deadline = deadline;
+        }
+
+        public T getPayload() {
+            return payload;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+
+        public boolean isScheduled() {
+            return bucketOwner != null;
+        }
+    }
+
+    // wheels[level][slot] = đầu danh sách liên kết của ô đó
+    private final Timeout<T>[][] wheels;
+
+    // tick kế tiếp sẽ được xử lý
+    private long nextTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel() {
+        wheels = (Timeout<T>[][]) new Timeout<?>[LEVELS][SLOTS];
+    }
+
+    /**
+     * Hẹn giờ payload sau delayTicks tick (tối thiểu 1)
+     */
+    public synchronized Timeout<T> schedule(T payload, long delayTicks) {
+        long delay = Math.max(1, delayTicks);
+        Timeout<T> t = new Timeout<>(payload, nextTick - 1 + delay);
+        insert(t);
+        size++;
+        return t;
+    }
+
+    /**
+     * Huỷ hẹn giờ (không làm gì nếu đã chạy / đã huỷ)
+     */
+    public synchronized boolean cancel(Timeout<T> t) {
+        if (t == null || !t.isScheduled()) return false;
+        unlink(t);
+        size--;
+        return true;
+    }
+
+    /**
+     * Tiến 1 tick, trả về các payload đến hạn.
+     * Callback chạy NGOÀI lock để tránh deadlock khi callback đặt lại hẹn giờ.
+     */
+    public synchronized List<T> advance() {
+        int index = (int) (nextTick & MASK);
+
+        // ô tầng 0 quay về 0 → đổ các ô tầng trên xuống
+        if (index == 0) {
+            for (int level = 1; level < LEVELS; level++) {
+                int idx = (int) ((nextTick >> (SLOT_BITS * level)) & MASK);
+                cascade(level, idx);
+                if (idx != 0) break;
+            }
+        }
+
+        List<T> expired = new ArrayList<>();
+        Timeout<T> t = wheels[0][index];
+        wheels[0][index] = null;
+
+        while (t != null) {
+            Timeout<T> next = t.next;
+            t.prev = t.next = null;
+            t.bucketOwner = null;
+
+            if (t.deadline <= nextTick) {
+                expired.add(t.payload);
+                size--;
+            } else {
+                // hẹn quá xa bị kẹp ở tầng cao nhất → đặt lại
+                insert(t);
+            }
+            t = next;
+        }
+
+        nextTick++;
+        return expired;
+    }
+
+    public synchronized long currentTick() {
+        return nextTick - 1;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /* ================= INTERNAL ================= */
+
+    private void cascade(int level, int index) {
+        Timeout<T> t = wheels[level][index];
+        wheels[level][index] = null;
+
+        while (t != null) {
+            Timeout<T> next = t.next;
+            t.prev = t.next = null;
+            t.bucketOwner = null;
+            insert(t);
+            t = next;
+        }
+    }
+
+    private void insert(Timeout<T> t) {
+        long expires = Math.max(t.deadline, nextTick);
+        long delta = expires - nextTick;
+
+        if (delta > MAX_DELAY) {
+            delta = MAX_DELAY;
+            expires = nextTick + MAX_DELAY;
+        }
+
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+
+        int index = (int) ((expires >> (SLOT_BITS * level)) & MASK);
+        Timeout<T>[] bucket = wheels[level];
+
+        t.next = bucket[index];
+        if (t.next != null) t.next.prev = t;
+        t.prev = null;
+        bucket[index] = t;
+
+        t.bucketOwner = bucket;
+        t.bucketIndex = index;
+    }
+
+    private void unlink(Timeout<T> t) {
+        if (t.prev != null) {
+            t.prev.next = t.next;
+        } else {
+            t.bucketOwner[t.bucketIndex] = t.next;
+        }
+        if (t.next != null) t.next.prev = t.prev;
+
+        t.prev = t.next = null;
+        t.bucketOwner = null;
+    }
+}
@@ -1,9 +1,13 @@
 package com.cybergame.controller;
 
+import com.cybergame.context.AccountContext;
+import com.cybergame.event.LiveEvent;
+import com.cybergame.event.LiveEventBus;
 import com.cybergame.model.entity.Account;
 import com.cybergame.model.entity.TopUpHistory;
 import com.cybergame.repository.AccountRepository;
 import com.cybergame.repository.TopUpHistoryRepository;
+import com.cybergame.repository.journal.BillingJournal;
 
 import java.time.LocalDateTime;
 
@@ -11,16 +15,26 @@ import java.time.LocalDateTime;
  * Controller xử lý nghiệp vụ NẠP TIỀN
  * - Cộng tiền cho account
  * - Ghi lịch sử nạp tiền (employee / admin)
+ * - Ghi journal (đã xuống đĩa) trước khi trả về
+ * - Lịch sử nạp và doanh thu gộp ghi cùng 1 transaction (TopUpHistoryRepository.save)
  */
 public class TopUpController {
 
     private final AccountRepository accountRepo;
     private final TopUpHistoryRepository historyRepo;
+    private final BillingJournal journal;
 
     public TopUpController(AccountRepository accountRepo,
                            TopUpHistoryRepository historyRepo) {
+        this(accountRepo, historyRepo, BillingJournal.getDefault());
+    }
+
+    public TopUpController(AccountRepository accountRepo,
+                           TopUpHistoryRepository historyRepo,
+                           BillingJournal journal) {
         this.accountRepo = accountRepo;
         this.historyRepo = historyRepo;
+        this.journal = journal;
     }
 
     /**
@@ -30,14 +44,14 @@ public class TopUpController {
      * @param operatorType   "EMPLOYEE" | "ADMIN"
      * @param operatorId     id nhân viên (null nếu admin)
      * @param operatorName   tên người thao tác
-     * @param amount         số tiền nạp
+     * @param amount         số tiền nạp (Money)
      * @param note           ghi chú (có thể null)
      */
     public void topUp(Account acc,
                       String operatorType,
                       Integer operatorId,
                       String operatorName,
-                      double amount,
+                      long amount,
                       String note) {
 
         // ===== VALIDATE =====
@@ -52,8 +66,15 @@ public class TopUpController {
         }
 
         // ===== 1. CỘNG TIỀN =====
-        acc.topUp(amount);
+        long[] seq = new long[1];
+        acc.credit(amount, base -> {
+            AccountContext.getInstance().markDirty(acc);
+            seq[0] = journal.appendAsync(System.currentTimeMillis(), BillingJournal.TOP_UP,
+                    acc.getUserId(), 0, 0, amount, base, 0, 0);
+        });
+        journal.awaitDurable(seq[0]);
         accountRepo.save(acc);
+        LiveEventBus.getDefault().publish(LiveEvent.balanceChanged(acc));
 
         // ===== 2. GHI LỊCH SỬ =====
         TopUpHistory h = new TopUpHistory();
@@ -69,5 +90,6 @@ public class TopUpController {
         h.setNote(note);
 
         historyRepo.save(h);
+        LiveEventBus.getDefault().publish(LiveEvent.revenueChanged(h));
     }
 }
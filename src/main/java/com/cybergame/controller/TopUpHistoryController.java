@@ -1,5 +1,7 @@
 package com.cybergame.controller;
 
+import com.cybergame.event.LiveEvent;
+import com.cybergame.event.LiveEventBus;
 import com.cybergame.model.entity.TopUpHistory;
 import com.cybergame.repository.TopUpHistoryRepository;
 
@@ -23,8 +25,10 @@ public class TopUpHistoryController {
 
     /**
      * ❗ CHỈ XÓA LỊCH SỬ – KHÔNG HOÀN TIỀN
+     * (doanh thu gộp trừ cùng transaction với lệnh xoá)
      */
     public void delete(TopUpHistory history) {
         repo.delete(history);
+        LiveEventBus.getDefault().publish(LiveEvent.revenueChanged(history));
     }
 }
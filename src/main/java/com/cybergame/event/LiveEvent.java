@@ -0,0 +1,115 @@
+package com.cybergame.event;
+
+import com.cybergame.model.entity.Account;
+import com.cybergame.model.entity.Computer;
+import com.cybergame.model.entity.Invoice;
+import com.cybergame.model.entity.OrderItem;
+import com.cybergame.model.entity.Session;
+import com.cybergame.model.entity.TopUpHistory;
+
+/**
+ * Sự kiện thay đổi trạng thái "đang chạy" (session, số dư, order, máy) gửi cho màn hình quản lý
+ * - REVENUE_CHANGED: hoá đơn / lần nạp đã vào DB hoặc bị xoá → báo cáo cũ không còn đúng
+ * - Mang object đang sống (không copy): người nhận đọc giá trị mới nhất lúc xử lý
+ * - BALANCE_CHANGED / MACHINE_STATUS_CHANGED chỉ cần bản mới nhất → gộp được theo id
+ */
+public final class LiveEvent {
+
+    public enum Type {
+        SESSION_STARTED,
+        SESSION_ENDED,
+        BALANCE_CHANGED,
+        ORDER_PLACED,
+        MACHINE_STATUS_CHANGED,
+        REVENUE_CHANGED
+    }
+
+    private final Type type;
+    private final int id;               // sessionId / accountId / orderItemId / computerId
+    private final Object subject;
+    private final Session session;      // session liên quan (có thể null)
+    private final long time = System.currentTimeMillis();
+
+    private LiveEvent(Type type, int id, Object subject, Session session) {
+        this.type = type;
+        this.id = id;
+        this.subject = subject;
+        this.session = session;
+    }
+
+    public static LiveEvent sessionStarted(Session s) {
+        return new LiveEvent(Type.SESSION_STARTED, s.getSessionId(), s, s);
+    }
+
+    public static LiveEvent sessionEnded(Session s) {
+        return new LiveEvent(Type.SESSION_ENDED, s.getSessionId(), s, s);
+    }
+
+    public static LiveEvent balanceChanged(Account acc) {
+        return new LiveEvent(Type.BALANCE_CHANGED, acc.getUserId(), acc, null);
+    }
+
+    public static LiveEvent orderPlaced(Session s, OrderItem item) {
+        return new LiveEvent(Type.ORDER_PLACED, item.getOrderItemId(), item, s);
+    }
+
+    public static LiveEvent machineStatusChanged(Computer c) {
+        return new LiveEvent(Type.MACHINE_STATUS_CHANGED, c.getComputerId(), c, null);
+    }
+
+    public static LiveEvent revenueChanged(Invoice inv) {
+        return new LiveEvent(Type.REVENUE_CHANGED, inv.getInvoiceId(), inv, null);
+    }
+
+    public static LiveEvent revenueChanged(TopUpHistory h) {
+        return new LiveEvent(Type.REVENUE_CHANGED, h.getId(), h, null);
+    }
+
+    /**
+     * Chỉ trạng thái cuối cùng có ý nghĩa → nhiều sự kiện cùng id gộp thành 1
+     */
+    public boolean isCoalescable() {
+        return type == Type.BALANCE_CHANGED || type == Type.MACHINE_STATUS_CHANGED;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * Account liên quan: của chính sự kiện số dư, hoặc của session
+     */
+    public Account getAccount() {
+        if (subject instanceof Account a) return a;
+        return (session != null) ? session.getAccount() : null;
+    }
+
+    /**
+     * Máy liên quan: của chính sự kiện máy, hoặc của session
+     */
+    public Computer getComputer() {
+        if (subject instanceof Computer c) return c;
+        return (session != null) ? session.getComputer() : null;
+    }
+
+    public OrderItem getOrderItem() {
+        return (subject instanceof OrderItem o) ? o : null;
+    }
+
+    @Override
+    public String toString() {
+        return type + "#" + id;
+    }
+}
@@ -0,0 +1,50 @@
+package com.cybergame.event;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Bus sự kiện trong process (SessionManager / OrderController / TopUpController → giao diện)
+ * - publish gọi thẳng các subscriber trên thread của người publish (thread tính tiền, UI...)
+ *   → subscriber phải nhanh, không chặn: chỉ ghi nhận rồi xử lý ở thread của mình
+ * - Subscriber lỗi không ảnh hưởng người publish
+ */
+public final class LiveEventBus {
+
+    private static final LiveEventBus DEFAULT = new LiveEventBus();
+
+    private final List<Consumer<LiveEvent>> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicLong published = new AtomicLong();
+
+    /**
+     * Bus dùng chung cả app
+     */
+    public static LiveEventBus getDefault() {
+        return DEFAULT;
+    }
+
+    public void subscribe(Consumer<LiveEvent> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public void unsubscribe(Consumer<LiveEvent> subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    public void publish(LiveEvent event) {
+        published.incrementAndGet();
+        for (Consumer<LiveEvent> s : subscribers) {
+            try {
+                s.accept(event);
+            } catch (RuntimeException e) {
+                System.err.println("[EVENT] Subscriber lỗi khi nhận " + event + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public long getPublishedCount() {
+        return published.get();
+    }
+}
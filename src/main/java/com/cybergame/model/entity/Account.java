@@ -1,13 +1,41 @@
 package com.cybergame.model.entity;
 
+import com.cybergame.util.Money;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
 public class Account extends Userbase {
 
-    private double balance;
+    // số dư GỐC (Money): tại lúc mở máy khi đang chơi, hoặc số dư thực khi offline
+    // mọi thay đổi đi qua CAS (tryDebit / credit) → không overdraw, không mất cập nhật
+    private final AtomicLong balance = new AtomicLong(Money.ZERO);
     private boolean locked;
     private boolean vip;
 
-    private double timeDiscountRate;
-    private double serviceDiscountRate;
+    // basis point, 10000 = không giảm
+    private int timeDiscountBps;
+    private int serviceDiscountBps;
+
+    // ===== TIỀN GIỜ TÍNH DỒN (không trừ từng giây) =====
+    // null = không có session chạy; đổi ít (mở / đóng máy) nên dùng object bất biến
+    private volatile Accrual accrual;
+    private transient Consumer<Account> balanceListener;
+
+    private static final class Accrual {
+        final long pricePerHour;
+        final int rateBps;
+        final LocalDateTime start;
+
+        Accrual(long pricePerHour, int rateBps, LocalDateTime start) {
+            this.pricePerHour = pricePerHour;
+            this.rateBps = rateBps;
+            this.start = start;
+        }
+    }
 
     public Account(int id, String username, String password,
                    String displayName, String phone, boolean vip) {
@@ -18,26 +46,160 @@ public class Account extends Userbase {
         this.phone = phone;
         this.vip = vip;
 
-        this.balance = 0;
         this.locked = false;
-        this.timeDiscountRate = vip ? 0.9 : 1.0;
-        this.serviceDiscountRate = vip ? 0.95 : 1.0;
+        this.timeDiscountBps = vip ? 9_000 : Money.FULL_RATE;
+        this.serviceDiscountBps = vip ? 9_500 : Money.FULL_RATE;
+    }
+
+    /* ================= CAS ================= */
+
+    /**
+     * Trừ tiền nếu số dư hiện tại đủ – 1 lần compare-and-set, không lock
+     */
+    public boolean tryDebit(long amount) {
+        if (!tryDebitSilently(amount)) return false;
+        notifyBalanceChanged();
+        return true;
+    }
+
+    /**
+     * Cộng tiền (nạp tiền, hoàn tiền) – không lock
+     * Tràn long → ArithmeticException, số dư giữ nguyên
+     */
+    public void credit(long amount) {
+        if (amount <= 0) return;
+        balance.updateAndGet(v -> Math.addExact(v, amount));
+        notifyBalanceChanged();
+    }
+
+    /**
+     * Như tryDebit, nhưng onApplied (nhận số dư gốc mới) chạy ngay sau CAS
+     * trong monitor của account → journal ghi đúng thứ tự thay đổi.
+     */
+    public boolean tryDebit(long amount, LongConsumer onApplied) {
+        if (onApplied == null) return tryDebit(amount);
+        synchronized (this) {
+            if (!tryDebitSilently(amount)) return false;
+            onApplied.accept(balance.get());
+        }
+        notifyBalanceChanged();
+        return true;
+    }
+
+    public void credit(long amount, LongConsumer onApplied) {
+        if (onApplied == null) {
+            credit(amount);
+            return;
+        }
+        if (amount <= 0) return;
+        synchronized (this) {
+            onApplied.accept(balance.updateAndGet(v -> Math.addExact(v, amount)));
+        }
+        notifyBalanceChanged();
     }
 
-    public void topUp(double amount) {
-        if (amount > 0) balance += amount;
+    private boolean tryDebitSilently(long amount) {
+        if (amount < 0) throw new IllegalArgumentException("Số tiền phải >= 0");
+
+        LocalDateTime now = null; // chỉ lấy giờ khi đang tính tiền giờ
+        while (true) {
+            // đọc accrual TRƯỚC balance: stopAccrual ghi balance trước rồi mới xoá accrual
+            Accrual a = accrual;
+            long base = balance.get();
+            if (a != null && now == null) now = LocalDateTime.now();
+            if (balanceAt(base, a, now) < amount) return false;
+            if (balance.compareAndSet(base, base - amount)) return true;
+        }
+    }
+
+    /**
+     * Chỉ để hiển thị / kiểm tra sơ bộ – trừ tiền phải dùng tryDebit
+     */
+    public boolean canPay(long amount) {
+        return getBalance() >= amount;
     }
 
-    public boolean canPay(double amount) {
-        return balance >= amount;
+    /**
+     * Số dư hiện tại = số dư lúc mở máy - tiền giờ đã chơi
+     */
+    public long getBalance() {
+        Accrual a = accrual;
+        return balanceAt(balance.get(), a, LocalDateTime.now());
     }
 
-    public void deduct(double amount) {
-        if (canPay(amount)) balance -= amount;
+    /**
+     * Số dư gốc (chưa trừ tiền giờ đang chạy) – dùng cho journal, không lấy lock
+     */
+    public long getBaseBalance() {
+        return balance.get();
     }
 
-    public double getBalance() {
-        return balance;
+    /**
+     * Đặt lại số dư khi khôi phục từ journal / đọc từ DB (không có session chạy)
+     */
+    public synchronized void restoreBalance(long amount) {
+        this.accrual = null;
+        this.balance.set(Math.max(Money.ZERO, amount));
+    }
+
+    /* ================= ACCRUAL ================= */
+
+    /**
+     * Bắt đầu tính tiền giờ dồn từ thời điểm from
+     */
+    public synchronized void startAccrual(long pricePerHour, int rateBps, LocalDateTime from) {
+        settleAccrual(from);
+        this.accrual = new Accrual(Math.max(0, pricePerHour), rateBps, from);
+    }
+
+    /**
+     * Chốt tiền giờ tới thời điểm at và dừng tính dồn
+     */
+    public synchronized void stopAccrual(LocalDateTime at) {
+        settleAccrual(at);
+        this.accrual = null;
+    }
+
+    // trừ tiền giờ vào số dư gốc; accrual chỉ bị xoá SAU bước này
+    // → tryDebit đọc xen giữa chỉ thấy số dư thấp hơn thực tế (an toàn)
+    private void settleAccrual(LocalDateTime at) {
+        Accrual a = accrual;
+        if (a == null || a.pricePerHour <= 0) return;
+
+        long cost = Money.timeCost(a.pricePerHour, elapsedSeconds(a, at), a.rateBps);
+        balance.updateAndGet(b -> Math.max(Money.ZERO, b - cost));
+    }
+
+    /**
+     * Số giây còn chơi được với số dư hiện tại (Long.MAX_VALUE nếu không tính giờ)
+     */
+    public long secondsUntilEmpty() {
+        Accrual a = accrual;
+        if (a == null || a.pricePerHour <= 0) return Long.MAX_VALUE;
+
+        long total = Money.affordableSeconds(balance.get(), a.pricePerHour, a.rateBps);
+        if (total == Long.MAX_VALUE) return total;
+        return Math.max(0, total - elapsedSeconds(a, LocalDateTime.now()));
+    }
+
+    public void setBalanceListener(Consumer<Account> listener) {
+        this.balanceListener = listener;
+    }
+
+    // cùng công thức với Session.calcTimeCost → số dư và hoá đơn khớp nhau
+    private static long balanceAt(long base, Accrual a, LocalDateTime now) {
+        if (a == null || a.pricePerHour <= 0) return base;
+        long cost = Money.timeCost(a.pricePerHour, elapsedSeconds(a, now), a.rateBps);
+        return Math.max(Money.ZERO, base - cost);
+    }
+
+    private static long elapsedSeconds(Accrual a, LocalDateTime now) {
+        return Math.max(0, Duration.between(a.start, now).getSeconds());
+    }
+
+    private void notifyBalanceChanged() {
+        Consumer<Account> listener = balanceListener;
+        if (listener != null) listener.accept(this);
     }
 
     public boolean isLocked() {
@@ -52,11 +214,15 @@ public class Account extends Userbase {
         locked = false;
     }
 
-    public double getTimeDiscountRate() {
-        return timeDiscountRate;
+    public boolean isVip() {
+        return vip;
+    }
+
+    public int getTimeDiscountBps() {
+        return timeDiscountBps;
     }
 
-    public double getServiceDiscountRate() {
-        return serviceDiscountRate;
+    public int getServiceDiscountBps() {
+        return serviceDiscountBps;
     }
 }
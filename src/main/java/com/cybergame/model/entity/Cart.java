@@ -0,0 +1,68 @@
+package com.cybergame.model.entity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Giỏ món của 1 lần đặt (OrderController.checkout)
+ * - Cùng 1 món thêm nhiều lần → cộng dồn số lượng, giữ thứ tự thêm
+ * - Chỉ là danh sách chọn món: giá / khoá món được kiểm tra lúc checkout
+ */
+public class Cart {
+
+    /**
+     * 1 dòng trong giỏ: món + số lượng
+     */
+    public static final class Line {
+        private final ServiceItem service;
+        private final int quantity;
+
+        Line(ServiceItem service, int quantity) {
+            this.service = service;
+            this.quantity = quantity;
+        }
+
+        public ServiceItem getService() {
+            return service;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+    }
+
+    // serviceId → dòng
+    private final Map<Integer, Line> lines = new LinkedHashMap<>();
+
+    public Cart add(ServiceItem service, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Số lượng phải > 0");
+        }
+        lines.merge(service.getServiceId(), new Line(service, quantity),
+                (a, b) -> new Line(a.service, Math.addExact(a.quantity, b.quantity)));
+        return this;
+    }
+
+    public void remove(ServiceItem service) {
+        lines.remove(service.getServiceId());
+    }
+
+    public void clear() {
+        lines.clear();
+    }
+
+    public List<Line> getLines() {
+        return Collections.unmodifiableList(new ArrayList<>(lines.values()));
+    }
+
+    public boolean isEmpty() {
+        return lines.isEmpty();
+    }
+
+    public int size() {
+        return lines.size();
+    }
+}
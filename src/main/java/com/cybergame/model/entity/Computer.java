@@ -7,10 +7,10 @@ public class Computer implements Serializable {
 
     private int computerId;
     private String name;
-    private double pricePerHour;
+    private long pricePerHour;     // Money
     private ComputerStatus status;
 
-    public Computer(int id, String name, double pricePerHour) {
+    public Computer(int id, String name, long pricePerHour) {
         this.computerId = id;
         this.name = name;
         this.pricePerHour = pricePerHour;
@@ -29,7 +29,7 @@ public class Computer implements Serializable {
         return status;
     }
 
-    public double getPricePerHour() {
+    public long getPricePerHour() {
         return pricePerHour;
     }
 
@@ -49,7 +49,7 @@ public class Computer implements Serializable {
         this.name = name;
     }
 
-    public void setPricePerHour(double pricePerHour) {
+    public void setPricePerHour(long pricePerHour) {
         this.pricePerHour = pricePerHour;
     }
 
@@ -1,5 +1,7 @@
 package com.cybergame.model.entity;
 
+import com.cybergame.util.Money;
+
 import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -12,11 +14,12 @@ public class Invoice implements Serializable {
     private int accountId;
     private String computerName;
     private LocalDateTime createdAt;
-    private double timeAmount;     // tiền máy
-    private double serviceAccountAmount; // order trả bằng account
-    private double serviceCashAmount;    // order trả bằng tiền mặt
-    private double serviceAmount;  // tiền dịch vụ
-    private double totalAmount;
+    // ===== SỐ TIỀN (Money) =====
+    private long timeAmount;     // tiền máy
+    private long serviceAccountAmount; // order trả bằng account
+    private long serviceCashAmount;    // order trả bằng tiền mặt
+    private long serviceAmount;  // tiền dịch vụ
+    private long totalAmount;
     private List<OrderItem> orderItems;
     private String accountName;
 
@@ -31,10 +34,10 @@ public class Invoice implements Serializable {
         this.serviceCashAmount = session.calcServiceTotalCash();
 
         this.serviceAmount =
-            serviceAccountAmount + serviceCashAmount;
+            Money.add(serviceAccountAmount, serviceCashAmount);
 
         this.totalAmount =
-            timeAmount + serviceAmount;
+            Money.add(timeAmount, serviceAmount);
 
         this.orderItems = new ArrayList<>(session.getOrderItems());
     }
@@ -43,11 +46,11 @@ public class Invoice implements Serializable {
                String accountName,
                String computerName,
                LocalDateTime createdAt,
-               double timeAmount,
-               double serviceAmount,
-               double serviceAccountAmount,
-               double serviceCashAmount,
-               double totalAmount) {
+               long timeAmount,
+               long serviceAmount,
+               long serviceAccountAmount,
+               long serviceCashAmount,
+               long totalAmount) {
 
     this.invoiceId = id;
     this.accountId = accountId;
@@ -69,7 +72,7 @@ public class Invoice implements Serializable {
         return accountId;
     }
 
-    public double getTotalAmount() {
+    public long getTotalAmount() {
         return totalAmount;
     }
 
@@ -88,16 +91,16 @@ public class Invoice implements Serializable {
     public String getAccountName() {
         return accountName;
     }
-    public double getTimeAmount() {
+    public long getTimeAmount() {
         return timeAmount;
     }
-    public double getServiceAmount() {
+    public long getServiceAmount() {
         return serviceAmount;
     }
-    public double getServiceAccountAmount() {
+    public long getServiceAccountAmount() {
         return serviceAccountAmount;
     }
-    public double getServiceCashAmount() {
+    public long getServiceCashAmount() {
         return serviceCashAmount;
     }
 
@@ -3,6 +3,7 @@ package com.cybergame.model.entity;
 import com.cybergame.model.enums.OrderStatus;
 import com.cybergame.model.enums.PaymentSource;
 import com.cybergame.model.enums.OrderStatus;
+import com.cybergame.util.Money;
 import java.time.LocalDateTime;
 
 
@@ -13,9 +14,9 @@ public class OrderItem implements Serializable {
     private int orderItemId;
     private ServiceItem serviceItem;
     private int quantity;
-    private double unitPriceAtOrder;
+    private long unitPriceAtOrder; // Money
     private PaymentSource paymentSource;
-    private OrderStatus status;
+    private volatile OrderStatus status;   // đổi qua compareAndSetStatus khi nhiều người cùng thao tác
     private LocalDateTime orderedAt;
 
 
@@ -30,8 +31,24 @@ public class OrderItem implements Serializable {
         this.orderedAt = LocalDateTime.now();
     }
 
-    public double getCost() {
-        return unitPriceAtOrder * quantity;
+    // dựng lại từ snapshot đã lưu (giá, trạng thái, thời điểm như lúc ghi)
+    public OrderItem(int id, ServiceItem service, int quantity, long unitPriceAtOrder,
+                     PaymentSource source, OrderStatus status, LocalDateTime orderedAt) {
+        this.orderItemId = id;
+        this.serviceItem = service;
+        this.quantity = quantity;
+        this.unitPriceAtOrder = unitPriceAtOrder;
+        this.paymentSource = source;
+        this.status = status;
+        this.orderedAt = orderedAt;
+    }
+
+    public long getCost() {
+        return Money.times(unitPriceAtOrder, quantity);
+    }
+
+    public long getUnitPriceAtOrder() {
+        return unitPriceAtOrder;
     }
 
     public int getOrderItemId() {
@@ -49,10 +66,19 @@ public class OrderItem implements Serializable {
         return status;
     }
 
-    public void setStatus(OrderStatus status) {
+    public synchronized void setStatus(OrderStatus status) {
         this.status = status;
     }
 
+    /**
+     * Đổi trạng thái nếu đang đúng expect (nguyên tử) → 2 lần huỷ / xác nhận cùng lúc chỉ 1 lần thắng
+     */
+    public synchronized boolean compareAndSetStatus(OrderStatus expect, OrderStatus update) {
+        if (status != expect) return false;
+        status = update;
+        return true;
+    }
+
     public ServiceItem getServiceItem() {
         return serviceItem;
     }
@@ -0,0 +1,45 @@
+package com.cybergame.model.entity;
+
+/**
+ * 1 dòng bảng orders: bản chụp OrderItem (trạng thái lúc ghi) + session / account / máy đặt nó
+ */
+public class OrderRecord {
+
+    private final int sessionId;
+    private final int accountId;
+    private final int computerId;
+    private final OrderItem item;
+
+    public OrderRecord(int sessionId, int accountId, int computerId, OrderItem item) {
+        this.sessionId = sessionId;
+        this.accountId = accountId;
+        this.computerId = computerId;
+        this.item = item;
+    }
+
+    /**
+     * Chụp trạng thái hiện tại của order (OrderItem sau đó có đổi cũng không ảnh hưởng)
+     */
+    public static OrderRecord snapshot(Session session, OrderItem o) {
+        OrderItem copy = new OrderItem(o.getOrderItemId(), o.getServiceItem(), o.getQuantity(),
+                o.getUnitPriceAtOrder(), o.getPaymentSource(), o.getStatus(), o.getOrderedAt());
+        return new OrderRecord(session.getSessionId(), session.getAccount().getUserId(),
+                session.getComputer().getComputerId(), copy);
+    }
+
+    public int getSessionId() {
+        return sessionId;
+    }
+
+    public int getAccountId() {
+        return accountId;
+    }
+
+    public int getComputerId() {
+        return computerId;
+    }
+
+    public OrderItem getItem() {
+        return item;
+    }
+}
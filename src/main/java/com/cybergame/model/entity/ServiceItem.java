@@ -7,11 +7,12 @@ public class ServiceItem implements Serializable {
     private static final long serialVersionUID = 1L;
     private int serviceId;
     private String name;
-    private double unitPrice;
-    private boolean locked;
+    private long unitPrice;        // Money
+    private volatile boolean locked;   // thread "inventory" tự khoá / mở
+    private int lowStockThreshold;  // tồn kho <= ngưỡng → tự khoá (xem Inventory)
     private ServiceCategory category;
 
-public ServiceItem(int id, String name, double price, ServiceCategory category) {
+public ServiceItem(int id, String name, long price, ServiceCategory category) {
     this.serviceId = id;
     this.name = name;
     this.unitPrice = price;
@@ -19,7 +20,7 @@ public ServiceItem(int id, String name, double price, ServiceCategory category)
 }
 
 
-    public double getUnitPrice() {
+    public long getUnitPrice() {
         return unitPrice;
     }
 
@@ -38,7 +39,7 @@ public ServiceItem(int id, String name, double price, ServiceCategory category)
         this.name = name;
     }
 
-    public void setUnitPrice(double unitPrice) {
+    public void setUnitPrice(long unitPrice) {
         this.unitPrice = unitPrice;
     }
     public boolean isLocked() {
@@ -53,6 +54,14 @@ public ServiceItem(int id, String name, double price, ServiceCategory category)
         locked = false;
     }
 
+    public int getLowStockThreshold() {
+        return lowStockThreshold;
+    }
+
+    public void setLowStockThreshold(int lowStockThreshold) {
+        this.lowStockThreshold = lowStockThreshold;
+    }
+
     public ServiceCategory getCategory() {
         return category;
     }
@@ -3,6 +3,7 @@ package com.cybergame.model.entity;
 import com.cybergame.model.enums.OrderStatus;
 import com.cybergame.model.enums.PaymentSource;
 import com.cybergame.model.enums.SessionStatus;
+import com.cybergame.util.Money;
 
 import java.io.Serializable;
 import java.time.Duration;
@@ -21,10 +22,16 @@ public class Session implements Serializable {
     private Computer computer;
     private List<OrderItem> orderItems;
 
+    // giá giờ + giảm giá chốt 1 lần khi mở máy (Money / basis point)
+    private long pricePerHourAtStart;
+    private int timeDiscountBps;
+
     public Session(int id, Account acc, Computer comp) {
         this.sessionId = id;
         this.account = acc;
         this.computer = comp;
+        this.pricePerHourAtStart = comp.getPricePerHour();
+        this.timeDiscountBps = acc.getTimeDiscountBps();
         this.startTime = LocalDateTime.now();
         this.status = SessionStatus.RUNNING;
         this.orderItems = new ArrayList<>();
@@ -39,6 +46,22 @@ public class Session implements Serializable {
         return sessionId;
     }
 
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+
+    public long getPricePerHourAtStart() {
+        return pricePerHourAtStart;
+    }
+
+    public int getTimeDiscountBps() {
+        return timeDiscountBps;
+    }
+
     public SessionStatus getStatus() {
         return status;
     }
@@ -55,44 +78,46 @@ public class Session implements Serializable {
         orderItems.add(item);
     }
 
-    public double calcDurationHours() {
+    public long calcDurationSeconds() {
         LocalDateTime end = (endTime == null)
             ? LocalDateTime.now()
             : endTime;
 
-        long seconds = Duration.between(startTime, end).getSeconds();
-        return seconds / 3600.0;
+        return Duration.between(startTime, end).getSeconds();
+    }
+
+    public double calcDurationHours() {
+        return calcDurationSeconds() / 3600.0;
     }
 
 
-    public double calcTimeCost() {
-        return calcDurationHours()
-                * computer.getPricePerHour()
-                * account.getTimeDiscountRate();
+    // cùng công thức với Account.getBalance() → hoá đơn và số dư khớp nhau
+    public long calcTimeCost() {
+        return Money.timeCost(pricePerHourAtStart, calcDurationSeconds(), timeDiscountBps);
     }
 
-    public double calcServiceTotalFromAccount() {
-        return orderItems.stream()
+    public long calcServiceTotalFromAccount() {
+        return Money.applyRate(orderItems.stream()
             .filter(o -> o.getPaymentSource() == PaymentSource.ACCOUNT)
             .filter(o -> o.getStatus() != OrderStatus.CANCELLED)
-            .mapToDouble(OrderItem::getCost)
-            .sum() * account.getServiceDiscountRate();
+            .mapToLong(OrderItem::getCost)
+            .sum(), account.getServiceDiscountBps());
     }
 
-    public double calcServiceTotalCash() {
+    public long calcServiceTotalCash() {
         return orderItems.stream()
             .filter(o -> o.getPaymentSource() == PaymentSource.CASH)
             .filter(o -> o.getStatus() != OrderStatus.CANCELLED)
-            .mapToDouble(OrderItem::getCost)
+            .mapToLong(OrderItem::getCost)
             .sum();
     }
 
-    public double calcTotalFromAccount() {
-        return calcTimeCost() + calcServiceTotalFromAccount();
+    public long calcTotalFromAccount() {
+        return Money.add(calcTimeCost(), calcServiceTotalFromAccount());
     }
 
-    public double calcTotalAll() {
-        return calcTotalFromAccount() + calcServiceTotalCash();
+    public long calcTotalAll() {
+        return Money.add(calcTotalFromAccount(), calcServiceTotalCash());
     }
     public List<OrderItem> getOrderItems() {
         return orderItems;
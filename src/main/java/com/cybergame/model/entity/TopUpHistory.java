@@ -13,7 +13,7 @@ public class TopUpHistory {
     private Integer operatorId;    // NULL nếu admin
     private String operatorName;
 
-    private double amount;
+    private long amount;           // Money
     private LocalDateTime createdAt;
     private String note;
     public int getId() {
@@ -34,7 +34,7 @@ public class TopUpHistory {
     public String getOperatorName() {
         return operatorName;
     }
-    public double getAmount() {
+    public long getAmount() {
         return amount;
     }
     public LocalDateTime getCreatedAt() {
@@ -61,7 +61,7 @@ public class TopUpHistory {
     public void setOperatorName(String operatorName) {
         this.operatorName = operatorName;
     }
-    public void setAmount(double amount) {
+    public void setAmount(long amount) {
         this.amount = amount;
     }
     public void setCreatedAt(LocalDateTime createdAt) {
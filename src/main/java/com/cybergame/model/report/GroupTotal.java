@@ -0,0 +1,34 @@
+package com.cybergame.model.report;
+
+/**
+ * Tổng 1 nhóm (theo máy / theo tài khoản...) trong báo cáo
+ */
+public class GroupTotal {
+
+    private final String key;
+    private final long count;
+    private final long amount;   // Money
+
+    public GroupTotal(String key, long count, long amount) {
+        this.key = key;
+        this.count = count;
+        this.amount = amount;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    @Override
+    public String toString() {
+        return key + " x" + count + " = " + amount;
+    }
+}
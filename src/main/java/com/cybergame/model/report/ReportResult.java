@@ -0,0 +1,122 @@
+package com.cybergame.model.report;
+
+import com.cybergame.model.entity.Invoice;
+import com.cybergame.model.entity.OrderItem;
+import com.cybergame.model.entity.TopUpHistory;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Kết quả 1 lần chạy ReportEngine (chỉ đọc, UI chỉ việc hiển thị)
+ */
+public class ReportResult {
+
+    private final LocalDate from;
+    private final LocalDate to;
+
+    private final RevenueSummary summary;
+    private final long topUpAmount;
+    private final long topUpCount;
+
+    private final List<RollupRow> daily;            // mỗi ngày 1 dòng (dimension DAY), tăng dần
+    private final List<ServiceSales> services;      // theo số lượng giảm dần
+    private final List<GroupTotal> topAccounts;     // khách chi nhiều nhất, giảm dần
+
+    // dòng mới nhất cho bảng (giới hạn số dòng, mới nhất trước)
+    private final List<Invoice> recentInvoices;
+    private final List<TopUpHistory> recentTopUps;
+    private final List<OrderItem> recentItems;
+
+    // khoảng có nhiều dòng hơn giới hạn → bảng chỉ hiện phần mới nhất
+    private final boolean invoicesTruncated;
+    private final boolean topUpsTruncated;
+    private final boolean itemsTruncated;
+
+    private final long elapsedMillis;
+
+    public ReportResult(LocalDate from, LocalDate to,
+                        RevenueSummary summary, long topUpAmount, long topUpCount,
+                        List<RollupRow> daily, List<ServiceSales> services,
+                        List<GroupTotal> topAccounts,
+                        List<Invoice> recentInvoices, List<TopUpHistory> recentTopUps,
+                        List<OrderItem> recentItems,
+                        boolean invoicesTruncated, boolean topUpsTruncated, boolean itemsTruncated,
+                        long elapsedMillis) {
+        this.from = from;
+        this.to = to;
+        this.summary = summary;
+        this.topUpAmount = topUpAmount;
+        this.topUpCount = topUpCount;
+        this.daily = List.copyOf(daily);
+        this.services = List.copyOf(services);
+        this.topAccounts = List.copyOf(topAccounts);
+        this.recentInvoices = List.copyOf(recentInvoices);
+        this.recentTopUps = List.copyOf(recentTopUps);
+        this.recentItems = List.copyOf(recentItems);
+        this.invoicesTruncated = invoicesTruncated;
+        this.topUpsTruncated = topUpsTruncated;
+        this.itemsTruncated = itemsTruncated;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public RevenueSummary getSummary() {
+        return summary;
+    }
+
+    public long getTopUpAmount() {
+        return topUpAmount;
+    }
+
+    public long getTopUpCount() {
+        return topUpCount;
+    }
+
+    public List<RollupRow> getDaily() {
+        return daily;
+    }
+
+    public List<ServiceSales> getServices() {
+        return services;
+    }
+
+    public List<GroupTotal> getTopAccounts() {
+        return topAccounts;
+    }
+
+    public List<Invoice> getRecentInvoices() {
+        return recentInvoices;
+    }
+
+    public List<TopUpHistory> getRecentTopUps() {
+        return recentTopUps;
+    }
+
+    public List<OrderItem> getRecentItems() {
+        return recentItems;
+    }
+
+    public boolean isInvoicesTruncated() {
+        return invoicesTruncated;
+    }
+
+    public boolean isTopUpsTruncated() {
+        return topUpsTruncated;
+    }
+
+    public boolean isItemsTruncated() {
+        return itemsTruncated;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
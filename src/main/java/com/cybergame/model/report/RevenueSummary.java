@@ -0,0 +1,47 @@
+package com.cybergame.model.report;
+
+/**
+ * Tổng doanh thu hoá đơn trong 1 khoảng thời gian (SUM tính sẵn ở DB)
+ */
+public class RevenueSummary {
+
+    private final long invoiceCount;
+    private final long timeAmount;            // tiền máy
+    private final long serviceAccountAmount;  // dịch vụ trừ tài khoản
+    private final long serviceCashAmount;     // dịch vụ tiền mặt
+    private final long totalAmount;
+
+    public RevenueSummary(long invoiceCount, long timeAmount,
+                          long serviceAccountAmount, long serviceCashAmount,
+                          long totalAmount) {
+        this.invoiceCount = invoiceCount;
+        this.timeAmount = timeAmount;
+        this.serviceAccountAmount = serviceAccountAmount;
+        this.serviceCashAmount = serviceCashAmount;
+        this.totalAmount = totalAmount;
+    }
+
+    public long getInvoiceCount() {
+        return invoiceCount;
+    }
+
+    public long getTimeAmount() {
+        return timeAmount;
+    }
+
+    public long getServiceAccountAmount() {
+        return serviceAccountAmount;
+    }
+
+    public long getServiceCashAmount() {
+        return serviceCashAmount;
+    }
+
+    public long getServiceAmount() {
+        return serviceAccountAmount + serviceCashAmount;
+    }
+
+    public long getTotalAmount() {
+        return totalAmount;
+    }
+}
@@ -0,0 +1,106 @@
+package com.cybergame.model.report;
+
+import java.time.LocalDateTime;
+
+/**
+ * 1 dòng doanh thu gộp sẵn (bảng revenue_hourly / revenue_daily)
+ * Dùng cho cả dòng đọc lên lẫn phần cộng dồn (delta) khi ghi.
+ *
+ * dimension:
+ * - COMPUTER  (key = tên máy)     : tiền máy + dịch vụ theo hoá đơn, txCount = số hoá đơn
+ * - CATEGORY  (key = loại dịch vụ): tiền món (bỏ món huỷ), quantity, txCount = số dòng món
+ * - PAYMENT   (key = ACCOUNT|CASH): ACCOUNT = tiền máy + DV trừ tài khoản (txCount = số hoá đơn)
+ *                                   CASH    = DV tiền mặt + tiền nạp (txCount = số lần nạp)
+ * - DAY       (key rỗng)          : tổng 1 ngày do ReportEngine tính, txCount = số hoá đơn
+ */
+public class RollupRow {
+
+    public static final String COMPUTER = "COMPUTER";
+    public static final String CATEGORY = "CATEGORY";
+    public static final String PAYMENT = "PAYMENT";
+    public static final String DAY = "DAY";
+
+    private final LocalDateTime bucket;   // đầu giờ (hourly) hoặc đầu ngày (daily)
+    private final String dimension;
+    private final String key;
+
+    private final long timeAmount;
+    private final long serviceCash;
+    private final long serviceAccount;
+    private final long topUpAmount;
+    private final long quantity;
+    private final long txCount;
+
+    public RollupRow(LocalDateTime bucket, String dimension, String key,
+                     long timeAmount, long serviceCash, long serviceAccount,
+                     long topUpAmount, long quantity, long txCount) {
+        this.bucket = bucket;
+        this.dimension = dimension;
+        this.key = (key != null) ? key : "";
+        this.timeAmount = timeAmount;
+        this.serviceCash = serviceCash;
+        this.serviceAccount = serviceAccount;
+        this.topUpAmount = topUpAmount;
+        this.quantity = quantity;
+        this.txCount = txCount;
+    }
+
+    /**
+     * Cùng dòng, đổi dấu (dùng khi xoá hoá đơn / lịch sử nạp)
+     */
+    public RollupRow negate() {
+        return new RollupRow(bucket, dimension, key,
+                -timeAmount, -serviceCash, -serviceAccount,
+                -topUpAmount, -quantity, -txCount);
+    }
+
+    /**
+     * Cộng 2 dòng cùng bucket / dimension / key
+     */
+    public RollupRow plus(RollupRow o) {
+        return new RollupRow(bucket, dimension, key,
+                timeAmount + o.timeAmount, serviceCash + o.serviceCash,
+                serviceAccount + o.serviceAccount, topUpAmount + o.topUpAmount,
+                quantity + o.quantity, txCount + o.txCount);
+    }
+
+    public LocalDateTime getBucket() {
+        return bucket;
+    }
+
+    public String getDimension() {
+        return dimension;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getTimeAmount() {
+        return timeAmount;
+    }
+
+    public long getServiceCash() {
+        return serviceCash;
+    }
+
+    public long getServiceAccount() {
+        return serviceAccount;
+    }
+
+    public long getServiceAmount() {
+        return serviceCash + serviceAccount;
+    }
+
+    public long getTopUpAmount() {
+        return topUpAmount;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+
+    public long getTxCount() {
+        return txCount;
+    }
+}
@@ -0,0 +1,35 @@
+package com.cybergame.model.report;
+
+/**
+ * Doanh số 1 dịch vụ (GROUP BY service_id ở DB)
+ */
+public class ServiceSales {
+
+    private final int serviceId;
+    private final String serviceName;
+    private final long quantity;
+    private final long amount;   // Money
+
+    public ServiceSales(int serviceId, String serviceName, long quantity, long amount) {
+        this.serviceId = serviceId;
+        this.serviceName = serviceName;
+        this.quantity = quantity;
+        this.amount = amount;
+    }
+
+    public int getServiceId() {
+        return serviceId;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+}
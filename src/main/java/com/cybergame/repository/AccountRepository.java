@@ -1,11 +1,17 @@
 package com.cybergame.repository;
 
 import com.cybergame.model.entity.Account;
+import java.util.Collection;
 import java.util.List;
 
 public interface AccountRepository {
     void save(Account acc);
+    void saveAll(Collection<Account> accounts);   // 1 batch
     void delete(Account acc);
     Account findByUsername(String username);
+    Account findById(int id);
     List<Account> findAll();
+
+    // chỉ ghi số dư, 1 batch cho nhiều account (checkpoint)
+    void updateBalances(Collection<Account> accounts);
 }
@@ -1,10 +1,12 @@
 package com.cybergame.repository;
 
 import com.cybergame.model.entity.Computer;
+import java.util.Collection;
 import java.util.List;
 
 public interface ComputerRepository {
     void save(Computer c);
+    void saveAll(Collection<Computer> computers);   // 1 batch
     void delete(Computer c);
     List<Computer> findAll();
 }
@@ -1,10 +1,51 @@
 package com.cybergame.repository;
 
 import com.cybergame.model.entity.Invoice;
+import com.cybergame.model.entity.OrderItem;
+import com.cybergame.model.enums.PaymentSource;
+import com.cybergame.model.report.RevenueSummary;
+import com.cybergame.model.report.ServiceSales;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public interface InvoiceRepository {
     void save(Invoice i);
+    void saveAll(Collection<Invoice> invoices);   // 1 batch
     void delete(Invoice i);
     List<Invoice> findAll();
+
+    // ===== TRUY VẤN THEO KHOẢNG / TRANG =====
+
+    // hoá đơn trong [from, to), theo thời gian tăng dần
+    List<Invoice> findBetween(LocalDateTime from, LocalDateTime to);
+
+    // keyset: tối đa limit hoá đơn có id > afterId (trang đầu: afterId = 0)
+    List<Invoice> findPage(int afterId, int limit);
+
+    // streaming theo thời gian tăng dần: đọc từng lô từ DB, không giữ cả danh sách trong RAM
+    void forEachBetween(LocalDateTime from, LocalDateTime to, Consumer<Invoice> action);
+
+    // tối đa limit hoá đơn mới nhất trong [from, to), mới nhất trước (ORDER BY ... DESC LIMIT)
+    List<Invoice> findRecent(LocalDateTime from, LocalDateTime to, int limit);
+
+    // thời điểm hoá đơn sớm nhất (null nếu chưa có hoá đơn)
+    LocalDateTime findFirstCreatedAt();
+
+    // ===== BÁO CÁO: SUM / GROUP BY chạy ở DB =====
+    // from / to = null → không giới hạn; khoảng [from, to)
+
+    RevenueSummary sumRevenue(LocalDateTime from, LocalDateTime to);
+
+    // tiền dịch vụ theo nguồn tiền (bỏ món đã huỷ)
+    Map<PaymentSource, Long> sumServiceByPaymentSource(LocalDateTime from, LocalDateTime to);
+
+    // dịch vụ bán chạy nhất (theo số lượng)
+    List<ServiceSales> findTopServices(LocalDateTime from, LocalDateTime to, int limit);
+
+    // chi tiết món của các hoá đơn trong khoảng (mới nhất trước), limit <= 0 → lấy hết
+    List<OrderItem> findItems(LocalDateTime from, LocalDateTime to, int limit);
 }
@@ -0,0 +1,18 @@
+package com.cybergame.repository;
+
+import com.cybergame.model.entity.OrderRecord;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface OrderRepository {
+
+    // thêm mới hoặc cập nhật trạng thái (theo order id), 1 transaction cho cả lô
+    void saveAll(Collection<OrderRecord> orders);
+
+    // đánh dấu session đã đóng → order của nó không còn "đang xử lý" khi khởi động lại
+    void closeSessions(Collection<Integer> sessionIds);
+
+    // order PENDING / CONFIRMED của các session chưa đóng (khôi phục lúc khởi động)
+    List<OrderRecord> findOpen();
+}
@@ -0,0 +1,23 @@
+package com.cybergame.repository;
+
+import com.cybergame.model.report.RollupRow;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface RevenueRollupRepository {
+
+    // cộng dồn delta vào cả bảng giờ lẫn bảng ngày (1 transaction)
+    void apply(Collection<RollupRow> deltas);
+
+    // tính lại từ dữ liệu gốc cho các ngày trong [from, to], null = toàn bộ
+    void rebuild(LocalDate from, LocalDate to);
+
+    // dòng theo ngày trong [from, to], dimension = null → mọi dimension
+    List<RollupRow> findDaily(LocalDate from, LocalDate to, String dimension);
+
+    // dòng theo giờ trong [from, to)
+    List<RollupRow> findHourly(LocalDateTime from, LocalDateTime to, String dimension);
+}
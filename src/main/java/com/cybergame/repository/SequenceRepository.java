@@ -0,0 +1,7 @@
+package com.cybergame.repository;
+
+public interface SequenceRepository {
+
+    // giữ chỗ 1 block id liên tiếp [start, start + size), trả về start
+    long reserveBlock(String name, int size);
+}
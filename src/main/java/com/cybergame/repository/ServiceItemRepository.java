@@ -2,9 +2,23 @@ package com.cybergame.repository;
 
 import com.cybergame.model.entity.ServiceItem;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public interface ServiceItemRepository {
     void save(ServiceItem s);
     void delete(ServiceItem s);
     List<ServiceItem> findAll();
+
+    // tồn kho của các món có theo dõi (stock IS NOT NULL): service id → số lượng
+    Map<Integer, Long> findStock();
+
+    // ghi tồn kho 1 batch cho nhiều món; value null = bỏ theo dõi
+    void updateStock(Map<Integer, Long> stock);
+
+    // chỉ đổi cờ khoá (không ghi đè tên / giá / ngưỡng); autoLocked = do Inventory tự khoá
+    void updateLocked(int serviceId, boolean locked, boolean autoLocked);
+
+    // món đang bị Inventory tự khoá (services.auto_locked)
+    Set<Integer> findAutoLocked();
 }
@@ -2,9 +2,22 @@ package com.cybergame.repository;
 
 import com.cybergame.model.entity.Session;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface SessionRepository {
     void save(Session s);
+
+    // giữ chỗ account + máy rồi lưu; false (không lưu gì) nếu 1 trong 2 đã có session
+    boolean saveIfAbsent(Session s);
     void delete(Session s);
     List<Session> findRunningSessions();
+
+    // tra cứu O(1), null nếu không có session đang chạy
+    Session findById(int sessionId);
+    Session findByAccountId(int accountId);
+    Session findByComputerId(int computerId);
+
+    // duyệt session đang chạy, không copy danh sách
+    void forEachRunning(Consumer<Session> action);
+    int countRunning();
 }
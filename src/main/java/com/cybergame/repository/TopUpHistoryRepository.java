@@ -1,15 +1,32 @@
 package com.cybergame.repository;
 
 import com.cybergame.model.entity.TopUpHistory;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface TopUpHistoryRepository {
 
     void save(TopUpHistory history);
 
+    void saveAll(Collection<TopUpHistory> histories);   // 1 batch
+
     void delete(TopUpHistory history);
 
     List<TopUpHistory> findAll();
 
     List<TopUpHistory> findByAccount(int accountId);
+
+    // lịch sử nạp trong [from, to), thời gian tăng dần (như InvoiceRepository) — streaming từng lô
+    void forEachBetween(LocalDateTime from, LocalDateTime to, Consumer<TopUpHistory> action);
+
+    // tối đa limit lần nạp mới nhất trong [from, to), mới nhất trước
+    List<TopUpHistory> findRecent(LocalDateTime from, LocalDateTime to, int limit);
+
+    // thời điểm nạp sớm nhất (null nếu chưa có)
+    LocalDateTime findFirstCreatedAt();
+
+    // tổng tiền nạp trong [from, to) — SUM ở DB, null = không giới hạn
+    long sumAmount(LocalDateTime from, LocalDateTime to);
 }
@@ -0,0 +1,383 @@
+package com.cybergame.repository.column;
+
+import com.cybergame.model.entity.Invoice;
+import com.cybergame.model.report.GroupTotal;
+import com.cybergame.model.report.RevenueSummary;
+import com.cybergame.repository.InvoiceRepository;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Kho hoá đơn dạng cột trong RAM (cho phân tích nhanh)
+ * - Mỗi cột là 1 mảng nguyên thuỷ: long[] thời gian / tiền, int[] id
+ * - Tên tài khoản / tên máy mã hoá bằng từ điển → int[] mã
+ * - Hàng sắp theo thời gian → lọc khoảng = 2 lần tìm nhị phân, rồi quét liên tục
+ * - Truy vấn không tạo object theo từng hoá đơn
+ *
+ * Ghi: 1 writer (nạp lần đầu, thêm hoá đơn, xoá); đọc song song dưới read lock.
+ */
+public class InvoiceColumnStore {
+
+    private static final int MIN_CAPACITY = 1_024;
+
+    public enum Dimension { ACCOUNT, COMPUTER }
+
+    public enum Metric { TIME, SERVICE_CASH, SERVICE_ACCOUNT, TOTAL }
+
+    private static volatile InvoiceColumnStore defaultStore;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // kho dùng chung chỉ nhận hoá đơn mới sau khi đã nạp từ DB
+    private volatile boolean ready;
+
+    private int size;
+
+    // ===== CỘT =====
+    private int[] ids;
+    private long[] createdAt;       // ms (LocalDateTime coi như UTC, không đổi múi giờ)
+    private int[] accountIds;
+    private int[] accountNames;     // mã từ điển
+    private int[] computers;        // mã từ điển (hoá đơn chỉ lưu tên máy)
+    private long[] timeAmount;
+    private long[] serviceCash;
+    private long[] serviceAccount;
+    private long[] total;
+
+    private final Dictionary accountDict = new Dictionary();
+    private final Dictionary computerDict = new Dictionary();
+
+    /**
+     * Kho rỗng, dùng được ngay (tự nạp dữ liệu bằng append)
+     */
+    public InvoiceColumnStore(int initialCapacity) {
+        this(initialCapacity, true);
+    }
+
+    private InvoiceColumnStore(int initialCapacity, boolean ready) {
+        allocate(Math.max(MIN_CAPACITY, initialCapacity));
+        this.ready = ready;
+    }
+
+    /**
+     * Kho dùng chung cả app; nạp từ DB ở lần ensureLoaded() đầu tiên
+     */
+    public static InvoiceColumnStore getDefault() {
+        InvoiceColumnStore s = defaultStore;
+        if (s == null) {
+            synchronized (InvoiceColumnStore.class) {
+                if (defaultStore == null) {
+                    defaultStore = new InvoiceColumnStore(MIN_CAPACITY, false);
+                }
+                s = defaultStore;
+            }
+        }
+        return s;
+    }
+
+    /* ================= GHI ================= */
+
+    /**
+     * Nạp toàn bộ hoá đơn từ DB (chỉ lần đầu, các lần sau không làm gì)
+     */
+    public void ensureLoaded(InvoiceRepository repo) {
+        if (ready) return;
+
+        lock.writeLock().lock();
+        try {
+            if (ready) return;
+            // streaming theo created_at tăng dần → chỉ nối đuôi, không dựng List<Invoice>
+            repo.forEachBetween(null, null, this::insert);
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isLoaded() {
+        return ready;
+    }
+
+    /**
+     * Thêm hoá đơn vừa chốt (hoá đơn đã vào DB). Chưa nạp thì bỏ qua: lần nạp sẽ đọc từ DB.
+     * Xét ready dưới write lock: đang nạp thì chờ nạp xong rồi thêm (trùng với bản vừa nạp thì bỏ)
+     * → hoá đơn ghi xong giữa lúc nạp không bị mất.
+     */
+    public void append(Invoice inv) {
+        lock.writeLock().lock();
+        try {
+            if (!ready) return;
+            if (!contains(inv.getInvoiceId(), toMillis(inv.getCreatedAt()))) {
+                insert(inv);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean remove(int invoiceId) {
+        lock.writeLock().lock();
+        try {
+            for (int i = size - 1; i >= 0; i--) {
+                if (ids[i] == invoiceId) {
+                    shift(i + 1, i, size - i - 1);
+                    size--;
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // giữ thứ tự thời gian: hoá đơn đến trễ vài ms chỉ phải dời vài hàng cuối
+    private void insert(Invoice inv) {
+        if (size == ids.length) {
+            allocate(ids.length + (ids.length >> 1));
+        }
+
+        long ts = toMillis(inv.getCreatedAt());
+        int pos = size;
+        while (pos > 0 && createdAt[pos - 1] > ts) pos--;
+        if (pos < size) shift(pos, pos + 1, size - pos);
+
+        ids[pos] = inv.getInvoiceId();
+        createdAt[pos] = ts;
+        accountIds[pos] = inv.getAccountId();
+        accountNames[pos] = accountDict.code(inv.getAccountName());
+        computers[pos] = computerDict.code(inv.getComputerName());
+        timeAmount[pos] = inv.getTimeAmount();
+        serviceCash[pos] = inv.getServiceCashAmount();
+        serviceAccount[pos] = inv.getServiceAccountAmount();
+        total[pos] = inv.getTotalAmount();
+        size++;
+    }
+
+    // DATETIME làm tròn tới giây → bản nạp từ DB lệch tối đa 1s so với bản trong RAM
+    private boolean contains(int id, long ts) {
+        for (int i = size - 1; i >= 0 && createdAt[i] >= ts - 1_000; i--) {
+            if (ids[i] == id) return true;
+        }
+        return false;
+    }
+
+    private void shift(int from, int to, int length) {
+        System.arraycopy(ids, from, ids, to, length);
+        System.arraycopy(createdAt, from, createdAt, to, length);
+        System.arraycopy(accountIds, from, accountIds, to, length);
+        System.arraycopy(accountNames, from, accountNames, to, length);
+        System.arraycopy(computers, from, computers, to, length);
+        System.arraycopy(timeAmount, from, timeAmount, to, length);
+        System.arraycopy(serviceCash, from, serviceCash, to, length);
+        System.arraycopy(serviceAccount, from, serviceAccount, to, length);
+        System.arraycopy(total, from, total, to, length);
+    }
+
+    private void allocate(int capacity) {
+        if (ids == null) {
+            ids = new int[capacity];
+            createdAt = new long[capacity];
+            accountIds = new int[capacity];
+            accountNames = new int[capacity];
+            computers = new int[capacity];
+            timeAmount = new long[capacity];
+            serviceCash = new long[capacity];
+            serviceAccount = new long[capacity];
+            total = new long[capacity];
+            return;
+        }
+        ids = Arrays.copyOf(ids, capacity);
+        createdAt = Arrays.copyOf(createdAt, capacity);
+        accountIds = Arrays.copyOf(accountIds, capacity);
+        accountNames = Arrays.copyOf(accountNames, capacity);
+        computers = Arrays.copyOf(computers, capacity);
+        timeAmount = Arrays.copyOf(timeAmount, capacity);
+        serviceCash = Arrays.copyOf(serviceCash, capacity);
+        serviceAccount = Arrays.copyOf(serviceAccount, capacity);
+        total = Arrays.copyOf(total, capacity);
+    }
+
+    /* ================= ĐỌC ================= */
+
+    /**
+     * Tổng tiền các hoá đơn trong [from, to), null = không giới hạn
+     */
+    public RevenueSummary sum(LocalDateTime from, LocalDateTime to) {
+        lock.readLock().lock();
+        try {
+            int lo = lowerBound(from, 0);
+            int hi = lowerBound(to, size);
+
+            long time = 0, cash = 0, account = 0, all = 0;
+            for (int i = lo; i < hi; i++) {
+                time += timeAmount[i];
+                cash += serviceCash[i];
+                account += serviceAccount[i];
+                all += total[i];
+            }
+            return new RevenueSummary(Math.max(0, hi - lo), time, account, cash, all);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * GROUP BY máy / tài khoản: cộng vào mảng theo mã từ điển, không dùng Map theo hàng
+     */
+    public List<GroupTotal> groupBy(Dimension dimension, Metric metric,
+                                    LocalDateTime from, LocalDateTime to) {
+        lock.readLock().lock();
+        try {
+            Groups g = aggregate(dimension, metric, from, to);
+            List<GroupTotal> list = new ArrayList<>();
+            for (int code = 0; code < g.sums.length; code++) {
+                if (g.counts[code] > 0) list.add(g.toTotal(code));
+            }
+            return list;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * n nhóm có tổng lớn nhất (giảm dần), n > 0
+     */
+    public List<GroupTotal> topN(Dimension dimension, Metric metric,
+                                 LocalDateTime from, LocalDateTime to, int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("Số nhóm top phải > 0");
+        }
+        lock.readLock().lock();
+        try {
+            Groups g = aggregate(dimension, metric, from, to);
+
+            // chèn có thứ tự vào mảng n phần tử (n nhỏ, số nhóm nhỏ)
+            int[] best = new int[n];
+            int found = 0;
+            for (int code = 0; code < g.sums.length; code++) {
+                if (g.counts[code] == 0) continue;
+                if (found == best.length && g.sums[code] <= g.sums[best[found - 1]]) continue;
+
+                int pos = Math.min(found, best.length - 1);
+                while (pos > 0 && g.sums[best[pos - 1]] < g.sums[code]) {
+                    best[pos] = best[pos - 1];
+                    pos--;
+                }
+                best[pos] = code;
+                if (found < best.length) found++;
+            }
+
+            List<GroupTotal> list = new ArrayList<>(found);
+            for (int i = 0; i < found; i++) list.add(g.toTotal(best[i]));
+            return list;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Groups aggregate(Dimension dimension, Metric metric,
+                             LocalDateTime from, LocalDateTime to) {
+        int[] keys = (dimension == Dimension.ACCOUNT) ? accountNames : computers;
+        Dictionary dict = (dimension == Dimension.ACCOUNT) ? accountDict : computerDict;
+        long[] values = column(metric);
+
+        Groups g = new Groups(dict);
+        int lo = lowerBound(from, 0);
+        int hi = lowerBound(to, size);
+        for (int i = lo; i < hi; i++) {
+            int code = keys[i];
+            g.sums[code] += values[i];
+            g.counts[code]++;
+        }
+        return g;
+    }
+
+    private long[] column(Metric metric) {
+        return switch (metric) {
+            case TIME -> timeAmount;
+            case SERVICE_CASH -> serviceCash;
+            case SERVICE_ACCOUNT -> serviceAccount;
+            case TOTAL -> total;
+        };
+    }
+
+    // vị trí hàng đầu tiên có createdAt >= t (t = null → giá trị mặc định)
+    private int lowerBound(LocalDateTime t, int whenNull) {
+        if (t == null) return whenNull;
+
+        long key = toMillis(t);
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (createdAt[mid] < key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static long toMillis(LocalDateTime t) {
+        return t.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /* ================= INTERNAL ================= */
+
+    private static final class Groups {
+        final Dictionary dict;
+        final long[] sums;
+        final long[] counts;
+
+        Groups(Dictionary dict) {
+            this.dict = dict;
+            this.sums = new long[dict.size()];
+            this.counts = new long[dict.size()];
+        }
+
+        GroupTotal toTotal(int code) {
+            return new GroupTotal(dict.value(code), counts[code], sums[code]);
+        }
+    }
+
+    /**
+     * Từ điển chuỗi ↔ mã int liên tiếp (0, 1, 2...)
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int code(String value) {
+            String v = (value != null) ? value : "";
+            Integer c = codes.get(v);
+            if (c != null) return c;
+
+            int next = values.size();
+            codes.put(v, next);
+            values.add(v);
+            return next;
+        }
+
+        String value(int code) {
+            return values.get(code);
+        }
+
+        int size() {
+            return values.size();
+        }
+    }
+}
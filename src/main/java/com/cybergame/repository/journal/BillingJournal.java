@@ -0,0 +1,547 @@
+package com.cybergame.repository.journal;
+
+import com.cybergame.context.AppShutdown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Nhật ký tiền (append-only) ghi vào file memory-mapped
+ * - Mỗi record cố định 64 byte, có CRC32
+ * - Ghi vào vùng nhớ map, thread committer force() theo nhóm (group commit)
+ * - Khởi động: đọc lại phần sau CHECKPOINT cuối để dựng số dư + session đang mở
+ * - Vùng record là vòng tròn: header chỉ chỗ record cũ nhất còn giữ (đầu vòng)
+ * - Bỏ phần đã checkpoint = dời đầu vòng, chỉ làm SAU KHI CHECKPOINT mới đã force() xuống đĩa;
+ *   record cũ không bị chép / ghi đè trước đó → crash lúc nào cũng còn 1 checkpoint đầy đủ
+ * - Đầy vòng mà phần chưa checkpoint quá lớn → nhờ checkpoint rồi chờ, không ghi đè
+ * - Số dư ghi trong record là số dư GỐC của Account (chưa trừ tiền giờ đang chạy)
+ *
+ * Layout 1 record:
+ *  0 seq(8) | 8 time(8) | 16 type(1) + pad(3) | 20 accountId(4) | 24 computerId(4)
+ * 28 sessionId(4) | 32 amount(8) | 40 balance(8) | 48 aux(8) | 56 aux2(4) | 60 crc(4)
+ *
+ * Header (2 bản luân phiên ngay sau vùng record, đọc bản hợp lệ có generation lớn hơn):
+ *  0 magic(8) | 8 generation(8) | 16 headPos(8) | 24 headSeq(8) | 60 crc(4)
+ * File cũ chưa có header → đầu vòng ở vị trí 0.
+ */
+public class BillingJournal {
+
+    public static final int RECORD_SIZE = 64;
+
+    // ===== LOẠI RECORD =====
+    public static final byte SESSION_START = 1;
+    public static final byte SESSION_END = 2;
+    public static final byte ORDER_CHARGE = 3;
+    public static final byte ORDER_REFUND = 4;
+    public static final byte TOP_UP = 5;
+    public static final byte CHECKPOINT = 6;
+    public static final byte SESSION_OPEN = 7;   // session còn mở tại checkpoint
+
+    private static final long MAP_SIZE = 64L * 1024 * 1024;
+    private static final int SLOTS = (int) (MAP_SIZE / RECORD_SIZE);
+    // vùng record dùng quá ngưỡng này thì checkpoint kế tiếp dời đầu vòng
+    private static final long ROLL_THRESHOLD = MAP_SIZE / 2;
+    private static final long HEADER_MAGIC = 0x434742_4A524E4CL; // "CGBJRNL"
+    private static final long GROUP_COMMIT_MILLIS =
+            Long.getLong("cybergame.journal.groupCommitMillis", 5);
+    // đầy file: chờ checkpoint tối đa chừng này rồi báo lỗi (không ghi đè record chưa vào DB)
+    private static final long FULL_WAIT_MILLIS =
+            Long.getLong("cybergame.journal.fullWaitMillis", 30_000);
+
+    private static final String DEFAULT_PATH =
+            System.getProperty("cybergame.journal", "data/billing.journal");
+
+    private static volatile BillingJournal defaultInstance;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final CRC32 crc = new CRC32();
+
+    private long nextSeq;
+    private int position;            // vị trí ghi kế tiếp trong buffer
+    private int headPos;             // record cũ nhất còn giữ (đầu vòng)
+    private long headSeq;
+    private long headerGeneration;
+    private long writtenSeq;         // seq cuối đã ghi vào buffer
+    private volatile long durableSeq; // seq cuối đã force() xuống đĩa
+    private long checkpointedSeq;    // upToSeq của checkpoint cuối: record <= seq này đã vào DB
+    private volatile Runnable checkpointRequester;
+
+    private final Thread committer;
+    private volatile boolean closed;
+
+    /**
+     * Journal dùng chung cho cả app (mở lười ở lần gọi đầu)
+     */
+    public static BillingJournal getDefault() {
+        BillingJournal j = defaultInstance;
+        if (j == null) {
+            synchronized (BillingJournal.class) {
+                j = defaultInstance;
+                if (j == null) {
+                    j = open(Paths.get(DEFAULT_PATH));
+                    defaultInstance = j;
+                    // đóng sau cùng: các bước dừng trước còn ghi checkpoint vào journal
+                    AppShutdown.getInstance().register(AppShutdown.JOURNAL,
+                            "billing-journal", j::close);
+                }
+            }
+        }
+        return j;
+    }
+
+    public static BillingJournal open(Path path) {
+        try {
+            return new BillingJournal(path);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private BillingJournal(Path path) throws IOException {
+        this.path = path;
+        File parent = path.toAbsolutePath().getParent().toFile();
+        if (!parent.exists()) parent.mkdirs();
+
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, MAP_SIZE + 2 * RECORD_SIZE);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        readHeader();
+
+        // tìm đuôi hợp lệ để ghi tiếp
+        Recovery tail = scan();
+        this.position = tail.endPosition;
+        this.nextSeq = tail.lastSeq + 1;
+        this.writtenSeq = tail.lastSeq;
+        this.durableSeq = tail.lastSeq;
+        this.checkpointedSeq = tail.checkpointSeq;
+
+        this.committer = new Thread(this::commitLoop, "billing-journal-commit");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    /* ================= GHI ================= */
+
+    /**
+     * Ghi 1 record và chờ tới khi được force() xuống đĩa (group commit)
+     */
+    public long append(byte type, int accountId, int computerId, int sessionId,
+                       long amount, long balance, long aux, int aux2) {
+        long seq = appendAsync(System.currentTimeMillis(), type,
+                accountId, computerId, sessionId, amount, balance, aux, aux2);
+        awaitDurable(seq);
+        return seq;
+    }
+
+    public synchronized long appendAsync(long time, byte type,
+                                         int accountId, int computerId, int sessionId,
+                                         long amount, long balance, long aux, int aux2) {
+        if (closed) throw new IllegalStateException("Journal đã đóng");
+
+        if (isFull()) {
+            makeRoom();
+        }
+
+        long seq = nextSeq++;
+        int p = position;
+
+        buffer.putLong(p, seq);
+        buffer.putLong(p + 8, time);
+        buffer.put(p + 16, type);
+        buffer.put(p + 17, (byte) 0);
+        buffer.putShort(p + 18, (short) 0);
+        buffer.putInt(p + 20, accountId);
+        buffer.putInt(p + 24, computerId);
+        buffer.putInt(p + 28, sessionId);
+        buffer.putLong(p + 32, amount);
+        buffer.putLong(p + 40, balance);
+        buffer.putLong(p + 48, aux);
+        buffer.putInt(p + 56, aux2);
+        buffer.putInt(p + 60, checksum(p));
+
+        position = next(p);
+        writtenSeq = seq;
+
+        // xoá ô kế tiếp (luôn còn trống, không phải đầu vòng) → lần replay dừng đúng chỗ
+        buffer.putLong(position, 0L);
+        buffer.putInt(position + 60, 0);
+
+        notifyAll();
+        return seq;
+    }
+
+    /**
+     * Ghi CHECKPOINT: mọi record có seq <= upToSeq đã nằm trong DB.
+     * Danh sách session đang mở được chụp NGAY TRONG lock của journal
+     * → không lệch thứ tự với SESSION_START / SESSION_END ghi song song.
+     * Vùng dùng đã lớn thì dời đầu vòng qua các record <= upToSeq,
+     * sau khi checkpoint mới đã nằm trên đĩa.
+     */
+    public synchronized long checkpoint(long upToSeq, Supplier<List<OpenSession>> openSessions) {
+        List<OpenSession> open = openSessions.get();
+        long seq = appendAsync(System.currentTimeMillis(), CHECKPOINT,
+                0, 0, 0, 0, 0, upToSeq, open.size());
+        for (OpenSession s : open) {
+            seq = appendAsync(s.startMillis, SESSION_OPEN, s.accountId, s.computerId, s.sessionId,
+                    0, s.balance, s.pricePerHour, s.rateBps);
+        }
+        checkpointedSeq = Math.max(checkpointedSeq, upToSeq);
+
+        if ((long) used() * RECORD_SIZE > ROLL_THRESHOLD) {
+            release(checkpointedSeq);
+        }
+        notifyAll();
+        return seq;
+    }
+
+    /**
+     * Việc chạy khi journal đầy mà phần chưa checkpoint quá lớn
+     * (vd: BalanceCheckpointer.requestFlush). Phải chạy bất đồng bộ, không chờ ngay trong lời gọi.
+     */
+    public void setCheckpointRequester(Runnable requester) {
+        this.checkpointRequester = requester;
+    }
+
+    // đầy vòng: chỉ bỏ record đã checkpoint, không bao giờ ghi đè record chưa vào DB
+    private void makeRoom() {
+        long deadline = System.currentTimeMillis() + FULL_WAIT_MILLIS;
+        while (isFull()) {
+            if (closed) throw new IllegalStateException("Journal đã đóng");
+
+            long keep = writtenSeq - Math.min(checkpointedSeq, writtenSeq);
+            Runnable requester = checkpointRequester;
+            boolean timedOut = requester == null || System.currentTimeMillis() >= deadline;
+
+            // bỏ được 1 nửa vòng → đủ chỗ; hết thời gian chờ thì bỏ được chút nào hay chút đó
+            if ((keep * RECORD_SIZE <= ROLL_THRESHOLD || timedOut) && release(checkpointedSeq)) {
+                continue;
+            }
+            if (timedOut) {
+                throw new IllegalStateException("Journal đầy: " + keep
+                        + " record chưa checkpoint (DB không ghi được số dư?)");
+            }
+
+            requester.run();
+            try {
+                wait(GROUP_COMMIT_MILLIS * 20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Bị ngắt khi chờ checkpoint journal");
+            }
+        }
+    }
+
+    /*
+     * Dời đầu vòng qua các record có seq <= upToSeq (đã vào DB).
+     * Thứ tự an toàn khi crash:
+     *  1. force() → CHECKPOINT + SESSION_OPEN mới đã nằm trên đĩa
+     *  2. ghi header vào bản KHÔNG đang dùng rồi force() → header cũ còn nguyên tới lúc này
+     *  3. sau đó mới được ghi đè lên các ô vừa bỏ
+     * CHECKPOINT của upToSeq có seq > upToSeq nên luôn nằm lại trong vòng.
+     */
+    private boolean release(long upToSeq) {
+        int p = headPos;
+        while (p != position && buffer.getLong(p) <= upToSeq) {
+            p = next(p);
+        }
+        if (p == headPos || p == position) return false;
+
+        force();
+        writeHeader(p, buffer.getLong(p));
+        buffer.force();
+        return true;
+    }
+
+    private int used() {
+        return (int) (Math.floorMod((long) position - headPos, MAP_SIZE) / RECORD_SIZE);
+    }
+
+    // luôn chừa 1 ô trống giữa đuôi và đầu vòng
+    private boolean isFull() {
+        return used() >= SLOTS - 1;
+    }
+
+    private static int next(int p) {
+        p += RECORD_SIZE;
+        return (p >= MAP_SIZE) ? 0 : p;
+    }
+
+    /* ================= HEADER ================= */
+
+    private void readHeader() {
+        headPos = 0;
+        headSeq = 0;
+        headerGeneration = 0;
+        for (int i = 0; i < 2; i++) {
+            int h = (int) MAP_SIZE + i * RECORD_SIZE;
+            if (buffer.getLong(h) != HEADER_MAGIC || buffer.getInt(h + 60) != checksum(h)) continue;
+
+            long generation = buffer.getLong(h + 8);
+            long pos = buffer.getLong(h + 16);
+            if (generation <= headerGeneration
+                    || pos < 0 || pos >= MAP_SIZE || pos % RECORD_SIZE != 0) continue;
+
+            headerGeneration = generation;
+            headPos = (int) pos;
+            headSeq = buffer.getLong(h + 24);
+        }
+    }
+
+    private void writeHeader(int pos, long seq) {
+        long generation = headerGeneration + 1;
+        int h = (int) MAP_SIZE + (int) (generation % 2) * RECORD_SIZE;
+
+        for (int i = 0; i < RECORD_SIZE; i += 8) {
+            buffer.putLong(h + i, 0L);
+        }
+        buffer.putLong(h, HEADER_MAGIC);
+        buffer.putLong(h + 8, generation);
+        buffer.putLong(h + 16, pos);
+        buffer.putLong(h + 24, seq);
+        buffer.putInt(h + 60, checksum(h));
+
+        headerGeneration = generation;
+        headPos = pos;
+        headSeq = seq;
+    }
+
+    public synchronized long getWrittenSeq() {
+        return writtenSeq;
+    }
+
+    public void awaitDurable(long seq) {
+        if (durableSeq >= seq) return;
+        synchronized (this) {
+            while (durableSeq < seq && !closed) {
+                try {
+                    wait(GROUP_COMMIT_MILLIS * 4);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void commitLoop() {
+        while (!closed) {
+            try {
+                Thread.sleep(GROUP_COMMIT_MILLIS);
+                long target;
+                synchronized (this) {
+                    target = writtenSeq;
+                }
+                if (target > durableSeq) {
+                    buffer.force();
+                    synchronized (this) {
+                        durableSeq = target;
+                        notifyAll();
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                System.err.println("[JOURNAL] Không force được journal: " + e.getMessage());
+            }
+        }
+    }
+
+    private void force() {
+        buffer.force();
+        durableSeq = writtenSeq;
+        notifyAll();
+    }
+
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            force();
+            closed = true;
+            notifyAll();
+        }
+        committer.interrupt();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /* ================= ĐỌC LẠI (RECOVERY) ================= */
+
+    /**
+     * Đọc journal từ CHECKPOINT cuối cùng tới đuôi
+     */
+    public synchronized Recovery recover() {
+        return scan();
+    }
+
+    private Recovery scan() {
+        Recovery r = new Recovery();
+        long prevSeq = Math.max(headSeq - 1, 0);
+        int p = headPos;
+
+        // vòng 1: tìm đuôi hợp lệ + checkpoint cuối ĐỦ bộ SESSION_OPEN
+        // (crash giữa chừng lúc ghi checkpoint → dùng checkpoint trước đó)
+        int checkpointPos = -1;
+        int pendingPos = -1;
+        int pendingOpen = 0;
+        for (int n = 0; n < SLOTS - 1; n++) {
+            long seq = buffer.getLong(p);
+            if (seq <= prevSeq || buffer.getInt(p + 60) != checksum(p)) break;
+
+            byte type = buffer.get(p + 16);
+            if (type == CHECKPOINT) {
+                pendingPos = p;
+                pendingOpen = buffer.getInt(p + 56);
+            } else if (type == SESSION_OPEN && pendingPos >= 0) {
+                pendingOpen--;
+            }
+            if (pendingPos >= 0 && pendingOpen <= 0) {
+                checkpointPos = pendingPos;
+                pendingPos = -1;
+            }
+
+            prevSeq = seq;
+            p = next(p);
+        }
+        r.endPosition = p;
+        r.lastSeq = prevSeq;
+
+        // vòng 2: áp dụng mọi record chưa vào DB (seq > upToSeq của checkpoint cuối)
+        long upToSeq = (checkpointPos >= 0) ? buffer.getLong(checkpointPos + 48) : 0;
+        r.checkpointSeq = upToSeq;
+        for (int q = headPos; q != r.endPosition; q = next(q)) {
+            if (q == checkpointPos) {
+                r.applyCheckpoint(buffer.getLong(q + 8));
+            } else if (buffer.getLong(q) > upToSeq) {
+                r.apply(buffer, q);
+            }
+        }
+        return r;
+    }
+
+    private int checksum(int p) {
+        crc.reset();
+        for (int i = 0; i < RECORD_SIZE - 4; i++) {
+            crc.update(buffer.get(p + i));
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Session đang mở (đủ dữ liệu để tính lại tiền giờ)
+     */
+    public static final class OpenSession {
+        public final int sessionId;
+        public final int accountId;
+        public final int computerId;
+        public final long startMillis;
+        public final long balance;       // số dư gốc (Money) của account lúc ghi
+        public final long pricePerHour;  // Money
+        public final int rateBps;
+
+        public OpenSession(int sessionId, int accountId, int computerId, long startMillis,
+                           long balance, long pricePerHour, int rateBps) {
+            this.sessionId = sessionId;
+            this.accountId = accountId;
+            this.computerId = computerId;
+            this.startMillis = startMillis;
+            this.balance = balance;
+            this.pricePerHour = pricePerHour;
+            this.rateBps = rateBps;
+        }
+    }
+
+    /**
+     * Kết quả replay: số dư gốc cuối cùng của từng account + session còn mở
+     */
+    public static final class Recovery {
+        private final Map<Integer, Long> balances = new LinkedHashMap<>();
+        private final Map<Integer, OpenSession> openSessions = new LinkedHashMap<>();
+        private long lastSeq;
+        private long checkpointSeq;
+        private long lastTimeMillis;
+        private int endPosition;
+        private int replayed;
+
+        // session mở trước checkpoint được ghi lại bằng SESSION_OPEN ngay sau nó
+        private void applyCheckpoint(long time) {
+            openSessions.clear();
+            lastTimeMillis = Math.max(lastTimeMillis, time);
+        }
+
+        private void apply(MappedByteBuffer b, int p) {
+            long time = b.getLong(p + 8);
+            byte type = b.get(p + 16);
+            int accountId = b.getInt(p + 20);
+            int computerId = b.getInt(p + 24);
+            int sessionId = b.getInt(p + 28);
+            long balance = b.getLong(p + 40);
+
+            replayed++;
+
+            switch (type) {
+                case SESSION_START, SESSION_OPEN -> {
+                    lastTimeMillis = Math.max(lastTimeMillis, time);
+                    openSessions.put(sessionId, new OpenSession(sessionId, accountId, computerId,
+                            time, balance, b.getLong(p + 48), b.getInt(p + 56)));
+                    balances.put(accountId, balance);
+                }
+                case SESSION_END -> {
+                    lastTimeMillis = Math.max(lastTimeMillis, time);
+                    openSessions.remove(sessionId);
+                    balances.put(accountId, balance);
+                }
+                case ORDER_CHARGE, ORDER_REFUND, TOP_UP -> {
+                    lastTimeMillis = Math.max(lastTimeMillis, time);
+                    balances.put(accountId, balance);
+                }
+                default -> { }
+            }
+        }
+
+        public Map<Integer, Long> getBalances() {
+            return balances;
+        }
+
+        public List<OpenSession> getOpenSessions() {
+            return new ArrayList<>(openSessions.values());
+        }
+
+        public long getLastSeq() {
+            return lastSeq;
+        }
+
+        // thời điểm record cuối → coi như lúc app dừng
+        public long getLastTimeMillis() {
+            return lastTimeMillis;
+        }
+
+        public int getReplayedCount() {
+            return replayed;
+        }
+    }
+}
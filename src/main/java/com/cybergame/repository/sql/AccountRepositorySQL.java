@@ -3,16 +3,17 @@ package com.cybergame.repository.sql;
 import com.cybergame.model.entity.Account;
 import com.cybergame.repository.AccountRepository;
 
+import com.cybergame.util.Money;
+
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 public class AccountRepositorySQL implements AccountRepository {
 
-    @Override
-    public void save(Account acc) {
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement("""
+    // cùng 1 chuỗi SQL → pool dùng lại PreparedStatement đã cache
+    private static final String UPSERT_SQL = """
                 INSERT INTO accounts
                 (id, username, password, display_name, phone, balance, locked, vip)
                 VALUES (?, ?, ?, ?, ?, ?, ?, ?)
@@ -21,23 +22,83 @@ public class AccountRepositorySQL implements AccountRepository {
                     locked  = VALUES(locked),
                     vip     = VALUES(vip),
                     phone   = VALUES(phone)
-             """)) {
+             """;
 
-            ps.setInt(1, acc.getUserId());
-            ps.setString(2, acc.getUsername());
-            ps.setString(3, acc.getPasswordHash());
-            ps.setString(4, acc.getDisplayName());
-            ps.setString(5, acc.getPhone());
-            ps.setDouble(6, acc.getBalance());
-            ps.setBoolean(7, acc.isLocked());
-            ps.setBoolean(8, acc.getTimeDiscountRate() < 1);
+    @Override
+    public void save(Account acc) {
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(UPSERT_SQL)) {
 
+            bind(ps, acc);
             ps.executeUpdate();
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    @Override
+    public void saveAll(Collection<Account> accounts) {
+        if (accounts.isEmpty()) return;
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(UPSERT_SQL)) {
+
+            conn.setAutoCommit(false);
+            try {
+                for (Account acc : accounts) {
+                    bind(ps, acc);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void bind(PreparedStatement ps, Account acc) throws SQLException {
+        ps.setInt(1, acc.getUserId());
+        ps.setString(2, acc.getUsername());
+        ps.setString(3, acc.getPasswordHash());
+        ps.setString(4, acc.getDisplayName());
+        ps.setString(5, acc.getPhone());
+        ps.setBigDecimal(6, Money.toDecimal(acc.getBalance()));
+        ps.setBoolean(7, acc.isLocked());
+        ps.setBoolean(8, acc.isVip());
+    }
+
+    @Override
+    public void updateBalances(Collection<Account> accounts) {
+        if (accounts.isEmpty()) return;
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "UPDATE accounts SET balance=? WHERE id=?")) {
+
+            conn.setAutoCommit(false);
+            try {
+                for (Account acc : accounts) {
+                    ps.setBigDecimal(1, Money.toDecimal(acc.getBalance()));
+                    ps.setInt(2, acc.getUserId());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public Account findByUsername(String username) {
         try (Connection conn = DBConnection.getConnection();
@@ -48,7 +109,31 @@ public class AccountRepositorySQL implements AccountRepository {
             ps.setString(1, username);
             ResultSet rs = ps.executeQuery();
             if (!rs.next()) return null;
+            return mapAccount(rs);
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public Account findById(int id) {
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps =
+                     conn.prepareStatement(
+                             "SELECT * FROM accounts WHERE id=?")) {
+
+            ps.setInt(1, id);
+            ResultSet rs = ps.executeQuery();
+            if (!rs.next()) return null;
+            return mapAccount(rs);
 
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Account mapAccount(ResultSet rs) throws SQLException {
             Account acc = new Account(
                     rs.getInt("id"),
                     rs.getString("username"),
@@ -58,14 +143,10 @@ public class AccountRepositorySQL implements AccountRepository {
                     rs.getBoolean("vip")
             );
 
-            acc.topUp(rs.getDouble("balance"));
+            acc.restoreBalance(Money.fromDecimal(rs.getBigDecimal("balance")));
             if (rs.getBoolean("locked")) acc.lock();
 
             return acc;
-
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
     }
 
     @Override
@@ -88,7 +169,7 @@ public class AccountRepositorySQL implements AccountRepository {
                         rs.getBoolean("vip")
                 );
 
-                acc.topUp(rs.getDouble("balance"));
+                acc.restoreBalance(Money.fromDecimal(rs.getBigDecimal("balance")));
                 if (rs.getBoolean("locked")) acc.lock();
 
                 list.add(acc);
@@ -4,33 +4,65 @@ import com.cybergame.model.entity.Computer;
 import com.cybergame.model.enums.ComputerStatus;
 import com.cybergame.repository.ComputerRepository;
 
+import com.cybergame.util.Money;
+
 import java.sql.*;
 import java.util.*;
 
 public class ComputerRepositorySQL implements ComputerRepository {
 
-    @Override
-    public void save(Computer c) {
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement("""
+    private static final String UPSERT_SQL = """
                 INSERT INTO computers
                 (id, name, price_per_hour, status)
                 VALUES (?, ?, ?, ?)
                 ON DUPLICATE KEY UPDATE
                 status=VALUES(status)
-             """)) {
+             """;
 
-            ps.setInt(1, c.getComputerId());
-            ps.setString(2, c.getName());
-            ps.setDouble(3, c.getPricePerHour());
-            ps.setString(4, c.getStatus().name());
+    @Override
+    public void save(Computer c) {
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(UPSERT_SQL)) {
 
+            bind(ps, c);
             ps.executeUpdate();
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    @Override
+    public void saveAll(Collection<Computer> computers) {
+        if (computers.isEmpty()) return;
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(UPSERT_SQL)) {
+
+            conn.setAutoCommit(false);
+            try {
+                for (Computer c : computers) {
+                    bind(ps, c);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void bind(PreparedStatement ps, Computer c) throws SQLException {
+        ps.setInt(1, c.getComputerId());
+        ps.setString(2, c.getName());
+        ps.setBigDecimal(3, Money.toDecimal(c.getPricePerHour()));
+        ps.setString(4, c.getStatus().name());
+    }
+
     @Override
     public List<Computer> findAll() {
         List<Computer> list = new ArrayList<>();
@@ -42,7 +74,7 @@ public class ComputerRepositorySQL implements ComputerRepository {
                 Computer c = new Computer(
                     rs.getInt("id"),
                     rs.getString("name"),
-                    rs.getDouble("price_per_hour")
+                    Money.fromDecimal(rs.getBigDecimal("price_per_hour"))
                 );
                 if (ComputerStatus.valueOf(rs.getString("status")) == ComputerStatus.IN_USE) {
                     c.markInUse();
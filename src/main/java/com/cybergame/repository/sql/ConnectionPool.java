@@ -0,0 +1,687 @@
+package com.cybergame.repository.sql;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool kết nối JDBC có giới hạn
+ * - Tối đa maxSize kết nối, hết thì chờ tối đa waitTimeout rồi báo lỗi
+ * - Kiểm tra kết nối (isValid) khi mượn nếu đã nằm yên lâu
+ * - Kết nối rảnh quá idleTimeout bị đóng bớt
+ * - Mượn quá leakThreshold mà chưa trả → in cảnh báo kèm thread đã mượn (0 = tắt);
+ *   chụp stack chỗ mượn chỉ khi bật -Dcybergame.db.leakStackTrace=true (tốn 1 Exception / lần mượn)
+ *
+ * Connection trả ra là proxy: close() = trả về pool, không đóng socket.
+ * Mỗi kết nối giữ cache PreparedStatement theo câu SQL (LRU, statementCacheSize):
+ * prepareStatement(sql) lần 2 trở đi không phải prepare lại trên server.
+ * Đóng statement trong cache vẫn đóng các ResultSet của nó và trả cài đặt
+ * (fetchSize, maxRows, queryTimeout...) về mặc định như JDBC.
+ */
+public class ConnectionPool {
+
+    /**
+     * Nguồn tạo kết nối thật (DriverManager, hoặc JDBC nhúng khi kiểm thử)
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    // kết nối vừa dùng trong khoảng này thì bỏ qua bước isValid
+    private static final long VALIDATION_BYPASS_MILLIS = 500;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final boolean LEAK_STACK_TRACE = Boolean.getBoolean("cybergame.db.leakStackTrace");
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE =
+            Integer.getInteger("cybergame.db.statementCacheSize", 32);
+
+    private final ConnectionFactory factory;
+    private final int maxSize;
+    private final long waitTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long leakThresholdMillis;
+    private final int statementCacheSize;
+
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();   // LIFO, khoá bằng chính nó
+    private final Map<PooledConnection, Boolean> borrowed = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    // ===== METRICS =====
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong destroyedCount = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+    private final AtomicLong saturatedBorrows = new AtomicLong();
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+
+    public ConnectionPool(ConnectionFactory factory,
+                          int maxSize,
+                          long waitTimeoutMillis,
+                          long idleTimeoutMillis,
+                          long leakThresholdMillis) {
+        this(factory, maxSize, waitTimeoutMillis, idleTimeoutMillis, leakThresholdMillis,
+                DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    public ConnectionPool(ConnectionFactory factory,
+                          int maxSize,
+                          long waitTimeoutMillis,
+                          long idleTimeoutMillis,
+                          long leakThresholdMillis,
+                          int statementCacheSize) {
+        if (maxSize <= 0 || waitTimeoutMillis < 0 || statementCacheSize < 0) {
+            throw new IllegalArgumentException("Cấu hình pool không hợp lệ");
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.waitTimeoutMillis = waitTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long checkEvery = (leakThresholdMillis > 0)
+                ? Math.min(idleTimeoutMillis, leakThresholdMillis) : idleTimeoutMillis;
+        long period = Math.max(1_000, checkEvery / 2);
+        housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /* ================= MƯỢN / TRẢ ================= */
+
+    public Connection borrow() throws SQLException {
+        if (closed) throw new SQLException("Pool đã đóng");
+
+        long begin = System.nanoTime();
+        if (permits.availablePermits() == 0) saturatedBorrows.incrementAndGet();
+
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Bị ngắt khi chờ kết nối", e);
+        }
+        if (!acquired) {
+            timeoutCount.incrementAndGet();
+            throw new SQLException("Hết kết nối: chờ quá " + waitTimeoutMillis
+                    + "ms (pool " + maxSize + ", đang mượn " + borrowed.size() + ")");
+        }
+
+        try {
+            PooledConnection pc = takeIdleValid();
+            if (pc == null) pc = open();
+
+            pc.borrowedAtMillis = System.currentTimeMillis();
+            pc.borrowedThread = Thread.currentThread().getName();
+            // chụp stack chỉ khi bật theo dõi rò rỉ + leakStackTrace
+            pc.borrowedBy = (leakThresholdMillis > 0 && LEAK_STACK_TRACE)
+                    ? new Exception("Kết nối được mượn tại đây") : null;
+            pc.leakReported = false;
+            borrowed.put(pc, Boolean.TRUE);
+
+            long wait = System.nanoTime() - begin;
+            borrowCount.incrementAndGet();
+            totalWaitNanos.addAndGet(wait);
+            maxWaitNanos.accumulateAndGet(wait, Math::max);
+            return pc.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PooledConnection takeIdleValid() {
+        while (true) {
+            PooledConnection pc;
+            synchronized (idle) {
+                pc = idle.pollFirst();
+            }
+            if (pc == null) return null;
+
+            long idleFor = System.currentTimeMillis() - pc.lastUsedMillis;
+            if (idleFor < VALIDATION_BYPASS_MILLIS || isValid(pc)) return pc;
+
+            validationFailures.incrementAndGet();
+            destroy(pc);
+        }
+    }
+
+    private boolean isValid(PooledConnection pc) {
+        try {
+            return pc.raw.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection open() throws SQLException {
+        PooledConnection pc = new PooledConnection(factory.create());
+        createdCount.incrementAndGet();
+        return pc;
+    }
+
+    // gọi từ handle.close(): dọn transaction dở rồi cất lại
+    private void release(PooledConnection pc) {
+        borrowed.remove(pc);
+        pc.borrowedBy = null;
+        pc.borrowedThread = null;
+        pc.lastUsedMillis = System.currentTimeMillis();
+
+        boolean reusable = !closed;
+        try {
+            if (!pc.raw.getAutoCommit()) {
+                pc.raw.rollback();
+                pc.raw.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            reusable = false;
+        }
+
+        if (reusable) {
+            synchronized (idle) {
+                idle.addFirst(pc);
+            }
+        } else {
+            destroy(pc);
+        }
+        permits.release();
+    }
+
+    private void destroy(PooledConnection pc) {
+        destroyedCount.incrementAndGet();
+        pc.closeStatements();
+        try {
+            pc.raw.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    /* ================= HOUSEKEEPING ================= */
+
+    private void housekeep() {
+        try {
+            long now = System.currentTimeMillis();
+
+            // đóng kết nối rảnh lâu (nằm cuối deque vì LIFO)
+            List<PooledConnection> expired = new ArrayList<>();
+            synchronized (idle) {
+                while (!idle.isEmpty()
+                        && now - idle.peekLast().lastUsedMillis > idleTimeoutMillis) {
+                    expired.add(idle.pollLast());
+                }
+            }
+            expired.forEach(this::destroy);
+
+            // mượn quá lâu chưa trả → nghi rò rỉ
+            if (leakThresholdMillis <= 0) return;
+            for (PooledConnection pc : borrowed.keySet()) {
+                if (!pc.leakReported && now - pc.borrowedAtMillis > leakThresholdMillis) {
+                    pc.leakReported = true;
+                    leakCount.incrementAndGet();
+                    reportLeak(pc, now);
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("[DB-POOL] Dọn pool lỗi: " + e);
+        }
+    }
+
+    private void reportLeak(PooledConnection pc, long now) {
+        System.err.println("[DB-POOL] Kết nối chưa trả sau " + (now - pc.borrowedAtMillis)
+                + "ms (thread " + pc.borrowedThread + ")");
+        Exception where = pc.borrowedBy;
+        if (where == null) return;
+        for (StackTraceElement frame : where.getStackTrace()) {
+            System.err.println("[DB-POOL]     at " + frame);
+        }
+    }
+
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        List<PooledConnection> all;
+        synchronized (idle) {
+            all = new ArrayList<>(idle);
+            idle.clear();
+        }
+        all.forEach(this::destroy);
+    }
+
+    /* ================= METRICS ================= */
+
+    public PoolStats getStats() {
+        int idleCount;
+        synchronized (idle) {
+            idleCount = idle.size();
+        }
+        long borrows = borrowCount.get();
+        return new PoolStats(maxSize, borrowed.size(), idleCount,
+                permits.getQueueLength(), borrows, timeoutCount.get(), saturatedBorrows.get(),
+                borrows == 0 ? 0 : totalWaitNanos.get() / borrows / 1_000,
+                maxWaitNanos.get() / 1_000,
+                createdCount.get(), destroyedCount.get(),
+                validationFailures.get(), leakCount.get(),
+                statementHits.get(), statementMisses.get());
+    }
+
+    /**
+     * Ảnh chụp số liệu của pool
+     */
+    public static final class PoolStats {
+        private final int maxSize;
+        private final int active;
+        private final int idle;
+        private final int waiting;
+        private final long borrows;
+        private final long timeouts;
+        private final long saturatedBorrows;
+        private final long avgWaitMicros;
+        private final long maxWaitMicros;
+        private final long created;
+        private final long destroyed;
+        private final long validationFailures;
+        private final long leaks;
+        private final long statementHits;
+        private final long statementMisses;
+
+        PoolStats(int maxSize, int active, int idle, int waiting,
+                  long borrows, long timeouts, long saturatedBorrows,
+                  long avgWaitMicros, long maxWaitMicros,
+                  long created, long destroyed, long validationFailures, long leaks,
+                  long statementHits, long statementMisses) {
+            this.maxSize = maxSize;
+            this.active = active;
+            this.idle = idle;
+            this.waiting = waiting;
+            this.borrows = borrows;
+            this.timeouts = timeouts;
+            this.saturatedBorrows = saturatedBorrows;
+            this.avgWaitMicros = avgWaitMicros;
+            this.maxWaitMicros = maxWaitMicros;
+            this.created = created;
+            this.destroyed = destroyed;
+            this.validationFailures = validationFailures;
+            this.leaks = leaks;
+            this.statementHits = statementHits;
+            this.statementMisses = statementMisses;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public int getActive() {
+            return active;
+        }
+
+        public int getIdle() {
+            return idle;
+        }
+
+        public int getWaiting() {
+            return waiting;
+        }
+
+        // tỉ lệ đang dùng so với giới hạn (1.0 = bão hoà)
+        public double getSaturation() {
+            return (double) active / maxSize;
+        }
+
+        public long getBorrows() {
+            return borrows;
+        }
+
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        // số lần mượn lúc pool đã hết chỗ (phải chờ)
+        public long getSaturatedBorrows() {
+            return saturatedBorrows;
+        }
+
+        public long getAvgWaitMicros() {
+            return avgWaitMicros;
+        }
+
+        public long getMaxWaitMicros() {
+            return maxWaitMicros;
+        }
+
+        public long getCreated() {
+            return created;
+        }
+
+        public long getDestroyed() {
+            return destroyed;
+        }
+
+        public long getValidationFailures() {
+            return validationFailures;
+        }
+
+        public long getLeaks() {
+            return leaks;
+        }
+
+        public long getStatementHits() {
+            return statementHits;
+        }
+
+        public long getStatementMisses() {
+            return statementMisses;
+        }
+
+        @Override
+        public String toString() {
+            return "pool active=" + active + "/" + maxSize
+                    + " idle=" + idle
+                    + " waiting=" + waiting
+                    + " borrows=" + borrows
+                    + " timeouts=" + timeouts
+                    + " saturated=" + saturatedBorrows
+                    + " wait=" + avgWaitMicros + "µs"
+                    + " maxWait=" + maxWaitMicros + "µs"
+                    + " created=" + created
+                    + " destroyed=" + destroyed
+                    + " invalid=" + validationFailures
+                    + " leaks=" + leaks
+                    + " stmtHit=" + statementHits
+                    + " stmtMiss=" + statementMisses;
+        }
+    }
+
+    /* ================= KẾT NỐI TRONG POOL ================= */
+
+    private final class PooledConnection {
+        final Connection raw;
+        volatile long lastUsedMillis = System.currentTimeMillis();
+        volatile long borrowedAtMillis;
+        volatile Exception borrowedBy;
+        volatile String borrowedThread;
+        volatile boolean leakReported;
+
+        // chỉ thread đang mượn kết nối truy cập → không cần lock
+        private final LinkedHashMap<String, CachedStatement> statements =
+                new LinkedHashMap<>(16, 0.75f, true);
+
+        PooledConnection(Connection raw) {
+            this.raw = raw;
+        }
+
+        PreparedStatement prepare(String sql) throws SQLException {
+            if (statementCacheSize == 0) return raw.prepareStatement(sql);
+
+            CachedStatement cached = statements.get(sql);
+            if (cached != null && cached.broken) {
+                // dọn lỗi lần trước → trạng thái không chắc, bỏ khỏi cache
+                statements.remove(sql);
+                cached.closeQuietly();
+                cached = null;
+            }
+            if (cached != null && !cached.inUse) {
+                statementHits.incrementAndGet();
+                return cached.newHandle();
+            }
+
+            // đang dùng (cùng câu SQL mở lồng nhau) → statement thường, không cache
+            statementMisses.incrementAndGet();
+            if (cached != null) return raw.prepareStatement(sql);
+
+            CachedStatement created = new CachedStatement(raw.prepareStatement(sql));
+            statements.put(sql, created);
+            evictStatements();
+            return created.newHandle();
+        }
+
+        private void evictStatements() {
+            Iterator<CachedStatement> it = statements.values().iterator();
+            while (statements.size() > statementCacheSize && it.hasNext()) {
+                CachedStatement oldest = it.next();
+                if (oldest.inUse) continue;
+                it.remove();
+                oldest.closeQuietly();
+            }
+        }
+
+        void closeStatements() {
+            statements.values().forEach(CachedStatement::closeQuietly);
+            statements.clear();
+        }
+
+        // mỗi lần mượn 1 handle mới → close() lần 2 / dùng sau khi trả đều bị chặn
+        Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new Handle(this));
+        }
+    }
+
+    private final class Handle implements InvocationHandler {
+        private final PooledConnection pc;
+        private boolean returned;
+
+        Handle(PooledConnection pc) {
+            this.pc = pc;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "prepareStatement" -> {
+                    if (!returned && args.length == 1) return pc.prepare((String) args[0]);
+                }
+                case "close" -> {
+                    synchronized (this) {
+                        if (returned) return null;
+                        returned = true;
+                    }
+                    release(pc);
+                    return null;
+                }
+                case "isClosed" -> {
+                    return returned || pc.raw.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Pooled[" + pc.raw + "]";
+                }
+                default -> { }
+            }
+
+            if (returned) throw new SQLException("Kết nối đã trả về pool");
+            try {
+                return method.invoke(pc.raw, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * PreparedStatement nằm trong cache: close() đóng ResultSet, dọn tham số / batch,
+     * trả cài đặt về mặc định rồi trả lại cache
+     */
+    private static final class CachedStatement {
+
+        // setter đổi cài đặt của statement (không phải tham số) → lúc trả phải đặt lại
+        private static final Set<String> SETTINGS = Set.of("setFetchSize", "setFetchDirection",
+                "setMaxRows", "setLargeMaxRows", "setMaxFieldSize", "setQueryTimeout",
+                "setEscapeProcessing", "setPoolable", "closeOnCompletion", "setCursorName");
+
+        private final PreparedStatement raw;
+        private final int fetchSize;
+        private final int fetchDirection;
+        private final int maxRows;
+        private final int maxFieldSize;
+        private final int queryTimeout;
+        private final boolean poolable;
+
+        // ResultSet đã phát ra qua handle hiện tại
+        private final List<ResultSet> results = new ArrayList<>();
+        private boolean settingsChanged;
+        private boolean inUse;
+        private boolean broken;
+
+        CachedStatement(PreparedStatement raw) throws SQLException {
+            this.raw = raw;
+            try {
+                this.fetchSize = raw.getFetchSize();
+                this.fetchDirection = raw.getFetchDirection();
+                this.maxRows = raw.getMaxRows();
+                this.maxFieldSize = raw.getMaxFieldSize();
+                this.queryTimeout = raw.getQueryTimeout();
+                this.poolable = raw.isPoolable();
+            } catch (SQLException e) {
+                closeQuietly();
+                throw e;
+            }
+        }
+
+        // chạy lại câu lệnh thì driver đã đóng ResultSet cũ → chỉ giữ cái còn mở
+        void track(ResultSet rs) throws SQLException {
+            Iterator<ResultSet> it = results.iterator();
+            while (it.hasNext()) {
+                if (it.next().isClosed()) it.remove();
+            }
+            results.add(rs);
+        }
+
+        // gọi khi handle đóng: statement về đúng trạng thái như vừa prepare
+        void reset() throws SQLException {
+            SQLException error = null;
+            for (ResultSet rs : results) {
+                try {
+                    rs.close();
+                } catch (SQLException e) {
+                    error = e;
+                }
+            }
+            results.clear();
+
+            try {
+                // kết quả của execute() mà người gọi chưa lấy ra
+                ResultSet current = raw.getResultSet();
+                if (current != null) current.close();
+
+                raw.clearParameters();
+                raw.clearBatch();
+                if (settingsChanged) {
+                    raw.setFetchSize(fetchSize);
+                    raw.setFetchDirection(fetchDirection);
+                    raw.setMaxRows(maxRows);
+                    raw.setMaxFieldSize(maxFieldSize);
+                    raw.setQueryTimeout(queryTimeout);
+                    raw.setEscapeProcessing(true);
+                    raw.setPoolable(poolable);
+                    settingsChanged = false;
+                }
+            } catch (SQLException e) {
+                error = e;
+            }
+            if (error != null) throw error;
+        }
+
+        PreparedStatement newHandle() {
+            inUse = true;
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    new StatementHandle(this));
+        }
+
+        void closeQuietly() {
+            try {
+                raw.close();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+
+    private static final class StatementHandle implements InvocationHandler {
+        private final CachedStatement cached;
+        private boolean closed;
+
+        StatementHandle(CachedStatement cached) {
+            this.cached = cached;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!closed) {
+                        closed = true;
+                        try {
+                            cached.reset();
+                        } catch (SQLException e) {
+                            cached.broken = true;
+                            throw e;
+                        } finally {
+                            cached.inUse = false;
+                        }
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return closed || cached.raw.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                default -> { }
+            }
+
+            if (closed) throw new SQLException("Statement đã đóng");
+            if (CachedStatement.SETTINGS.contains(method.getName())) cached.settingsChanged = true;
+            Object result;
+            try {
+                result = method.invoke(cached.raw, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof ResultSet rs) cached.track(rs);
+            return result;
+        }
+    }
+}
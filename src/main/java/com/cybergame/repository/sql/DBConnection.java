@@ -3,18 +3,68 @@ package com.cybergame.repository.sql;
 import java.sql.Connection;
 import java.sql.DriverManager;
 
+/**
+ * Lấy kết nối DB từ pool dùng chung
+ * Cấu hình: -Dcybergame.db.poolSize, poolTimeoutMillis, idleTimeoutSeconds, leakThresholdSeconds,
+ *          leakStackTrace,
+ *          streamFetchSize
+ */
 public class DBConnection {
 
     private static final String URL =
-        "jdbc:mysql://localhost:3306/cybergame?useSSL=false&serverTimezone=UTC";
+        "jdbc:mysql://localhost:3306/cybergame?useSSL=false&serverTimezone=UTC"
+        // executeBatch gửi 1 lệnh INSERT nhiều dòng thay vì từng dòng
+        + "&rewriteBatchedStatements=true"
+        // setFetchSize(n > 0) → đọc theo cursor từng n dòng thay vì nạp cả ResultSet
+        + "&useCursorFetch=true";
     private static final String USER = "root";
     private static final String PASS = "";
 
+    private static final int POOL_SIZE =
+            Integer.getInteger("cybergame.db.poolSize", 10);
+    private static final long WAIT_TIMEOUT_MILLIS =
+            Long.getLong("cybergame.db.poolTimeoutMillis", 5_000);
+    private static final long IDLE_TIMEOUT_MILLIS =
+            Long.getLong("cybergame.db.idleTimeoutSeconds", 300) * 1_000;
+    private static final long LEAK_THRESHOLD_MILLIS =
+            Long.getLong("cybergame.db.leakThresholdSeconds", 30) * 1_000;
+
+    // số dòng / lần fetch khi đọc kiểu streaming (forEach...)
+    static final int STREAM_FETCH_SIZE =
+            Integer.getInteger("cybergame.db.streamFetchSize", 500);
+
+    private static volatile ConnectionPool pool;
+
     public static Connection getConnection() {
         try {
-            return DriverManager.getConnection(URL, USER, PASS);
+            return getPool().borrow();
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
+
+    public static ConnectionPool getPool() {
+        ConnectionPool p = pool;
+        if (p == null) {
+            synchronized (DBConnection.class) {
+                if (pool == null) {
+                    pool = new ConnectionPool(
+                            () -> DriverManager.getConnection(URL, USER, PASS),
+                            POOL_SIZE, WAIT_TIMEOUT_MILLIS,
+                            IDLE_TIMEOUT_MILLIS, LEAK_THRESHOLD_MILLIS);
+                }
+                p = pool;
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Thay pool (vd: JDBC nhúng khi kiểm thử); pool cũ bị đóng
+     */
+    public static synchronized void setPool(ConnectionPool newPool) {
+        ConnectionPool old = pool;
+        pool = newPool;
+        if (old != null && old != newPool) old.close();
+    }
 }
@@ -1,6 +1,9 @@
 package com.cybergame.repository.sql;
 
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
 
 public class DBInit {
@@ -17,7 +20,7 @@ public class DBInit {
                 password VARCHAR(100),
                 display_name VARCHAR(100),
                 phone VARCHAR(20),
-                balance DOUBLE,
+                balance DECIMAL(15,2),
                 locked BOOLEAN DEFAULT FALSE,
                 vip BOOLEAN
             )
@@ -40,7 +43,7 @@ public class DBInit {
             CREATE TABLE IF NOT EXISTS computers (
                 id INT PRIMARY KEY AUTO_INCREMENT,
                 name VARCHAR(50),
-                price_per_hour DOUBLE,
+                price_per_hour DECIMAL(15,2),
                 status VARCHAR(20)
             )
             """);
@@ -51,9 +54,12 @@ public class DBInit {
             CREATE TABLE IF NOT EXISTS services (
                 id INT PRIMARY KEY AUTO_INCREMENT,
                 name VARCHAR(50),
-                price DOUBLE,
+                price DECIMAL(15,2),
                 category VARCHAR(30),
-                locked BOOLEAN DEFAULT FALSE
+                locked BOOLEAN DEFAULT FALSE,
+                stock BIGINT NULL,                  -- NULL = không theo dõi tồn kho
+                low_stock_threshold INT NOT NULL DEFAULT 0,
+                auto_locked BOOLEAN NOT NULL DEFAULT FALSE   -- khoá do Inventory (dưới ngưỡng)
             )
             """);
 
@@ -67,13 +73,44 @@ public class DBInit {
                 computer_name VARCHAR(50),
                 created_at DATETIME,
 
-                time_amount DOUBLE,
-                service_amount DOUBLE,
-                service_account_amount DOUBLE,
-                service_cash_amount DOUBLE,
+                time_amount DECIMAL(15,2),
+                service_amount DECIMAL(15,2),
+                service_account_amount DECIMAL(15,2),
+                service_cash_amount DECIMAL(15,2),
 
-                total DOUBLE,
-                order_items TEXT
+                total DECIMAL(15,2),
+                order_items TEXT,          -- bản cũ: Java serialize + Base64
+                order_items_bin BLOB       -- OrderItemCodec
+            )
+            """);
+
+            // ================= INVOICE ITEMS =================
+            // chi tiết món dạng bảng → báo cáo SUM / GROUP BY ngay ở DB
+            // created_at = thời điểm hoá đơn (lọc báo cáo theo ngày hoá đơn)
+            boolean itemsExisted = tableExists(conn, "invoice_items");
+            st.execute("""
+            CREATE TABLE IF NOT EXISTS invoice_items (
+                invoice_id INT NOT NULL,
+                line_no INT NOT NULL,
+                order_item_id INT,
+
+                service_id INT NOT NULL,
+                service_name VARCHAR(50),
+                category VARCHAR(30),
+
+                quantity INT NOT NULL,
+                unit_price DECIMAL(15,2) NOT NULL,
+                amount DECIMAL(15,2) NOT NULL,
+
+                payment_source VARCHAR(20) NOT NULL, -- ACCOUNT | CASH
+                status VARCHAR(20) NOT NULL,
+                ordered_at DATETIME,
+                created_at DATETIME NOT NULL,
+
+                PRIMARY KEY (invoice_id, line_no),
+                INDEX idx_items_service (service_id, created_at),
+                INDEX idx_items_payment (payment_source, created_at),
+                INDEX idx_items_created (created_at)
             )
             """);
 
@@ -89,14 +126,178 @@ public class DBInit {
                 operator_id INT NULL,
                 operator_name VARCHAR(100) NOT NULL,
 
-                amount DOUBLE NOT NULL,
+                amount DECIMAL(15,2) NOT NULL,
                 created_at DATETIME,
                 note VARCHAR(255)
             )
             """);
 
+            // ================= ORDERS =================
+            // order ghi ngay khi đặt / đổi trạng thái (OrderWriter) → crash không mất order đã trả tiền
+            // session_closed = 1: session đã kết thúc bình thường, order đã nằm trong hoá đơn
+            st.execute("""
+            CREATE TABLE IF NOT EXISTS orders (
+                id INT PRIMARY KEY,
+                session_id INT NOT NULL,
+                account_id INT NOT NULL,
+                computer_id INT NOT NULL,
+
+                service_id INT NOT NULL,
+                service_name VARCHAR(50),
+                category VARCHAR(30),
+
+                quantity INT NOT NULL,
+                unit_price DECIMAL(15,2) NOT NULL,
+                payment_source VARCHAR(20) NOT NULL, -- ACCOUNT | CASH
+                status VARCHAR(20) NOT NULL,
+                session_closed TINYINT(1) NOT NULL DEFAULT 0,
+
+                ordered_at DATETIME,
+                updated_at DATETIME NOT NULL,
+
+                INDEX idx_orders_open (session_closed, status),
+                INDEX idx_orders_session (session_id)
+            )
+            """);
+
+            // ================= REVENUE ROLLUP =================
+            // doanh thu gộp sẵn theo giờ / ngày, cộng dồn mỗi lần có hoá đơn / nạp tiền
+            // dimension: COMPUTER | CATEGORY | PAYMENT (xem RollupRow)
+            boolean rollupExisted = tableExists(conn, "revenue_daily");
+            for (String table : new String[]{"revenue_hourly", "revenue_daily"}) {
+                String bucketType = table.equals("revenue_daily") ? "DATE" : "DATETIME";
+                st.execute("""
+                CREATE TABLE IF NOT EXISTS %s (
+                    bucket %s NOT NULL,
+                    dimension VARCHAR(16) NOT NULL,
+                    dim_key VARCHAR(50) NOT NULL,
+
+                    time_amount DECIMAL(15,2) NOT NULL DEFAULT 0,
+                    service_cash DECIMAL(15,2) NOT NULL DEFAULT 0,
+                    service_account DECIMAL(15,2) NOT NULL DEFAULT 0,
+                    topup_amount DECIMAL(15,2) NOT NULL DEFAULT 0,
+                    quantity BIGINT NOT NULL DEFAULT 0,
+                    tx_count BIGINT NOT NULL DEFAULT 0,
+
+                    PRIMARY KEY (bucket, dimension, dim_key)
+                )
+                """.formatted(table, bucketType));
+            }
+
+            // ================= ID SEQUENCES =================
+            // cấp id theo block (hi/lo), xem IdAllocator
+            st.execute("""
+            CREATE TABLE IF NOT EXISTS id_sequences (
+                name VARCHAR(50) PRIMARY KEY,
+                next_id BIGINT NOT NULL
+            )
+            """);
+
+            // ================= MIGRATE DOUBLE → DECIMAL =================
+            // DB tạo từ bản cũ vẫn còn cột DOUBLE → đổi sang DECIMAL (tiền chính xác)
+            // cột đã đúng kiểu thì bỏ qua: MODIFY dựng lại cả bảng
+            migrateMoneyColumns(conn, st);
+
+            // ================= MIGRATE order_items → order_items_bin =================
+            addColumnIfMissing(conn, st, "invoices", "order_items_bin", "BLOB");
+
+            // ================= MIGRATE TỒN KHO MÓN =================
+            addColumnIfMissing(conn, st, "services", "stock", "BIGINT NULL");
+            addColumnIfMissing(conn, st, "services", "low_stock_threshold", "INT NOT NULL DEFAULT 0");
+            addColumnIfMissing(conn, st, "services", "auto_locked", "BOOLEAN NOT NULL DEFAULT FALSE");
+
+            // ================= INDEX THEO THỜI GIAN =================
+            // báo cáo lọc theo ngày → range scan thay vì quét cả bảng
+            addIndexIfMissing(conn, st, "invoices", "idx_invoices_created", "created_at");
+            addIndexIfMissing(conn, st, "topup_history", "idx_topup_created", "created_at");
+
+            // ================= MIGRATE order_items → invoice_items =================
+            if (!itemsExisted) {
+                try {
+                    new InvoiceRepositorySQL().backfillItems(conn);
+                } catch (SQLException e) {
+                    // xoá bảng vừa tạo → lần khởi động sau tách lại từ đầu (rollup dựng lại sau đó)
+                    st.execute("DROP TABLE invoice_items");
+                    if (!rollupExisted) {
+                        st.execute("DROP TABLE revenue_hourly");
+                        st.execute("DROP TABLE revenue_daily");
+                    }
+                    throw e;
+                }
+            }
+
+            // ================= ROLLUP LẦN ĐẦU =================
+            if (!rollupExisted) {
+                conn.setAutoCommit(false);
+                try {
+                    new RevenueRollupRepositorySQL().rebuild(conn, null, null);
+                    conn.commit();
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            }
+
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
+
+    private static boolean tableExists(Connection conn, String table) throws Exception {
+        try (ResultSet rs = conn.getMetaData().getTables(conn.getCatalog(), null, table, null)) {
+            return rs.next();
+        }
+    }
+
+    private static void addColumnIfMissing(Connection conn, Statement st,
+                                           String table, String column,
+                                           String type) throws Exception {
+        try (ResultSet rs = conn.getMetaData().getColumns(conn.getCatalog(), null, table, column)) {
+            if (rs.next()) return;
+        }
+        st.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + type);
+    }
+
+    private static void addIndexIfMissing(Connection conn, Statement st,
+                                          String table, String index,
+                                          String columns) throws Exception {
+        try (ResultSet rs = conn.getMetaData()
+                .getIndexInfo(conn.getCatalog(), null, table, false, true)) {
+            while (rs.next()) {
+                if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) return;
+            }
+        }
+        st.execute("CREATE INDEX " + index + " ON " + table + " (" + columns + ")");
+    }
+
+    private static void migrateMoneyColumns(Connection conn, Statement st) throws Exception {
+        String[][] columns = {
+                {"accounts", "balance", ""},
+                {"computers", "price_per_hour", ""},
+                {"services", "price", ""},
+                {"invoices", "time_amount", ""},
+                {"invoices", "service_amount", ""},
+                {"invoices", "service_account_amount", ""},
+                {"invoices", "service_cash_amount", ""},
+                {"invoices", "total", ""},
+                {"topup_history", "amount", " NOT NULL"}
+        };
+
+        for (String[] c : columns) {
+            if (isMoneyColumn(conn, c[0], c[1], !c[2].isEmpty())) continue;
+            st.execute("ALTER TABLE " + c[0]
+                    + " MODIFY " + c[1] + " DECIMAL(15,2)" + c[2]);
+        }
+    }
+
+    // đã là DECIMAL(15,2) (và NOT NULL nếu cần) → không phải MODIFY
+    private static boolean isMoneyColumn(Connection conn, String table, String column,
+                                         boolean notNull) throws Exception {
+        try (ResultSet rs = conn.getMetaData().getColumns(conn.getCatalog(), null, table, column)) {
+            if (!rs.next()) return false;
+            return "DECIMAL".equalsIgnoreCase(rs.getString("TYPE_NAME"))
+                    && rs.getInt("COLUMN_SIZE") == 15
+                    && rs.getInt("DECIMAL_DIGITS") == 2
+                    && (!notNull || rs.getInt("NULLABLE") == DatabaseMetaData.columnNoNulls);
+        }
+    }
 }
@@ -2,19 +2,29 @@ package com.cybergame.repository.sql;
 
 import com.cybergame.model.entity.Invoice;
 import com.cybergame.model.entity.OrderItem;
+import com.cybergame.model.entity.ServiceItem;
+import com.cybergame.model.enums.OrderStatus;
+import com.cybergame.model.enums.PaymentSource;
+import com.cybergame.model.enums.ServiceCategory;
+import com.cybergame.model.report.RevenueSummary;
+import com.cybergame.model.report.ServiceSales;
 import com.cybergame.repository.InvoiceRepository;
-import com.cybergame.util.SerializationUtil;
+import com.cybergame.util.Money;
+import com.cybergame.util.OrderItemCodec;
+import com.cybergame.util.LegacyOrderItems;
 
 import java.sql.*;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public class InvoiceRepositorySQL implements InvoiceRepository {
 
-    @Override
-    public void save(Invoice i) {
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement("""
+    private static final String INSERT_SQL = """
                 INSERT INTO invoices
                 (id, account_id, account_name, computer_name,
                  created_at,
@@ -23,90 +33,500 @@ public class InvoiceRepositorySQL implements InvoiceRepository {
                  service_account_amount,
                  service_cash_amount,
                  total,
-                 order_items)
+                 order_items_bin)
                 VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-             """)) {
+             """;
 
-            ps.setInt(1, i.getInvoiceId());
-            ps.setInt(2, i.getAccountId());
-            ps.setString(3, i.getAccountName());   // snapshot username
-            ps.setString(4, i.getComputerName());
-            ps.setTimestamp(5, Timestamp.valueOf(i.getCreatedAt()));
+    // chi tiết món: 1 dòng / OrderItem, ghi cùng transaction với hoá đơn
+    private static final String INSERT_ITEM_SQL = """
+                INSERT INTO invoice_items
+                (invoice_id, line_no, order_item_id,
+                 service_id, service_name, category,
+                 quantity, unit_price, amount,
+                 payment_source, status,
+                 ordered_at, created_at)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+             """;
 
-            ps.setDouble(6, i.getTimeAmount());
-            ps.setDouble(7, i.getServiceAmount());
-            ps.setDouble(8, i.getServiceAccountAmount());
-            ps.setDouble(9, i.getServiceCashAmount());
+    @Override
+    public void save(Invoice i) {
+        saveAll(List.of(i));
+    }
 
-            ps.setDouble(10, i.getTotalAmount());
+    @Override
+    public void saveAll(Collection<Invoice> invoices) {
+        if (invoices.isEmpty()) return;
 
-            // serialize order items (snapshot)
-            ps.setString(11,
-                    SerializationUtil.serialize(i.getOrderItems())
-            );
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(INSERT_SQL);
+             PreparedStatement psItem = conn.prepareStatement(INSERT_ITEM_SQL)) {
 
-            ps.executeUpdate();
+            conn.setAutoCommit(false);
+            try {
+                int items = 0;
+                for (Invoice i : invoices) {
+                    bind(ps, i);
+                    ps.addBatch();
+                    items += addItemBatch(psItem, i);
+                }
+                ps.executeBatch();
+                if (items > 0) psItem.executeBatch();
+                // doanh thu gộp cộng dồn cùng transaction → hoá đơn và rollup không lệch nhau
+                RevenueRollupRepositorySQL.apply(conn,
+                        RevenueRollupRepositorySQL.deltas(invoices, false));
+                conn.commit();
+            } catch (Exception e) {
+                conn.rollback();
+                throw e;
+            }
 
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    private void bind(PreparedStatement ps, Invoice i) throws Exception {
+        ps.setInt(1, i.getInvoiceId());
+        ps.setInt(2, i.getAccountId());
+        ps.setString(3, i.getAccountName());   // snapshot username
+        ps.setString(4, i.getComputerName());
+        ps.setTimestamp(5, Timestamp.valueOf(i.getCreatedAt()));
+
+        ps.setBigDecimal(6, Money.toDecimal(i.getTimeAmount()));
+        ps.setBigDecimal(7, Money.toDecimal(i.getServiceAmount()));
+        ps.setBigDecimal(8, Money.toDecimal(i.getServiceAccountAmount()));
+        ps.setBigDecimal(9, Money.toDecimal(i.getServiceCashAmount()));
+
+        ps.setBigDecimal(10, Money.toDecimal(i.getTotalAmount()));
+
+        // snapshot order items (mã hoá nhị phân gọn)
+        ps.setBytes(11, OrderItemCodec.encode(i.getOrderItems()));
+    }
+
+    private int addItemBatch(PreparedStatement ps, Invoice i) throws SQLException {
+        return addItemBatch(ps, i.getInvoiceId(), i.getCreatedAt(), i.getOrderItems());
+    }
+
+    private int addItemBatch(PreparedStatement ps, int invoiceId,
+                             LocalDateTime createdAt, List<OrderItem> items) throws SQLException {
+        if (items == null) return 0;
+
+        int line = 0;
+        for (OrderItem o : items) {
+            ServiceItem s = o.getServiceItem();
+
+            ps.setInt(1, invoiceId);
+            ps.setInt(2, ++line);
+            ps.setInt(3, o.getOrderItemId());
+            ps.setInt(4, s.getServiceId());
+            ps.setString(5, s.getName());
+            ps.setString(6, s.getCategory() != null ? s.getCategory().name() : null);
+            ps.setInt(7, o.getQuantity());
+            ps.setBigDecimal(8, Money.toDecimal(o.getUnitPriceAtOrder()));
+            ps.setBigDecimal(9, Money.toDecimal(o.getCost()));
+            ps.setString(10, o.getPaymentSource().name());
+            ps.setString(11, o.getStatus().name());
+            ps.setTimestamp(12, o.getOrderedAt() != null ? Timestamp.valueOf(o.getOrderedAt()) : null);
+            ps.setTimestamp(13, Timestamp.valueOf(createdAt));
+            ps.addBatch();
+        }
+        return line;
+    }
+
     @Override
     public List<Invoice> findAll() {
+        List<Invoice> list = new ArrayList<>();
+        forEach("SELECT * FROM invoices ORDER BY id", ps -> {}, list::add);
+        return list;
+    }
+
+    @Override
+    public List<Invoice> findBetween(LocalDateTime from, LocalDateTime to) {
+        List<Invoice> list = new ArrayList<>();
+        forEachBetween(from, to, list::add);
+        return list;
+    }
 
+    @Override
+    public List<Invoice> findPage(int afterId, int limit) {
         List<Invoice> list = new ArrayList<>();
 
+        // keyset: WHERE id > ? dùng thẳng PRIMARY KEY, không quét lại các trang trước như OFFSET
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT * FROM invoices WHERE id > ? ORDER BY id LIMIT ?")) {
+
+            ps.setInt(1, afterId);
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(map(rs));
+                }
+            }
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+        return list;
+    }
+
+    @Override
+    public void forEachBetween(LocalDateTime from, LocalDateTime to, Consumer<Invoice> action) {
+        forEach("SELECT * FROM invoices" + timeFilter("created_at", from, to)
+                        + " ORDER BY created_at, id",
+                ps -> bindTime(ps, 1, from, to), action);
+    }
+
+    @Override
+    public List<Invoice> findRecent(LocalDateTime from, LocalDateTime to, int limit) {
+        List<Invoice> list = new ArrayList<>();
+        if (limit <= 0) return list;
+
+        // index created_at đọc ngược → dừng sau limit dòng, không quét cả khoảng
+        forEach("SELECT * FROM invoices" + timeFilter("created_at", from, to)
+                        + " ORDER BY created_at DESC, id DESC LIMIT ?",
+                ps -> ps.setInt(bindTime(ps, 1, from, to), limit), list::add);
+        return list;
+    }
+
+    @Override
+    public LocalDateTime findFirstCreatedAt() {
         try (Connection conn = DBConnection.getConnection();
              Statement st = conn.createStatement();
-             ResultSet rs = st.executeQuery("SELECT * FROM invoices")) {
+             ResultSet rs = st.executeQuery("SELECT MIN(created_at) FROM invoices")) {
 
-            while (rs.next()) {
+            Timestamp first = rs.next() ? rs.getTimestamp(1) : null;
+            return (first != null) ? first.toLocalDateTime() : null;
 
-                // 🚫 KHÔNG TÍNH TOÁN – LOAD THUẦN DB
-                Invoice inv = new Invoice(
-                        rs.getInt("id"),
-                        rs.getInt("account_id"),
-                        rs.getString("account_name"),
-                        rs.getString("computer_name"),
-                        rs.getTimestamp("created_at").toLocalDateTime(),
-
-                        rs.getDouble("time_amount"),
-                        rs.getDouble("service_amount"),
-                        rs.getDouble("service_account_amount"),
-                        rs.getDouble("service_cash_amount"),
-                        rs.getDouble("total")
-                );
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-                // deserialize order_items (nếu có)
-                String data = rs.getString("order_items");
-                if (data != null && !data.isEmpty()) {
-                    List<OrderItem> orders =
-                            SerializationUtil.deserialize(data);
-                    inv.getOrderItems().addAll(orders);
-                }
+    /**
+     * Đọc streaming: forward-only + fetch size → mỗi lần chỉ giữ 1 lô dòng trong RAM,
+     * hoá đơn nào xử lý xong là bỏ, không dựng cả List
+     */
+    private void forEach(String sql, Binder binder, Consumer<Invoice> action) {
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
 
-                list.add(inv);
+            ps.setFetchSize(DBConnection.STREAM_FETCH_SIZE);
+            binder.bind(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    action.accept(map(rs));
+                }
             }
 
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
+    }
 
-        return list;
+    @FunctionalInterface
+    private interface Binder {
+        void bind(PreparedStatement ps) throws SQLException;
+    }
+
+    private Invoice map(ResultSet rs) throws SQLException {
+        // 🚫 KHÔNG TÍNH TOÁN – LOAD THUẦN DB
+        Invoice inv = new Invoice(
+                rs.getInt("id"),
+                rs.getInt("account_id"),
+                rs.getString("account_name"),
+                rs.getString("computer_name"),
+                rs.getTimestamp("created_at").toLocalDateTime(),
+
+                Money.fromDecimal(rs.getBigDecimal("time_amount")),
+                Money.fromDecimal(rs.getBigDecimal("service_amount")),
+                Money.fromDecimal(rs.getBigDecimal("service_account_amount")),
+                Money.fromDecimal(rs.getBigDecimal("service_cash_amount")),
+                Money.fromDecimal(rs.getBigDecimal("total"))
+        );
+
+        inv.getOrderItems().addAll(readItems(rs));
+        return inv;
     }
 
     @Override
     public void delete(Invoice i) {
         try (Connection conn = DBConnection.getConnection();
+             PreparedStatement psLock =
+                     conn.prepareStatement("SELECT id FROM invoices WHERE id=? FOR UPDATE");
+             PreparedStatement psItem =
+                     conn.prepareStatement("DELETE FROM invoice_items WHERE invoice_id=?");
              PreparedStatement ps =
                      conn.prepareStatement("DELETE FROM invoices WHERE id=?")) {
 
-            ps.setInt(1, i.getInvoiceId());
-            ps.executeUpdate();
+            conn.setAutoCommit(false);
+            try {
+                // khoá hoá đơn trước món → cùng thứ tự khoá với save / rollup rebuild
+                psLock.setInt(1, i.getInvoiceId());
+                try (ResultSet rs = psLock.executeQuery()) {
+                    if (!rs.next()) {
+                        // đã bị xoá (vd: 2 người cùng xoá) → không trừ rollup lần nữa
+                        conn.rollback();
+                        return;
+                    }
+                }
+                psItem.setInt(1, i.getInvoiceId());
+                psItem.executeUpdate();
+                ps.setInt(1, i.getInvoiceId());
+                ps.executeUpdate();
+                RevenueRollupRepositorySQL.apply(conn,
+                        RevenueRollupRepositorySQL.deltas(List.of(i), true));
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
 
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
+
+    /* ================= BÁO CÁO (SUM / GROUP BY ở DB) ================= */
+
+    @Override
+    public RevenueSummary sumRevenue(LocalDateTime from, LocalDateTime to) {
+        String sql = """
+                SELECT COUNT(*) AS cnt,
+                       SUM(time_amount) AS time_amount,
+                       SUM(service_account_amount) AS svc_account,
+                       SUM(service_cash_amount) AS svc_cash,
+                       SUM(total) AS total
+                FROM invoices
+                """ + timeFilter("created_at", from, to);
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            bindTime(ps, 1, from, to);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return new RevenueSummary(
+                        rs.getLong("cnt"),
+                        Money.fromDecimal(rs.getBigDecimal("time_amount")),
+                        Money.fromDecimal(rs.getBigDecimal("svc_account")),
+                        Money.fromDecimal(rs.getBigDecimal("svc_cash")),
+                        Money.fromDecimal(rs.getBigDecimal("total"))
+                );
+            }
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public Map<PaymentSource, Long> sumServiceByPaymentSource(LocalDateTime from,
+                                                              LocalDateTime to) {
+        String sql = "SELECT payment_source, SUM(amount) AS amount FROM invoice_items"
+                + timeFilter("created_at", from, to)
+                + " AND status <> 'CANCELLED' GROUP BY payment_source";
+
+        Map<PaymentSource, Long> result = new EnumMap<>(PaymentSource.class);
+        for (PaymentSource p : PaymentSource.values()) {
+            result.put(p, Money.ZERO);
+        }
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            bindTime(ps, 1, from, to);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    result.put(PaymentSource.valueOf(rs.getString("payment_source")),
+                            Money.fromDecimal(rs.getBigDecimal("amount")));
+                }
+            }
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+        return result;
+    }
+
+    @Override
+    public List<ServiceSales> findTopServices(LocalDateTime from, LocalDateTime to, int limit) {
+        String sql = "SELECT service_id, MAX(service_name) AS service_name,"
+                + " SUM(quantity) AS qty, SUM(amount) AS amount FROM invoice_items"
+                + timeFilter("created_at", from, to)
+                + " AND status <> 'CANCELLED'"
+                + " GROUP BY service_id ORDER BY qty DESC, amount DESC LIMIT ?";
+
+        List<ServiceSales> list = new ArrayList<>();
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            int idx = bindTime(ps, 1, from, to);
+            ps.setInt(idx, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(new ServiceSales(
+                            rs.getInt("service_id"),
+                            rs.getString("service_name"),
+                            rs.getLong("qty"),
+                            Money.fromDecimal(rs.getBigDecimal("amount"))
+                    ));
+                }
+            }
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+        return list;
+    }
+
+    @Override
+    public List<OrderItem> findItems(LocalDateTime from, LocalDateTime to, int limit) {
+        String sql = "SELECT * FROM invoice_items"
+                + timeFilter("created_at", from, to)
+                + " ORDER BY created_at DESC, invoice_id DESC, line_no"
+                + (limit > 0 ? " LIMIT " + limit : "");
+
+        List<OrderItem> list = new ArrayList<>();
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            bindTime(ps, 1, from, to);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(mapItem(rs));
+                }
+            }
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+        return list;
+    }
+
+    private OrderItem mapItem(ResultSet rs) throws SQLException {
+        String category = rs.getString("category");
+        ServiceItem service = new ServiceItem(
+                rs.getInt("service_id"),
+                rs.getString("service_name"),
+                Money.fromDecimal(rs.getBigDecimal("unit_price")),
+                category != null ? ServiceCategory.valueOf(category) : null
+        );
+
+        Timestamp orderedAt = rs.getTimestamp("ordered_at");
+        return new OrderItem(
+                rs.getInt("order_item_id"),
+                service,
+                rs.getInt("quantity"),
+                Money.fromDecimal(rs.getBigDecimal("unit_price")),
+                PaymentSource.valueOf(rs.getString("payment_source")),
+                OrderStatus.valueOf(rs.getString("status")),
+                orderedAt != null ? orderedAt.toLocalDateTime() : null
+        );
+    }
+
+    // WHERE luôn có (1=1) để nối thêm điều kiện bằng AND
+    private static String timeFilter(String column, LocalDateTime from, LocalDateTime to) {
+        StringBuilder sb = new StringBuilder(" WHERE 1=1");
+        if (from != null) sb.append(" AND ").append(column).append(" >= ?");
+        if (to != null) sb.append(" AND ").append(column).append(" < ?");
+        return sb.toString();
+    }
+
+    private static int bindTime(PreparedStatement ps, int idx,
+                                LocalDateTime from, LocalDateTime to) throws SQLException {
+        if (from != null) ps.setTimestamp(idx++, Timestamp.valueOf(from));
+        if (to != null) ps.setTimestamp(idx++, Timestamp.valueOf(to));
+        return idx;
+    }
+
+    // order_items: bản mới (nhị phân) hoặc bản cũ (Java serialize + Base64, giá double / long)
+    // snapshot hỏng → RuntimeException
+    private static List<OrderItem> decodeItems(ResultSet rs) throws SQLException {
+        byte[] bin = rs.getBytes("order_items_bin");
+        if (bin != null && bin.length > 0) {
+            return OrderItemCodec.decode(bin);
+        }
+
+        String data = rs.getString("order_items");
+        if (data != null && !data.isEmpty()) {
+            return LegacyOrderItems.decode(data);
+        }
+        return List.of();
+    }
+
+    private List<OrderItem> readItems(ResultSet rs) throws SQLException {
+        try {
+            return decodeItems(rs);
+        } catch (RuntimeException ex) {
+            // snapshot hỏng → bỏ qua chi tiết, giữ tổng tiền
+            System.err.println("[INVOICE] Hoá đơn #" + rs.getInt("id")
+                    + ": không đọc được order_items: " + ex.getMessage());
+            return List.of();
+        }
+    }
+
+    /* ================= MIGRATE ================= */
+
+    /**
+     * Tách chi tiết món của các hoá đơn cũ (blob) ra invoice_items.
+     * Chỉ gọi 1 lần lúc vừa tạo bảng (DBInit).
+     * 1 hoá đơn không đọc được → rollback cả lượt và báo lỗi, không để invoice_items thiếu dòng.
+     */
+    void backfillItems(Connection conn) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(
+                     "SELECT id, created_at, order_items, order_items_bin FROM invoices");
+             PreparedStatement psItem = conn.prepareStatement(INSERT_ITEM_SQL)) {
+
+            int pending = 0;
+            int invoices = 0;
+            int lines = 0;
+            while (rs.next()) {
+                int id = rs.getInt("id");
+                List<OrderItem> items;
+                try {
+                    items = decodeItems(rs);
+                } catch (RuntimeException e) {
+                    throw new SQLException("Hoá đơn #" + id
+                            + ": không đọc được order_items, dừng tách invoice_items", e);
+                }
+                if (items.isEmpty()) continue;
+
+                Timestamp createdAt = rs.getTimestamp("created_at");
+                if (createdAt == null) {
+                    throw new SQLException("Hoá đơn #" + id + ": thiếu created_at, dừng tách invoice_items");
+                }
+
+                int n = addItemBatch(psItem, id, createdAt.toLocalDateTime(), items);
+                pending += n;
+                lines += n;
+                invoices++;
+                if (pending >= 500) {
+                    psItem.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) psItem.executeBatch();
+            conn.commit();
+            System.err.println("[INVOICE] Tách " + lines + " dòng món của " + invoices
+                    + " hoá đơn cũ sang invoice_items");
+
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
 }
@@ -0,0 +1,145 @@
+package com.cybergame.repository.sql;
+
+import com.cybergame.model.entity.OrderItem;
+import com.cybergame.model.entity.OrderRecord;
+import com.cybergame.model.entity.ServiceItem;
+import com.cybergame.model.enums.OrderStatus;
+import com.cybergame.model.enums.PaymentSource;
+import com.cybergame.model.enums.ServiceCategory;
+import com.cybergame.repository.OrderRepository;
+import com.cybergame.util.Money;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public class OrderRepositorySQL implements OrderRepository {
+
+    // order mới → INSERT; order đã có → chỉ đổi trạng thái
+    private static final String UPSERT_SQL = """
+                INSERT INTO orders
+                (id, session_id, account_id, computer_id,
+                 service_id, service_name, category,
+                 quantity, unit_price, payment_source, status,
+                 ordered_at, updated_at)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                ON DUPLICATE KEY UPDATE
+                 status = VALUES(status),
+                 updated_at = VALUES(updated_at)
+             """;
+
+    private static final String CLOSE_SESSION_SQL =
+            "UPDATE orders SET session_closed = 1 WHERE session_id = ?";
+
+    private static final String FIND_OPEN_SQL = """
+                SELECT * FROM orders
+                WHERE status IN ('PENDING', 'CONFIRMED') AND session_closed = 0
+                ORDER BY ordered_at, id
+             """;
+
+    @Override
+    public void saveAll(Collection<OrderRecord> orders) {
+        if (orders.isEmpty()) return;
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(UPSERT_SQL)) {
+
+            conn.setAutoCommit(false);
+            try {
+                Timestamp now = new Timestamp(System.currentTimeMillis());
+                for (OrderRecord r : orders) {
+                    bind(ps, r, now);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                conn.commit();
+            } catch (Exception e) {
+                conn.rollback();
+                throw e;
+            }
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void bind(PreparedStatement ps, OrderRecord r, Timestamp now) throws SQLException {
+        OrderItem o = r.getItem();
+        ServiceItem s = o.getServiceItem();
+
+        ps.setInt(1, o.getOrderItemId());
+        ps.setInt(2, r.getSessionId());
+        ps.setInt(3, r.getAccountId());
+        ps.setInt(4, r.getComputerId());
+        ps.setInt(5, s.getServiceId());
+        ps.setString(6, s.getName());
+        ps.setString(7, s.getCategory() != null ? s.getCategory().name() : null);
+        ps.setInt(8, o.getQuantity());
+        ps.setBigDecimal(9, Money.toDecimal(o.getUnitPriceAtOrder()));
+        ps.setString(10, o.getPaymentSource().name());
+        ps.setString(11, o.getStatus().name());
+        ps.setTimestamp(12, o.getOrderedAt() != null ? Timestamp.valueOf(o.getOrderedAt()) : null);
+        ps.setTimestamp(13, now);
+    }
+
+    @Override
+    public void closeSessions(Collection<Integer> sessionIds) {
+        if (sessionIds.isEmpty()) return;
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(CLOSE_SESSION_SQL)) {
+
+            for (int id : sessionIds) {
+                ps.setInt(1, id);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public List<OrderRecord> findOpen() {
+        List<OrderRecord> list = new ArrayList<>();
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(FIND_OPEN_SQL);
+             ResultSet rs = ps.executeQuery()) {
+
+            while (rs.next()) {
+                list.add(map(rs));
+            }
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        return list;
+    }
+
+    private OrderRecord map(ResultSet rs) throws SQLException {
+        String category = rs.getString("category");
+        long unitPrice = Money.fromDecimal(rs.getBigDecimal("unit_price"));
+        ServiceItem service = new ServiceItem(
+                rs.getInt("service_id"),
+                rs.getString("service_name"),
+                unitPrice,
+                category != null ? ServiceCategory.valueOf(category) : null
+        );
+
+        Timestamp orderedAt = rs.getTimestamp("ordered_at");
+        OrderItem item = new OrderItem(
+                rs.getInt("id"),
+                service,
+                rs.getInt("quantity"),
+                unitPrice,
+                PaymentSource.valueOf(rs.getString("payment_source")),
+                OrderStatus.valueOf(rs.getString("status")),
+                orderedAt != null ? orderedAt.toLocalDateTime() : null
+        );
+        return new OrderRecord(rs.getInt("session_id"), rs.getInt("account_id"),
+                rs.getInt("computer_id"), item);
+    }
+}
@@ -0,0 +1,352 @@
+package com.cybergame.repository.sql;
+
+import com.cybergame.model.entity.Invoice;
+import com.cybergame.model.entity.OrderItem;
+import com.cybergame.model.entity.TopUpHistory;
+import com.cybergame.model.enums.OrderStatus;
+import com.cybergame.model.enums.PaymentSource;
+import com.cybergame.model.report.RollupRow;
+import com.cybergame.repository.RevenueRollupRepository;
+import com.cybergame.util.Money;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class RevenueRollupRepositorySQL implements RevenueRollupRepository {
+
+    private static final String HOURLY = "revenue_hourly";
+    private static final String DAILY = "revenue_daily";
+
+    private static final String COLUMNS = """
+                (bucket, dimension, dim_key,
+                 time_amount, service_cash, service_account,
+                 topup_amount, quantity, tx_count)
+             """;
+
+    // cộng dồn (không ghi đè) → nhiều thread cùng cập nhật 1 dòng vẫn đúng
+    private static final String ACCUMULATE = """
+                ON DUPLICATE KEY UPDATE
+                 time_amount = time_amount + VALUES(time_amount),
+                 service_cash = service_cash + VALUES(service_cash),
+                 service_account = service_account + VALUES(service_account),
+                 topup_amount = topup_amount + VALUES(topup_amount),
+                 quantity = quantity + VALUES(quantity),
+                 tx_count = tx_count + VALUES(tx_count)
+             """;
+
+    // thứ tự cố định → các transaction cùng chạm 1 dòng luôn khoá theo cùng thứ tự (không deadlock)
+    private static final Comparator<RollupRow> LOCK_ORDER =
+            Comparator.comparing(RollupRow::getBucket)
+                    .thenComparing(RollupRow::getDimension)
+                    .thenComparing(RollupRow::getKey);
+
+    @Override
+    public void apply(Collection<RollupRow> deltas) {
+        if (deltas.isEmpty()) return;
+
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                apply(conn, deltas);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Cộng dồn trên transaction của người gọi (không commit) → hoá đơn / lần nạp và rollup
+     * cùng vào DB hoặc cùng rollback, không bao giờ lệch nhau
+     */
+    static void apply(Connection conn, Collection<RollupRow> deltas) throws SQLException {
+        if (deltas.isEmpty()) return;
+
+        List<RollupRow> hourly = merge(deltas, false);
+        List<RollupRow> daily = merge(deltas, true);
+
+        try (PreparedStatement psHour = conn.prepareStatement(upsertSql(HOURLY));
+             PreparedStatement psDay = conn.prepareStatement(upsertSql(DAILY))) {
+
+            for (RollupRow r : hourly) {
+                bind(psHour, r, Timestamp.valueOf(r.getBucket()));
+                psHour.addBatch();
+            }
+            for (RollupRow r : daily) {
+                bind(psDay, r, Date.valueOf(r.getBucket().toLocalDate()));
+                psDay.addBatch();
+            }
+            psHour.executeBatch();
+            psDay.executeBatch();
+        }
+    }
+
+    /* ================= DELTA ================= */
+
+    /**
+     * Tách hoá đơn thành các dòng delta (khớp với phần SELECT của rebuild), negate = xoá
+     */
+    static List<RollupRow> deltas(Collection<Invoice> invoices, boolean negate) {
+        List<RollupRow> list = new ArrayList<>();
+        for (Invoice inv : invoices) {
+            for (RollupRow d : deltas(inv)) list.add(negate ? d.negate() : d);
+        }
+        return list;
+    }
+
+    private static List<RollupRow> deltas(Invoice inv) {
+        LocalDateTime at = inv.getCreatedAt();
+        List<RollupRow> list = new ArrayList<>();
+
+        list.add(new RollupRow(at, RollupRow.COMPUTER, inv.getComputerName(),
+                inv.getTimeAmount(), inv.getServiceCashAmount(), inv.getServiceAccountAmount(),
+                0, 0, 1));
+
+        for (OrderItem o : inv.getOrderItems()) {
+            if (o.getStatus() == OrderStatus.CANCELLED) continue;
+
+            boolean cash = o.getPaymentSource() == PaymentSource.CASH;
+            String category = (o.getServiceItem().getCategory() != null)
+                    ? o.getServiceItem().getCategory().name() : "";
+            list.add(new RollupRow(at, RollupRow.CATEGORY, category,
+                    0, cash ? o.getCost() : 0, cash ? 0 : o.getCost(),
+                    0, o.getQuantity(), 1));
+        }
+
+        list.add(new RollupRow(at, RollupRow.PAYMENT, PaymentSource.ACCOUNT.name(),
+                inv.getTimeAmount(), 0, inv.getServiceAccountAmount(), 0, 0, 1));
+        if (inv.getServiceCashAmount() != 0) {
+            list.add(new RollupRow(at, RollupRow.PAYMENT, PaymentSource.CASH.name(),
+                    0, inv.getServiceCashAmount(), 0, 0, 0, 0));
+        }
+        return list;
+    }
+
+    static List<RollupRow> topUpDeltas(Collection<TopUpHistory> histories, boolean negate) {
+        List<RollupRow> list = new ArrayList<>(histories.size());
+        for (TopUpHistory h : histories) {
+            RollupRow d = new RollupRow(h.getCreatedAt(), RollupRow.PAYMENT,
+                    PaymentSource.CASH.name(), 0, 0, 0, h.getAmount(), 0, 1);
+            list.add(negate ? d.negate() : d);
+        }
+        return list;
+    }
+
+    private static String upsertSql(String table) {
+        return "INSERT INTO " + table + COLUMNS
+                + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " + ACCUMULATE;
+    }
+
+    // gộp các delta trùng bucket / dimension / key → mỗi dòng chỉ UPDATE 1 lần
+    private static List<RollupRow> merge(Collection<RollupRow> deltas, boolean byDay) {
+        Map<RollupRow, RollupRow> merged = new TreeMap<>(LOCK_ORDER);
+        for (RollupRow d : deltas) {
+            LocalDateTime bucket = byDay
+                    ? d.getBucket().toLocalDate().atStartOfDay()
+                    : d.getBucket().truncatedTo(ChronoUnit.HOURS);
+            RollupRow row = new RollupRow(bucket, d.getDimension(), d.getKey(),
+                    d.getTimeAmount(), d.getServiceCash(), d.getServiceAccount(),
+                    d.getTopUpAmount(), d.getQuantity(), d.getTxCount());
+            merged.merge(row, row, RollupRow::plus);
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    private static void bind(PreparedStatement ps, RollupRow r, Object bucket) throws SQLException {
+        ps.setObject(1, bucket);
+        ps.setString(2, r.getDimension());
+        ps.setString(3, r.getKey());
+        ps.setBigDecimal(4, Money.toDecimal(r.getTimeAmount()));
+        ps.setBigDecimal(5, Money.toDecimal(r.getServiceCash()));
+        ps.setBigDecimal(6, Money.toDecimal(r.getServiceAccount()));
+        ps.setBigDecimal(7, Money.toDecimal(r.getTopUpAmount()));
+        ps.setLong(8, r.getQuantity());
+        ps.setLong(9, r.getTxCount());
+    }
+
+    /* ================= REBUILD ================= */
+
+    @Override
+    public void rebuild(LocalDate from, LocalDate to) {
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                rebuild(conn, from, to);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Xoá rồi INSERT ... SELECT GROUP BY từ invoices / invoice_items / topup_history.
+     * Luôn tính lại trọn ngày để bảng ngày và bảng giờ khớp nhau.
+     *
+     * Trước tiên khoá chia sẻ (LOCK IN SHARE MODE) dữ liệu gốc trong khoảng, cùng thứ tự với
+     * lúc ghi (invoices → invoice_items → topup_history → rollup):
+     * - hoá đơn / lần nạp đang ghi dở → rebuild chờ nó commit rồi mới đọc
+     * - hoá đơn / lần nạp mới trong khoảng → chờ rebuild commit rồi mới cộng dồn
+     * → không có delta nào bị DELETE xoá mất hay bị cộng 2 lần (kể cả rebuild chạy ở process khác)
+     */
+    void rebuild(Connection conn, LocalDate from, LocalDate to) throws SQLException {
+        LocalDateTime start = (from != null) ? from.atStartOfDay() : null;
+        LocalDateTime end = (to != null) ? to.plusDays(1).atStartOfDay() : null;
+
+        for (String source : new String[]{"invoices", "invoice_items", "topup_history"}) {
+            try (PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM " + source
+                    + range("created_at", start, end) + " LOCK IN SHARE MODE")) {
+                bindRange(ps, 1, start, end);
+                ps.executeQuery().close();
+            }
+        }
+
+        rebuildTable(conn, HOURLY, "DATE_FORMAT(created_at, '%Y-%m-%d %H:00:00')", start, end);
+        rebuildTable(conn, DAILY, "DATE(created_at)", start, end);
+    }
+
+    private void rebuildTable(Connection conn, String table, String bucket,
+                              LocalDateTime start, LocalDateTime end) throws SQLException {
+
+        execute(conn, "DELETE FROM " + table + range("bucket", start, end), start, end);
+
+        String where = range("created_at", start, end);
+        String[] selects = {
+                // theo máy
+                select(bucket, "'COMPUTER'", "COALESCE(computer_name, '')",
+                        "SUM(time_amount)", "SUM(service_cash_amount)",
+                        "SUM(service_account_amount)", "0", "0", "COUNT(*)",
+                        "invoices" + where),
+
+                // theo loại dịch vụ (bỏ món huỷ)
+                select(bucket, "'CATEGORY'", "COALESCE(category, '')", "0",
+                        "SUM(CASE WHEN payment_source = 'CASH' THEN amount ELSE 0 END)",
+                        "SUM(CASE WHEN payment_source = 'ACCOUNT' THEN amount ELSE 0 END)",
+                        "0", "SUM(quantity)", "COUNT(*)",
+                        "invoice_items" + where + " AND status <> 'CANCELLED'"),
+
+                // theo nguồn tiền
+                select(bucket, "'PAYMENT'", "'ACCOUNT'",
+                        "SUM(time_amount)", "0", "SUM(service_account_amount)",
+                        "0", "0", "COUNT(*)", "invoices" + where),
+                select(bucket, "'PAYMENT'", "'CASH'",
+                        "0", "SUM(service_cash_amount)", "0",
+                        "0", "0", "0", "invoices" + where),
+                select(bucket, "'PAYMENT'", "'CASH'",
+                        "0", "0", "0", "SUM(amount)", "0", "COUNT(*)",
+                        "topup_history" + where)
+        };
+
+        for (String select : selects) {
+            // bọc derived table: MySQL không cho ON DUPLICATE KEY ngay sau SELECT ... GROUP BY
+            execute(conn, "INSERT INTO " + table + COLUMNS
+                    + " SELECT * FROM (" + select + ") AS src " + ACCUMULATE, start, end);
+        }
+    }
+
+    // mọi cột đều đặt alias: derived table không cho trùng tên cột (vd nhiều cột "0")
+    private static String select(String bucket, String dimension, String key,
+                                 String time, String cash, String account,
+                                 String topUp, String quantity, String count,
+                                 String from) {
+        return "SELECT " + bucket + " AS b, " + dimension + " AS d, " + key + " AS k, "
+                + time + " AS t, " + cash + " AS sc, " + account + " AS sa, "
+                + topUp + " AS tu, " + quantity + " AS q, " + count + " AS n"
+                + " FROM " + from + " GROUP BY b, d, k";
+    }
+
+    private static void execute(Connection conn, String sql,
+                                LocalDateTime start, LocalDateTime end) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            bindRange(ps, 1, start, end);
+            ps.executeUpdate();
+        }
+    }
+
+    /* ================= QUERY ================= */
+
+    @Override
+    public List<RollupRow> findDaily(LocalDate from, LocalDate to, String dimension) {
+        return find(DAILY,
+                (from != null) ? from.atStartOfDay() : null,
+                (to != null) ? to.plusDays(1).atStartOfDay() : null,
+                dimension);
+    }
+
+    @Override
+    public List<RollupRow> findHourly(LocalDateTime from, LocalDateTime to, String dimension) {
+        return find(HOURLY, from, to, dimension);
+    }
+
+    private List<RollupRow> find(String table, LocalDateTime start, LocalDateTime end,
+                                 String dimension) {
+        String sql = "SELECT * FROM " + table + range("bucket", start, end)
+                + (dimension != null ? " AND dimension = ?" : "")
+                + " ORDER BY bucket, dimension, dim_key";
+
+        List<RollupRow> list = new ArrayList<>();
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            int idx = bindRange(ps, 1, start, end);
+            if (dimension != null) ps.setString(idx, dimension);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(map(rs));
+                }
+            }
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+        return list;
+    }
+
+    private RollupRow map(ResultSet rs) throws SQLException {
+        return new RollupRow(
+                rs.getTimestamp("bucket").toLocalDateTime(),
+                rs.getString("dimension"),
+                rs.getString("dim_key"),
+                Money.fromDecimal(rs.getBigDecimal("time_amount")),
+                Money.fromDecimal(rs.getBigDecimal("service_cash")),
+                Money.fromDecimal(rs.getBigDecimal("service_account")),
+                Money.fromDecimal(rs.getBigDecimal("topup_amount")),
+                rs.getLong("quantity"),
+                rs.getLong("tx_count")
+        );
+    }
+
+    // WHERE luôn có (1=1) để nối thêm điều kiện bằng AND
+    private static String range(String column, LocalDateTime start, LocalDateTime end) {
+        StringBuilder sb = new StringBuilder(" WHERE 1=1");
+        if (start != null) sb.append(" AND ").append(column).append(" >= ?");
+        if (end != null) sb.append(" AND ").append(column).append(" < ?");
+        return sb.toString();
+    }
+
+    private static int bindRange(PreparedStatement ps, int idx,
+                                 LocalDateTime start, LocalDateTime end) throws SQLException {
+        if (start != null) ps.setTimestamp(idx++, Timestamp.valueOf(start));
+        if (end != null) ps.setTimestamp(idx++, Timestamp.valueOf(end));
+        return idx;
+    }
+}
@@ -0,0 +1,83 @@
+package com.cybergame.repository.sql;
+
+import com.cybergame.repository.SequenceRepository;
+
+import java.sql.*;
+import java.util.Map;
+
+/**
+ * Bảng id_sequences (hi/lo): mỗi lần gọi chỉ tăng next_id thêm 1 block
+ * - SELECT ... FOR UPDATE → nhiều app cùng chạy vẫn không trùng id
+ * - Lần đầu gặp 1 sequence: lấy MAX(id) của bảng tương ứng làm điểm bắt đầu
+ */
+public class SequenceRepositorySQL implements SequenceRepository {
+
+    // sequence → bảng dùng để seed lần đầu (sessions / orders không có bảng)
+    private static final Map<String, String> SEED_TABLES = Map.of(
+            "accounts", "accounts",
+            "employees", "employees",
+            "computers", "computers",
+            "services", "services",
+            "invoices", "invoices"
+    );
+
+    @Override
+    public long reserveBlock(String name, int size) {
+        if (size <= 0) throw new IllegalArgumentException("Block size phải > 0");
+
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                Long next = lockNext(conn, name);
+                if (next == null) {
+                    insertSeed(conn, name);
+                    next = lockNext(conn, name);
+                }
+
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "UPDATE id_sequences SET next_id = next_id + ? WHERE name = ?")) {
+                    ps.setInt(1, size);
+                    ps.setString(2, name);
+                    ps.executeUpdate();
+                }
+
+                conn.commit();
+                return next;
+            } catch (Exception e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Long lockNext(Connection conn, String name) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT next_id FROM id_sequences WHERE name = ? FOR UPDATE")) {
+            ps.setString(1, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : null;
+            }
+        }
+    }
+
+    // chỉ chạy 1 lần / sequence; INSERT IGNORE để 2 app seed cùng lúc không lỗi
+    private void insertSeed(Connection conn, String name) throws SQLException {
+        long seed = 1;
+        String table = SEED_TABLES.get(name);
+        if (table != null) {
+            try (Statement st = conn.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(id), 0) + 1 FROM " + table)) {
+                if (rs.next()) seed = rs.getLong(1);
+            }
+        }
+
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT IGNORE INTO id_sequences (name, next_id) VALUES (?, ?)")) {
+            ps.setString(1, name);
+            ps.setLong(2, seed);
+            ps.executeUpdate();
+        }
+    }
+}
@@ -4,9 +4,15 @@ import com.cybergame.model.entity.ServiceItem;
 import com.cybergame.model.enums.ServiceCategory;
 import com.cybergame.repository.ServiceItemRepository;
 
+import com.cybergame.util.Money;
+
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class ServiceItemRepositorySQL implements ServiceItemRepository {
 
@@ -15,19 +21,21 @@ public class ServiceItemRepositorySQL implements ServiceItemRepository {
         try (Connection conn = DBConnection.getConnection();
              PreparedStatement ps = conn.prepareStatement("""
                 INSERT INTO services
-                (id, name, price, category, locked)
-                VALUES (?, ?, ?, ?, ?)
+                (id, name, price, category, locked, low_stock_threshold)
+                VALUES (?, ?, ?, ?, ?, ?)
                 ON DUPLICATE KEY UPDATE
                     price    = VALUES(price),
                     category = VALUES(category),
-                    locked   = VALUES(locked)
+                    locked   = VALUES(locked),
+                    low_stock_threshold = VALUES(low_stock_threshold)
              """)) {
 
             ps.setInt(1, s.getServiceId());
             ps.setString(2, s.getName());
-            ps.setDouble(3, s.getUnitPrice());
+            ps.setBigDecimal(3, Money.toDecimal(s.getUnitPrice()));
             ps.setString(4, s.getCategory().name()); // 🔥 enum → string
             ps.setBoolean(5, s.isLocked());
+            ps.setInt(6, s.getLowStockThreshold());
 
             ps.executeUpdate();
 
@@ -50,7 +58,7 @@ public class ServiceItemRepositorySQL implements ServiceItemRepository {
                 ServiceItem s = new ServiceItem(
                         rs.getInt("id"),
                         rs.getString("name"),
-                        rs.getDouble("price"),
+                        Money.fromDecimal(rs.getBigDecimal("price")),
                         ServiceCategory.valueOf(
                                 rs.getString("category")
                         )
@@ -60,6 +68,7 @@ public class ServiceItemRepositorySQL implements ServiceItemRepository {
                 if (rs.getBoolean("locked")) {
                     s.lock();
                 }
+                s.setLowStockThreshold(rs.getInt("low_stock_threshold"));
 
                 list.add(s);
             }
@@ -71,6 +80,92 @@ public class ServiceItemRepositorySQL implements ServiceItemRepository {
         return list;
     }
 
+    @Override
+    public Map<Integer, Long> findStock() {
+
+        Map<Integer, Long> stock = new HashMap<>();
+
+        try (Connection conn = DBConnection.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(
+                     "SELECT id, stock FROM services WHERE stock IS NOT NULL")) {
+
+            while (rs.next()) {
+                stock.put(rs.getInt("id"), rs.getLong("stock"));
+            }
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+        return stock;
+    }
+
+    @Override
+    public void updateStock(Map<Integer, Long> stock) {
+        if (stock.isEmpty()) return;
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "UPDATE services SET stock=? WHERE id=?")) {
+
+            conn.setAutoCommit(false);
+            try {
+                for (Map.Entry<Integer, Long> e : stock.entrySet()) {
+                    if (e.getValue() == null) ps.setNull(1, Types.BIGINT);
+                    else ps.setLong(1, e.getValue());
+                    ps.setInt(2, e.getKey());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void updateLocked(int serviceId, boolean locked, boolean autoLocked) {
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "UPDATE services SET locked=?, auto_locked=? WHERE id=?")) {
+
+            ps.setBoolean(1, locked);
+            ps.setBoolean(2, autoLocked);
+            ps.setInt(3, serviceId);
+            ps.executeUpdate();
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public Set<Integer> findAutoLocked() {
+
+        Set<Integer> ids = new HashSet<>();
+
+        try (Connection conn = DBConnection.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(
+                     "SELECT id FROM services WHERE auto_locked = TRUE")) {
+
+            while (rs.next()) {
+                ids.add(rs.getInt("id"));
+            }
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+        return ids;
+    }
+
     @Override
     public void delete(ServiceItem s) {
         try (Connection conn = DBConnection.getConnection();
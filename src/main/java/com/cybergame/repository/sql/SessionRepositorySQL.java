@@ -4,23 +4,79 @@ import com.cybergame.model.entity.Session;
 import com.cybergame.repository.SessionRepository;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
+/**
+ * Danh sách session đang chạy (chỉ nằm trong RAM)
+ * - 3 chỉ mục: sessionId / accountId / computerId → tra cứu O(1)
+ * - Đọc không lock (ConcurrentHashMap), ghi gộp trong 1 lock để 3 chỉ mục khớp nhau
+ * - saveIfAbsent: putIfAbsent từng chỉ mục → 2 thread mở cùng account / máy chỉ 1 thread thắng
+ * - Duyệt weakly-consistent: không copy, không ConcurrentModificationException
+ */
 public class SessionRepositorySQL implements SessionRepository {
 
-    private final List<Session> sessions = new ArrayList<>();
+    private final Map<Integer, Session> byId = new ConcurrentHashMap<>();
+    private final Map<Integer, Session> byAccount = new ConcurrentHashMap<>();
+    private final Map<Integer, Session> byComputer = new ConcurrentHashMap<>();
 
     @Override
-    public void save(Session s) {
-        sessions.add(s);
+    public synchronized void save(Session s) {
+        byId.put(s.getSessionId(), s);
+        byAccount.put(s.getAccount().getUserId(), s);
+        byComputer.put(s.getComputer().getComputerId(), s);
     }
 
     @Override
-    public void delete(Session s) {
-        sessions.remove(s);
+    public boolean saveIfAbsent(Session s) {
+        Integer accountId = s.getAccount().getUserId();
+        Integer computerId = s.getComputer().getComputerId();
+
+        if (byAccount.putIfAbsent(accountId, s) != null) return false;
+        if (byComputer.putIfAbsent(computerId, s) != null) {
+            // máy đã có người → trả lại chỗ của account
+            byAccount.remove(accountId, s);
+            return false;
+        }
+        byId.put(s.getSessionId(), s);
+        return true;
+    }
+
+    @Override
+    public synchronized void delete(Session s) {
+        // chỉ xoá nếu chỉ mục vẫn trỏ tới đúng session này
+        byId.remove(s.getSessionId(), s);
+        byAccount.remove(s.getAccount().getUserId(), s);
+        byComputer.remove(s.getComputer().getComputerId(), s);
     }
 
     @Override
     public List<Session> findRunningSessions() {
-        return new ArrayList<>(sessions);
+        return new ArrayList<>(byId.values());
+    }
+
+    @Override
+    public Session findById(int sessionId) {
+        return byId.get(sessionId);
+    }
+
+    @Override
+    public Session findByAccountId(int accountId) {
+        return byAccount.get(accountId);
+    }
+
+    @Override
+    public Session findByComputerId(int computerId) {
+        return byComputer.get(computerId);
+    }
+
+    @Override
+    public void forEachRunning(Consumer<Session> action) {
+        byId.values().forEach(action);
+    }
+
+    @Override
+    public int countRunning() {
+        return byId.size();
     }
 }
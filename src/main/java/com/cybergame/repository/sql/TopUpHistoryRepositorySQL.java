@@ -3,59 +3,99 @@ package com.cybergame.repository.sql;
 import com.cybergame.model.entity.TopUpHistory;
 import com.cybergame.repository.TopUpHistoryRepository;
 
+import com.cybergame.util.Money;
+
 import java.sql.*;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class TopUpHistoryRepositorySQL implements TopUpHistoryRepository {
 
-    @Override
-    public void save(TopUpHistory h) {
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement("""
+    private static final String INSERT_SQL = """
                 INSERT INTO topup_history
                 (account_id, account_name,
                  operator_type, operator_id, operator_name,
                  amount, created_at, note)
                 VALUES (?, ?, ?, ?, ?, ?, ?, ?)
-             """)) {
+             """;
 
-            ps.setInt(1, h.getAccountId());
-            ps.setString(2, h.getAccountName());
-            ps.setString(3, h.getOperatorType());
+    @Override
+    public void save(TopUpHistory h) {
+        saveAll(List.of(h));
+    }
 
-            if (h.getOperatorId() != null) {
-                ps.setInt(4, h.getOperatorId());
-            } else {
-                ps.setNull(4, Types.INTEGER);
-            }
+    @Override
+    public void saveAll(Collection<TopUpHistory> histories) {
+        if (histories.isEmpty()) return;
 
-            ps.setString(5, h.getOperatorName());
-            ps.setDouble(6, h.getAmount());
-            ps.setTimestamp(7, Timestamp.valueOf(h.getCreatedAt()));
-            ps.setString(8, h.getNote());
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
 
-            ps.executeUpdate();
+            conn.setAutoCommit(false);
+            try {
+                for (TopUpHistory h : histories) {
+                    bind(ps, h);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                // tiền nạp vào doanh thu gộp cùng transaction
+                RevenueRollupRepositorySQL.apply(conn,
+                        RevenueRollupRepositorySQL.topUpDeltas(histories, false));
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
 
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
-    @Override
-public void delete(TopUpHistory h) {
-    try (Connection conn = DBConnection.getConnection();
-         PreparedStatement ps =
-                 conn.prepareStatement(
-                         "DELETE FROM topup_history WHERE id=?")) {
 
-        ps.setInt(1, h.getId());
-        ps.executeUpdate();
+    private void bind(PreparedStatement ps, TopUpHistory h) throws SQLException {
+        ps.setInt(1, h.getAccountId());
+        ps.setString(2, h.getAccountName());
+        ps.setString(3, h.getOperatorType());
 
-    } catch (Exception e) {
-        throw new RuntimeException(e);
+        if (h.getOperatorId() != null) {
+            ps.setInt(4, h.getOperatorId());
+        } else {
+            ps.setNull(4, Types.INTEGER);
+        }
+
+        ps.setString(5, h.getOperatorName());
+        ps.setBigDecimal(6, Money.toDecimal(h.getAmount()));
+        ps.setTimestamp(7, Timestamp.valueOf(h.getCreatedAt()));
+        ps.setString(8, h.getNote());
     }
-}
+    @Override
+    public void delete(TopUpHistory h) {
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps =
+                     conn.prepareStatement(
+                             "DELETE FROM topup_history WHERE id=?")) {
 
+            conn.setAutoCommit(false);
+            try {
+                ps.setInt(1, h.getId());
+                // đã bị xoá trước đó → không trừ rollup lần nữa
+                if (ps.executeUpdate() > 0) {
+                    RevenueRollupRepositorySQL.apply(conn,
+                            RevenueRollupRepositorySQL.topUpDeltas(List.of(h), true));
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
 
     @Override
     public List<TopUpHistory> findAll() {
@@ -100,6 +140,102 @@ public void delete(TopUpHistory h) {
         return list;
     }
 
+    @Override
+    public void forEachBetween(LocalDateTime from, LocalDateTime to,
+                               Consumer<TopUpHistory> action) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM topup_history WHERE 1=1");
+        if (from != null) sql.append(" AND created_at >= ?");
+        if (to != null) sql.append(" AND created_at < ?");
+        sql.append(" ORDER BY created_at, id");
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql.toString(),
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            ps.setFetchSize(DBConnection.STREAM_FETCH_SIZE);
+            int idx = 1;
+            if (from != null) ps.setTimestamp(idx++, Timestamp.valueOf(from));
+            if (to != null) ps.setTimestamp(idx, Timestamp.valueOf(to));
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    action.accept(map(rs));
+                }
+            }
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public List<TopUpHistory> findRecent(LocalDateTime from, LocalDateTime to, int limit) {
+        List<TopUpHistory> list = new ArrayList<>();
+        if (limit <= 0) return list;
+
+        StringBuilder sql = new StringBuilder("SELECT * FROM topup_history WHERE 1=1");
+        if (from != null) sql.append(" AND created_at >= ?");
+        if (to != null) sql.append(" AND created_at < ?");
+        sql.append(" ORDER BY created_at DESC, id DESC LIMIT ?");
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+
+            int idx = 1;
+            if (from != null) ps.setTimestamp(idx++, Timestamp.valueOf(from));
+            if (to != null) ps.setTimestamp(idx++, Timestamp.valueOf(to));
+            ps.setInt(idx, limit);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(map(rs));
+                }
+            }
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+        return list;
+    }
+
+    @Override
+    public LocalDateTime findFirstCreatedAt() {
+        try (Connection conn = DBConnection.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT MIN(created_at) FROM topup_history")) {
+
+            Timestamp first = rs.next() ? rs.getTimestamp(1) : null;
+            return (first != null) ? first.toLocalDateTime() : null;
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public long sumAmount(LocalDateTime from, LocalDateTime to) {
+        StringBuilder sql = new StringBuilder(
+                "SELECT SUM(amount) FROM topup_history WHERE 1=1");
+        if (from != null) sql.append(" AND created_at >= ?");
+        if (to != null) sql.append(" AND created_at < ?");
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+
+            int idx = 1;
+            if (from != null) ps.setTimestamp(idx++, Timestamp.valueOf(from));
+            if (to != null) ps.setTimestamp(idx, Timestamp.valueOf(to));
+
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? Money.fromDecimal(rs.getBigDecimal(1)) : Money.ZERO;
+            }
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     // ===== MAP =====
     private TopUpHistory map(ResultSet rs) throws SQLException {
         TopUpHistory h = new TopUpHistory();
@@ -113,7 +249,7 @@ public void delete(TopUpHistory h) {
         h.setOperatorId(rs.wasNull() ? null : opId);
 
         h.setOperatorName(rs.getString("operator_name"));
-        h.setAmount(rs.getDouble("amount"));
+        h.setAmount(Money.fromDecimal(rs.getBigDecimal("amount")));
         h.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
         h.setNote(rs.getString("note"));
 
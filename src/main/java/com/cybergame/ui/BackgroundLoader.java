@@ -0,0 +1,251 @@
+package com.cybergame.ui;
+
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Dịch vụ nạp dữ liệu nền dùng chung cho các màn hình quản lý
+ * - Truy vấn DB chạy trên thread "ui-loader", không chặn FX thread
+ * - Mỗi màn hình có 1 khoá: yêu cầu mới huỷ yêu cầu cũ chưa xong (kết quả cũ bị bỏ)
+ * - Huỷ = cancel(false): yêu cầu còn trong hàng đợi thì không chạy nữa, nhưng truy vấn
+ *   đang chạy KHÔNG bị dừng — nó vẫn giữ 1 thread + 1 kết nối DB tới khi xong, chỉ kết quả bị bỏ
+ * - Kết quả đưa về FX thread bằng Platform.runLater
+ * - Đo thời gian FX thread bị chiếm: từng lần áp kết quả + độ trễ của hàng đợi FX
+ *
+ * Java 17 chưa có virtual thread → dùng pool thread daemon giới hạn
+ * (mặc định 4, đổi bằng -Dcybergame.ui.loaderThreads). Cố ý nhỏ hơn pool kết nối DB
+ * (cybergame.db.poolSize, mặc định 10) → màn hình quản lý nạp dồn dập vẫn chừa kết nối
+ * cho ghi hoá đơn / checkpoint / tồn kho.
+ */
+public final class BackgroundLoader {
+
+    private static final int THREADS = Integer.getInteger("cybergame.ui.loaderThreads", 4);
+
+    // FX thread bận quá ngưỡng này thì ghi log
+    private static final long STALL_WARN_MILLIS = Long.getLong("cybergame.ui.stallWarnMillis", 100);
+
+    // chu kỳ gửi "nhịp" vào hàng đợi FX để đo độ trễ
+    private static final long PROBE_MILLIS = 250;
+
+    private static final BackgroundLoader INSTANCE = new BackgroundLoader();
+
+    private final ExecutorService executor;
+    private final ScheduledExecutorService probe;
+
+    // khoá màn hình → yêu cầu mới nhất
+    private final Map<Object, Task<?>> latest = new ConcurrentHashMap<>();
+
+    private final AtomicInteger probeStarted = new AtomicInteger();
+    private final Stats stats = new Stats();
+
+    private BackgroundLoader() {
+        this.executor = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), daemon("ui-loader"));
+        ((ThreadPoolExecutor) executor).allowCoreThreadTimeOut(true);
+        this.probe = Executors.newSingleThreadScheduledExecutor(daemon("ui-stall-probe"));
+    }
+
+    public static BackgroundLoader getInstance() {
+        return INSTANCE;
+    }
+
+    /* ================= NẠP ================= */
+
+    /**
+     * Chạy work trên thread nền rồi gọi onLoaded trên FX thread.
+     * Cùng key mà có yêu cầu mới hơn → yêu cầu này bị huỷ, onLoaded không được gọi
+     * (work đang chạy dở vẫn chạy hết, kết quả bị bỏ).
+     */
+    public <T> Task<T> load(Object key, Callable<T> work, Consumer<T> onLoaded) {
+        return load(key, work, onLoaded, null);
+    }
+
+    public <T> Task<T> load(Object key, Callable<T> work, Consumer<T> onLoaded,
+                            Consumer<Throwable> onError) {
+        startProbe();
+
+        LoadTask<T> task = new LoadTask<>(key, work, onLoaded, onError);
+        Task<?> previous = latest.put(key, task);
+        if (previous != null && previous.cancel(false)) {
+            stats.cancelled.incrementAndGet();
+        }
+        stats.submitted.incrementAndGet();
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * Huỷ yêu cầu đang chờ của 1 màn hình (vd: khi rời màn hình).
+     * Truy vấn đang chạy không bị ngắt (cancel(false)), chỉ không áp kết quả lên giao diện.
+     */
+    public void cancel(Object key) {
+        Task<?> task = latest.remove(key);
+        if (task != null && task.cancel(false)) {
+            stats.cancelled.incrementAndGet();
+        }
+    }
+
+    public Stats getStats() {
+        return stats;
+    }
+
+    private final class LoadTask<T> extends Task<T> {
+        private final Object key;
+        private final Callable<T> work;
+        private final Consumer<T> onLoaded;
+        private final Consumer<Throwable> onError;
+
+        LoadTask(Object key, Callable<T> work, Consumer<T> onLoaded, Consumer<Throwable> onError) {
+            this.key = key;
+            this.work = work;
+            this.onLoaded = onLoaded;
+            this.onError = onError;
+        }
+
+        @Override
+        protected T call() throws Exception {
+            if (isCancelled()) return null;
+
+            long begin = System.nanoTime();
+            T result = work.call();
+            stats.loadNanos.addAndGet(System.nanoTime() - begin);
+
+            // publish tường minh thay vì onSucceeded: kiểm tra lại "còn là mới nhất" trên FX thread
+            if (!isCancelled()) {
+                Platform.runLater(() -> apply(result));
+            }
+            return result;
+        }
+
+        private void apply(T result) {
+            if (isCancelled() || latest.get(key) != this) {
+                stats.dropped.incrementAndGet();
+                return;
+            }
+            latest.remove(key, this);
+
+            long begin = System.nanoTime();
+            try {
+                onLoaded.accept(result);
+            } finally {
+                stats.recordApply(key, System.nanoTime() - begin);
+            }
+        }
+
+        @Override
+        protected void failed() {
+            // failed() chạy trên FX thread
+            latest.remove(key, this);
+            stats.failed.incrementAndGet();
+            Throwable e = getException();
+            if (onError != null) {
+                onError.accept(e);
+            } else {
+                System.err.println("[UI-LOADER] Lỗi nạp " + key.getClass().getSimpleName() + ": " + e);
+            }
+        }
+    }
+
+    /* ================= ĐO FX THREAD ================= */
+
+    // gửi 1 runnable vào hàng đợi FX mỗi PROBE_MILLIS, độ trễ tới lúc chạy = thời gian FX thread bị chiếm
+    private void startProbe() {
+        if (!probeStarted.compareAndSet(0, 1)) return;
+
+        probe.scheduleWithFixedDelay(() -> {
+            long posted = System.nanoTime();
+            try {
+                Platform.runLater(() -> stats.recordLag(System.nanoTime() - posted));
+            } catch (IllegalStateException e) {
+                // toolkit đã đóng
+                probe.shutdown();
+            }
+        }, PROBE_MILLIS, PROBE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger seq = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Số liệu của loader (đọc từ bất kỳ thread nào)
+     */
+    public static final class Stats {
+        private final AtomicLong submitted = new AtomicLong();
+        private final AtomicLong cancelled = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong loadNanos = new AtomicLong();
+
+        // thời gian áp kết quả lên giao diện (trên FX thread)
+        private final AtomicLong applyCount = new AtomicLong();
+        private final AtomicLong applyNanos = new AtomicLong();
+        private final AtomicLong maxApplyNanos = new AtomicLong();
+
+        // độ trễ hàng đợi FX (đo bằng nhịp)
+        private final AtomicLong lastLagNanos = new AtomicLong();
+        private final AtomicLong maxLagNanos = new AtomicLong();
+        private final AtomicLong stalls = new AtomicLong();
+
+        void recordApply(Object key, long nanos) {
+            applyCount.incrementAndGet();
+            applyNanos.addAndGet(nanos);
+            maxApplyNanos.accumulateAndGet(nanos, Math::max);
+            if (nanos / 1_000_000 >= STALL_WARN_MILLIS) {
+                System.err.println("[UI-LOADER] " + key.getClass().getSimpleName()
+                        + " chiếm FX thread " + nanos / 1_000_000 + " ms");
+            }
+        }
+
+        void recordLag(long nanos) {
+            lastLagNanos.set(nanos);
+            maxLagNanos.accumulateAndGet(nanos, Math::max);
+            if (nanos / 1_000_000 >= STALL_WARN_MILLIS) {
+                stalls.incrementAndGet();
+                System.err.println("[UI-LOADER] FX thread nghẽn " + nanos / 1_000_000 + " ms");
+            }
+        }
+
+        public long getSubmitted() { return submitted.get(); }
+        public long getCancelled() { return cancelled.get(); }
+        public long getDropped() { return dropped.get(); }
+        public long getFailed() { return failed.get(); }
+        public long getLoadMillis() { return loadNanos.get() / 1_000_000; }
+
+        public long getApplyCount() { return applyCount.get(); }
+        public long getApplyMillis() { return applyNanos.get() / 1_000_000; }
+        public long getMaxApplyMillis() { return maxApplyNanos.get() / 1_000_000; }
+
+        public long getLastLagMillis() { return lastLagNanos.get() / 1_000_000; }
+        public long getMaxLagMillis() { return maxLagNanos.get() / 1_000_000; }
+        public long getStallCount() { return stalls.get(); }
+
+        @Override
+        public String toString() {
+            return "loads=" + getSubmitted() + " cancelled=" + getCancelled()
+                    + " dropped=" + getDropped() + " failed=" + getFailed()
+                    + " apply(max)=" + getMaxApplyMillis() + "ms"
+                    + " lag(last/max)=" + getLastLagMillis() + "/" + getMaxLagMillis() + "ms"
+                    + " stalls=" + getStallCount();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.cybergame.ui;
+
+import com.cybergame.event.LiveEvent;
+import com.cybergame.event.LiveEventBus;
+import javafx.application.Platform;
+import javafx.scene.Node;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Gộp sự kiện từ LiveEventBus thành từng lô cho FX thread
+ * - Tối đa 1 lô / chu kỳ (mặc định 100 ms = 10 lần/giây, -Dcybergame.ui.liveUpdateMillis)
+ * - Số dư / trạng thái máy cùng id trong 1 chu kỳ chỉ giữ bản cuối
+ * - Lô trước chưa xử lý xong trên FX thread thì không gửi lô mới (gộp tiếp vào lô chờ)
+ * → hàng trăm thay đổi số dư mỗi giây chỉ thành ~10 lần cập nhật giao diện
+ */
+public final class LiveUpdateCoalescer {
+
+    public static final long DEFAULT_PERIOD_MILLIS = Long.getLong("cybergame.ui.liveUpdateMillis", 100);
+
+    // 1 thread hẹn giờ dùng chung cho mọi màn hình
+    private static final ScheduledExecutorService TIMER =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "ui-live-update");
+                t.setDaemon(true);
+                return t;
+            });
+
+    private final LiveEventBus bus;
+    private final Consumer<List<LiveEvent>> target;
+    private final long periodNanos;
+    private final Consumer<LiveEvent> subscriber = this::onEvent;
+
+    private final Object lock = new Object();
+    // khoá gộp → sự kiện (giữ thứ tự đến)
+    private final Map<Object, LiveEvent> pending = new LinkedHashMap<>();
+    private boolean scheduled;      // đã hẹn flush
+    private boolean inFlight;       // lô đang chờ / đang chạy trên FX thread
+    private volatile boolean active;
+
+    private volatile long lastDeliverNanos;
+    private volatile long received;
+    private volatile long delivered;
+
+    public LiveUpdateCoalescer(LiveEventBus bus, long periodMillis, Consumer<List<LiveEvent>> target) {
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("Chu kỳ cập nhật phải > 0");
+        }
+        this.bus = bus;
+        this.target = target;
+        this.periodNanos = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+        this.lastDeliverNanos = System.nanoTime() - periodNanos;
+    }
+
+    /**
+     * Nhận sự kiện khi node đang nằm trong scene (màn hình đang hiển thị), rời scene thì ngừng
+     */
+    public static LiveUpdateCoalescer whileShowing(Node node, Consumer<List<LiveEvent>> target) {
+        LiveUpdateCoalescer c = new LiveUpdateCoalescer(LiveEventBus.getDefault(),
+                DEFAULT_PERIOD_MILLIS, target);
+        if (node.getScene() != null) c.start();
+        node.sceneProperty().addListener((obs, oldScene, scene) -> {
+            if (scene != null) c.start();
+            else c.stop();
+        });
+        return c;
+    }
+
+    public void start() {
+        synchronized (lock) {
+            if (active) return;
+            active = true;
+        }
+        bus.subscribe(subscriber);
+    }
+
+    public void stop() {
+        bus.unsubscribe(subscriber);
+        synchronized (lock) {
+            active = false;
+            pending.clear();
+        }
+    }
+
+    public long getReceivedCount() {
+        return received;
+    }
+
+    public long getDeliveredBatches() {
+        return delivered;
+    }
+
+    /* ================= INTERNAL ================= */
+
+    // thread của người publish: chỉ ghi vào lô chờ
+    private void onEvent(LiveEvent e) {
+        synchronized (lock) {
+            if (!active) return;
+            received++;
+            Object key = e.isCoalescable() ? e.getType().name() + ":" + e.getId() : new Object();
+            pending.put(key, e);
+            if (scheduled || inFlight) return;
+            scheduled = true;
+        }
+        scheduleFlush();
+    }
+
+    // giữ khoảng cách >= 1 chu kỳ giữa 2 lô
+    private void scheduleFlush() {
+        long delay = Math.max(0, lastDeliverNanos + periodNanos - System.nanoTime());
+        TIMER.schedule(this::flush, delay, TimeUnit.NANOSECONDS);
+    }
+
+    private void flush() {
+        List<LiveEvent> batch;
+        synchronized (lock) {
+            scheduled = false;
+            if (pending.isEmpty()) return;
+            batch = new ArrayList<>(pending.values());
+            pending.clear();
+            inFlight = true;
+        }
+        Platform.runLater(() -> deliver(batch));
+    }
+
+    // FX thread
+    private void deliver(List<LiveEvent> batch) {
+        lastDeliverNanos = System.nanoTime();
+        try {
+            if (active) {
+                delivered++;
+                target.accept(batch);
+            }
+        } finally {
+            boolean again;
+            synchronized (lock) {
+                inFlight = false;
+                again = !pending.isEmpty() && !scheduled;
+                if (again) scheduled = true;
+            }
+            if (again) scheduleFlush();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.cybergame.ui;
+
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import javafx.scene.layout.Pane;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Cache view FXML (root + controller) theo đường dẫn
+ * - Chuyển màn hình = đổi node trong container, không parse FXML / tạo controller / query lại
+ * - Nạp trước: parse FXML trên thread nền, đưa vào cache trên FX thread
+ * - Giới hạn số view (máy kiosk ít RAM): bỏ view dùng lâu nhất (LRU), không bỏ view đang hiện
+ *
+ * Chỉ dùng trên FX thread (trừ phần parse của preload).
+ */
+public final class ViewCache {
+
+    // 0 = không giới hạn; -Dcybergame.ui.viewCacheSize=N cho máy ít RAM
+    public static final int DEFAULT_MAX_VIEWS = Integer.getInteger("cybergame.ui.viewCacheSize", 0);
+
+    // chuyển màn hình lâu hơn mức này thì ghi log
+    private static final long SLOW_SHOW_MILLIS = 50;
+
+    private final int maxViews;
+
+    // access-order → phần tử đầu là view dùng lâu nhất
+    private final LinkedHashMap<String, View> views = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> preloading = new HashSet<>();
+
+    private View current;
+    private long lastShowMillis;
+
+    public ViewCache(int maxViews) {
+        if (maxViews < 0) {
+            throw new IllegalArgumentException("maxViews phải >= 0");
+        }
+        this.maxViews = maxViews;
+    }
+
+    /**
+     * Hiển thị view vào container (nạp FXML nếu chưa có trong cache)
+     */
+    public View show(String path, Pane container) {
+        long begin = System.nanoTime();
+
+        View view = views.get(path);
+        if (view == null) {
+            view = load(path);
+            view.fresh = true;
+            views.put(path, view);
+        }
+
+        if (current != null && current != view) {
+            lifecycle(current).ifPresent(ViewLifecycle::onHide);
+            cancelLoads(current);
+        }
+
+        if (current != view) {
+            container.getChildren().setAll(view.root);
+            // vừa nạp xong thì initialize() đã lấy dữ liệu, không cần nạp lại
+            if (!view.fresh) lifecycle(view).ifPresent(ViewLifecycle::onShow);
+            view.fresh = false;
+            current = view;
+        }
+
+        evict();
+
+        lastShowMillis = (System.nanoTime() - begin) / 1_000_000;
+        if (lastShowMillis >= SLOW_SHOW_MILLIS) {
+            System.err.println("[VIEW] " + path + " hiển thị mất " + lastShowMillis + " ms");
+        }
+        return view;
+    }
+
+    /**
+     * Nạp trước các view (parse trên thread nền), bỏ qua view đã có / đang nạp
+     */
+    public void preload(List<String> paths) {
+        for (String path : paths) {
+            if (views.containsKey(path) || !preloading.add(path)) continue;
+            if (maxViews > 0 && views.size() + preloading.size() > maxViews) {
+                preloading.remove(path);
+                break;
+            }
+
+            BackgroundLoader.getInstance().load("view:" + path, () -> load(path), view -> {
+                preloading.remove(path);
+                // người dùng đã mở view này trong lúc nạp → giữ bản đang hiển thị
+                if (!views.containsKey(path)) {
+                    views.put(path, view);
+                    evict();
+                }
+            }, e -> {
+                preloading.remove(path);
+                System.err.println("[VIEW] Nạp trước " + path + " lỗi: " + e);
+            });
+        }
+    }
+
+    public int size() {
+        return views.size();
+    }
+
+    public long getLastShowMillis() {
+        return lastShowMillis;
+    }
+
+    /**
+     * Bỏ 1 view khỏi cache (lần mở sau nạp lại FXML)
+     */
+    public void invalidate(String path) {
+        View view = views.get(path);
+        if (view != null && view != current) {
+            views.remove(path);
+            cancelLoads(view);
+        }
+    }
+
+    private void evict() {
+        if (maxViews == 0) return;
+
+        Iterator<Map.Entry<String, View>> it = views.entrySet().iterator();
+        while (views.size() > maxViews && it.hasNext()) {
+            View view = it.next().getValue();
+            if (view == current) continue;
+            it.remove();
+            cancelLoads(view);
+        }
+    }
+
+    private View load(String path) {
+        URL url = ViewCache.class.getResource(path);
+        if (url == null) {
+            throw new IllegalArgumentException("Không tìm thấy view: " + path);
+        }
+        try {
+            FXMLLoader loader = new FXMLLoader(url);
+            Parent root = loader.load();
+            return new View(root, loader.getController());
+        } catch (IOException e) {
+            throw new RuntimeException("Lỗi nạp view " + path, e);
+        }
+    }
+
+    private static Optional<ViewLifecycle> lifecycle(View view) {
+        return (view.controller instanceof ViewLifecycle l) ? Optional.of(l) : Optional.empty();
+    }
+
+    // view bị ẩn / bỏ → huỷ lượt nạp dữ liệu còn dở của controller
+    private static void cancelLoads(View view) {
+        if (view.controller != null) {
+            BackgroundLoader.getInstance().cancel(view.controller);
+        }
+    }
+
+    /**
+     * 1 view đã nạp: root node + controller của FXML
+     */
+    public static final class View {
+        private final Parent root;
+        private final Object controller;
+        private boolean fresh;
+
+        View(Parent root, Object controller) {
+            this.root = root;
+            this.controller = controller;
+        }
+
+        public Parent getRoot() {
+            return root;
+        }
+
+        public Object getController() {
+            return controller;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.cybergame.ui;
+
+/**
+ * Controller của view được ViewCache giữ lại giữa các lần chuyển màn hình
+ * - onShow: view được hiển thị lại từ cache (hoặc lần đầu sau khi nạp trước) → nạp lại dữ liệu
+ * - onHide: view bị thay bằng view khác (view vẫn còn trong cache)
+ * Lần hiển thị ngay sau khi vừa nạp FXML không gọi onShow: initialize() đã nạp dữ liệu.
+ */
+public interface ViewLifecycle {
+
+    default void onShow() { }
+
+    default void onHide() { }
+}
@@ -3,9 +3,14 @@ package com.cybergame.ui.fxcontroller;
 import com.cybergame.context.AccountContext;
 import com.cybergame.controller.AccountController;
 import com.cybergame.controller.TopUpController;
+import com.cybergame.event.LiveEvent;
 import com.cybergame.model.entity.Account;
 import com.cybergame.repository.sql.AccountRepositorySQL;
 import com.cybergame.repository.sql.TopUpHistoryRepositorySQL;
+import com.cybergame.ui.BackgroundLoader;
+import com.cybergame.ui.LiveUpdateCoalescer;
+import com.cybergame.ui.ViewLifecycle;
+import com.cybergame.util.Money;
 import javafx.application.Platform;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleStringProperty;
@@ -25,11 +30,13 @@ import javafx.scene.layout.VBox;
 
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.ResourceBundle;
 
-public class CustomerMgmtController implements Initializable {
+public class CustomerMgmtController implements Initializable, ViewLifecycle {
 
     // --- FXML ELEMENTS ---
     @FXML private TableView<Account> tableAccounts;
@@ -55,6 +62,9 @@ public class CustomerMgmtController implements Initializable {
         loadData();
         setupSearch();
         setupStyles();
+
+        // số dư / mở máy / đóng máy: nhận theo lô (~10 lần/giây), chỉ sửa các dòng liên quan
+        LiveUpdateCoalescer.whileShowing(tableAccounts, this::applyChanges);
     }
 
     private void setupStyles() {
@@ -104,7 +114,7 @@ public class CustomerMgmtController implements Initializable {
         colPhone.setCellValueFactory(new PropertyValueFactory<>("phone"));
         
         // Hiển thị tiền: Format số đẹp
-        colBalance.setCellValueFactory(cell -> new SimpleDoubleProperty(cell.getValue().getBalance()).asObject());
+        colBalance.setCellValueFactory(cell -> new SimpleDoubleProperty(Money.toDouble(cell.getValue().getBalance())).asObject());
         colBalance.setCellFactory(tc -> new TableCell<>() {
             @Override
             protected void updateItem(Double item, boolean empty) {
@@ -142,8 +152,22 @@ public class CustomerMgmtController implements Initializable {
         });
     }
 
+    // quay lại màn hình từ cache → lấy số dư mới
+    @Override
+    public void onShow() {
+        loadData();
+    }
+
     // 🔥 LOAD DATA: KẾT HỢP DB VÀ RAM (CONTEXT)
     private void loadData() {
+        BackgroundLoader.getInstance().load(this, this::mergeWithContext, list -> {
+            masterData.setAll(list);
+            tableAccounts.refresh();
+        });
+    }
+
+    // chạy trên thread nền
+    private List<Account> mergeWithContext() {
         List<Account> dbList = accRepo.findAll(); // Lấy tất cả từ két sắt (DB)
         List<Account> displayList = new ArrayList<>();
         
@@ -163,8 +187,30 @@ public class CustomerMgmtController implements Initializable {
             }
         }
         
-        masterData.setAll(displayList);
-        tableAccounts.refresh();
+        return displayList;
+    }
+
+    // FX thread: thay dòng của account bằng object đang sống (RAM) → bảng chỉ vẽ lại dòng đó
+    private void applyChanges(List<LiveEvent> batch) {
+        Map<Integer, Integer> rowOf = null;
+
+        for (LiveEvent e : batch) {
+            if (e.getType() == LiveEvent.Type.ORDER_PLACED
+                    || e.getType() == LiveEvent.Type.MACHINE_STATUS_CHANGED) continue;
+
+            Account acc = e.getAccount();
+            if (acc == null) continue;
+
+            if (rowOf == null) {
+                rowOf = new HashMap<>();
+                for (int i = 0; i < masterData.size(); i++) {
+                    rowOf.put(masterData.get(i).getUserId(), i);
+                }
+            }
+
+            Integer row = rowOf.get(acc.getUserId());
+            if (row != null) masterData.set(row, acc);  // account mới tạo ở nơi khác: chờ lần nạp sau
+        }
     }
 
     private void setupSearch() {
@@ -227,7 +273,7 @@ public class CustomerMgmtController implements Initializable {
         }
 
         if (selected.getBalance() > 0) {
-            showAlert("Cảnh báo", "Tài khoản còn tiền (" + String.format("%,.0f đ", selected.getBalance()) + "). Không thể xóa!");
+            showAlert("Cảnh báo", "Tài khoản còn tiền (" + Money.format(selected.getBalance()) + " đ" + "). Không thể xóa!");
             return;
         }
 
@@ -253,15 +299,15 @@ public class CustomerMgmtController implements Initializable {
 
         dialog.showAndWait().ifPresent(str -> {
             try {
-                double amount = Double.parseDouble(str);
+                long amount = Money.parse(str);
                 if (amount > 0) {
                     // 🔥 QUAN TRỌNG: Nạp vào object trong Context (nếu có)
                     Account target = getRealAccount(selected);
                     
+                    // dòng trên bảng tự cập nhật qua sự kiện số dư
                     topUpCtrl.topUp(target, "ADMIN", null, "Manager", amount, "Admin TopUp");
-                    
-                    tableAccounts.refresh();
-                    showAlert("Thành công", "Đã nạp thêm " + String.format("%,.0f đ", amount));
+
+                    showAlert("Thành công", "Đã nạp thêm " + Money.format(amount) + " đ");
                 }
             } catch (NumberFormatException e) {
                 showAlert("Lỗi", "Số tiền không hợp lệ!");
@@ -4,6 +4,8 @@ import com.cybergame.controller.EmployeeController;
 import com.cybergame.model.entity.Employee;
 import com.cybergame.repository.EmployeeRepository;
 import com.cybergame.repository.sql.EmployeeRepositorySQL;
+import com.cybergame.ui.BackgroundLoader;
+import com.cybergame.ui.ViewLifecycle;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -19,9 +21,11 @@ import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import javafx.util.Callback;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
-public class EmployeeMgmtController {
+public class EmployeeMgmtController implements ViewLifecycle {
 
     @FXML private TableView<Employee> employeeTable;
     @FXML private TableColumn<Employee, Integer> colId;
@@ -130,13 +134,24 @@ public class EmployeeMgmtController {
         }
     }
 
+    @Override
+    public void onShow() {
+        handleSearch();
+    }
+
     // ================= SEARCH & FILTER =================
     @FXML
     private void handleSearch() {
         String key = txtSearch.getText().trim().toLowerCase();
         String statusFilter = cmbStatusFilter.getValue();
-        
-        data.clear();
+
+        // gõ nhanh → yêu cầu cũ bị huỷ, chỉ lần gõ cuối được hiển thị
+        BackgroundLoader.getInstance().load(this, () -> filter(key, statusFilter), data::setAll);
+    }
+
+    // chạy trên thread nền
+    private List<Employee> filter(String key, String statusFilter) {
+        List<Employee> result = new ArrayList<>();
 
         for (Employee e : repo.findAll()) {
             // 1. Kiểm tra từ khóa (Tên hoặc SĐT)
@@ -154,9 +169,10 @@ public class EmployeeMgmtController {
 
             // Nếu thỏa mãn cả 2 thì thêm vào danh sách hiển thị
             if (matchKey && matchStatus) {
-                data.add(e);
+                result.add(e);
             }
         }
+        return result;
     }
 
     // ================= ADD =================
@@ -1,21 +1,34 @@
 package com.cybergame.ui.fxcontroller;
 
 import com.cybergame.controller.ComputerController;
+import com.cybergame.event.LiveEvent;
 import com.cybergame.model.entity.Computer;
 import com.cybergame.model.enums.ComputerStatus;
 import com.cybergame.repository.ComputerRepository;
 import com.cybergame.repository.sql.ComputerRepositorySQL;
+import com.cybergame.ui.BackgroundLoader;
+import com.cybergame.ui.LiveUpdateCoalescer;
+import com.cybergame.ui.ViewLifecycle;
+import com.cybergame.util.Money;
+import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
+import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.layout.FlowPane;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.VBox;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
 
-public class MachineMgmtController {
+public class MachineMgmtController implements ViewLifecycle {
 
     @FXML private FlowPane machineGrid;
     @FXML private TextField txtSearch;
@@ -28,70 +41,186 @@ public class MachineMgmtController {
 
     private final List<Computer> allMachines = new ArrayList<>();
 
+    // computerId → card đã dựng (giữ cả card đang bị lọc ẩn để dùng lại)
+    private final Map<Integer, MachineCard> cards = new HashMap<>();
+    private Predicate<Computer> viewFilter = c -> true;
+
     private Computer selectedMachine;
     private VBox selectedCard;
 
     // ================= INIT =================
     @FXML
     public void initialize() {
-        allMachines.addAll(repo.findAll());
-        render(allMachines);
+        reload();
+
+        // trạng thái máy đổi ở nơi khác (mở / đóng máy): nhận theo lô, chỉ khi đang hiển thị
+        LiveUpdateCoalescer.whileShowing(machineGrid, this::applyChanges);
+    }
+
+    @Override
+    public void onShow() {
+        reload();
+    }
+
+    // nạp lại từ DB; lưới chỉ sửa những card có thay đổi
+    private void reload() {
+        BackgroundLoader.getInstance().load(this, repo::findAll, list -> {
+            allMachines.clear();
+            allMachines.addAll(list);
+            render();
+        });
     }
 
     // ================= RENDER =================
-    private void render(List<Computer> list) {
-        machineGrid.getChildren().clear();
-        // Reset selection khi render lại
-        selectedMachine = null;
-        selectedCard = null;
+    // vẽ lại theo bộ lọc hiện tại
+    private void render() {
+        render(allMachines.stream().filter(viewFilter).toList());
+    }
 
+    /**
+     * Đồng bộ lưới với danh sách: card dùng lại theo computerId,
+     * chỉ tạo card mới / bỏ card thừa / sửa card có dữ liệu đổi, không clear cả lưới
+     */
+    private void render(List<Computer> list) {
+        List<Node> target = new ArrayList<>(list.size());
         for (Computer c : list) {
-            machineGrid.getChildren().add(createCard(c));
+            MachineCard card = cards.get(c.getComputerId());
+            if (card == null) {
+                card = new MachineCard(c);
+                cards.put(c.getComputerId(), card);
+            } else {
+                card.update(c);
+            }
+            // nạp lại tạo object mới → máy đang chọn trỏ sang object mới
+            if (card.root == selectedCard) selectedMachine = c;
+            target.add(card.root);
+        }
+
+        ObservableList<Node> children = machineGrid.getChildren();
+        if (!children.equals(target)) {
+            Set<Node> keep = Collections.newSetFromMap(new IdentityHashMap<>());
+            keep.addAll(target);
+            List<Node> gone = new ArrayList<>();
+            for (Node n : children) {
+                if (!keep.contains(n)) gone.add(n);
+            }
+            children.removeAll(gone);
+
+            // card còn trong lưới nhưng sai vị trí → dời; card chưa có → chèn
+            for (int i = 0; i < target.size(); i++) {
+                Node node = target.get(i);
+                if (i < children.size() && children.get(i) == node) continue;
+                children.remove(node);
+                children.add(i, node);
+            }
+        }
+
+        // card đang chọn bị lọc mất → bỏ chọn
+        if (selectedCard != null && selectedCard.getParent() != machineGrid) {
+            selectedCard.setStyle("");
+            selectedMachine = null;
+            selectedCard = null;
         }
     }
 
-    // TẠO CARD GIAO DIỆN ĐẸP THEO CSS MACHINE
-    private VBox createCard(Computer c) {
-        VBox card = new VBox();
-        // Add class gốc cho card
-        card.getStyleClass().add("machine-card");
-
-        // 1. Add class màu sắc dựa theo status
-        String statusStyleClass = "status-offline"; // Default
-        switch (c.getStatus()) {
-            case AVAILABLE -> statusStyleClass = "status-available";
-            case IN_USE -> statusStyleClass = "status-in_use";
-            case PAUSED -> statusStyleClass = "status-paused";
-            case MAINTENANCE -> statusStyleClass = "status-maintenance";
-            case OFFLINE -> statusStyleClass = "status-offline";
+    // 1 lô sự kiện (FX thread) → chép trạng thái mới vào máy trong danh sách, vẽ lại 1 lần
+    private void applyChanges(List<LiveEvent> batch) {
+        Map<Integer, Computer> byId = null;
+        boolean changed = false;
+
+        for (LiveEvent e : batch) {
+            if (e.getType() != LiveEvent.Type.MACHINE_STATUS_CHANGED) continue;
+            if (byId == null) {
+                byId = new HashMap<>();
+                for (Computer c : allMachines) byId.put(c.getComputerId(), c);
+            }
+
+            Computer src = e.getComputer();
+            Computer local = byId.get(src.getComputerId());
+            if (local == null) continue;  // máy chưa nạp / đã xoá
+
+            if (local != src) {
+                local.setName(src.getName());
+                local.setPricePerHour(src.getPricePerHour());
+                local.setStatus(src.getStatus());
+            }
+            changed = true;
         }
-        card.getStyleClass().add(statusStyleClass);
 
-        // 2. Icon to (Giả lập icon bằng Emoji hoặc text, CSS sẽ phóng to nó)
-        Label icon = new Label("🖥");
-        icon.getStyleClass().add("big-icon");
+        // card đổi style + bộ lọc theo trạng thái có thể thêm / bớt card
+        if (changed) render();
+    }
+
+    /**
+     * 1 card máy + giá trị đang hiển thị (để biết có cần sửa không)
+     */
+    private final class MachineCard {
+        final VBox root = new VBox();
+        final Label name = new Label();
+        final Label statusLabel = new Label();
+        final Label price = new Label();
+
+        Computer computer;
+        String shownName;
+        ComputerStatus shownStatus;
+        long shownPrice = -1;
+
+        // TẠO CARD GIAO DIỆN ĐẸP THEO CSS MACHINE
+        MachineCard(Computer c) {
+            // Add class gốc cho card
+            root.getStyleClass().add("machine-card");
+
+            // Icon to (Giả lập icon bằng Emoji hoặc text, CSS sẽ phóng to nó)
+            Label icon = new Label("🖥");
+            icon.getStyleClass().add("big-icon");
+
+            name.getStyleClass().add("machine-name");
+            name.setStyle("-fx-font-weight: bold; -fx-font-size: 14px;");
 
-        // 3. Tên máy
-        Label name = new Label(c.getName());
-        name.getStyleClass().add("machine-name");
-        name.setStyle("-fx-font-weight: bold; -fx-font-size: 14px;");
+            statusLabel.getStyleClass().add("status-label");
+            statusLabel.setStyle("-fx-font-weight: bold; -fx-font-size: 11px;");
 
-        // 4. Trạng thái text
-        Label statusLabel = new Label(c.getStatus().name());
-        statusLabel.getStyleClass().add("status-label");
-        statusLabel.setStyle("-fx-font-weight: bold; -fx-font-size: 11px;");
+            price.getStyleClass().add("info-label");
 
-        // 5. Giá tiền
-        Label price = new Label(String.format("%,.0f đ/h", c.getPricePerHour()));
-        price.getStyleClass().add("info-label");
+            // Ghép vào card
+            root.getChildren().addAll(name, icon, statusLabel, price);
 
-        // Ghép vào card
-        card.getChildren().addAll(name, icon, statusLabel, price);
+            // Sự kiện click (luôn lấy máy hiện tại của card)
+            root.setOnMouseClicked(e -> selectCard(root, computer));
 
-        // Sự kiện click
-        card.setOnMouseClicked(e -> selectCard(card, c));
+            update(c);
+        }
+
+        // chỉ chạm vào phần thay đổi
+        void update(Computer c) {
+            computer = c;
+
+            if (!c.getName().equals(shownName)) {
+                shownName = c.getName();
+                name.setText(shownName);
+            }
+            if (c.getStatus() != shownStatus) {
+                if (shownStatus != null) root.getStyleClass().remove(statusStyleClass(shownStatus));
+                shownStatus = c.getStatus();
+                root.getStyleClass().add(statusStyleClass(shownStatus));
+                statusLabel.setText(shownStatus.name());
+            }
+            if (c.getPricePerHour() != shownPrice) {
+                shownPrice = c.getPricePerHour();
+                price.setText(Money.format(shownPrice) + " đ/h");
+            }
+        }
+    }
 
-        return card;
+    // class màu sắc theo status
+    private static String statusStyleClass(ComputerStatus status) {
+        return switch (status) {
+            case AVAILABLE -> "status-available";
+            case IN_USE -> "status-in_use";
+            case PAUSED -> "status-paused";
+            case MAINTENANCE -> "status-maintenance";
+            case OFFLINE -> "status-offline";
+        };
     }
 
     // XỬ LÝ CHỌN (TOGGLE: CHỌN RỒI ẤN LẠI THÌ BỎ CHỌN)
@@ -124,7 +253,7 @@ public class MachineMgmtController {
     }
 
     // ================= FILTER =================
-    @FXML private void filterAll() { render(allMachines); }
+    @FXML private void filterAll() { filter(c -> true); }
     @FXML private void filterAvailable() { filterByStatus(ComputerStatus.AVAILABLE); }
     @FXML private void filterInUse() { filterByStatus(ComputerStatus.IN_USE); }
     @FXML private void filterPaused() { filterByStatus(ComputerStatus.PAUSED); }
@@ -132,7 +261,12 @@ public class MachineMgmtController {
     @FXML private void filterOffline() { filterByStatus(ComputerStatus.OFFLINE); }
 
     private void filterByStatus(ComputerStatus status) {
-        render(allMachines.stream().filter(c -> c.getStatus() == status).toList());
+        filter(c -> c.getStatus() == status);
+    }
+
+    private void filter(Predicate<Computer> p) {
+        viewFilter = p;
+        render();
     }
 
     // ================= SEARCH =================
@@ -140,14 +274,12 @@ public class MachineMgmtController {
     private void handleSearch() {
         String key = txtSearch.getText().trim().toLowerCase();
         if (key.isEmpty()) {
-            render(allMachines);
+            filter(c -> true);
             // Nếu muốn khi xóa hết search thì tab "Tất cả" sáng lại thì xử lý thêm ở đây
             return;
         }
 
-        render(allMachines.stream()
-                .filter(c -> c.getName().toLowerCase().contains(key))
-                .toList());
+        filter(c -> c.getName().toLowerCase().contains(key));
     }
 
     // ================= ADD =================
@@ -174,7 +306,7 @@ public class MachineMgmtController {
                 try {
                     Computer c = controller.createComputer(
                             txtName.getText(),
-                            Double.parseDouble(txtPrice.getText())
+                            Money.parse(txtPrice.getText())
                     );
                     c.setStatus(ComputerStatus.AVAILABLE);
                     return c;
@@ -187,7 +319,7 @@ public class MachineMgmtController {
 
         dialog.showAndWait().ifPresent(c -> {
             allMachines.add(c);
-            render(allMachines);
+            render();
         });
     }
 
@@ -206,7 +338,7 @@ public class MachineMgmtController {
         dialog.getDialogPane().getButtonTypes().addAll(btnSave, ButtonType.CANCEL);
 
         TextField txtName = new TextField(selectedMachine.getName());
-        TextField txtPrice = new TextField(String.valueOf(selectedMachine.getPricePerHour()));
+        TextField txtPrice = new TextField(Money.toDecimal(selectedMachine.getPricePerHour()).toPlainString());
 
         ComboBox<ComputerStatus> cbStatus = new ComboBox<>();
         cbStatus.getItems().addAll(EnumSet.complementOf(EnumSet.of(ComputerStatus.IN_USE)));
@@ -231,12 +363,12 @@ public class MachineMgmtController {
         dialog.setResultConverter(btn -> {
             if (btn == btnSave) {
                 selectedMachine.setName(txtName.getText());
-                selectedMachine.setPricePerHour(Double.parseDouble(txtPrice.getText()));
+                selectedMachine.setPricePerHour(Money.parse(txtPrice.getText()));
                 selectedMachine.setStatus(cbStatus.getValue());
-                repo.save(selectedMachine);
+                controller.update(selectedMachine);
                 
-                // Render lại để cập nhật màu sắc mới
-                render(allMachines); 
+                // chỉ sửa card của máy này (và áp lại bộ lọc)
+                render();
             }
             return null;
         });
@@ -265,7 +397,8 @@ public class MachineMgmtController {
             if (btn == ButtonType.OK) {
                 repo.delete(selectedMachine);
                 allMachines.remove(selectedMachine);
-                render(allMachines);
+                cards.remove(selectedMachine.getComputerId());
+                render();
             }
         });
     }
@@ -1,11 +1,12 @@
 package com.cybergame.ui.fxcontroller;
 
+import com.cybergame.ui.ViewCache;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Parent;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 
+import java.util.List;
+
 public class ManagerController {
 
     @FXML
@@ -16,10 +17,24 @@ public class ManagerController {
 
     private boolean sidebarVisible = true;
 
+    // các màn hình quản lý nạp trước lúc mở dashboard
+    private static final List<String> ADMIN_VIEWS = List.of(
+            "/fxml/admin/machine_mgmt.fxml",
+            "/fxml/admin/customer_mgmt.fxml",
+            "/fxml/admin/product_mgmt.fxml",
+            "/fxml/admin/employee_mgmt.fxml",
+            "/fxml/admin/session_mgmt.fxml",
+            "/fxml/admin/revenue_report.fxml"
+    );
+
+    // view đã nạp được giữ lại → chuyển tab chỉ đổi node, không parse FXML lại
+    private final ViewCache views = new ViewCache(ViewCache.DEFAULT_MAX_VIEWS);
+
     /* ====== LOAD MẶC ĐỊNH ====== */
     @FXML
     public void initialize() {
         showOverview();
+        views.preload(ADMIN_VIEWS);
     }
 
     /* ====== SIDEBAR ====== */
@@ -74,10 +89,7 @@ public class ManagerController {
     /* ====== CORE LOADER ====== */
     private void loadView(String path) {
         try {
-            Parent view = FXMLLoader.load(
-                    getClass().getResource(path)
-            );
-            contentArea.getChildren().setAll(view);
+            views.show(path, contentArea);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -1,8 +1,12 @@
 package com.cybergame.ui.fxcontroller;
 
+import com.cybergame.controller.Inventory;
 import com.cybergame.controller.ServiceItemController;
 import com.cybergame.model.entity.ServiceItem;
 import com.cybergame.repository.sql.ServiceItemRepositorySQL;
+import com.cybergame.ui.BackgroundLoader;
+import com.cybergame.ui.ViewLifecycle;
+import com.cybergame.util.Money;
 import javafx.application.Platform;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleStringProperty;
@@ -24,7 +28,7 @@ import java.net.URL;
 import java.util.Optional;
 import java.util.ResourceBundle;
 
-public class ProductMgmtController implements Initializable {
+public class ProductMgmtController implements Initializable, ViewLifecycle {
 
     // --- FXML ELEMENTS ---
     @FXML private TableView<ServiceItem> productTable;
@@ -91,7 +95,7 @@ public class ProductMgmtController implements Initializable {
         colName.setCellValueFactory(new PropertyValueFactory<>("name"));
 
         // Format Giá tiền
-        colPrice.setCellValueFactory(cell -> new SimpleDoubleProperty(cell.getValue().getUnitPrice()).asObject());
+        colPrice.setCellValueFactory(cell -> new SimpleDoubleProperty(Money.toDouble(cell.getValue().getUnitPrice())).asObject());
         colPrice.setCellFactory(tc -> new TableCell<>() {
             @Override
             protected void updateItem(Double item, boolean empty) {
@@ -130,10 +134,17 @@ public class ProductMgmtController implements Initializable {
         });
     }
 
+    @Override
+    public void onShow() {
+        loadData();
+    }
+
     private void loadData() {
         if (serviceRepo != null) {
-            masterData.setAll(serviceRepo.findAll());
-            updateTotalLabel();
+            BackgroundLoader.getInstance().load(this, serviceRepo::findAll, list -> {
+                masterData.setAll(list);
+                updateTotalLabel();
+            });
         }
     }
     
@@ -217,6 +228,73 @@ public class ProductMgmtController implements Initializable {
         productTable.refresh();
     }
 
+    // Nhập kho / đổi ngưỡng tự khoá (dưới ngưỡng → món tự ngừng bán)
+    @FXML
+    private void onStock() {
+        ServiceItem selected = productTable.getSelectionModel().getSelectedItem();
+        if (selected == null) {
+            showAlert("Lỗi", "Vui lòng chọn món cần nhập kho!");
+            return;
+        }
+
+        long current;
+        try {
+            current = serviceCtrl.getStock(selected);
+        } catch (RuntimeException e) {
+            showAlert("Lỗi", "Không đọc được tồn kho.");
+            return;
+        }
+
+        Dialog<ButtonType> dialog = new Dialog<>();
+        dialog.setTitle("Nhập Kho: " + selected.getName());
+        dialog.setHeaderText(null);
+
+        ButtonType btnSave = new ButtonType("Lưu", ButtonBar.ButtonData.OK_DONE);
+        dialog.getDialogPane().getButtonTypes().addAll(btnSave, ButtonType.CANCEL);
+
+        GridPane grid = new GridPane();
+        grid.setHgap(10); grid.setVgap(10);
+        grid.setPadding(new Insets(20, 50, 10, 10));
+
+        Label lblCurrent = new Label(current == Inventory.UNTRACKED ? "Không theo dõi" : String.valueOf(current));
+
+        TextField txtQty = new TextField();
+        txtQty.setPromptText("Số lượng nhập thêm");
+
+        TextField txtThreshold = new TextField(String.valueOf(selected.getLowStockThreshold()));
+        txtThreshold.setPromptText("Còn <= ngưỡng thì ngừng bán");
+
+        grid.add(new Label("Tồn kho:"), 0, 0); grid.add(lblCurrent, 1, 0);
+        grid.add(new Label("Nhập thêm:"), 0, 1); grid.add(txtQty, 1, 1);
+        grid.add(new Label("Ngưỡng khoá:"), 0, 2); grid.add(txtThreshold, 1, 2);
+
+        dialog.getDialogPane().setContent(grid);
+        Platform.runLater(txtQty::requestFocus);
+
+        if (dialog.showAndWait().orElse(ButtonType.CANCEL) != btnSave) return;
+
+        try {
+            int threshold = Integer.parseInt(txtThreshold.getText().trim());
+            String qtyText = txtQty.getText().trim();
+            long qty = qtyText.isEmpty() ? 0 : Long.parseLong(qtyText);
+
+            if (threshold != selected.getLowStockThreshold()) {
+                serviceCtrl.setLowStockThreshold(selected, threshold);
+            }
+            if (qty > 0) {
+                serviceCtrl.restock(selected, qty);
+            }
+            showAlert("Thành công", "Tồn kho " + selected.getName() + ": " + serviceCtrl.getStock(selected));
+            productTable.refresh();
+        } catch (NumberFormatException e) {
+            showAlert("Lỗi", "Số lượng và ngưỡng phải là số nguyên!");
+        } catch (IllegalArgumentException e) {
+            showAlert("Lỗi", e.getMessage());
+        } catch (RuntimeException e) {
+            showAlert("Lỗi", "Có lỗi xảy ra khi lưu dữ liệu.");
+        }
+    }
+
     @FXML 
     private void onDelete() {
         ServiceItem selected = productTable.getSelectionModel().getSelectedItem();
@@ -262,7 +340,7 @@ public class ProductMgmtController implements Initializable {
 
         if (existingItem != null) {
             txtName.setText(existingItem.getName());
-            txtPrice.setText(String.format("%.0f", existingItem.getUnitPrice()));
+            txtPrice.setText(Money.toDecimal(existingItem.getUnitPrice()).toPlainString());
         }
 
         grid.add(new Label("Tên món:"), 0, 0); grid.add(txtName, 1, 0);
@@ -275,7 +353,7 @@ public class ProductMgmtController implements Initializable {
             if (btn == btnSave) {
                 try {
                     String name = txtName.getText().trim();
-                    double price = Double.parseDouble(txtPrice.getText().trim());
+                    long price = Money.parse(txtPrice.getText());
                     // ID = 0 nếu mới
                     return new ServiceItem(existingItem == null ? 0 : existingItem.getServiceId(), name, price);
                 } catch (NumberFormatException e) {
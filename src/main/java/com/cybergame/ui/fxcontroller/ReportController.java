@@ -1,11 +1,15 @@
 package com.cybergame.ui.fxcontroller;
 
+import com.cybergame.controller.ReportEngine;
 import com.cybergame.model.entity.Invoice;
 import com.cybergame.model.entity.OrderItem;
 import com.cybergame.model.entity.TopUpHistory;
-import com.cybergame.model.enums.PaymentSource;
-import com.cybergame.repository.sql.InvoiceRepositorySQL;
-import com.cybergame.repository.sql.TopUpHistoryRepositorySQL;
+import com.cybergame.model.report.GroupTotal;
+import com.cybergame.model.report.ReportResult;
+import com.cybergame.model.report.RevenueSummary;
+import com.cybergame.ui.BackgroundLoader;
+import com.cybergame.ui.ViewLifecycle;
+import com.cybergame.util.Money;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
@@ -20,15 +24,12 @@ import javafx.scene.paint.Color;
 import java.net.URL;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.ResourceBundle;
-import java.util.stream.Collectors;
 
-public class ReportController implements Initializable {
+public class ReportController implements Initializable, ViewLifecycle {
 
-    private final InvoiceRepositorySQL invoiceRepo = new InvoiceRepositorySQL();
-    private final TopUpHistoryRepositorySQL topUpRepo = new TopUpHistoryRepositorySQL();
+    // dùng chung cả app (1 fork/join pool, AppShutdown dừng pool khi tắt app)
+    private final ReportEngine reportEngine = ReportEngine.getDefault();
 
     // --- FXML: STATS LABELS ---
     @FXML private Label lblTotalRealRevenue;   // TỔNG THỰC THU (Tiền mặt vào két)
@@ -36,6 +37,7 @@ public class ReportController implements Initializable {
     @FXML private Label lblMachineRevenue;     // Doanh thu giờ chơi
     @FXML private Label lblServiceRevenue;     // Tổng Doanh thu dịch vụ
     @FXML private Label lblServiceDetail;      // Chi tiết (Cash/Account)
+    @FXML private Label lblTopAccounts;        // Khách chi nhiều nhất
 
     // --- FXML: FILTER ---
     @FXML private DatePicker dpFrom;
@@ -73,12 +75,20 @@ public class ReportController implements Initializable {
     @FXML private TableColumn<TopUpHistory, Double> colTopAmount;
     @FXML private TableColumn<TopUpHistory, String> colTopNote;
 
+    // --- BÁO BẢNG BỊ CẮT (chỉ hiện N dòng mới nhất) ---
+    @FXML private Label lblTopUpsTruncated;
+    @FXML private Label lblInvoicesTruncated;
+    @FXML private Label lblOrdersTruncated;
+
     private final ObservableList<Invoice> invoiceList = FXCollections.observableArrayList();
     private final ObservableList<TopUpHistory> topUpList = FXCollections.observableArrayList();
     private final ObservableList<OrderItem> orderList = FXCollections.observableArrayList();
 
     private final DateTimeFormatter dtf = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
 
+    // phiên bản dữ liệu của báo cáo đang hiển thị (-1 = chưa có) → onShow chỉ chạy lại khi đã cũ
+    private long shownVersion = -1;
+
     @Override
     public void initialize(URL location, ResourceBundle resources) {
         setupInvoiceTable();
@@ -99,49 +109,20 @@ public class ReportController implements Initializable {
         colInvCustomer.setCellValueFactory(new PropertyValueFactory<>("accountName"));
         colInvComputer.setCellValueFactory(new PropertyValueFactory<>("computerName"));
 
-        // Tính toán các cột tiền từ OrderItems
-        colInvSvcCash.setCellValueFactory(cell -> {
-            double cash = 0;
-            if (cell.getValue().getOrderItems() != null) {
-                cash = cell.getValue().getOrderItems().stream()
-                        .filter(o -> o.getPaymentSource() == PaymentSource.CASH)
-                        .mapToDouble(OrderItem::getCost).sum();
-            }
-            return new SimpleDoubleProperty(cash).asObject();
-        });
+        // Các cột tiền lấy từ snapshot hoá đơn (khớp với số tổng SUM ở DB)
+        colInvSvcCash.setCellValueFactory(cell ->
+                new SimpleDoubleProperty(Money.toDouble(cell.getValue().getServiceCashAmount())).asObject());
         formatCurrencyColumn(colInvSvcCash, "#fbbf24"); // Vàng (Cash)
 
-        colInvSvcAcc.setCellValueFactory(cell -> {
-            double acc = 0;
-            if (cell.getValue().getOrderItems() != null) {
-                acc = cell.getValue().getOrderItems().stream()
-                        .filter(o -> o.getPaymentSource() == PaymentSource.ACCOUNT)
-                        .mapToDouble(OrderItem::getCost).sum();
-            }
-            return new SimpleDoubleProperty(acc).asObject();
-        });
+        colInvSvcAcc.setCellValueFactory(cell ->
+                new SimpleDoubleProperty(Money.toDouble(cell.getValue().getServiceAccountAmount())).asObject());
         formatCurrencyColumn(colInvSvcAcc, "white");
 
-        colInvMachine.setCellValueFactory(cell -> {
-            // Giả định: TotalAmount = TimeAmount + SvcAcc + SvcCash (Tùy logic DB)
-            // Hoặc TotalAmount chỉ là tiền trừ tài khoản. 
-            // Ở đây ta dùng công thức an toàn: Machine = Total - Services
-            // Nếu model Invoice đã có getTimeAmount() thì dùng getter là tốt nhất.
-            
-            Invoice inv = cell.getValue();
-            double totalSvc = (inv.getOrderItems() != null) ? 
-                    inv.getOrderItems().stream().mapToDouble(OrderItem::getCost).sum() : 0;
-            
-            double machine = inv.getTotalAmount() - totalSvc;
-            // Nếu logic hệ thống Invoice.Total chỉ lưu số tiền trừ TK, thì công thức sẽ khác.
-            // Nhưng code cũ đang dùng logic này nên ta giữ nguyên.
-            if (machine < 0) machine = 0; 
-            
-            return new SimpleDoubleProperty(machine).asObject();
-        });
+        colInvMachine.setCellValueFactory(cell ->
+                new SimpleDoubleProperty(Money.toDouble(cell.getValue().getTimeAmount())).asObject());
         formatCurrencyColumn(colInvMachine, "#34d399"); // Xanh lá (Máy)
 
-        colInvTotal.setCellValueFactory(new PropertyValueFactory<>("totalAmount"));
+        colInvTotal.setCellValueFactory(cell -> new SimpleObjectProperty<>(Money.toDouble(cell.getValue().getTotalAmount())));
         formatCurrencyColumn(colInvTotal, "#f472b6"); // Hồng (Tổng)
 
         tableInvoices.setItems(invoiceList);
@@ -151,9 +132,9 @@ public class ReportController implements Initializable {
         colOrdTime.setCellValueFactory(cell -> new SimpleStringProperty(cell.getValue().getOrderedAt().format(dtf)));
         colOrdName.setCellValueFactory(cell -> new SimpleStringProperty(cell.getValue().getServiceItem().getName()));
         colOrdQty.setCellValueFactory(new PropertyValueFactory<>("quantity"));
-        colOrdPrice.setCellValueFactory(cell -> new SimpleObjectProperty<>(cell.getValue().getServiceItem().getUnitPrice()));
+        colOrdPrice.setCellValueFactory(cell -> new SimpleObjectProperty<>(Money.toDouble(cell.getValue().getServiceItem().getUnitPrice())));
         formatCurrencyColumn(colOrdPrice, "white");
-        colOrdTotal.setCellValueFactory(cell -> new SimpleObjectProperty<>(cell.getValue().getCost()));
+        colOrdTotal.setCellValueFactory(cell -> new SimpleObjectProperty<>(Money.toDouble(cell.getValue().getCost())));
         formatCurrencyColumn(colOrdTotal, "#fbbf24");
 
         // Cột Nguồn tiền
@@ -188,7 +169,7 @@ public class ReportController implements Initializable {
             return new SimpleStringProperty((id == null || id == 0) ? "-" : String.valueOf(id));
         });
         colTopOperator.setCellValueFactory(new PropertyValueFactory<>("operatorName"));
-        colTopAmount.setCellValueFactory(new PropertyValueFactory<>("amount"));
+        colTopAmount.setCellValueFactory(cell -> new SimpleObjectProperty<>(Money.toDouble(cell.getValue().getAmount())));
         formatCurrencyColumn(colTopAmount, "#f472b6");
         colTopNote.setCellValueFactory(new PropertyValueFactory<>("note"));
 
@@ -203,78 +184,68 @@ public class ReportController implements Initializable {
 
     @FXML private void onFilter() { loadData(); }
 
+    @Override
+    public void onShow() {
+        // có hoá đơn / lần nạp mới (hoặc bị xoá) từ lần chạy trước → chạy lại, không thì giữ nguyên
+        if (shownVersion != reportEngine.getDataVersion()) loadData();
+    }
+
     private void loadData() {
+        // toàn bộ tính toán nằm trong ReportEngine (thread nền), ở đây chỉ hiển thị kết quả
         LocalDate from = dpFrom.getValue();
         LocalDate to = dpTo.getValue();
+        // đọc phiên bản trước khi chạy: thay đổi xảy ra lúc đang chạy vẫn làm báo cáo bị coi là cũ
+        long version = reportEngine.getDataVersion();
+        BackgroundLoader.getInstance().load(this, () -> reportEngine.run(from, to), r -> {
+            shownVersion = version;
+            render(r);
+        });
+    }
 
-        // --- 1. XỬ LÝ TIỀN NẠP (TOP UP) ---
-        List<TopUpHistory> allTopUps = topUpRepo.findAll();
-        List<TopUpHistory> filteredTopUps = allTopUps.stream()
-            .filter(t -> isWithinDate(t.getCreatedAt().toLocalDate(), from, to))
-            .collect(Collectors.toList());
-        topUpList.setAll(filteredTopUps);
-
-        double totalTopUp = filteredTopUps.stream().mapToDouble(TopUpHistory::getAmount).sum();
-
-        // --- 2. XỬ LÝ HÓA ĐƠN & ORDER ---
-        List<Invoice> allInvoices = invoiceRepo.findAll();
-        List<Invoice> filteredInvoices = allInvoices.stream()
-            .filter(i -> isWithinDate(i.getCreatedAt().toLocalDate(), from, to))
-            .collect(Collectors.toList());
-        invoiceList.setAll(filteredInvoices);
-
-        double totalMachine = 0;
-        double totalServiceCash = 0;
-        double totalServiceAcc = 0;
-        
-        List<OrderItem> allOrderItems = new ArrayList<>();
-
-        for (Invoice inv : filteredInvoices) {
-            double invTotal = inv.getTotalAmount();
-            double invSvcCash = 0;
-            double invSvcAcc = 0;
-
-            if (inv.getOrderItems() != null) {
-                for (OrderItem item : inv.getOrderItems()) {
-                    allOrderItems.add(item);
-                    if (item.getPaymentSource() == PaymentSource.CASH) {
-                        invSvcCash += item.getCost();
-                    } else {
-                        invSvcAcc += item.getCost();
-                    }
-                }
-            }
-            
-            // Doanh thu máy = Tổng - Dịch vụ
-            double invMachine = invTotal - (invSvcCash + invSvcAcc);
-            if (invMachine < 0) invMachine = 0; // Fix trường hợp âm nếu logic sai
-
-            totalMachine += invMachine;
-            totalServiceCash += invSvcCash;
-            totalServiceAcc += invSvcAcc;
-        }
-        orderList.setAll(allOrderItems);
-
-        // --- 3. CẬP NHẬT GIAO DIỆN SỐ LIỆU ---
+    private void render(ReportResult r) {
+        // --- 1. BẢNG ---
+        topUpList.setAll(r.getRecentTopUps());
+        invoiceList.setAll(r.getRecentInvoices());
+        orderList.setAll(r.getRecentItems());
+        showTruncated(lblTopUpsTruncated, r.isTopUpsTruncated(), r.getRecentTopUps().size());
+        showTruncated(lblInvoicesTruncated, r.isInvoicesTruncated(), r.getRecentInvoices().size());
+        showTruncated(lblOrdersTruncated, r.isItemsTruncated(), r.getRecentItems().size());
+
+        // --- 2. SỐ LIỆU ---
+        RevenueSummary summary = r.getSummary();
+        long totalTopUp = r.getTopUpAmount();
+        long totalServiceCash = summary.getServiceCashAmount();
+        long totalServiceAcc = summary.getServiceAccountAmount();
 
         // A. TỔNG THỰC THU (CASH FLOW) = TIỀN NẠP + ORDER TIỀN MẶT
-        double totalRealCash = totalTopUp + totalServiceCash;
-        lblTotalRealRevenue.setText(String.format("%,.0f VNĐ", totalRealCash));
+        lblTotalRealRevenue.setText(Money.format(totalTopUp + totalServiceCash) + " VNĐ");
 
         // B. TIỀN NẠP
-        lblTotalTopUp.setText(String.format("%,.0f VNĐ", totalTopUp));
+        lblTotalTopUp.setText(Money.format(totalTopUp) + " VNĐ");
 
         // C. TIỀN MÁY (Trừ tài khoản)
-        lblMachineRevenue.setText(String.format("%,.0f VNĐ", totalMachine));
+        lblMachineRevenue.setText(Money.format(summary.getTimeAmount()) + " VNĐ");
 
         // D. TIỀN DỊCH VỤ (Tổng + Chi tiết)
-        double totalService = totalServiceCash + totalServiceAcc;
-        lblServiceRevenue.setText(String.format("%,.0f VNĐ", totalService));
-        lblServiceDetail.setText(String.format("(TM: %,.0f - TK: %,.0f)", totalServiceCash, totalServiceAcc));
+        lblServiceRevenue.setText(Money.format(summary.getServiceAmount()) + " VNĐ");
+        lblServiceDetail.setText("(TM: " + Money.format(totalServiceCash)
+                + " - TK: " + Money.format(totalServiceAcc) + ")");
+
+        // E. KHÁCH CHI NHIỀU NHẤT
+        StringBuilder top = new StringBuilder();
+        for (GroupTotal g : r.getTopAccounts()) {
+            if (top.length() > 0) top.append('\n');
+            top.append(g.getKey()).append(": ").append(Money.format(g.getAmount()));
+        }
+        lblTopAccounts.setText(top.length() > 0 ? top.toString() : "-");
     }
 
-    private boolean isWithinDate(LocalDate date, LocalDate from, LocalDate to) {
-        return (from == null || !date.isBefore(from)) && (to == null || !date.isAfter(to));
+    private void showTruncated(Label label, boolean truncated, int shown) {
+        label.setText(truncated
+                ? "Chỉ hiện " + shown + " dòng mới nhất – thu hẹp khoảng ngày để xem đủ (số tổng vẫn tính cả khoảng)"
+                : "");
+        label.setVisible(truncated);
+        label.setManaged(truncated);
     }
 
     private <T> void formatCurrencyColumn(TableColumn<T, Double> col, String colorHex) {
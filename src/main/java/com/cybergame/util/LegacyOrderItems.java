@@ -0,0 +1,199 @@
+package com.cybergame.util;
+
+import com.cybergame.model.entity.OrderItem;
+import com.cybergame.model.entity.ServiceItem;
+import com.cybergame.model.enums.OrderStatus;
+import com.cybergame.model.enums.PaymentSource;
+import com.cybergame.model.enums.ServiceCategory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Đọc snapshot order_items cũ (Java serialize + Base64, cột TEXT) thành OrderItem hiện tại
+ * - Bản đầu: giá double (đồng); bản sau: giá long (Money) nhưng UID OrderItem khác bản hiện tại
+ * - OrderItem / ServiceItem trong stream được đọc vào class "shim" cùng bố cục field
+ *   (chọn theo kiểu field giá), rồi đổi sang class hiện tại
+ * - Bố cục không khớp shim nào → lỗi, không đoán
+ */
+public final class LegacyOrderItems {
+
+    private static final String ORDER_ITEM = "com.cybergame.model.entity.OrderItem";
+    private static final String SERVICE_ITEM = "com.cybergame.model.entity.ServiceItem";
+
+    private LegacyOrderItems() {
+    }
+
+    public static List<OrderItem> decode(String data) {
+        byte[] bytes = Base64.getDecoder().decode(data);
+        try (ObjectInputStream in = new ShimInputStream(new ByteArrayInputStream(bytes))) {
+            Object obj = in.readObject();
+            if (!(obj instanceof List<?> list)) {
+                throw new InvalidClassException("order_items không phải List: "
+                        + (obj == null ? "null" : obj.getClass().getName()));
+            }
+
+            // cùng 1 món trong stream → cùng 1 ServiceItem như lúc ghi
+            Map<Object, ServiceItem> services = new IdentityHashMap<>();
+            List<OrderItem> items = new ArrayList<>(list.size());
+            for (Object o : list) {
+                if (!(o instanceof LegacyOrder order)) {
+                    throw new InvalidClassException("Phần tử order_items lạ: "
+                            + (o == null ? "null" : o.getClass().getName()));
+                }
+                items.add(order.toOrderItem(services));
+            }
+            return items;
+
+        } catch (IOException | ClassNotFoundException e) {
+            throw new RuntimeException("Không đọc được order_items cũ: " + e.getMessage(), e);
+        }
+    }
+
+    /* ================= STREAM ================= */
+
+    // thay descriptor của OrderItem / ServiceItem bằng descriptor của shim cùng bố cục
+    private static final class ShimInputStream extends ObjectInputStream {
+
+        ShimInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+            ObjectStreamClass desc = super.readClassDescriptor();
+            return switch (desc.getName()) {
+                case ORDER_ITEM -> shim(desc, "unitPriceAtOrder",
+                        DoubleOrderItem.class, LongOrderItem.class);
+                case SERVICE_ITEM -> shim(desc, "unitPrice",
+                        DoubleServiceItem.class, LongServiceItem.class);
+                default -> desc;
+            };
+        }
+
+        private static ObjectStreamClass shim(ObjectStreamClass desc, String priceField,
+                                              Class<?> doubleShim, Class<?> longShim)
+                throws InvalidClassException {
+            ObjectStreamField price = desc.getField(priceField);
+            char type = (price != null) ? price.getTypeCode() : '?';
+            Class<?> cl = (type == 'D') ? doubleShim : (type == 'J') ? longShim : null;
+            if (cl == null) {
+                throw new InvalidClassException(desc.getName(), "không rõ kiểu field " + priceField);
+            }
+
+            ObjectStreamClass local = ObjectStreamClass.lookup(cl);
+            if (!sameLayout(desc.getFields(), local.getFields())) {
+                throw new InvalidClassException(desc.getName(), "bố cục field không khớp bản cũ");
+            }
+            return local;
+        }
+
+        // getFields() đã sắp xếp theo đúng thứ tự ghi
+        private static boolean sameLayout(ObjectStreamField[] a, ObjectStreamField[] b) {
+            if (a.length != b.length) return false;
+            for (int i = 0; i < a.length; i++) {
+                if (!a[i].getName().equals(b[i].getName())
+                        || a[i].getTypeCode() != b[i].getTypeCode()) return false;
+            }
+            return true;
+        }
+    }
+
+    /* ================= SHIM ================= */
+
+    private interface LegacyOrder {
+        OrderItem toOrderItem(Map<Object, ServiceItem> services);
+    }
+
+    private interface LegacyService {
+        ServiceItem toServiceItem();
+    }
+
+    private static ServiceItem service(Object s, Map<Object, ServiceItem> services) {
+        if (s == null) return null;
+        return services.computeIfAbsent(s, k -> ((LegacyService) k).toServiceItem());
+    }
+
+    private static ServiceItem service(int id, String name, long price,
+                                       boolean locked, ServiceCategory category) {
+        ServiceItem s = new ServiceItem(id, name, price, category);
+        if (locked) s.lock();
+        return s;
+    }
+
+    // bản đầu: giá double (đồng)
+    private static final class DoubleServiceItem implements Serializable, LegacyService {
+        private static final long serialVersionUID = 1L;
+        private int serviceId;
+        private String name;
+        private double unitPrice;
+        private boolean locked;
+        private ServiceCategory category;
+
+        @Override
+        public ServiceItem toServiceItem() {
+            return service(serviceId, name, Money.of(unitPrice), locked, category);
+        }
+    }
+
+    private static final class DoubleOrderItem implements Serializable, LegacyOrder {
+        private static final long serialVersionUID = -1052687705527942838L;
+        private int orderItemId;
+        private DoubleServiceItem serviceItem;
+        private int quantity;
+        private double unitPriceAtOrder;
+        private PaymentSource paymentSource;
+        private OrderStatus status;
+        private LocalDateTime orderedAt;
+
+        @Override
+        public OrderItem toOrderItem(Map<Object, ServiceItem> services) {
+            return new OrderItem(orderItemId, service(serviceItem, services), quantity,
+                    Money.of(unitPriceAtOrder), paymentSource, status, orderedAt);
+        }
+    }
+
+    // giá long (Money), trước khi có order_items_bin
+    private static final class LongServiceItem implements Serializable, LegacyService {
+        private static final long serialVersionUID = 1L;
+        private int serviceId;
+        private String name;
+        private long unitPrice;
+        private boolean locked;
+        private ServiceCategory category;
+
+        @Override
+        public ServiceItem toServiceItem() {
+            return service(serviceId, name, unitPrice, locked, category);
+        }
+    }
+
+    private static final class LongOrderItem implements Serializable, LegacyOrder {
+        private static final long serialVersionUID = -8049321953718101494L;
+        private int orderItemId;
+        private LongServiceItem serviceItem;
+        private int quantity;
+        private long unitPriceAtOrder;
+        private PaymentSource paymentSource;
+        private OrderStatus status;
+        private LocalDateTime orderedAt;
+
+        @Override
+        public OrderItem toOrderItem(Map<Object, ServiceItem> services) {
+            return new OrderItem(orderItemId, service(serviceItem, services), quantity,
+                    unitPriceAtOrder, paymentSource, status, orderedAt);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.cybergame.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Tiền tệ dạng số nguyên (fixed-point)
+ * - Mọi số tiền là long, đơn vị nhỏ nhất = 1/100 đồng
+ * - Tỉ lệ giảm giá dạng basis point (10000 = 100%)
+ * - Các hàm đều static trên long → không cấp phát object
+ */
+public final class Money {
+
+    // 1 đồng = 100 đơn vị nhỏ nhất
+    public static final int SCALE = 2;
+    public static final long UNIT = 100;
+
+    // 100% = 10000 basis point
+    public static final int FULL_RATE = 10_000;
+
+    public static final long ZERO = 0L;
+
+    private static final long SECONDS_PER_HOUR = 3600;
+
+    private Money() {
+    }
+
+    /* ================= CHUYỂN ĐỔI ================= */
+
+    /**
+     * Đồng (số thực) → đơn vị nhỏ nhất, làm tròn nửa lên
+     */
+    public static long of(double dong) {
+        return Math.round(dong * UNIT);
+    }
+
+    /**
+     * Đồng (số nguyên) → đơn vị nhỏ nhất
+     */
+    public static long of(long dong) {
+        return Math.multiplyExact(dong, UNIT);
+    }
+
+    /**
+     * Đọc số tiền người dùng nhập ("15000", "15,000", "15000.5")
+     */
+    public static long parse(String text) {
+        if (text == null) throw new NumberFormatException("null");
+        String s = text.trim().replace(",", "");
+        return fromDecimal(new BigDecimal(s));
+    }
+
+    public static double toDouble(long amount) {
+        return amount / (double) UNIT;
+    }
+
+    /**
+     * Map cột DECIMAL(15,2) của DB
+     */
+    public static BigDecimal toDecimal(long amount) {
+        return BigDecimal.valueOf(amount, SCALE);
+    }
+
+    public static long fromDecimal(BigDecimal value) {
+        if (value == null) return ZERO;
+        return value.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Hiển thị kiểu "15,000" (bỏ phần lẻ dưới 1 đồng)
+     */
+    public static String format(long amount) {
+        return String.format("%,.0f", toDouble(amount));
+    }
+
+    /* ================= PHÉP TÍNH ================= */
+
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    public static long times(long amount, int quantity) {
+        return Math.multiplyExact(amount, quantity);
+    }
+
+    /**
+     * amount * rateBps / 10000, làm tròn nửa lên
+     */
+    public static long applyRate(long amount, int rateBps) {
+        return mulDiv(amount, rateBps, FULL_RATE);
+    }
+
+    /**
+     * Tiền giờ = giá/giờ * số giây / 3600 * tỉ lệ giảm giá, làm tròn 1 lần duy nhất
+     */
+    public static long timeCost(long pricePerHour, long seconds, int rateBps) {
+        if (seconds <= 0 || pricePerHour <= 0) return ZERO;
+        return mulDiv(Math.multiplyExact(pricePerHour, seconds), rateBps,
+                SECONDS_PER_HOUR * FULL_RATE);
+    }
+
+    /**
+     * Số giây chơi tối đa sao cho timeCost(...) <= budget
+     * (Long.MAX_VALUE nếu giá = 0)
+     */
+    public static long affordableSeconds(long budget, long pricePerHour, int rateBps) {
+        if (pricePerHour <= 0 || rateBps <= 0) return Long.MAX_VALUE;
+        if (budget <= 0) return 0;
+
+        long perHour = applyRate(pricePerHour, rateBps);
+        if (perHour <= 0) return Long.MAX_VALUE;
+
+        long seconds = mulDiv(budget, SECONDS_PER_HOUR, perHour);
+
+        // hiệu chỉnh sai số làm tròn
+        while (seconds > 0 && timeCost(pricePerHour, seconds, rateBps) > budget) seconds--;
+        while (timeCost(pricePerHour, seconds + 1, rateBps) <= budget) seconds++;
+        return seconds;
+    }
+
+    // a * b / c, làm tròn nửa lên (a, b, c >= 0)
+    private static long mulDiv(long a, long b, long c) {
+        long product = Math.multiplyExact(a, b);
+        return (product + c / 2) / c;
+    }
+}
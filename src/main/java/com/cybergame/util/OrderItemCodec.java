@@ -0,0 +1,230 @@
+package com.cybergame.util;
+
+import com.cybergame.model.entity.OrderItem;
+import com.cybergame.model.entity.ServiceItem;
+import com.cybergame.model.enums.OrderStatus;
+import com.cybergame.model.enums.PaymentSource;
+import com.cybergame.model.enums.ServiceCategory;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mã hoá nhị phân gọn cho snapshot order_items của hoá đơn (thay SerializationUtil)
+ *
+ * Định dạng v1:
+ *   version(1 byte)
+ *   số món dịch vụ (varint), mỗi món: id, tên (độ dài + UTF-8), giá, category, locked
+ *   số dòng (varint), mỗi dòng: id, chỉ số món, số lượng, giá lúc đặt,
+ *                               payment, status, thời điểm (ms, dòng sau lưu chênh lệch)
+ * Số nguyên = varint (zigzag với số có thể âm), tiền = Money (1/100 đồng), enum = ordinal.
+ */
+public final class OrderItemCodec {
+
+    public static final int VERSION = 1;
+
+    private static final ServiceCategory[] CATEGORIES = ServiceCategory.values();
+    private static final PaymentSource[] SOURCES = PaymentSource.values();
+    private static final OrderStatus[] STATUSES = OrderStatus.values();
+
+    private OrderItemCodec() {
+    }
+
+    /* ================= ENCODE ================= */
+
+    public static byte[] encode(List<OrderItem> items) {
+        Writer w = new Writer(16 + items.size() * 16);
+        w.writeByte(VERSION);
+
+        // từ điển món: mỗi ServiceItem (theo id) chỉ ghi 1 lần
+        Map<Integer, Integer> indexById = new LinkedHashMap<>();
+        List<ServiceItem> services = new ArrayList<>();
+        for (OrderItem item : items) {
+            ServiceItem s = item.getServiceItem();
+            if (indexById.putIfAbsent(s.getServiceId(), services.size()) == null) {
+                services.add(s);
+            }
+        }
+
+        w.writeVarInt(services.size());
+        for (ServiceItem s : services) {
+            w.writeVarInt(s.getServiceId());
+            w.writeString(s.getName());
+            w.writeVarLong(zigzag(s.getUnitPrice()));
+            w.writeVarInt(s.getCategory() == null ? 0 : s.getCategory().ordinal() + 1);
+            w.writeByte(s.isLocked() ? 1 : 0);
+        }
+
+        w.writeVarInt(items.size());
+        long prevMillis = 0;
+        for (OrderItem item : items) {
+            w.writeVarInt(item.getOrderItemId());
+            w.writeVarInt(indexById.get(item.getServiceItem().getServiceId()));
+            w.writeVarInt(item.getQuantity());
+            w.writeVarLong(zigzag(item.getUnitPriceAtOrder()));
+            w.writeVarInt(item.getPaymentSource().ordinal());
+            w.writeVarInt(item.getStatus().ordinal());
+
+            long millis = toMillis(item.getOrderedAt());
+            w.writeVarLong(zigzag(millis - prevMillis));
+            prevMillis = millis;
+        }
+        return w.toByteArray();
+    }
+
+    /* ================= DECODE ================= */
+
+    /**
+     * Dữ liệu hỏng (thiếu byte, chỉ số món / enum ngoài khoảng) → IllegalArgumentException
+     * nêu rõ trường sai, không để lộ ArrayIndexOutOfBounds
+     */
+    public static List<OrderItem> decode(byte[] data) {
+        Reader r = new Reader(data);
+        int version = r.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("order_items: không hỗ trợ phiên bản " + version);
+        }
+
+        int serviceCount = r.readCount("số món");
+        ServiceItem[] services = new ServiceItem[serviceCount];
+        for (int i = 0; i < serviceCount; i++) {
+            int id = r.readVarInt();
+            String name = r.readString();
+            long price = unzigzag(r.readVarLong());
+            int category = r.readVarInt();
+            boolean locked = r.readByte() != 0;
+
+            ServiceItem s = new ServiceItem(id, name, price,
+                    category == 0 ? null : pick(CATEGORIES, category - 1, "category"));
+            if (locked) s.lock();
+            services[i] = s;
+        }
+
+        int lineCount = r.readCount("số dòng");
+        List<OrderItem> items = new ArrayList<>(lineCount);
+        long millis = 0;
+        for (int i = 0; i < lineCount; i++) {
+            int id = r.readVarInt();
+            ServiceItem s = pick(services, r.readVarInt(), "chỉ số món");
+            int quantity = r.readVarInt();
+            long unitPrice = unzigzag(r.readVarLong());
+            PaymentSource source = pick(SOURCES, r.readVarInt(), "payment");
+            OrderStatus status = pick(STATUSES, r.readVarInt(), "status");
+            millis += unzigzag(r.readVarLong());
+
+            items.add(new OrderItem(id, s, quantity, unitPrice, source, status, fromMillis(millis)));
+        }
+        return items;
+    }
+
+    /* ================= HELPER ================= */
+
+    private static <T> T pick(T[] values, int index, String field) {
+        if (index < 0 || index >= values.length) {
+            throw new IllegalArgumentException("order_items: " + field + " = " + index
+                    + " ngoài khoảng [0, " + values.length + ")");
+        }
+        return values[index];
+    }
+
+    // LocalDateTime giữ nguyên giờ địa phương, chỉ đổi sang số ms
+    private static long toMillis(LocalDateTime t) {
+        return t == null ? 0 : t.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static LocalDateTime fromMillis(long millis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000),
+                Math.floorMod(millis, 1000) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static final class Writer extends ByteArrayOutputStream {
+
+        Writer(int size) {
+            super(size);
+        }
+
+        void writeByte(int b) {
+            write(b);
+        }
+
+        void writeVarInt(int v) {
+            writeVarLong(v & 0xFFFFFFFFL);
+        }
+
+        void writeVarLong(long v) {
+            while ((v & ~0x7FL) != 0) {
+                write((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            write((int) v);
+        }
+
+        void writeString(String s) {
+            byte[] bytes = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int pos;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        int readByte() {
+            if (pos >= data.length) throw new IllegalArgumentException("order_items: thiếu dữ liệu");
+            return data[pos++] & 0xFF;
+        }
+
+        int readVarInt() {
+            return (int) readVarLong();
+        }
+
+        // mỗi phần tử chiếm >= 1 byte → số phần tử không thể vượt số byte còn lại
+        int readCount(String field) {
+            int n = readVarInt();
+            if (n < 0 || n > data.length - pos) {
+                throw new IllegalArgumentException("order_items: " + field + " = " + n
+                        + " sai (còn " + (data.length - pos) + " byte)");
+            }
+            return n;
+        }
+
+        long readVarLong() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return result;
+            }
+            throw new IllegalArgumentException("order_items: varint sai");
+        }
+
+        String readString() {
+            int len = readVarInt();
+            if (len < 0 || pos + len > data.length) {
+                throw new IllegalArgumentException("order_items: chuỗi sai độ dài");
+            }
+            String s = new String(data, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return s;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.cybergame.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bộ đếm tồn kho chia stripe (kiểu LongAdder) nhưng có giữ chỗ: không bao giờ âm, không bán lố
+ * - Tồn kho chia đều ra nhiều ô, mỗi thread ưu tiên ô "nhà" của mình → ít tranh chấp CAS
+ * - tryReserve: ô nhà đủ hàng → 1 lần CAS; không đủ → gom từ các ô khác (1 thread gom 1 lúc)
+ * - Gom không đủ → trả lại phần đã lấy, báo hết hàng
+ * - available() = tổng các ô (đọc không khoá, có thể lệch trong lúc đang gom)
+ */
+public final class StripedStock {
+
+    // mỗi ô cách nhau 16 long = 128 byte → không chung cache line
+    private static final int PAD = 16;
+    private static final int MAX_STRIPES = 64;
+
+    private final AtomicLongArray cells;
+    private final int stripes;
+    private final int mask;
+    private final ReentrantLock drainLock = new ReentrantLock();
+
+    public StripedStock(long initial) {
+        this(initial, defaultStripes());
+    }
+
+    public StripedStock(long initial, int stripes) {
+        if (initial < 0) {
+            throw new IllegalArgumentException("Tồn kho phải >= 0");
+        }
+        if (stripes <= 0 || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Số stripe phải là luỹ thừa của 2");
+        }
+        this.stripes = stripes;
+        this.mask = stripes - 1;
+        this.cells = new AtomicLongArray(stripes * PAD);
+
+        // chia đều, phần dư vào ô 0
+        long share = initial / stripes;
+        for (int i = 0; i < stripes; i++) cells.set(i * PAD, share);
+        cells.addAndGet(0, initial - share * stripes);
+    }
+
+    private static int defaultStripes() {
+        int n = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()));
+        return Math.min(n, MAX_STRIPES);
+    }
+
+    /* ================= GIỮ CHỖ / TRẢ ================= */
+
+    /**
+     * Lấy đúng qty đơn vị hoặc không lấy gì
+     */
+    public boolean tryReserve(long qty) {
+        if (qty <= 0) {
+            throw new IllegalArgumentException("Số lượng phải > 0");
+        }
+        int home = home();
+        if (take(home, qty)) return true;
+        return reserveSlow(home, qty);
+    }
+
+    /**
+     * Trả lại / nhập thêm hàng (vào ô nhà, không tranh chấp với thread khác)
+     */
+    public void release(long qty) {
+        if (qty < 0) {
+            throw new IllegalArgumentException("Số lượng phải >= 0");
+        }
+        cells.addAndGet(home() * PAD, qty);
+    }
+
+    /**
+     * Đặt tồn kho về value (kiểm kho). Đơn vị đang giữ chỗ / trả lại cùng lúc vẫn được tính.
+     */
+    public void set(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Tồn kho phải >= 0");
+        }
+        drainLock.lock();
+        try {
+            long delta = value - available();
+            if (delta > 0) {
+                cells.addAndGet(home() * PAD, delta);
+            } else {
+                long want = -delta;
+                for (int k = 0; k < stripes && want > 0; k++) {
+                    want -= takeUpTo(k, want);
+                }
+            }
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    public long available() {
+        long sum = 0;
+        for (int i = 0; i < stripes; i++) sum += cells.get(i * PAD);
+        return sum;
+    }
+
+    public int getStripes() {
+        return stripes;
+    }
+
+    /* ================= INTERNAL ================= */
+
+    // ô nhà đủ hàng → CAS lấy cả qty
+    private boolean take(int stripe, long qty) {
+        int i = stripe * PAD;
+        while (true) {
+            long v = cells.get(i);
+            if (v < qty) return false;
+            if (cells.compareAndSet(i, v, v - qty)) return true;
+        }
+    }
+
+    // lấy tối đa want từ 1 ô, trả về số lấy được
+    private long takeUpTo(int stripe, long want) {
+        int i = stripe * PAD;
+        while (true) {
+            long v = cells.get(i);
+            if (v <= 0) return 0;
+            long n = Math.min(v, want);
+            if (cells.compareAndSet(i, v, v - n)) return n;
+        }
+    }
+
+    // chỉ 1 thread gom 1 lúc → 2 thread gom dở không làm nhau báo hết hàng oan
+    private boolean reserveSlow(int home, long qty) {
+        drainLock.lock();
+        try {
+            long got = 0;
+            for (int k = 0; k < stripes && got < qty; k++) {
+                got += takeUpTo((home + k) & mask, qty - got);
+            }
+            if (got == qty) return true;
+            if (got > 0) cells.addAndGet(home * PAD, got);
+            return false;
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    private int home() {
+        long h = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & mask;
+    }
+}